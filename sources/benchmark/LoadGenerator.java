@@ -0,0 +1,177 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Minimal HTTP load generator, used by throughput.sh so that measuring
+ * throughput doesn't require additional tools.
+ *
+ * Usage: java benchmark/LoadGenerator.java [OPTIONS] URL
+ *
+ *   -z DURATION   Duration to send requests for, for example 30s (default: 30s).
+ *   -c N          Number of concurrent connections (default: 64).
+ *   -m METHOD     HTTP method (default: GET).
+ *   -T TYPE       Content type of the request body.
+ *   -H HEADER     Request header in the form 'Name: value', repeatable.
+ *   -d BODY       Request body.
+ *
+ * Each connection sends requests in a loop and waits for the response
+ * before sending the next request. The program prints a single line
+ * with the number of requests per second, the 99th percentile latency
+ * in milliseconds, and the number of requests that failed or returned
+ * a status code other than 2xx or 3xx.
+ */
+public class LoadGenerator {
+  private static Duration parseDuration(String value) {
+    if (value.endsWith("ms")) {
+      return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+    }
+    else if (value.endsWith("s")) {
+      return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+    }
+    else if (value.endsWith("m")) {
+      return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+    }
+    else {
+      throw new IllegalArgumentException("Unrecognized duration: " + value);
+    }
+  }
+
+  /**
+   * Latencies and errors observed by a single connection.
+   */
+  private static class Results {
+    private long[] latencies = new long[1024];
+    private int count;
+    private int errors;
+
+    void add(long latencyNanos) {
+      if (this.count == this.latencies.length) {
+        this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+      }
+
+      this.latencies[this.count++] = latencyNanos;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    var duration = Duration.ofSeconds(30);
+    var concurrency = 64;
+    var method = "GET";
+    var body = "";
+    var headers = new ArrayList<String>();
+    String url = null;
+
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-z" -> duration = parseDuration(args[++i]);
+        case "-c" -> concurrency = Integer.parseInt(args[++i]);
+        case "-m" -> method = args[++i];
+        case "-T" -> headers.add("Content-Type: " + args[++i]);
+        case "-H" -> headers.add(args[++i]);
+        case "-d" -> body = args[++i];
+        default -> url = args[i];
+      }
+    }
+
+    if (url == null) {
+      System.err.println("Usage: LoadGenerator [-z DURATION] [-c N] [-m METHOD] [-T TYPE] [-H HEADER] [-d BODY] URL");
+      System.exit(2);
+    }
+
+    var requestBuilder = HttpRequest
+      .newBuilder(URI.create(url))
+      .method(method, body.isEmpty()
+        ? HttpRequest.BodyPublishers.noBody()
+        : HttpRequest.BodyPublishers.ofString(body));
+    for (var header : headers) {
+      var separator = header.indexOf(':');
+      requestBuilder.header(
+        header.substring(0, separator).trim(),
+        header.substring(separator + 1).trim());
+    }
+
+    var request = requestBuilder.build();
+    var client = HttpClient
+      .newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .followRedirects(HttpClient.Redirect.NEVER)
+      .build();
+
+    var executor = Executors.newFixedThreadPool(concurrency);
+    var start = System.nanoTime();
+    var deadline = start + duration.toNanos();
+
+    var futures = new ArrayList<Future<Results>>();
+    for (int i = 0; i < concurrency; i++) {
+      futures.add(executor.submit(() -> {
+        var results = new Results();
+        while (System.nanoTime() < deadline) {
+          var requestStart = System.nanoTime();
+          try {
+            var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 400) {
+              results.errors++;
+            }
+          }
+          catch (Exception e) {
+            results.errors++;
+          }
+
+          results.add(System.nanoTime() - requestStart);
+        }
+
+        return results;
+      }));
+    }
+
+    var all = new ArrayList<Results>();
+    for (var future : futures) {
+      all.add(future.get());
+    }
+
+    var elapsed = System.nanoTime() - start;
+    executor.shutdown();
+
+    var latencies = all
+      .stream()
+      .flatMapToLong(r -> Arrays.stream(r.latencies, 0, r.count))
+      .sorted()
+      .toArray();
+    var errors = all.stream().mapToInt(r -> r.errors).sum();
+
+    var requestsPerSecond = latencies.length / (elapsed / 1e9);
+    var p99 = latencies.length == 0
+      ? 0
+      : latencies[(int)Math.min(latencies.length - 1, Math.ceil(latencies.length * 0.99) - 1)] / 1e6;
+
+    System.out.printf("%.1f,%.1f,%d%n", requestsPerSecond, p99, errors);
+  }
+}
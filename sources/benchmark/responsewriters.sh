@@ -0,0 +1,49 @@
+#!/bin/bash
+#
+# Copyright 2023 Google LLC
+#
+# Licensed to the Apache Software Foundation (ASF) under one
+# or more contributor license agreements.  See the NOTICE file
+# distributed with this work for additional information
+# regarding copyright ownership.  The ASF licenses this file
+# to you under the Apache License, Version 2.0 (the
+# "License"); you may not use this file except in compliance
+# with the License.  You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing,
+# software distributed under the License is distributed on an
+# "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+# KIND, either express or implied.  See the License for the
+# specific language governing permissions and limitations
+# under the License.
+#
+
+#
+# Compare serializing responses using Jackson and using the pre-built
+# response writers, see ResponseWritersBenchmark.
+#
+# Usage: benchmark/responsewriters.sh [JMH-OPTIONS]
+#
+# For example, to measure allocations per response:
+#
+#   benchmark/responsewriters.sh -prof gc
+#
+# Use JAVA to select the Java runtime.
+#
+
+set -eu
+
+JAVA=${JAVA:-java}
+cd "$(dirname "$0")/.."
+
+mvn --quiet test-compile dependency:build-classpath \
+  -Dmdep.includeScope=test \
+  -Dmdep.outputFile=target/benchmark-classpath.txt
+
+"$JAVA" \
+  -cp "target/test-classes:target/classes:$(cat target/benchmark-classpath.txt)" \
+  org.openjdk.jmh.Main \
+  ResponseWritersBenchmark \
+  "$@"
@@ -0,0 +1,147 @@
+#!/bin/bash
+#
+# Copyright 2023 Google LLC
+#
+# Licensed to the Apache Software Foundation (ASF) under one
+# or more contributor license agreements.  See the NOTICE file
+# distributed with this work for additional information
+# regarding copyright ownership.  The ASF licenses this file
+# to you under the Apache License, Version 2.0 (the
+# "License"); you may not use this file except in compliance
+# with the License.  You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing,
+# software distributed under the License is distributed on an
+# "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+# KIND, either express or implied.  See the License for the
+# specific language governing permissions and limitations
+# under the License.
+#
+
+#
+# Measure startup performance of a local build.
+#
+# Usage: benchmark/startup.sh MODE [RUNS]
+#
+#   MODE    jvm     Run target/quarkus-app/quarkus-run.jar
+#           appcds  Run target/quarkus-app/quarkus-run.jar using the AppCDS
+#                   archive target/quarkus-app/app-cds.jsa, see
+#                   src/main/docker/train-appcds.sh
+#           native  Run target/tokenservice-runner
+#   RUNS    Number of cold starts to measure, default 5.
+#
+# For each run, the script reports:
+#
+#   ready_ms              Time until the application accepts requests.
+#   first_request_ms      Latency of the first metadata request.
+#   first_token_ms        Time until the first token request completed, or
+#                         empty if TOKEN_REQUEST isn't set.
+#   first_token_latency_ms  Latency of the first token request.
+#   rss_kb                Resident set size after the first token request.
+#   hwm_kb                Peak resident set size after the first token request.
+#
+# The token request depends on the enabled flows, so it must be passed
+# as curl arguments in TOKEN_REQUEST, for example:
+#
+#   TOKEN_REQUEST="-H 'X-Client-Cert-Present: true' ... -d grant_type=client_credentials"
+#
+# Use JAVA to select the Java runtime for the jvm and appcds modes. Note
+# that AppCDS archives only work with the runtime that created them.
+#
+# All other environment variables (for example, WORKLOAD_IDENITY_POOL_ID)
+# are passed to the application.
+#
+
+set -u
+
+MODE=${1:?Usage: $0 jvm|appcds|native [RUNS]}
+RUNS=${2:-5}
+JAVA=${JAVA:-java}
+export PORT=${PORT:-18080}
+BASE_URL="http://localhost:$PORT"
+TARGET_DIR="$(cd "$(dirname "$0")/../target" && pwd)"
+
+case "$MODE" in
+  jvm)
+    COMMAND=("$JAVA" -jar "$TARGET_DIR/quarkus-app/quarkus-run.jar")
+    ;;
+  appcds)
+    COMMAND=("$JAVA" -XX:SharedArchiveFile="$TARGET_DIR/quarkus-app/app-cds.jsa" -Xshare:on
+      -jar "$TARGET_DIR/quarkus-app/quarkus-run.jar")
+    ;;
+  native)
+    COMMAND=("$TARGET_DIR/tokenservice-runner")
+    ;;
+  *)
+    echo "Unknown mode: $MODE" >&2
+    exit 1
+    ;;
+esac
+
+now_ms() {
+  echo $(( $(date +%s%N) / 1000000 ))
+}
+
+wait_for_port() {
+  local deadline=$(( $(now_ms) + 60000 ))
+  until curl --silent --output /dev/null "$BASE_URL/"; do
+    if (( $(now_ms) > deadline )); then
+      return 1
+    fi
+    sleep 0.01
+  done
+}
+
+timed_request() {
+  # Perform a request and print its latency in ms, fail on non-2xx responses.
+  local seconds
+  seconds=$(eval curl --silent --fail --output /dev/null --write-out '%{time_total}' "$@") || return 1
+  awk -v s="$seconds" 'BEGIN { printf "%.1f", s * 1000 }'
+}
+
+proc_status_kb() {
+  awk -v key="$2:" '$1 == key { print $2 }' "/proc/$1/status"
+}
+
+stop() {
+  kill "$PID"
+  wait "$PID" 2> /dev/null || true
+}
+
+echo "mode,run,ready_ms,first_request_ms,first_token_ms,first_token_latency_ms,rss_kb,hwm_kb"
+
+for (( run = 1; run <= RUNS; run++ )); do
+  START=$(now_ms)
+  "${COMMAND[@]}" > /dev/null 2>&1 &
+  PID=$!
+
+  if ! wait_for_port; then
+    echo "Application did not become ready" >&2
+    stop
+    exit 1
+  fi
+  READY=$(( $(now_ms) - START ))
+
+  if ! FIRST_REQUEST=$(timed_request "$BASE_URL/.well-known/openid-configuration"); then
+    echo "Metadata request failed" >&2
+    stop
+    exit 1
+  fi
+
+  FIRST_TOKEN=
+  FIRST_TOKEN_LATENCY=
+  if [[ -n "${TOKEN_REQUEST:-}" ]]; then
+    if ! FIRST_TOKEN_LATENCY=$(timed_request "$TOKEN_REQUEST" "$BASE_URL/token"); then
+      echo "Token request failed" >&2
+      stop
+      exit 1
+    fi
+    FIRST_TOKEN=$(( $(now_ms) - START ))
+  fi
+
+  echo "$MODE,$run,$READY,$FIRST_REQUEST,$FIRST_TOKEN,$FIRST_TOKEN_LATENCY,$(proc_status_kb $PID VmRSS),$(proc_status_kb $PID VmHWM)"
+
+  stop
+done
@@ -0,0 +1,127 @@
+#!/bin/bash
+#
+# Copyright 2023 Google LLC
+#
+# Licensed to the Apache Software Foundation (ASF) under one
+# or more contributor license agreements.  See the NOTICE file
+# distributed with this work for additional information
+# regarding copyright ownership.  The ASF licenses this file
+# to you under the Apache License, Version 2.0 (the
+# "License"); you may not use this file except in compliance
+# with the License.  You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing,
+# software distributed under the License is distributed on an
+# "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+# KIND, either express or implied.  See the License for the
+# specific language governing permissions and limitations
+# under the License.
+#
+#
+# Measure request throughput of a local build.
+#
+# Usage: benchmark/throughput.sh LABEL
+#
+#   LABEL   Label to include in the output, for example the name of
+#           the commit or branch that was built.
+#
+# The script runs target/quarkus-app/quarkus-run.jar and uses
+# LoadGenerator.java to send requests to each endpoint for DURATION
+# (default: 30s) using CONCURRENCY (default: 64) concurrent connections.
+# For each endpoint, the script reports:
+#
+#   requests_per_sec      Average throughput.
+#   p99_ms                99th percentile latency.
+#   errors                Number of failed requests, or requests that
+#                         returned a 4xx or 5xx status code.
+#
+# The load generator runs on the same machine as the application, so
+# results are only comparable between runs on the same machine.
+#
+# To compare throughput before and after a change, build and run the
+# script once for each version, for example:
+#
+#   git checkout main~1 && mvn package && benchmark/throughput.sh before
+#   git checkout main && mvn package && benchmark/throughput.sh after
+#
+# The token request depends on the enabled flows, so it must be passed
+# as load generator arguments in TOKEN_REQUEST, for example:
+#
+#   TOKEN_REQUEST="-H 'X-Client-Cert-Present: true' ... -d grant_type=client_credentials"
+#
+# Use JAVA to select the Java runtime.
+#
+# All other environment variables (for example, WORKLOAD_IDENTITY_POOL_ID)
+# are passed to the application.
+#
+
+set -u
+
+LABEL=${1:?Usage: $0 LABEL}
+JAVA=${JAVA:-java}
+DURATION=${DURATION:-30s}
+CONCURRENCY=${CONCURRENCY:-64}
+export PORT=${PORT:-18080}
+BASE_URL="http://localhost:$PORT"
+BENCHMARK_DIR="$(cd "$(dirname "$0")" && pwd)"
+TARGET_DIR="$(cd "$(dirname "$0")/../target" && pwd)"
+
+now_ms() {
+  echo $(( $(date +%s%N) / 1000000 ))
+}
+
+wait_for_port() {
+  local deadline=$(( $(now_ms) + 60000 ))
+  until curl --silent --output /dev/null "$BASE_URL/"; do
+    if (( $(now_ms) > deadline )); then
+      return 1
+    fi
+    sleep 0.01
+  done
+}
+
+measure() {
+  # Send requests to an endpoint and print throughput, p99 latency,
+  # and errors.
+  local endpoint=$1
+  shift
+
+  local output
+  output=$(eval "$JAVA" "$BENCHMARK_DIR/LoadGenerator.java" \
+    -z "$DURATION" -c "$CONCURRENCY" "$@" "'$BASE_URL$endpoint'") || return 1
+
+  echo "$LABEL,$endpoint,$output"
+}
+
+stop() {
+  kill "$PID"
+  wait "$PID" 2> /dev/null || true
+}
+
+"$JAVA" -jar "$TARGET_DIR/quarkus-app/quarkus-run.jar" > /dev/null 2>&1 &
+PID=$!
+
+if ! wait_for_port; then
+  echo "Application did not become ready" >&2
+  stop
+  exit 1
+fi
+
+#
+# Warm up the JIT and populate caches before measuring.
+#
+DURATION=10s measure "/.well-known/openid-configuration" > /dev/null
+
+echo "label,endpoint,requests_per_sec,p99_ms,errors"
+
+measure "/"
+measure "/.well-known/openid-configuration"
+measure "/jwks"
+
+if [[ -n "${TOKEN_REQUEST:-}" ]]; then
+  measure "/token" -m POST -T application/x-www-form-urlencoded "$TOKEN_REQUEST"
+fi
+
+stop
@@ -0,0 +1,106 @@
+#!/bin/bash
+#
+# Copyright 2023 Google LLC
+#
+# Licensed to the Apache Software Foundation (ASF) under one
+# or more contributor license agreements.  See the NOTICE file
+# distributed with this work for additional information
+# regarding copyright ownership.  The ASF licenses this file
+# to you under the Apache License, Version 2.0 (the
+# "License"); you may not use this file except in compliance
+# with the License.  You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing,
+# software distributed under the License is distributed on an
+# "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+# KIND, either express or implied.  See the License for the
+# specific language governing permissions and limitations
+# under the License.
+#
+
+#
+# Generate an AppCDS archive by running a training workload
+# against the application.
+#
+# Usage: train-appcds.sh JAVA APP_DIR
+#
+#   JAVA     Java executable, must be the same as the one used at runtime.
+#   APP_DIR  Quarkus fast-jar directory, the archive is written to
+#            APP_DIR/app-cds.jsa.
+#
+# The application runs in training mode, so it doesn't need credentials
+# and doesn't make any network calls: upstream APIs are stubbed, so token
+# requests succeed and load the same classes on every build machine,
+# regardless of whether it has network access.
+#
+
+set -eu
+
+JAVA=${1:?Usage: $0 JAVA APP_DIR}
+APP_DIR=${2:?Usage: $0 JAVA APP_DIR}
+PORT=18080
+BASE_URL="http://localhost:$PORT"
+
+PORT=$PORT \
+  AUTH_FLOWS=xlb-mtls-client-credentials \
+  WORKLOAD_IDENITY_PROJECT_NUMBER=1 \
+  WORKLOAD_IDENITY_POOL_ID=training \
+  WORKLOAD_IDENITY_PROVIDER_ID=training \
+  "$JAVA" \
+    -XX:ArchiveClassesAtExit="$APP_DIR/app-cds.jsa" \
+    -Dtokenservice.training=true \
+    -jar "$APP_DIR/quarkus-run.jar" &
+PID=$!
+
+for (( i = 0; i < 600; i++ )); do
+  if curl --silent --output /dev/null "$BASE_URL/"; then
+    break
+  fi
+  sleep 0.1
+done
+
+TOKEN_REQUEST=(
+  -H "X-Client-Cert-Present: true"
+  -H "X-Client-Cert-Chain-Verified: true"
+  -H "X-Client-Cert-Spiffe: spiffe://training/client"
+  -H "X-Client-Cert-Hash: dHJhaW5pbmc="
+  -H "X-Client-Cert-Serial-Number: 01"
+  -d "grant_type=client_credentials")
+
+#
+# Make sure that token requests succeed, otherwise we'd train
+# the error path only.
+#
+if ! curl --silent --fail --output /dev/null "$BASE_URL/token" "${TOKEN_REQUEST[@]}"; then
+  echo "Training token request failed" >&2
+  kill -TERM $PID
+  exit 1
+fi
+
+for (( i = 0; i < 10; i++ )); do
+  curl --silent --output /dev/null "$BASE_URL/"
+  curl --silent --output /dev/null "$BASE_URL/.well-known/openid-configuration"
+  curl --silent --output /dev/null "$BASE_URL/jwks"
+
+  # Malformed token requests.
+  curl --silent --output /dev/null -X POST "$BASE_URL/token"
+  curl --silent --output /dev/null "$BASE_URL/token" -d "grant_type=unknown"
+
+  # Token requests, in both formats.
+  for FORMAT in "" "external_credential"; do
+    curl --silent --output /dev/null "$BASE_URL/token" \
+      "${TOKEN_REQUEST[@]}" \
+      -d "format=$FORMAT"
+  done
+done
+
+#
+# Stop the application gracefully, which causes the JVM to write
+# the archive.
+#
+kill -TERM $PID
+wait $PID || true
+
+test -f "$APP_DIR/app-cds.jsa"
@@ -21,6 +21,8 @@
 
 package com.google.solutions.tokenservice.oauth;
 
+import java.util.List;
+
 /**
  * An OAuth authentication flow.
  */
@@ -51,4 +53,19 @@ public interface AuthenticationFlow {
   Authentication authenticate(
     AuthenticationRequest request
   ) throws Authentication.AuthenticationException;
+
+  /**
+   * Authenticate user or client once, and issue an access token
+   * for each token request.
+   *
+   * Failures that only affect individual token requests are reported
+   * as part of the result, not as an exception.
+   */
+  default BatchAuthentication authenticate(
+    AuthenticationRequest request,
+    List<BatchAuthentication.TokenRequest> tokenRequests
+  ) throws Authentication.AuthenticationException {
+    throw new IllegalArgumentException(
+      String.format("The flow '%s' does not support batch requests", name()));
+  }
 }
@@ -0,0 +1,74 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.common.base.Preconditions;
+import com.google.solutions.tokenservice.UserId;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+
+import java.util.List;
+
+/**
+ * Result of a batch authentication, in which a client authenticates
+ * once and requests multiple access tokens.
+ *
+ * @param client Client that was used to authenticate.
+ * @param idToken ID Token for the authenticated principal.
+ * @param results Results, in the same order as the token requests.
+ */
+public record BatchAuthentication(
+  AuthenticatedClient client,
+
+  IdToken idToken,
+
+  List<Result> results
+) {
+
+  /**
+   * Request for an access token.
+   *
+   * @param scope Scope of the access token.
+   * @param serviceAccount Service account to impersonate, or null to
+   *                       request an STS access token.
+   */
+  public record TokenRequest(
+    String scope,
+    UserId serviceAccount
+  ) {
+    public TokenRequest {
+      Preconditions.checkNotNull(scope, "scope");
+    }
+  }
+
+  /**
+   * Result for a single token request.
+   *
+   * @param request Token request.
+   * @param accessToken Access token, null if issuing the token failed.
+   * @param error Reason why issuing the token failed, null if successful.
+   */
+  public record Result(
+    TokenRequest request,
+    AccessToken accessToken,
+    Exception error
+  ) {}
+}
@@ -21,10 +21,11 @@
 
 package com.google.solutions.tokenservice.oauth;
 
-import com.google.api.client.json.webtoken.JsonWebToken;
-import com.google.api.client.util.GenericData;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.solutions.tokenservice.Exceptions;
 import com.google.solutions.tokenservice.UserId;
 import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
 import com.google.solutions.tokenservice.platform.ApiException;
@@ -32,31 +33,105 @@ import com.google.solutions.tokenservice.platform.LogAdapter;
 import com.google.solutions.tokenservice.web.LogEvents;
 
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Abstract implementation of the OAuth client credentials flow.
  */
 public abstract class ClientCredentialsFlow implements AuthenticationFlow {
+  /**
+   * Maximum number of concurrent upstream requests for batch requests,
+   * across all clients.
+   */
+  private static final int BATCH_CONCURRENCY = 16;
+
+  /**
+   * Maximum number of concurrent upstream requests for a single batch
+   * request, so that one large batch can't occupy all threads.
+   */
+  private static final int BATCH_CONCURRENCY_PER_REQUEST = 4;
+
+  /**
+   * Time to wait for the access tokens of a batch request. Tokens that
+   * aren't available by then are reported as failed.
+   */
+  private static final Duration BATCH_TIMEOUT = Duration.ofSeconds(30);
+
+  private static final ExecutorService BATCH_EXECUTOR = createBatchExecutor();
+
+  private static ExecutorService createBatchExecutor() {
+    var executor = new ThreadPoolExecutor(
+      BATCH_CONCURRENCY,
+      BATCH_CONCURRENCY,
+      60,
+      TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(),
+      new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("batch-%d")
+        .build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   private final IdTokenIssuer issuer;
   private final WorkloadIdentityPool workloadIdentityPool;
+  private final TokenCache tokenCache;
   protected final LogAdapter logAdapter;
 
   public ClientCredentialsFlow(
     IdTokenIssuer issuer,
     WorkloadIdentityPool workloadIdentityPool,
+    TokenCache tokenCache,
     LogAdapter logAdapter
   ) {
     Preconditions.checkNotNull(issuer, "issuer");
     Preconditions.checkNotNull(workloadIdentityPool, "workloadIdentityPool");
+    Preconditions.checkNotNull(tokenCache, "tokenCache");
     Preconditions.checkNotNull(logAdapter, "logAdapter");
 
     this.issuer = issuer;
     this.workloadIdentityPool = workloadIdentityPool;
+    this.tokenCache = tokenCache;
     this.logAdapter = logAdapter;
   }
 
+  /**
+   * @return audiences that identify this token service, for use in
+   * client assertions: the issuer ID and the token endpoint URL.
+   */
+  protected List<String> assertionAudiences() {
+    try {
+      return List.of(
+        this.issuer.id().toString(),
+        new URL(this.issuer.id(), "/token").toString());
+    }
+    catch (MalformedURLException e) {
+      throw new IllegalStateException("The issuer ID is malformed", e);
+    }
+  }
+
+  /**
+   * @return time to wait for the access tokens of a batch request.
+   */
+  protected Duration batchTimeout() {
+    return BATCH_TIMEOUT;
+  }
+
   /**
    * Identify and authenticate the client.
    */
@@ -73,29 +148,28 @@ public abstract class ClientCredentialsFlow implements AuthenticationFlow {
     Preconditions.checkNotNull(client, "client");
 
     //
-    // In addition to the standard iss/exp/iat that all ID tokens need
-    // to contain, we include the following "extra" claims:
+    // Besides the standard claims, the token contains the name of the
+    // flow (amr) and claims about the client, see IdTokenPayloadEncoder.
     //
-    // - amr:    the name of the flow, could be used in a workload identity pool
-    //           provider's attribute condition.
-    // - client: JSON object containing claims about the client. The exact set
-    //           of claims depends on the flow/subclass.
-    //
-    // NB. This is a client-credentials flow, so we're authenticating clients, not
-    // end users. Thus, we don't set a 'sub' claim.
-    //
-
-    var idTokenPayload = new JsonWebToken.Payload()
-      .set("amr", new String[] { name().toLowerCase() })
-      .set("client_id", client.clientId());
-
-    var clientClaims = new GenericData();
-    clientClaims.putAll(client.additionalClaims());
-    idTokenPayload.put("client", clientClaims);
-
     return this.issuer.issueIdToken(
       client,
-      idTokenPayload);
+      name().toLowerCase());
+  }
+
+  /**
+   * Compute the key for caching access tokens obtained by this flow.
+   */
+  private String tokenCacheKey(
+    AuthenticatedClient client,
+    String scope,
+    UserId serviceAccount
+  ) {
+    return TokenCache.key(
+      this.issuer.id(),
+      name().toLowerCase(),
+      client,
+      scope,
+      serviceAccount);
   }
 
   /**
@@ -118,35 +192,221 @@ public abstract class ClientCredentialsFlow implements AuthenticationFlow {
       return null;
     }
 
+    var serviceAccountEmail = request.parameters().getFirst("service_account");
+    var serviceAccount = Strings.isNullOrEmpty(serviceAccountEmail)
+      ? null
+      : new UserId(serviceAccountEmail);
+
+    var cachedToken = this.tokenCache.get(tokenCacheKey(client, scope, serviceAccount));
+    if (cachedToken != null) {
+      return cachedToken;
+    }
+
     //
     // Use the ID token to request an access token from the
     // workload identity pool.
     //
-    var stsAccessToken = this.workloadIdentityPool.issueAccessToken(idToken, scope);
+    var stsAccessToken = issueStsAccessToken(client, idToken, scope);
 
     //
     // If requested, use the STS token to impersonate a service
     // account.
     //
-    var serviceAccountEmail = request.parameters().getFirst("service_account");
-    if (!Strings.isNullOrEmpty(serviceAccountEmail)) {
+    if (serviceAccount != null) {
+      return issueServiceAccountAccessToken(client, idToken, stsAccessToken, serviceAccount, scope);
+    }
+    else {
+      return stsAccessToken;
+    }
+  }
 
-      var serviceAccount = this.workloadIdentityPool.impersonateServiceAccount(
-        new UserId(serviceAccountEmail),
-        stsAccessToken);
+  /**
+   * Exchange the ID token for an STS access token, unless there's
+   * a cached token.
+   */
+  private StsAccessToken issueStsAccessToken(
+    AuthenticatedClient client,
+    IdToken idToken,
+    String scope
+  ) throws IOException {
+    var cacheKey = tokenCacheKey(client, scope, null);
+    if (this.tokenCache.get(cacheKey) instanceof StsAccessToken cachedToken) {
+      return cachedToken;
+    }
 
-      //
-      // Apply duration from ID token.
-      //
-      return serviceAccount.generateAccessToken(
+    var token = this.workloadIdentityPool.issueAccessToken(idToken, scope);
+    this.tokenCache.put(cacheKey, token);
+    return token;
+  }
+
+  /**
+   * Use an STS token to impersonate a service account.
+   */
+  private ServiceAccountAccessToken issueServiceAccountAccessToken(
+    AuthenticatedClient client,
+    IdToken idToken,
+    StsAccessToken stsAccessToken,
+    UserId serviceAccount,
+    String scope
+  ) throws ApiException, IOException {
+    //
+    // Apply duration from ID token.
+    //
+    var token = this.workloadIdentityPool
+      .impersonateServiceAccount(serviceAccount, stsAccessToken)
+      .generateAccessToken(
         List.of(scope),
         Duration.between(idToken.issueTime(), idToken.expiryTime()));
+
+    this.tokenCache.put(
+      tokenCacheKey(client, scope, serviceAccount),
+      token);
+    return token;
+  }
+
+  private AuthenticatedClient authenticateClientOrThrow(
+    AuthenticationRequest request
+  ) throws Authentication.InvalidClientException {
+    try
+    {
+      return authenticateClient(request);
     }
-    else {
-      return stsAccessToken;
+    catch (Exception e) {
+      throw new Authentication.InvalidClientException(
+        "The client or its credentials are invalid", e);
     }
   }
 
+  private IdToken issueIdTokenOrThrow(
+    AuthenticatedClient client
+  ) throws Authentication.TokenIssuanceException {
+    try {
+      return issueIdToken(client);
+    }
+    catch (Exception e) {
+      throw new Authentication.TokenIssuanceException(
+        String.format("Issuing ID token for client '%s' failed", client.clientId()),
+        e);
+    }
+  }
+
+  /**
+   * Issue access tokens for a batch of token requests. Cached tokens
+   * are used if possible. Otherwise, STS tokens are requested once per
+   * distinct scope, and service account tokens are requested in parallel.
+   *
+   * Upstream requests are distributed over a fixed number of sequential
+   * executors so that a batch can't use more than a share of the shared
+   * thread pool. Tokens that aren't available within the batch timeout
+   * are reported as failed.
+   */
+  protected List<BatchAuthentication.Result> issueAccessTokens(
+    List<BatchAuthentication.TokenRequest> tokenRequests,
+    AuthenticatedClient client,
+    IdToken idToken
+  ) {
+    Preconditions.checkNotNull(tokenRequests, "tokenRequests");
+    Preconditions.checkNotNull(client, "client");
+    Preconditions.checkNotNull(idToken, "idToken");
+
+    var executors = new ArrayList<Executor>(BATCH_CONCURRENCY_PER_REQUEST);
+    for (int i = 0; i < BATCH_CONCURRENCY_PER_REQUEST; i++) {
+      executors.add(MoreExecutors.newSequentialExecutor(BATCH_EXECUTOR));
+    }
+
+    var stsAccessTokens = new HashMap<String, CompletableFuture<StsAccessToken>>();
+    var accessTokens = new ArrayList<CompletableFuture<? extends AccessToken>>();
+    for (var tokenRequest : tokenRequests) {
+      var cachedToken = this.tokenCache.get(tokenCacheKey(
+        client,
+        tokenRequest.scope(),
+        tokenRequest.serviceAccount()));
+      if (cachedToken != null) {
+        accessTokens.add(CompletableFuture.completedFuture(cachedToken));
+        continue;
+      }
+
+      var stsAccessToken = stsAccessTokens.computeIfAbsent(
+        tokenRequest.scope(),
+        scope -> CompletableFuture.supplyAsync(
+          () -> {
+            try {
+              return issueStsAccessToken(client, idToken, scope);
+            }
+            catch (IOException e) {
+              throw new CompletionException(e);
+            }
+          },
+          executors.get(stsAccessTokens.size() % executors.size())));
+
+      if (tokenRequest.serviceAccount() == null) {
+        accessTokens.add(stsAccessToken);
+      }
+      else {
+        accessTokens.add(stsAccessToken.thenApplyAsync(
+          token -> {
+            try {
+              return issueServiceAccountAccessToken(
+                client,
+                idToken,
+                token,
+                tokenRequest.serviceAccount(),
+                tokenRequest.scope());
+            }
+            catch (ApiException | IOException e) {
+              throw new CompletionException(e);
+            }
+          },
+          executors.get(accessTokens.size() % executors.size())));
+      }
+    }
+
+    var timeout = batchTimeout();
+    var deadline = System.nanoTime() + timeout.toNanos();
+    var results = new ArrayList<BatchAuthentication.Result>(tokenRequests.size());
+    try {
+      for (int i = 0; i < tokenRequests.size(); i++) {
+        try {
+          results.add(new BatchAuthentication.Result(
+            tokenRequests.get(i),
+            accessTokens.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS),
+            null));
+        }
+        catch (ExecutionException e) {
+          results.add(new BatchAuthentication.Result(
+            tokenRequests.get(i),
+            null,
+            e.getCause() instanceof Exception cause ? cause : e));
+        }
+        catch (TimeoutException e) {
+          results.add(new BatchAuthentication.Result(
+            tokenRequests.get(i),
+            null,
+            new TimeoutException(String.format(
+              "The access token wasn't issued within %d ms",
+              timeout.toMillis()))));
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          results.add(new BatchAuthentication.Result(
+            tokenRequests.get(i),
+            null,
+            e));
+        }
+      }
+    }
+    finally {
+      //
+      // Cancel requests that didn't finish in time. Requests that
+      // haven't started yet are then skipped by the executors.
+      //
+      stsAccessTokens.values().forEach(f -> f.cancel(false));
+      accessTokens.forEach(f -> f.cancel(false));
+    }
+
+    return results;
+  }
+
   //---------------------------------------------------------------------------
   // AuthenticationFlow.
   //---------------------------------------------------------------------------
@@ -168,31 +428,8 @@ public abstract class ClientCredentialsFlow implements AuthenticationFlow {
   ) throws Authentication.AuthenticationException {
     Preconditions.checkNotNull(request, "request");
 
-    //
-    // Authenticate the client.
-    //
-    AuthenticatedClient client;
-    try
-    {
-      client = authenticateClient(request);
-    }
-    catch (Exception e) {
-      throw new Authentication.InvalidClientException(
-        "The client or its credentials are invalid", e);
-    }
-
-    //
-    // Issue an ID token.
-    //
-    IdToken idToken;
-    try {
-      idToken = issueIdToken(client);
-    }
-    catch (Exception e) {
-      throw new Authentication.TokenIssuanceException(
-        String.format("Issuing ID token for client '%s' failed", client.clientId()),
-        e);
-    }
+    var client = authenticateClientOrThrow(request);
+    var idToken = issueIdTokenOrThrow(client);
 
     //
     // Issue an access token (if requested).
@@ -240,4 +477,44 @@ public abstract class ClientCredentialsFlow implements AuthenticationFlow {
         e);
     }
   }
+
+  @Override
+  public final BatchAuthentication authenticate(
+    AuthenticationRequest request,
+    List<BatchAuthentication.TokenRequest> tokenRequests
+  ) throws Authentication.AuthenticationException {
+    Preconditions.checkNotNull(request, "request");
+    Preconditions.checkNotNull(tokenRequests, "tokenRequests");
+
+    var client = authenticateClientOrThrow(request);
+    var idToken = issueIdTokenOrThrow(client);
+    var results = issueAccessTokens(tokenRequests, client, idToken);
+
+    for (var result : results) {
+      if (result.error() != null) {
+        this.logAdapter
+          .newWarningEntry(
+            LogEvents.API_TOKEN,
+            String.format(
+              "Issuing access token for client '%s', scope '%s', and service account '%s' failed: %s",
+              client.clientId(),
+              result.request().scope(),
+              result.request().serviceAccount(),
+              Exceptions.getFullMessage(result.error())))
+          .write();
+      }
+    }
+
+    this.logAdapter
+      .newInfoEntry(
+        LogEvents.API_TOKEN,
+        String.format(
+          "Issued ID token and %d of %d access tokens for client '%s'",
+          results.stream().filter(r -> r.error() == null).count(),
+          results.size(),
+          client.clientId()))
+      .write();
+
+    return new BatchAuthentication(client, idToken, results);
+  }
 }
@@ -21,28 +21,33 @@
 
 package com.google.solutions.tokenservice.oauth;
 
-import com.google.api.client.json.webtoken.JsonWebToken;
 import com.google.common.base.Preconditions;
 import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
 import com.google.solutions.tokenservice.platform.ApiException;
 
-import javax.enterprise.context.ApplicationScoped;
 import java.io.IOException;
 import java.net.URL;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.UUID;
 
 /**
  * Issuer (and signer) for ID tokens.
  *
  * To avoid having to manage a dedicated signing key pair, the class uses
  * a service account and its Google-managed key pair to sign tokens.
+ *
+ * Instances are immutable and there's one instance per issuer ID,
+ * see RuntimeEnvironment.
  */
-@ApplicationScoped
 public class IdTokenIssuer {
+  /**
+   * Maximum number of clients to cache serialized claims for.
+   */
+  private static final long MAX_CACHED_CLIENTS = 10_000;
+
   private final Options options;
   private final ServiceAccount serviceAccount;
+  private final IdTokenPayloadEncoder encoder;
 
   public IdTokenIssuer(
     Options options,
@@ -52,8 +57,23 @@ public class IdTokenIssuer {
     Preconditions.checkNotNull(options, "options");
     Preconditions.checkArgument(!options.tokenExiry.isNegative());
 
+    var issuer = options.id().toString();
+    if (issuer.endsWith("/")) {
+      issuer = issuer.substring(0, issuer.length() - 1);
+    }
+
+    //
+    // An issuer without audience can still serve metadata, but
+    // it can't issue tokens.
+    //
     this.options = options;
     this.serviceAccount = serviceAccount;
+    this.encoder = options.tokenAudience() != null
+      ? new IdTokenPayloadEncoder(
+          issuer,
+          options.tokenAudience().toString(),
+          MAX_CACHED_CLIENTS)
+      : null;
   }
 
   /**
@@ -73,16 +93,17 @@ public class IdTokenIssuer {
   /**
    * Issue a signed ID token.
    *
-   * @param client
-   * @param payload extra claims
+   * @param client authenticated client
+   * @param amr name of the flow that authenticated the client
    * @return signed token
    */
   public IdToken issueIdToken(
     AuthenticatedClient client,
-    JsonWebToken.Payload payload
+    String amr
   ) throws ApiException, IOException {
     Preconditions.checkNotNull(client, "client");
-    Preconditions.checkNotNull(payload, "payload");
+    Preconditions.checkNotNull(amr, "amr");
+    Preconditions.checkState(this.encoder != null, "The issuer has no token audience");
 
     //
     // Add standard set of JWT claims based on
@@ -97,20 +118,9 @@ public class IdTokenIssuer {
     var issueTime = Instant.now();
     var expiryTime = issueTime.plus(this.options.tokenExiry);
 
-    var issuer = this.options.id().toString();
-    if (issuer.endsWith("/")) {
-      issuer = issuer.substring(0, issuer.length() - 1);
-    }
-
-    var jwtPayload = payload
-      .setIssuer(issuer)
-      .setIssuedAtTimeSeconds(issueTime.getEpochSecond())
-      .setAudience(this.options.tokenAudience.toString())
-      .setExpirationTimeSeconds(expiryTime.getEpochSecond())
-      .setJwtId(UUID.randomUUID().toString());
-
     return new IdToken(
-      this.serviceAccount.signJwt(jwtPayload),
+      this.serviceAccount.signJwt(
+        this.encoder.encode(amr, client, issueTime, expiryTime)),
       issueTime,
       expiryTime);
   }
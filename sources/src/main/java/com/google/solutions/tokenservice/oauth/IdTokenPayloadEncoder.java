@@ -0,0 +1,226 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Encodes ID token payloads as JSON.
+ *
+ * Apart from iat, exp, and jti, a client's claims are the same for every
+ * token, so the encoder caches the serialized claims per client and only
+ * appends the time-dependent claims. That avoids building an intermediate
+ * claims map and serializing it using reflection for every token.
+ */
+class IdTokenPayloadEncoder {
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * Enough room for iat, exp, and jti.
+   */
+  private static final int SUFFIX_LENGTH = 96;
+
+  private final String issuer;
+  private final String audience;
+
+  /**
+   * Serialized, static claims (without closing brace), by client.
+   */
+  private final Cache<PrefixKey, String> prefixes;
+
+  IdTokenPayloadEncoder(
+    String issuer,
+    String audience,
+    long maxCachedClients
+  ) {
+    Preconditions.checkNotNull(issuer, "issuer");
+    Preconditions.checkNotNull(audience, "audience");
+
+    this.issuer = issuer;
+    this.audience = audience;
+    this.prefixes = CacheBuilder.newBuilder()
+      .maximumSize(maxCachedClients)
+      .build();
+  }
+
+  /**
+   * Append a string as JSON string literal.
+   */
+  static void appendString(StringBuilder buffer, String value) {
+    if (value == null) {
+      buffer.append("null");
+      return;
+    }
+
+    buffer.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      var c = value.charAt(i);
+      switch (c) {
+        case '"' -> buffer.append("\\\"");
+        case '\\' -> buffer.append("\\\\");
+        case '\n' -> buffer.append("\\n");
+        case '\r' -> buffer.append("\\r");
+        case '\t' -> buffer.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            buffer
+              .append("\\u00")
+              .append(HEX_DIGITS[c >> 4])
+              .append(HEX_DIGITS[c & 0xF]);
+          }
+          else {
+            buffer.append(c);
+          }
+        }
+      }
+    }
+    buffer.append('"');
+  }
+
+  /**
+   * Append a random (version 4) UUID.
+   *
+   * ThreadLocalRandom doesn't share state between threads, so unlike
+   * UUID.randomUUID(), this doesn't contend on a shared SecureRandom.
+   * The jti only needs to be unique, not unpredictable.
+   */
+  static void appendRandomUuid(StringBuilder buffer) {
+    var random = ThreadLocalRandom.current();
+    var high = (random.nextLong() & ~0xF000L) | 0x4000L;
+    var low = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+
+    buffer.append('"');
+    appendHex(buffer, high >>> 32, 8);
+    buffer.append('-');
+    appendHex(buffer, high >>> 16, 4);
+    buffer.append('-');
+    appendHex(buffer, high, 4);
+    buffer.append('-');
+    appendHex(buffer, low >>> 48, 4);
+    buffer.append('-');
+    appendHex(buffer, low, 12);
+    buffer.append('"');
+  }
+
+  private static void appendHex(StringBuilder buffer, long value, int digits) {
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      buffer.append(HEX_DIGITS[(int)(value >>> shift) & 0xF]);
+    }
+  }
+
+  private String encodePrefix(PrefixKey key) {
+    //
+    // In addition to the standard iss/aud claims, we include the
+    // following "extra" claims:
+    //
+    // - amr:    the name of the flow, could be used in a workload identity pool
+    //           provider's attribute condition.
+    // - client: JSON object containing claims about the client. The exact set
+    //           of claims depends on the flow.
+    //
+    // NB. This is a client-credentials flow, so we're authenticating clients, not
+    // end users. Thus, we don't set a 'sub' claim.
+    //
+    var buffer = new StringBuilder(128)
+      .append("{\"iss\":");
+    appendString(buffer, this.issuer);
+    buffer.append(",\"aud\":");
+    appendString(buffer, this.audience);
+    buffer.append(",\"amr\":[");
+    appendString(buffer, key.amr());
+    buffer.append("],\"client_id\":");
+    appendString(buffer, key.clientId());
+    buffer.append(",\"client\":{");
+
+    var first = true;
+    for (var claim : key.claims().entrySet()) {
+      if (!first) {
+        buffer.append(',');
+      }
+
+      appendString(buffer, claim.getKey());
+      buffer.append(':');
+      appendString(buffer, claim.getValue());
+      first = false;
+    }
+
+    return buffer.append('}').toString();
+  }
+
+  /**
+   * Encode the payload of an ID token.
+   *
+   * @param amr name of the flow that authenticated the client.
+   * @param client authenticated client.
+   * @param issueTime time of issue.
+   * @param expiryTime time of expiry.
+   * @return JSON-encoded payload.
+   */
+  String encode(
+    String amr,
+    AuthenticatedClient client,
+    Instant issueTime,
+    Instant expiryTime
+  ) {
+    Preconditions.checkNotNull(amr, "amr");
+    Preconditions.checkNotNull(client, "client");
+
+    var prefix = this.prefixes.asMap().computeIfAbsent(
+      new PrefixKey(amr, client.clientId(), client.additionalClaims()),
+      this::encodePrefix);
+
+    var buffer = new StringBuilder(prefix.length() + SUFFIX_LENGTH)
+      .append(prefix)
+      .append(",\"iat\":")
+      .append(issueTime.getEpochSecond())
+      .append(",\"exp\":")
+      .append(expiryTime.getEpochSecond())
+      .append(",\"jti\":");
+    appendRandomUuid(buffer);
+
+    return buffer.append('}').toString();
+  }
+
+  /**
+   * @return number of cached prefixes.
+   */
+  long size() {
+    return this.prefixes.size();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  private record PrefixKey(
+    String amr,
+    String clientId,
+    Map<String, String> claims
+  ) {}
+}
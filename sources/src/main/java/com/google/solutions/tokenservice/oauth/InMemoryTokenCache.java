@@ -0,0 +1,263 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.platform.EncryptedSnapshotFile;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token cache that keeps tokens in memory.
+ *
+ * Optionally, the cache is periodically snapshotted to an encrypted
+ * file so that a restarted instance doesn't have to request all
+ * tokens again.
+ */
+public class InMemoryTokenCache implements TokenCache {
+  /**
+   * Maximum number of tokens to cache.
+   */
+  private static final int MAX_ENTRIES = 10_000;
+
+  private final Cache<String, AccessToken> cache;
+
+  /**
+   * Snapshot file, null if snapshots are disabled.
+   */
+  private final EncryptedSnapshotFile snapshotFile;
+  private final Duration snapshotInterval;
+  private final ScheduledExecutorService executor;
+  private final LogAdapter logAdapter;
+
+  InMemoryTokenCache(
+    EncryptedSnapshotFile snapshotFile,
+    Duration snapshotInterval,
+    ScheduledExecutorService executor,
+    LogAdapter logAdapter
+  ) {
+    Preconditions.checkNotNull(snapshotFile, "snapshotFile");
+    Preconditions.checkNotNull(snapshotInterval, "snapshotInterval");
+    Preconditions.checkNotNull(executor, "executor");
+    Preconditions.checkNotNull(logAdapter, "logAdapter");
+    Preconditions.checkArgument(!snapshotInterval.isNegative() && !snapshotInterval.isZero());
+
+    this.cache = newCache(MAX_ENTRIES);
+    this.snapshotFile = snapshotFile;
+    this.snapshotInterval = snapshotInterval;
+    this.executor = executor;
+    this.logAdapter = logAdapter;
+  }
+
+  /**
+   * Create a cache that's snapshotted to a file.
+   */
+  public InMemoryTokenCache(
+    EncryptedSnapshotFile snapshotFile,
+    Duration snapshotInterval,
+    LogAdapter logAdapter
+  ) {
+    this(
+      snapshotFile,
+      snapshotInterval,
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("token-cache")
+        .build()),
+      logAdapter);
+  }
+
+  /**
+   * Create an in-memory cache that holds up to a certain number of tokens.
+   */
+  InMemoryTokenCache(int maxEntries) {
+    this.cache = newCache(maxEntries);
+    this.snapshotFile = null;
+    this.snapshotInterval = null;
+    this.executor = null;
+    this.logAdapter = null;
+  }
+
+  /**
+   * Create an in-memory cache.
+   */
+  public InMemoryTokenCache() {
+    this(MAX_ENTRIES);
+  }
+
+  private static Cache<String, AccessToken> newCache(int maxEntries) {
+    return CacheBuilder
+      .newBuilder()
+      .maximumSize(maxEntries)
+      .build();
+  }
+
+  @Override
+  public AccessToken get(String key) {
+    Preconditions.checkNotNull(key, "key");
+
+    var token = this.cache.getIfPresent(key);
+    if (token != null && !TokenCache.isUsable(token)) {
+      this.cache.invalidate(key);
+      return null;
+    }
+
+    return token;
+  }
+
+  @Override
+  public void put(String key, AccessToken token) {
+    Preconditions.checkNotNull(key, "key");
+    Preconditions.checkNotNull(token, "token");
+
+    if (TokenCache.isUsable(token)) {
+      this.cache.put(key, token);
+    }
+  }
+
+  /**
+   * @return number of cached tokens, including tokens that might
+   * be about to expire.
+   */
+  public long size() {
+    return this.cache.size();
+  }
+
+  //---------------------------------------------------------------------------
+  // Snapshots.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Write all usable tokens to the snapshot file.
+   */
+  synchronized void writeSnapshot() throws IOException {
+    Preconditions.checkState(this.snapshotFile != null, "Snapshots are disabled");
+
+    var records = new ArrayList<EncryptedSnapshotFile.Record>();
+    for (var entry : this.cache.asMap().entrySet()) {
+      if (TokenCache.isUsable(entry.getValue())) {
+        records.add(new EncryptedSnapshotFile.Record(
+          entry.getValue().expiryTime().minus(MIN_REMAINING_LIFETIME),
+          TokenCodec.encode(entry.getKey(), entry.getValue())));
+      }
+    }
+
+    this.snapshotFile.write(records);
+  }
+
+  /**
+   * Load tokens from the snapshot file, skipping tokens that have
+   * expired in the meantime.
+   */
+  public void loadSnapshot() {
+    if (this.snapshotFile == null) {
+      return;
+    }
+
+    try {
+      var records = this.snapshotFile.read(Instant.now());
+      for (var record : records) {
+        var entry = TokenCodec.decode(record.data());
+        put(entry.key(), entry.token());
+      }
+
+      this.logAdapter
+        .newInfoEntry(
+          LogEvents.RUNTIME_TOKEN_CACHE,
+          String.format(
+            "Loaded %d tokens from snapshot %s",
+            records.size(),
+            this.snapshotFile.path()))
+        .write();
+    }
+    catch (IOException e) {
+      //
+      // The snapshot is only an optimization, so start with an
+      // empty cache instead.
+      //
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_TOKEN_CACHE,
+          String.format(
+            "Loading snapshot %s failed, starting with empty cache: %s",
+            this.snapshotFile.path(),
+            Exceptions.getFullMessage(e)))
+        .write();
+    }
+  }
+
+  private void writeSnapshotAndLog() {
+    try {
+      writeSnapshot();
+    }
+    catch (Exception e) {
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_TOKEN_CACHE,
+          String.format(
+            "Writing snapshot %s failed: %s",
+            this.snapshotFile.path(),
+            Exceptions.getFullMessage(e)))
+        .write();
+    }
+  }
+
+  /**
+   * Start writing snapshots periodically.
+   */
+  public void start() {
+    if (this.snapshotFile == null) {
+      return;
+    }
+
+    this.executor.scheduleWithFixedDelay(
+      this::writeSnapshotAndLog,
+      this.snapshotInterval.toMillis(),
+      this.snapshotInterval.toMillis(),
+      TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop writing snapshots periodically, and write a final snapshot.
+   */
+  @Override
+  public void close() {
+    if (this.snapshotFile == null) {
+      return;
+    }
+
+    this.executor.shutdownNow();
+    writeSnapshotAndLog();
+  }
+}
@@ -0,0 +1,465 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Token cache that keeps tokens outside the Java heap so that a
+ * large number of cached tokens doesn't increase GC pause times.
+ *
+ * Tokens are stored in serialized form in direct buffers, which are
+ * divided into slots of different sizes. The index is a hash table
+ * that's keyed by a 64-bit hash of the cache key and only consists of
+ * primitive arrays, so the GC doesn't need to trace individual entries.
+ *
+ * Slots are reclaimed when tokens become unusable. Once the cache is
+ * full, new tokens aren't cached until existing tokens become unusable.
+ */
+public class OffHeapTokenCache implements TokenCache {
+  /**
+   * Number of segments. Each segment has its own lock, index, and
+   * buffers.
+   */
+  private static final int SEGMENT_COUNT = 16;
+
+  /**
+   * Size of the direct buffers that slots are allocated from.
+   */
+  static final int CHUNK_SIZE = 1 << 20;
+
+  /**
+   * Slot sizes, spaced so that no more than a third of a slot
+   * remains unused.
+   */
+  static final int[] SLOT_SIZES = {
+    128, 192, 256, 384, 512, 768, 1024, 1536, 2048, 3072, 4096, 6144, 8192
+  };
+
+  /**
+   * Length of the header that precedes the serialized token in a slot.
+   */
+  private static final int SLOT_HEADER_LENGTH = 4;
+
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+  OffHeapTokenCache(int maxEntries, Clock clock) {
+    Preconditions.checkArgument(maxEntries > 0, "maxEntries");
+    Preconditions.checkNotNull(clock, "clock");
+
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      this.segments[i] = new Segment(
+        (maxEntries + SEGMENT_COUNT - 1) / SEGMENT_COUNT,
+        clock);
+    }
+  }
+
+  /**
+   * Create a cache that holds up to (approximately) a certain number
+   * of tokens.
+   */
+  public OffHeapTokenCache(int maxEntries) {
+    this(maxEntries, Clock.systemUTC());
+  }
+
+  private static long hash(String key) {
+    return Hashing
+      .farmHashFingerprint64()
+      .hashString(key, StandardCharsets.UTF_8)
+      .asLong();
+  }
+
+  private Segment segment(long hash) {
+    //
+    // Use the upper bits to select the segment, and the lower
+    // bits to select the bucket within the segment.
+    //
+    return this.segments[(int)(hash >>> 60) & (SEGMENT_COUNT - 1)];
+  }
+
+  @Override
+  public AccessToken get(String key) {
+    Preconditions.checkNotNull(key, "key");
+
+    var hash = hash(key);
+    var data = segment(hash).get(hash);
+    if (data == null) {
+      return null;
+    }
+
+    try {
+      var entry = TokenCodec.decode(data);
+
+      //
+      // Different keys might have the same hash.
+      //
+      return entry.key().equals(key) && TokenCache.isUsable(entry.token())
+        ? entry.token()
+        : null;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void put(String key, AccessToken token) {
+    Preconditions.checkNotNull(key, "key");
+    Preconditions.checkNotNull(token, "token");
+
+    if (!TokenCache.isUsable(token)) {
+      return;
+    }
+
+    byte[] data;
+    try {
+      data = TokenCodec.encode(key, token);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    var hash = hash(key);
+    segment(hash).put(
+      hash,
+      token.expiryTime().minus(MIN_REMAINING_LIFETIME).getEpochSecond(),
+      data);
+  }
+
+  /**
+   * @return number of cached tokens, including tokens that might
+   * be about to expire.
+   */
+  public long size() {
+    return Arrays.stream(this.segments).mapToLong(Segment::size).sum();
+  }
+
+  /**
+   * @return number of bytes allocated outside the heap.
+   */
+  long allocatedBytes() {
+    return Arrays.stream(this.segments).mapToLong(Segment::allocatedBytes).sum();
+  }
+
+  /**
+   * Remove all tokens that are no longer usable.
+   */
+  void purge() {
+    for (var segment : this.segments) {
+      segment.purge();
+    }
+  }
+
+  /**
+   * Release all buffers. The memory is freed once the buffers are
+   * garbage-collected.
+   */
+  @Override
+  public void close() {
+    for (var segment : this.segments) {
+      segment.clear();
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Slots of a single size, allocated from direct buffers.
+   */
+  private static class SlotAllocator {
+    private final int slotSize;
+    private final int slotsPerChunk;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount = 0;
+    private int unusedSlot = 0;
+
+    SlotAllocator(int slotSize) {
+      this.slotSize = slotSize;
+      this.slotsPerChunk = CHUNK_SIZE / slotSize;
+    }
+
+    int allocate() {
+      if (this.freeSlotCount > 0) {
+        return this.freeSlots[--this.freeSlotCount];
+      }
+
+      if (this.unusedSlot == this.chunks.size() * this.slotsPerChunk) {
+        this.chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+      }
+
+      return this.unusedSlot++;
+    }
+
+    void free(int slot) {
+      if (this.freeSlotCount == this.freeSlots.length) {
+        this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length * 2);
+      }
+
+      this.freeSlots[this.freeSlotCount++] = slot;
+    }
+
+    void write(int slot, byte[] data) {
+      var chunk = this.chunks.get(slot / this.slotsPerChunk);
+      var offset = (slot % this.slotsPerChunk) * this.slotSize;
+
+      chunk.putInt(offset, data.length);
+      chunk.put(offset + SLOT_HEADER_LENGTH, data);
+    }
+
+    byte[] read(int slot) {
+      var chunk = this.chunks.get(slot / this.slotsPerChunk);
+      var offset = (slot % this.slotsPerChunk) * this.slotSize;
+
+      var data = new byte[chunk.getInt(offset)];
+      chunk.get(offset + SLOT_HEADER_LENGTH, data);
+      return data;
+    }
+
+    long allocatedBytes() {
+      return (long)this.chunks.size() * CHUNK_SIZE;
+    }
+
+    void clear() {
+      this.chunks.clear();
+      this.freeSlots = new int[16];
+      this.freeSlotCount = 0;
+      this.unusedSlot = 0;
+    }
+  }
+
+  /**
+   * Hash table with linear probing that maps hashes to slots.
+   */
+  private static class Segment {
+    /**
+     * Empty buckets have a reference of 0. Other references contain
+     * the index of the slot allocator in the upper bits, and the
+     * slot number + 1 in the lower bits.
+     */
+    private static final int SLOT_BITS = 27;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+    private final int maxEntries;
+    private final Clock clock;
+    private final int bucketMask;
+
+    private final long[] hashes;
+    private final int[] references;
+
+    /**
+     * Time (in epoch seconds) until which the token is usable.
+     */
+    private final long[] usableUntil;
+
+    private final SlotAllocator[] allocators = new SlotAllocator[SLOT_SIZES.length];
+
+    private int size = 0;
+
+    /**
+     * Time (in epoch seconds) of the last purge.
+     */
+    private long lastPurge = Long.MIN_VALUE;
+
+    Segment(int maxEntries, Clock clock) {
+      this.maxEntries = maxEntries;
+      this.clock = clock;
+
+      //
+      // Keep the load factor below 0.5 to keep probe sequences short.
+      //
+      var buckets = Integer.highestOneBit(Math.max(maxEntries, 1) * 2 - 1) << 1;
+      this.bucketMask = buckets - 1;
+      this.hashes = new long[buckets];
+      this.references = new int[buckets];
+      this.usableUntil = new long[buckets];
+
+      for (int i = 0; i < SLOT_SIZES.length; i++) {
+        this.allocators[i] = new SlotAllocator(SLOT_SIZES[i]);
+      }
+    }
+
+    private long now() {
+      return this.clock.instant().getEpochSecond();
+    }
+
+    /**
+     * Find the bucket that contains a hash, or the empty bucket
+     * where it should be inserted.
+     */
+    private int find(long hash) {
+      var bucket = (int)hash & this.bucketMask;
+      while (this.references[bucket] != 0 && this.hashes[bucket] != hash) {
+        bucket = (bucket + 1) & this.bucketMask;
+      }
+
+      return bucket;
+    }
+
+    private void freeSlot(int reference) {
+      this.allocators[reference >>> SLOT_BITS].free((reference & SLOT_MASK) - 1);
+    }
+
+    /**
+     * Remove the entry in a bucket, and move subsequent entries
+     * of the same probe sequence so that the sequence remains
+     * unbroken.
+     */
+    private void remove(int bucket) {
+      freeSlot(this.references[bucket]);
+      this.size--;
+
+      var next = bucket;
+      while (true) {
+        next = (next + 1) & this.bucketMask;
+        if (this.references[next] == 0) {
+          break;
+        }
+
+        //
+        // Leave the entry where it is if its home bucket lies
+        // cyclically in (bucket, next].
+        //
+        var home = (int)this.hashes[next] & this.bucketMask;
+        if (bucket <= next
+          ? (bucket < home && home <= next)
+          : (bucket < home || home <= next)) {
+          continue;
+        }
+
+        this.hashes[bucket] = this.hashes[next];
+        this.references[bucket] = this.references[next];
+        this.usableUntil[bucket] = this.usableUntil[next];
+        bucket = next;
+      }
+
+      this.references[bucket] = 0;
+    }
+
+    synchronized byte[] get(long hash) {
+      var bucket = find(hash);
+      if (this.references[bucket] == 0) {
+        return null;
+      }
+      else if (this.usableUntil[bucket] <= now()) {
+        remove(bucket);
+        return null;
+      }
+      else {
+        var reference = this.references[bucket];
+        return this.allocators[reference >>> SLOT_BITS].read((reference & SLOT_MASK) - 1);
+      }
+    }
+
+    synchronized void put(long hash, long usableUntil, byte[] data) {
+      var allocator = 0;
+      while (allocator < SLOT_SIZES.length &&
+        SLOT_SIZES[allocator] < data.length + SLOT_HEADER_LENGTH) {
+        allocator++;
+      }
+
+      var bucket = find(hash);
+      if (this.references[bucket] != 0) {
+        //
+        // Replace the existing entry, which might have a different size.
+        //
+        remove(bucket);
+        bucket = find(hash);
+      }
+
+      if (allocator == SLOT_SIZES.length) {
+        //
+        // Too large to cache.
+        //
+        return;
+      }
+
+      if (this.size >= this.maxEntries) {
+        //
+        // Purging requires a full scan, so don't do it more than
+        // once per second.
+        //
+        if (now() > this.lastPurge) {
+          purge();
+        }
+
+        if (this.size >= this.maxEntries) {
+          return;
+        }
+
+        bucket = find(hash);
+      }
+
+      var slot = this.allocators[allocator].allocate();
+      this.allocators[allocator].write(slot, data);
+
+      this.hashes[bucket] = hash;
+      this.references[bucket] = (allocator << SLOT_BITS) | (slot + 1);
+      this.usableUntil[bucket] = usableUntil;
+      this.size++;
+    }
+
+    synchronized void purge() {
+      var now = now();
+      this.lastPurge = now;
+      for (int bucket = 0; bucket <= this.bucketMask; bucket++) {
+        //
+        // Removing an entry can move another entry into this
+        // bucket, so check the bucket again.
+        //
+        while (this.references[bucket] != 0 && this.usableUntil[bucket] <= now) {
+          remove(bucket);
+        }
+      }
+    }
+
+    synchronized int size() {
+      return this.size;
+    }
+
+    synchronized long allocatedBytes() {
+      return Arrays.stream(this.allocators).mapToLong(SlotAllocator::allocatedBytes).sum();
+    }
+
+    synchronized void clear() {
+      Arrays.fill(this.references, 0);
+      this.size = 0;
+
+      for (var allocator : this.allocators) {
+        allocator.clear();
+      }
+    }
+  }
+}
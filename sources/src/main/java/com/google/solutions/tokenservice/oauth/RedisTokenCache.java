@@ -0,0 +1,184 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.common.base.Preconditions;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.platform.AesGcmCipher;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.platform.RedisClient;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Token cache that's backed by a server that speaks the Redis
+ * protocol, and that can thus be shared across instances.
+ *
+ * Tokens are encrypted before they're sent to the server, so the
+ * server never sees tokens in plaintext. Keys are hashes that don't
+ * reveal the client's identity.
+ *
+ * The cache is an optimization: if the server is unavailable, lookups
+ * behave as cache misses, and tokens aren't cached. To avoid slowing
+ * down requests, the cache stops using the server for a while after
+ * a failure.
+ */
+public class RedisTokenCache implements TokenCache {
+  private static final String KEY_PREFIX = "xts:token:";
+
+  /**
+   * Time to stop using the server after a failure.
+   */
+  static final Duration RETRY_INTERVAL = Duration.ofSeconds(10);
+
+  private final RedisClient client;
+  private final AesGcmCipher cipher;
+  private final LogAdapter logAdapter;
+
+  /**
+   * Time (in nanoseconds) until which to not use the server.
+   */
+  private volatile long unavailableUntil = System.nanoTime();
+
+  public RedisTokenCache(
+    RedisClient client,
+    AesGcmCipher cipher,
+    LogAdapter logAdapter
+  ) {
+    Preconditions.checkNotNull(client, "client");
+    Preconditions.checkNotNull(cipher, "cipher");
+    Preconditions.checkNotNull(logAdapter, "logAdapter");
+
+    this.client = client;
+    this.cipher = cipher;
+    this.logAdapter = logAdapter;
+  }
+
+  private boolean isAvailable() {
+    return System.nanoTime() - this.unavailableUntil >= 0;
+  }
+
+  private void onFailure(String operation, Exception e) {
+    this.unavailableUntil = System.nanoTime() + RETRY_INTERVAL.toNanos();
+
+    this.logAdapter
+      .newWarningEntry(
+        LogEvents.RUNTIME_TOKEN_CACHE,
+        String.format(
+          "%s shared token cache failed, retrying in %d seconds: %s",
+          operation,
+          RETRY_INTERVAL.toSeconds(),
+          Exceptions.getFullMessage(e)))
+      .write();
+  }
+
+  @Override
+  public AccessToken get(String key) {
+    Preconditions.checkNotNull(key, "key");
+
+    if (!isAvailable()) {
+      return null;
+    }
+
+    var redisKey = KEY_PREFIX + key;
+    try {
+      var value = this.client.get(redisKey);
+      if (value == null) {
+        return null;
+      }
+
+      //
+      // Use the key as associated data so that values can't be
+      // swapped between keys.
+      //
+      var entry = TokenCodec.decode(this.cipher.decrypt(
+        value,
+        redisKey.getBytes(StandardCharsets.UTF_8)));
+
+      return entry.key().equals(key) && TokenCache.isUsable(entry.token())
+        ? entry.token()
+        : null;
+    }
+    catch (RedisClient.ServerException | GeneralSecurityException e) {
+      //
+      // The server is working, but the entry is unusable, possibly
+      // because it was encrypted using a different key.
+      //
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_TOKEN_CACHE,
+          String.format("Ignoring unusable entry in shared token cache: %s", Exceptions.getFullMessage(e)))
+        .write();
+      return null;
+    }
+    catch (IOException e) {
+      onFailure("Reading from", e);
+      return null;
+    }
+  }
+
+  @Override
+  public void put(String key, AccessToken token) {
+    Preconditions.checkNotNull(key, "key");
+    Preconditions.checkNotNull(token, "token");
+
+    if (!isAvailable() || !TokenCache.isUsable(token)) {
+      return;
+    }
+
+    //
+    // Let the server evict the token once it's no longer usable.
+    //
+    var timeToLive = Duration.between(
+      Instant.now(),
+      token.expiryTime().minus(MIN_REMAINING_LIFETIME));
+
+    var redisKey = KEY_PREFIX + key;
+    try {
+      this.client.set(
+        redisKey,
+        this.cipher.encrypt(
+          TokenCodec.encode(key, token),
+          redisKey.getBytes(StandardCharsets.UTF_8)),
+        timeToLive);
+    }
+    catch (RedisClient.ServerException | GeneralSecurityException e) {
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_TOKEN_CACHE,
+          String.format("Writing to shared token cache failed: %s", Exceptions.getFullMessage(e)))
+        .write();
+    }
+    catch (IOException e) {
+      onFailure("Writing to", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.client.close();
+  }
+}
@@ -21,27 +21,21 @@
 
 package com.google.solutions.tokenservice.oauth;
 
-import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.json.webtoken.JsonWebToken;
-import com.google.api.services.iamcredentials.v1.IAMCredentials;
-import com.google.api.services.iamcredentials.v1.model.GenerateAccessTokenRequest;
-import com.google.api.services.iamcredentials.v1.model.SignJwtRequest;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.common.base.Preconditions;
-import com.google.solutions.tokenservice.ApplicationVersion;
 import com.google.solutions.tokenservice.URLHelper;
 import com.google.solutions.tokenservice.UserId;
 import com.google.solutions.tokenservice.platform.AccessDeniedException;
 import com.google.solutions.tokenservice.platform.ApiException;
-import com.google.solutions.tokenservice.platform.HttpTransport;
+import com.google.solutions.tokenservice.platform.CredentialManager;
+import com.google.solutions.tokenservice.platform.JsonApiClient;
 import com.google.solutions.tokenservice.platform.NotAuthenticatedException;
 
 import java.io.IOException;
 import java.net.URL;
-import java.security.GeneralSecurityException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
@@ -51,27 +45,46 @@ import java.util.List;
  */
 public class ServiceAccount {
   public static final String OAUTH_SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+  public static final String IAM_CREDENTIALS_ROOT_URL = "https://iamcredentials.googleapis.com/";
 
   private final UserId id;
-  private final HttpRequestInitializer requestInitializer;
+  private final GoogleCredentials credentials;
+  private final CredentialManager credentialManager;
+  private final JsonApiClient client;
 
   private String resourceName() {
     return String.format("projects/-/serviceAccounts/%s", this.id);
   }
 
-  private IAMCredentials createClient() throws IOException
-  {
-    try {
-      return new IAMCredentials
-        .Builder(
-          HttpTransport.newTransport(),
-          new GsonFactory(),
-          this.requestInitializer)
-        .setApplicationName(ApplicationVersion.USER_AGENT)
-        .build();
-    }
-    catch (GeneralSecurityException e) {
-      throw new IOException("Creating a IAMCredentials client failed", e);
+  private String methodUrl(String method) {
+    return String.format("%sv1/%s:%s", IAM_CREDENTIALS_ROOT_URL, resourceName(), method);
+  }
+
+  /**
+   * Map an error returned by the IAM Credentials API to an exception.
+   *
+   * @throws IllegalArgumentException if the API rejected the request
+   * as invalid.
+   */
+  private ApiException mapError(
+    JsonApiClient.ErrorResponseException e,
+    String badRequestMessage
+  ) {
+    switch (e.getStatusCode()) {
+      case 400:
+        throw new IllegalArgumentException(
+          badRequestMessage,
+          ApiException.from(e));
+      case 401:
+        return new NotAuthenticatedException(
+          "Not authenticated",
+          ApiException.from(e));
+      case 403:
+        return new AccessDeniedException(
+          String.format("Access to service account '%s' was denied", this.id),
+          ApiException.from(e));
+      default:
+        return ApiException.from(e);
     }
   }
 
@@ -83,7 +96,22 @@ public class ServiceAccount {
     Preconditions.checkNotNull(credentials, "credentials");
 
     this.id = id;
-    this.requestInitializer = new HttpCredentialsAdapter(credentials);
+    this.credentials = credentials;
+    this.credentialManager = null;
+    this.client = new JsonApiClient(new HttpCredentialsAdapter(credentials));
+  }
+
+  public ServiceAccount(
+    UserId id,
+    CredentialManager credentialManager
+  )  {
+    Preconditions.checkNotNull(id, "email");
+    Preconditions.checkNotNull(credentialManager, "credentialManager");
+
+    this.id = id;
+    this.credentials = null;
+    this.credentialManager = credentialManager;
+    this.client = new JsonApiClient(credentialManager);
   }
 
   public ServiceAccount(
@@ -94,9 +122,25 @@ public class ServiceAccount {
     Preconditions.checkNotNull(stsAccessToken, "stsAccessToken");
 
     this.id = id;
-    this.requestInitializer = httpRequest -> httpRequest
+    this.credentials = null;
+    this.credentialManager = null;
+    this.client = new JsonApiClient(httpRequest -> httpRequest
       .getHeaders()
-      .put("Authorization", String.format("Bearer %s", stsAccessToken.value()));
+      .put("Authorization", String.format("Bearer %s", stsAccessToken.value())));
+  }
+
+  /**
+   * Obtain an access token for the service account's credentials
+   * unless we already have a valid one. Subsequent API calls
+   * then don't have to wait for the token.
+   */
+  public void refreshCredentialsIfExpired() throws IOException {
+    if (this.credentialManager != null) {
+      this.credentialManager.getAccessToken();
+    }
+    else if (this.credentials != null) {
+      this.credentials.refreshIfExpired();
+    }
   }
 
   /**
@@ -107,42 +151,50 @@ public class ServiceAccount {
   ) throws ApiException, IOException {
     Preconditions.checkNotNull(payload, "payload");
 
-    try
-    {
-      if (payload.getFactory() == null) {
-        payload.setFactory(new GsonFactory());
-      }
+    if (payload.getFactory() == null) {
+      payload.setFactory(GsonFactory.getDefaultInstance());
+    }
+
+    return signJwt(payload.toString());
+  }
+
+  /**
+   * Sign a JWT using the Google-managed service account key.
+   *
+   * @param payload JSON-encoded payload.
+   */
+  public String signJwt(
+    String payload
+  ) throws ApiException, IOException {
+    Preconditions.checkNotNull(payload, "payload");
+    assert (payload.startsWith("{"));
 
-      var payloadJson = payload.toString();
-      assert (payloadJson.startsWith("{"));
+    try {
+      return this.client.post(
+        methodUrl("signJwt"),
+        request -> request.writeStringField("payload", payload),
+        response -> {
+          String signedJwt = null;
+          for (var field = JsonApiClient.nextField(response);
+               field != null;
+               field = JsonApiClient.nextField(response)) {
+            if ("signedJwt".equals(field)) {
+              signedJwt = response.getValueAsString();
+            }
+            else {
+              response.skipChildren();
+            }
+          }
 
-      var request = new SignJwtRequest()
-        .setPayload(payloadJson);
+          if (signedJwt == null) {
+            throw new IOException("The response does not contain a signed JWT");
+          }
 
-      return createClient()
-        .projects()
-        .serviceAccounts()
-        .signJwt(resourceName(), request)
-        .execute()
-        .getSignedJwt();
+          return signedJwt;
+        });
     }
-    catch (GoogleJsonResponseException e) {
-      switch (e.getStatusCode()) {
-        case 400:
-          throw new IllegalArgumentException(
-            "Signing JWT failed",
-            ApiException.from(e));
-        case 401:
-          throw new NotAuthenticatedException(
-            "Not authenticated",
-            ApiException.from(e));
-        case 403:
-          throw new AccessDeniedException(
-            String.format("Access to service account '%s' was denied", this.id),
-            ApiException.from(e));
-        default:
-          throw ApiException.from((GoogleJsonResponseException)e.fillInStackTrace());
-      }
+    catch (JsonApiClient.ErrorResponseException e) {
+      throw mapError(e, "Signing JWT failed");
     }
   }
 
@@ -161,40 +213,47 @@ public class ServiceAccount {
     Preconditions.checkArgument(!lifetime.isNegative(), "lifetime");
 
     try {
-      var request = new GenerateAccessTokenRequest()
-        .setScope(scopes)
-        .setLifetime(lifetime.toSeconds() + "s");
-
       var issueTime = Instant.now();
-      var response = createClient()
-        .projects()
-        .serviceAccounts()
-        .generateAccessToken(resourceName(), request)
-        .execute();
-
-      return new ServiceAccountAccessToken(
-        response.getAccessToken(),
-        String.join(" ", scopes),
-        issueTime,
-        Instant.parse(response.getExpireTime()));
+      return this.client.post(
+        methodUrl("generateAccessToken"),
+        request -> {
+          request.writeArrayFieldStart("scope");
+          for (var scope : scopes) {
+            request.writeString(scope);
+          }
+          request.writeEndArray();
+          request.writeStringField("lifetime", lifetime.toSeconds() + "s");
+        },
+        response -> {
+          String accessToken = null;
+          String expireTime = null;
+          for (var field = JsonApiClient.nextField(response);
+               field != null;
+               field = JsonApiClient.nextField(response)) {
+            if ("accessToken".equals(field)) {
+              accessToken = response.getValueAsString();
+            }
+            else if ("expireTime".equals(field)) {
+              expireTime = response.getValueAsString();
+            }
+            else {
+              response.skipChildren();
+            }
+          }
+
+          if (accessToken == null || expireTime == null) {
+            throw new IOException("The response does not contain an access token");
+          }
+
+          return new ServiceAccountAccessToken(
+            accessToken,
+            String.join(" ", scopes),
+            issueTime,
+            Instant.parse(expireTime));
+        });
     }
-    catch (GoogleJsonResponseException e) {
-      switch (e.getStatusCode()) {
-        case 400:
-          throw new IllegalArgumentException(
-            "Generating access token failed",
-            ApiException.from(e));
-        case 401:
-          throw new NotAuthenticatedException(
-            "Not authenticated",
-            ApiException.from(e));
-        case 403:
-          throw new AccessDeniedException(
-            String.format("Access to service account '%s' was denied", this.id),
-            ApiException.from(e));
-        default:
-          throw ApiException.from((GoogleJsonResponseException)e.fillInStackTrace());
-      }
+    catch (JsonApiClient.ErrorResponseException e) {
+      throw mapError(e, "Generating access token failed");
     }
   }
 
@@ -0,0 +1,75 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Token cache that uses a fast, local cache (L1) in front of
+ * a slower, shared cache (L2).
+ */
+public class TieredTokenCache implements TokenCache {
+  private final TokenCache localCache;
+  private final TokenCache sharedCache;
+
+  public TieredTokenCache(
+    TokenCache localCache,
+    TokenCache sharedCache
+  ) {
+    Preconditions.checkNotNull(localCache, "localCache");
+    Preconditions.checkNotNull(sharedCache, "sharedCache");
+
+    this.localCache = localCache;
+    this.sharedCache = sharedCache;
+  }
+
+  @Override
+  public AccessToken get(String key) {
+    var token = this.localCache.get(key);
+    if (token == null) {
+      //
+      // The token might have been issued by another instance.
+      //
+      token = this.sharedCache.get(key);
+      if (token != null) {
+        this.localCache.put(key, token);
+      }
+    }
+
+    return token;
+  }
+
+  @Override
+  public void put(String key, AccessToken token) {
+    this.localCache.put(key, token);
+    this.sharedCache.put(key, token);
+  }
+
+  @Override
+  public void close() {
+    try {
+      this.localCache.close();
+    }
+    finally {
+      this.sharedCache.close();
+    }
+  }
+}
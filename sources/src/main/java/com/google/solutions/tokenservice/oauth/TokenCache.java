@@ -0,0 +1,114 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.solutions.tokenservice.UserId;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.TreeMap;
+
+/**
+ * Cache for access tokens issued by upstream APIs (STS and IAM),
+ * keyed by issuer, flow, client, scope, and service account.
+ */
+public interface TokenCache extends AutoCloseable {
+  /**
+   * Minimum remaining lifetime for a cached token to be returned.
+   */
+  Duration MIN_REMAINING_LIFETIME = Duration.ofMinutes(5);
+
+  /**
+   * Check if a token has enough remaining lifetime to be
+   * returned from a cache.
+   */
+  static boolean isUsable(AccessToken token) {
+    return token.expiryTime().isAfter(Instant.now().plus(MIN_REMAINING_LIFETIME));
+  }
+
+  /**
+   * Compute a cache key. Tokens can only be shared between requests
+   * if the issuer, the flow, the client and all its claims are the same,
+   * because they all end up in the ID token, and might affect the
+   * identity that the token is issued to.
+   *
+   * @param issuerId issuer of the ID token used to obtain the token.
+   * @param flow name of the flow, as used in the amr claim.
+   * @param serviceAccount service account, or null for STS tokens.
+   */
+  static String key(
+    URL issuerId,
+    String flow,
+    AuthenticatedClient client,
+    String scope,
+    UserId serviceAccount
+  ) {
+    Preconditions.checkNotNull(issuerId, "issuerId");
+    Preconditions.checkNotNull(flow, "flow");
+    Preconditions.checkNotNull(client, "client");
+    Preconditions.checkNotNull(scope, "scope");
+
+    var hasher = Hashing.sha256().newHasher();
+    hasher.putString(issuerId.toString(), StandardCharsets.UTF_8).putByte((byte)0);
+    hasher.putString(flow, StandardCharsets.UTF_8).putByte((byte)0);
+    hasher.putString(client.clientId(), StandardCharsets.UTF_8).putByte((byte)0);
+
+    for (var claim : new TreeMap<>(client.additionalClaims()).entrySet()) {
+      hasher
+        .putString(claim.getKey(), StandardCharsets.UTF_8).putByte((byte)0)
+        .putString(String.valueOf(claim.getValue()), StandardCharsets.UTF_8).putByte((byte)0);
+    }
+
+    hasher.putByte((byte)0).putString(scope, StandardCharsets.UTF_8).putByte((byte)0);
+    if (serviceAccount != null) {
+      hasher.putString(serviceAccount.email(), StandardCharsets.UTF_8);
+    }
+
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Look up a token.
+   *
+   * @return token, or null if there's no cached token or if the
+   * cached token is about to expire.
+   */
+  AccessToken get(String key);
+
+  /**
+   * Add or replace a token. Tokens that are about to expire
+   * are ignored.
+   */
+  void put(String key, AccessToken token);
+
+  /**
+   * Release resources.
+   */
+  @Override
+  default void close() {
+  }
+}
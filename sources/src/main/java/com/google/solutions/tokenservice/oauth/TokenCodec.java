@@ -0,0 +1,97 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Binary encoding for cached tokens.
+ */
+class TokenCodec {
+  private static final byte TYPE_STS = 1;
+  private static final byte TYPE_SERVICE_ACCOUNT = 2;
+
+  private TokenCodec() {}
+
+  static byte[] encode(String key, AccessToken token) throws IOException {
+    if (!(token instanceof StsAccessToken) && !(token instanceof ServiceAccountAccessToken)) {
+      throw new IllegalArgumentException("Unsupported token type");
+    }
+
+    var buffer = new ByteArrayOutputStream();
+    try (var stream = new DataOutputStream(buffer)) {
+      stream.writeUTF(key);
+      stream.writeByte(token instanceof StsAccessToken ? TYPE_STS : TYPE_SERVICE_ACCOUNT);
+
+      var value = token.value().getBytes(StandardCharsets.UTF_8);
+      stream.writeInt(value.length);
+      stream.write(value);
+
+      stream.writeUTF(token.scope());
+      stream.writeLong(token.issueTime().getEpochSecond());
+      stream.writeLong(token.expiryTime().getEpochSecond());
+    }
+
+    return buffer.toByteArray();
+  }
+
+  static Entry decode(byte[] data) throws IOException {
+    try (var stream = new DataInputStream(new ByteArrayInputStream(data))) {
+      var key = stream.readUTF();
+      var type = stream.readByte();
+
+      var value = new byte[stream.readInt()];
+      stream.readFully(value);
+
+      var scope = stream.readUTF();
+      var issueTime = Instant.ofEpochSecond(stream.readLong());
+      var expiryTime = Instant.ofEpochSecond(stream.readLong());
+
+      switch (type) {
+        case TYPE_STS:
+          return new Entry(key, new StsAccessToken(
+            new String(value, StandardCharsets.UTF_8),
+            scope,
+            issueTime,
+            expiryTime));
+
+        case TYPE_SERVICE_ACCOUNT:
+          return new Entry(key, new ServiceAccountAccessToken(
+            new String(value, StandardCharsets.UTF_8),
+            scope,
+            issueTime,
+            expiryTime));
+
+        default:
+          throw new IOException("Unknown token type");
+      }
+    }
+  }
+
+  record Entry(String key, AccessToken token) {}
+}
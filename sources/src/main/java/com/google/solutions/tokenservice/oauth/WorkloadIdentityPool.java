@@ -21,24 +21,14 @@
 
 package com.google.solutions.tokenservice.oauth;
 
-import com.google.api.client.googleapis.json.GoogleJsonError;
-import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.api.client.http.HttpResponse;
-import com.google.api.client.http.HttpResponseException;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.client.util.Key;
-import com.google.api.services.sts.v1.CloudSecurityToken;
-import com.google.api.services.sts.v1.model.GoogleIdentityStsV1ExchangeTokenRequest;
 import com.google.common.base.Preconditions;
-import com.google.solutions.tokenservice.ApplicationVersion;
 import com.google.solutions.tokenservice.URLHelper;
 import com.google.solutions.tokenservice.UserId;
-import com.google.solutions.tokenservice.platform.HttpTransport;
+import com.google.solutions.tokenservice.platform.JsonApiClient;
 
 import javax.enterprise.context.ApplicationScoped;
 import java.io.IOException;
 import java.net.URL;
-import java.security.GeneralSecurityException;
 import java.time.Instant;
 
 /**
@@ -46,32 +36,24 @@ import java.time.Instant;
  */
 @ApplicationScoped
 public class WorkloadIdentityPool {
+  public static final String STS_ROOT_URL = "https://sts.googleapis.com/";
+
   private static final String GRANT_TYPE = "urn:ietf:params:oauth:grant-type:token-exchange";
   private static final String ACCESS_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:access_token";
   private static final String ID_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:id_token";
 
+  /**
+   * Client for the STS API. The token endpoint doesn't require
+   * credentials.
+   */
+  private static final JsonApiClient STS_CLIENT = new JsonApiClient(httpRequest -> {});
+
   private final Options options;
 
   public WorkloadIdentityPool(Options options) {
     this.options = options;
   }
 
-  private CloudSecurityToken createStsClient() throws IOException
-  {
-    try {
-      return new CloudSecurityToken
-        .Builder(
-          HttpTransport.newTransport(),
-          new GsonFactory(),
-          httpRequest -> {})
-        .setApplicationName(ApplicationVersion.USER_AGENT)
-        .build();
-    }
-    catch (GeneralSecurityException e) {
-      throw new IOException("Creating an STS client failed", e);
-    }
-  }
-
   /**
    * Exchange an ID token for an STS access token.
    */
@@ -83,61 +65,61 @@ public class WorkloadIdentityPool {
     Preconditions.checkNotNull(scope, "scope");
 
     try {
-      var client = createStsClient();
-      var requestBody = new GoogleIdentityStsV1ExchangeTokenRequest()
-        .setGrantType(GRANT_TYPE)
-        .setAudience(this.options.audience())
-        .setScope(scope)
-        .setRequestedTokenType(ACCESS_TOKEN_TYPE)
-        .setSubjectToken(idToken.value())
-        .setSubjectTokenType(ID_TOKEN_TYPE);
-
-      //
-      // The token API returns errors in OAuth format, not in the standard
-      // Google API error format as the client library expects.
-      //
-      // Add hook to extract error details.
-      //
-      var request = client.v1().new Token(requestBody) {
-        @Override
-        protected GoogleJsonResponseException newExceptionOnError(HttpResponse response) {
-          try {
-            var builder = new HttpResponseException.Builder(
-              response.getStatusCode(),
-              response.getStatusMessage(),
-              response.getHeaders());
-
-            var errorDetails = client
-              .getJsonFactory()
-              .fromInputStream(response.getContent(), TokenErrorDetails.class);
-
-            return new GoogleJsonResponseException(builder, errorDetails.toError());
-          }
-          catch (IOException e)
-          {
-            return super.newExceptionOnError(response);
+      var issueTime = Instant.now();
+      return STS_CLIENT.post(
+        STS_ROOT_URL + "v1/token",
+        request -> {
+          request.writeStringField("grantType", GRANT_TYPE);
+          request.writeStringField("audience", this.options.audience());
+          request.writeStringField("scope", scope);
+          request.writeStringField("requestedTokenType", ACCESS_TOKEN_TYPE);
+          request.writeStringField("subjectToken", idToken.value());
+          request.writeStringField("subjectTokenType", ID_TOKEN_TYPE);
+        },
+        response -> {
+          String accessToken = null;
+          long expiresIn = -1;
+          for (var field = JsonApiClient.nextField(response);
+               field != null;
+               field = JsonApiClient.nextField(response)) {
+            if ("access_token".equals(field)) {
+              accessToken = response.getValueAsString();
+            }
+            else if ("expires_in".equals(field)) {
+              expiresIn = response.getValueAsLong(-1);
+            }
+            else {
+              response.skipChildren();
+            }
           }
-        }
-      };
 
-      var issueTime = Instant.now();
-      var response = request.execute();
+          if (accessToken == null || expiresIn < 0) {
+            throw new IOException("The response does not contain an access token");
+          }
 
-      return new StsAccessToken(
-        response.getAccessToken(),
-        scope,
-        issueTime,
-        issueTime.plusSeconds(response.getExpiresIn()));
+          return new StsAccessToken(
+            accessToken,
+            scope,
+            issueTime,
+            issueTime.plusSeconds(expiresIn));
+        });
     }
-    catch (GoogleJsonResponseException e) {
+    catch (JsonApiClient.ErrorResponseException e) {
+      //
+      // The token API returns errors in OAuth format, not in the standard
+      // Google API error format.
+      //
       switch (e.getStatusCode()) {
         case 400:
-          throw new IllegalArgumentException(e.getDetails() != null
-            ? e.getDetails().getMessage()
+          throw new IllegalArgumentException(e.getError() != null
+            ? String.format(
+              "Token exchange failed with code %s: %s",
+              e.getError(),
+              e.getErrorDescription())
             : e.getMessage());
 
         default:
-          throw (GoogleJsonResponseException) e.fillInStackTrace();
+          throw (JsonApiClient.ErrorResponseException) e.fillInStackTrace();
       }
     }
   }
@@ -177,21 +159,4 @@ public class WorkloadIdentityPool {
       return URLHelper.fromString("https:" + audience());
     }
   }
-
-  public static class TokenErrorDetails {
-    @Key
-    private String error;
-
-    @Key
-    private String error_description;
-
-    public GoogleJsonError toError() {
-      var error = new GoogleJsonError();
-      error.setMessage(String.format(
-        "Token exchange failed with code %s: %s",
-        this.error,
-        this.error_description));
-      return error;
-    }
-  }
 }
@@ -0,0 +1,203 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client directory that caches the results of another, slower directory.
+ *
+ * Cached results are served while they're being refreshed in the
+ * background (stale-while-revalidate), so that only the first lookup
+ * of a client has to wait for the underlying directory. If a refresh
+ * fails, the cache keeps serving the stale result until it exceeds
+ * the maximum staleness.
+ *
+ * Unknown clients are cached too, but revalidated more frequently.
+ */
+public class CachingClientDirectory implements ClientDirectory, AutoCloseable {
+  /**
+   * Maximum number of concurrent background refreshes.
+   */
+  private static final int REFRESH_CONCURRENCY = 4;
+
+  private final LoadingCache<String, CachedLookup> cache;
+  private final Ticker ticker;
+  private final Options options;
+  private final ExecutorService executor;
+
+  CachingClientDirectory(
+    ClientDirectory directory,
+    Options options,
+    ExecutorService executor,
+    Ticker ticker
+  ) {
+    Preconditions.checkNotNull(directory, "directory");
+    Preconditions.checkNotNull(options, "options");
+    Preconditions.checkNotNull(executor, "executor");
+    Preconditions.checkNotNull(ticker, "ticker");
+    Preconditions.checkArgument(
+      options.refreshInterval().compareTo(options.maxStaleness()) < 0,
+      "The refresh interval must be shorter than the maximum staleness");
+
+    this.ticker = ticker;
+    this.options = options;
+    this.executor = executor;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(options.maxEntries())
+      .refreshAfterWrite(options.refreshInterval())
+      .expireAfterWrite(options.maxStaleness())
+      .ticker(ticker)
+      .build(CacheLoader.asyncReloading(
+        new CacheLoader<>() {
+          @Override
+          public CachedLookup load(String key) throws IOException {
+            return new CachedLookup(directory.lookup(key), ticker.read());
+          }
+        },
+        executor));
+  }
+
+  public CachingClientDirectory(
+    ClientDirectory directory,
+    Options options
+  ) {
+    this(
+      directory,
+      options,
+      createRefreshExecutor(),
+      Ticker.systemTicker());
+  }
+
+  private static ExecutorService createRefreshExecutor() {
+    //
+    // A pool with an unbounded queue never grows beyond its core
+    // size, so use a fixed size and let idle threads time out instead.
+    //
+    var executor = new ThreadPoolExecutor(
+      REFRESH_CONCURRENCY,
+      REFRESH_CONCURRENCY,
+      1,
+      TimeUnit.MINUTES,
+      new LinkedBlockingQueue<>(),
+      new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("client-directory-%d")
+        .build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Add clients to the cache, for example to avoid lookups for a
+   * known set of clients after startup.
+   */
+  public void preload(Map<String, Client> clients) {
+    Preconditions.checkNotNull(clients, "clients");
+
+    var now = this.ticker.read();
+    for (var entry : clients.entrySet()) {
+      this.cache.put(entry.getKey(), new CachedLookup(entry.getValue(), now));
+    }
+  }
+
+  @Override
+  public Client lookup(String key) throws IOException {
+    Preconditions.checkNotNull(key, "key");
+
+    CachedLookup lookup;
+    try {
+      lookup = this.cache.get(key);
+    }
+    catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      else {
+        throw new IOException("Looking up client failed", e.getCause());
+      }
+    }
+
+    if (lookup.client() == null &&
+      this.ticker.read() - lookup.loadTime() >= this.options.negativeCacheDuration().toNanos()) {
+      //
+      // The client might have been added to the directory in the
+      // meantime, revalidate in the background.
+      //
+      this.cache.refresh(key);
+    }
+
+    return lookup.client();
+  }
+
+  /**
+   * @return number of cached lookups.
+   */
+  long size() {
+    return this.cache.size();
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * @param client client, null if the client is unknown.
+   * @param loadTime time (in ticker nanoseconds) of the lookup.
+   */
+  private record CachedLookup(Client client, long loadTime) {}
+
+  /**
+   * @param refreshInterval time after which to revalidate a cached client.
+   * @param maxStaleness time after which to stop using a cached client,
+   *                     even if revalidating it failed.
+   * @param negativeCacheDuration time after which to revalidate an
+   *                              unknown client.
+   * @param maxEntries maximum number of clients to cache.
+   */
+  public record Options(
+    Duration refreshInterval,
+    Duration maxStaleness,
+    Duration negativeCacheDuration,
+    long maxEntries
+  ) {}
+}
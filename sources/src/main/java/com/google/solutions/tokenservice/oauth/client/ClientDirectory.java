@@ -0,0 +1,60 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Directory of known clients, for example an inventory database.
+ */
+public interface ClientDirectory {
+  /**
+   * Look up a client.
+   *
+   * @param key client ID or certificate fingerprint, see KeyType.
+   * @return client, or null if the client is unknown.
+   * @throws IOException if the directory is unavailable.
+   */
+  Client lookup(String key) throws IOException;
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Attribute that is used to look up clients.
+   */
+  enum KeyType {
+    CLIENT_ID,
+    CERTIFICATE_FINGERPRINT
+  }
+
+  /**
+   * Client as recorded in the directory.
+   *
+   * @param claims additional claims about this client.
+   */
+  record Client(
+    Map<String, String> claims
+  ) {}
+}
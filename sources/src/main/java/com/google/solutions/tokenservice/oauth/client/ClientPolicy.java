@@ -21,11 +21,15 @@
 
 package com.google.solutions.tokenservice.oauth.client;
 
+import com.google.common.base.Preconditions;
 import com.google.solutions.tokenservice.oauth.mtls.MtlsClientAttributes;
 
-import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.ForbiddenException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.function.Supplier;
 
 /**
  * Policy for authenticating clients.
@@ -34,9 +38,154 @@ import java.util.HashMap;
  * might use an inventory database or configuration file to authenticate
  * clients.
  */
-@ApplicationScoped
 public class ClientPolicy {
+  /**
+   * Prefix of claims derived from the client certificate.
+   */
+  private static final String CERTIFICATE_CLAIM_PREFIX = "x5_";
+
+  /**
+   * Allow-list of certificate fingerprints, null if all certificates
+   * are allowed.
+   */
+  private final Supplier<FingerprintAllowList> fingerprintAllowList;
+
+  /**
+   * List of revoked certificates, null if revocation isn't checked.
+   */
+  private final Supplier<RevocationList> revocationList;
+
+  /**
+   * Directory to look up additional information about clients, null
+   * if clients aren't looked up.
+   */
+  private final ClientDirectory clientDirectory;
+  private final ClientDirectory.KeyType clientDirectoryKeyType;
+
+  /**
+   * Checker for querying OCSP responders, null if OCSP isn't used.
+   */
+  private final OcspRevocationChecker ocspRevocationChecker;
+
+  /**
+   * Create a policy that allows all clients that present a trusted
+   * certificate.
+   */
   public ClientPolicy() {
+    this(null, null);
+  }
+
+  /**
+   * Create a policy that only allows clients whose certificate
+   * fingerprint is on an allow-list.
+   *
+   * @param fingerprintAllowList supplier for the current allow-list.
+   */
+  public ClientPolicy(Supplier<FingerprintAllowList> fingerprintAllowList) {
+    this(fingerprintAllowList, null);
+    Preconditions.checkNotNull(fingerprintAllowList, "fingerprintAllowList");
+  }
+
+  /**
+   * Create a policy that optionally checks certificates against an
+   * allow-list and a revocation list.
+   *
+   * @param fingerprintAllowList supplier for the current allow-list,
+   *                             or null to allow all certificates.
+   * @param revocationList supplier for the current revocation list,
+   *                       or null to not check revocation.
+   */
+  public ClientPolicy(
+    Supplier<FingerprintAllowList> fingerprintAllowList,
+    Supplier<RevocationList> revocationList
+  ) {
+    this(fingerprintAllowList, revocationList, null, null);
+  }
+
+  /**
+   * Create a policy that optionally checks certificates against an
+   * allow-list and a revocation list, and requires clients to be
+   * listed in a directory.
+   *
+   * @param fingerprintAllowList supplier for the current allow-list,
+   *                             or null to allow all certificates.
+   * @param revocationList supplier for the current revocation list,
+   *                       or null to not check revocation.
+   * @param clientDirectory directory to look up clients in, or null
+   *                        to not look up clients.
+   * @param clientDirectoryKeyType attribute to look up clients by.
+   */
+  public ClientPolicy(
+    Supplier<FingerprintAllowList> fingerprintAllowList,
+    Supplier<RevocationList> revocationList,
+    ClientDirectory clientDirectory,
+    ClientDirectory.KeyType clientDirectoryKeyType
+  ) {
+    this(fingerprintAllowList, revocationList, clientDirectory, clientDirectoryKeyType, null);
+  }
+
+  /**
+   * Create a policy that optionally checks certificates against an
+   * allow-list, a revocation list, and OCSP, and requires clients to be
+   * listed in a directory.
+   *
+   * @param fingerprintAllowList supplier for the current allow-list,
+   *                             or null to allow all certificates.
+   * @param revocationList supplier for the current revocation list,
+   *                       or null to not check revocation.
+   * @param clientDirectory directory to look up clients in, or null
+   *                        to not look up clients.
+   * @param clientDirectoryKeyType attribute to look up clients by.
+   * @param ocspRevocationChecker checker for querying OCSP responders,
+   *                              or null to not use OCSP.
+   */
+  public ClientPolicy(
+    Supplier<FingerprintAllowList> fingerprintAllowList,
+    Supplier<RevocationList> revocationList,
+    ClientDirectory clientDirectory,
+    ClientDirectory.KeyType clientDirectoryKeyType,
+    OcspRevocationChecker ocspRevocationChecker
+  ) {
+    Preconditions.checkArgument(
+      clientDirectory == null || clientDirectoryKeyType != null,
+      "clientDirectoryKeyType");
+
+    this.fingerprintAllowList = fingerprintAllowList;
+    this.revocationList = revocationList;
+    this.clientDirectory = clientDirectory;
+    this.clientDirectoryKeyType = clientDirectoryKeyType;
+    this.ocspRevocationChecker = ocspRevocationChecker;
+  }
+
+  /**
+   * Check if a certificate has been revoked. Certificates without a
+   * valid serial number are considered revoked.
+   */
+  private boolean isRevoked(String serialNumber) {
+    try {
+      return serialNumber == null || this.revocationList.get().isRevoked(serialNumber);
+    }
+    catch (IllegalArgumentException e) {
+      return true;
+    }
+  }
+
+  private ClientDirectory.Client lookupClient(MtlsClientAttributes attributes) {
+    var key = this.clientDirectoryKeyType == ClientDirectory.KeyType.CLIENT_ID
+      ? attributes.clientId()
+      : attributes.sha256fingerprint();
+    if (key == null) {
+      return null;
+    }
+
+    try {
+      return this.clientDirectory.lookup(key);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(
+        String.format("Looking up client '%s' failed", attributes.clientId()),
+        e);
+    }
   }
 
   /**
@@ -53,18 +202,39 @@ public class ClientPolicy {
   {
     //
     // The client presented a trusted mTLS client certificate.
-    // In this example implementation, we consider that sufficient,
-    // and simply use the certificate attributes as client claims.
+    // In this example implementation, we consider that sufficient
+    // (unless there's an allow-list), and simply use the certificate
+    // attributes as client claims.
+    //
+    if (this.fingerprintAllowList != null &&
+      !this.fingerprintAllowList.get().contains(attributes.sha256fingerprint())) {
+      throw new ForbiddenException(
+        String.format(
+          "The certificate of client '%s' is not on the allow-list",
+          attributes.clientId()));
+    }
+
+    if (this.revocationList != null && isRevoked(attributes.serialNumber())) {
+      throw new ForbiddenException(
+        String.format(
+          "The certificate of client '%s' has been revoked",
+          attributes.clientId()));
+    }
+
+    if (this.ocspRevocationChecker != null &&
+      this.ocspRevocationChecker.isRevoked(attributes.certificateChain())) {
+      throw new ForbiddenException(
+        String.format(
+          "The certificate of client '%s' has been revoked, or its revocation status is unavailable",
+          attributes.clientId()));
+    }
+
     //
     // In a real-world scenario, we could perform additional checks here,
     // such as:
     //
-    // - check the certificate hash against an allow-list
     // - require specific attributes (such as Spiffe ID) to be provided
     //
-    // Also, we could transform or enrich the set of claims, for example by
-    // looking up additional client/device information in a database.
-    //
 
     var claims = new HashMap<String, String>();
     claims.put("x5_spiffe", attributes.spiffeId());
@@ -73,6 +243,26 @@ public class ClientPolicy {
     claims.put("x5_sha256", attributes.sha256fingerprint());
     claims.put("x5_serial", attributes.serialNumber());
 
+    if (this.clientDirectory != null) {
+      //
+      // Enrich the set of claims with information from the directory.
+      // Claims from the certificate take precedence, and x5_* claims
+      // are reserved for the certificate, even if it lacks a value.
+      //
+      var client = lookupClient(attributes);
+      if (client == null) {
+        throw new ForbiddenException(
+          String.format("The client '%s' is unknown", attributes.clientId()));
+      }
+
+      for (var claim : client.claims().entrySet()) {
+        if (!claim.getKey().startsWith(CERTIFICATE_CLAIM_PREFIX) &&
+          !claims.containsKey(claim.getKey())) {
+          claims.put(claim.getKey(), claim.getValue());
+        }
+      }
+    }
+
     return new AuthenticatedClient(
       attributes.clientId(),
       Instant.now(),
@@ -0,0 +1,373 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Set of SHA-256 certificate fingerprints.
+ *
+ * Fingerprints are kept in an open-addressing hash table that consists
+ * of a single long[], so that the list stays compact even with millions
+ * of entries. Lookups take constant time and don't allocate.
+ *
+ * Fingerprints can be hex-encoded (with or without colons) or
+ * Base64-encoded (with either alphabet, with or without padding).
+ */
+public class FingerprintAllowList {
+  private static final int WORDS = 4;
+
+  private static final int FORMAT_INVALID = -1;
+  private static final int FORMAT_HEX = 0;
+  private static final int FORMAT_HEX_COLONS = 1;
+  private static final int FORMAT_BASE64 = 2;
+
+  /**
+   * Hash table, each bucket consists of 4 words. Empty buckets are
+   * all-zero.
+   */
+  private final long[] table;
+  private final int bucketMask;
+  private final int size;
+
+  /**
+   * Whether the list contains the all-zero fingerprint, which can't
+   * be stored in the table.
+   */
+  private final boolean containsZero;
+
+  private FingerprintAllowList(long[] fingerprints, int count) {
+    //
+    // Keep the load factor below 0.75.
+    //
+    var buckets = Integer.highestOneBit(Math.max(count * 4 / 3, 1)) << 1;
+    this.table = new long[buckets * WORDS];
+    this.bucketMask = buckets - 1;
+
+    var size = 0;
+    var containsZero = false;
+    for (int i = 0; i < count; i++) {
+      var w0 = fingerprints[i * WORDS];
+      var w1 = fingerprints[i * WORDS + 1];
+      var w2 = fingerprints[i * WORDS + 2];
+      var w3 = fingerprints[i * WORDS + 3];
+
+      if ((w0 | w1 | w2 | w3) == 0) {
+        if (!containsZero) {
+          containsZero = true;
+          size++;
+        }
+
+        continue;
+      }
+
+      var bucket = find(w0, w1, w2, w3);
+      if (isEmpty(bucket)) {
+        this.table[bucket * WORDS] = w0;
+        this.table[bucket * WORDS + 1] = w1;
+        this.table[bucket * WORDS + 2] = w2;
+        this.table[bucket * WORDS + 3] = w3;
+        size++;
+      }
+    }
+
+    this.size = size;
+    this.containsZero = containsZero;
+  }
+
+  /**
+   * Create an allow-list from a list of fingerprints.
+   *
+   * @throws IllegalArgumentException if a fingerprint is malformed.
+   */
+  public static FingerprintAllowList of(CharSequence... fingerprints) {
+    var words = new long[fingerprints.length * WORDS];
+    for (int i = 0; i < fingerprints.length; i++) {
+      if (!decode(fingerprints[i], words, i)) {
+        throw new IllegalArgumentException(
+          String.format("'%s' is not a valid SHA-256 fingerprint", fingerprints[i]));
+      }
+    }
+
+    return new FingerprintAllowList(words, fingerprints.length);
+  }
+
+  /**
+   * Parse a file that contains one fingerprint per line. Empty
+   * lines and lines starting with '#' are ignored.
+   *
+   * @throws IOException if the file can't be read or contains a
+   * malformed fingerprint.
+   */
+  public static FingerprintAllowList parse(Reader reader) throws IOException {
+    Preconditions.checkNotNull(reader, "reader");
+
+    var words = new long[64 * WORDS];
+    var count = 0;
+
+    var lineReader = new BufferedReader(reader);
+    String line;
+    for (int lineNumber = 1; (line = lineReader.readLine()) != null; lineNumber++) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      if (words.length < (count + 1) * WORDS) {
+        words = Arrays.copyOf(words, words.length * 2);
+      }
+
+      if (!decode(line, words, count)) {
+        throw new IOException(
+          String.format("Line %d does not contain a valid SHA-256 fingerprint", lineNumber));
+      }
+
+      count++;
+    }
+
+    return new FingerprintAllowList(words, count);
+  }
+
+  /**
+   * Parse a file that contains one fingerprint per line.
+   */
+  public static FingerprintAllowList parse(Path path) throws IOException {
+    try (var reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      return parse(reader);
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  // Decoding.
+  //---------------------------------------------------------------------------
+
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    else if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    else if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    else {
+      return -1;
+    }
+  }
+
+  private static int base64Value(char c) {
+    if (c >= 'A' && c <= 'Z') {
+      return c - 'A';
+    }
+    else if (c >= 'a' && c <= 'z') {
+      return c - 'a' + 26;
+    }
+    else if (c >= '0' && c <= '9') {
+      return c - '0' + 52;
+    }
+    else if (c == '+' || c == '-') {
+      return 62;
+    }
+    else if (c == '/' || c == '_') {
+      return 63;
+    }
+    else {
+      return -1;
+    }
+  }
+
+  /**
+   * Determine the encoding of a fingerprint, and check that it only
+   * contains valid characters.
+   */
+  private static int format(CharSequence fingerprint) {
+    var length = fingerprint.length();
+    if (length == 64) {
+      for (int i = 0; i < length; i++) {
+        if (hexValue(fingerprint.charAt(i)) < 0) {
+          return FORMAT_INVALID;
+        }
+      }
+
+      return FORMAT_HEX;
+    }
+    else if (length == 95) {
+      for (int i = 0; i < length; i++) {
+        if (i % 3 == 2
+          ? fingerprint.charAt(i) != ':'
+          : hexValue(fingerprint.charAt(i)) < 0) {
+          return FORMAT_INVALID;
+        }
+      }
+
+      return FORMAT_HEX_COLONS;
+    }
+    else if (length == 43 || (length == 44 && fingerprint.charAt(43) == '=')) {
+      for (int i = 0; i < 43; i++) {
+        if (base64Value(fingerprint.charAt(i)) < 0) {
+          return FORMAT_INVALID;
+        }
+      }
+
+      //
+      // 43 characters encode 258 bits, the last 2 bits must be zero.
+      //
+      if ((base64Value(fingerprint.charAt(42)) & 3) != 0) {
+        return FORMAT_INVALID;
+      }
+
+      return FORMAT_BASE64;
+    }
+    else {
+      return FORMAT_INVALID;
+    }
+  }
+
+  /**
+   * Decode one 64-bit word of a fingerprint that has been validated
+   * using format().
+   */
+  private static long word(CharSequence fingerprint, int format, int index) {
+    long word = 0;
+    switch (format) {
+      case FORMAT_HEX:
+        for (int i = index * 16; i < (index + 1) * 16; i++) {
+          word = (word << 4) | hexValue(fingerprint.charAt(i));
+        }
+        return word;
+
+      case FORMAT_HEX_COLONS:
+        for (int i = index * 8; i < (index + 1) * 8; i++) {
+          word = (word << 8)
+            | (hexValue(fingerprint.charAt(i * 3)) << 4)
+            | hexValue(fingerprint.charAt(i * 3 + 1));
+        }
+        return word;
+
+      case FORMAT_BASE64: {
+        var end = (index + 1) * 64;
+        for (int bit = index * 64; bit < end; ) {
+          var offset = bit % 6;
+          var take = Math.min(6 - offset, end - bit);
+          var value = base64Value(fingerprint.charAt(bit / 6));
+
+          word = (word << take) | ((value >> (6 - offset - take)) & ((1 << take) - 1));
+          bit += take;
+        }
+        return word;
+      }
+
+      default:
+        throw new IllegalArgumentException("format");
+    }
+  }
+
+  private static boolean decode(CharSequence fingerprint, long[] words, int index) {
+    var format = format(fingerprint);
+    if (format == FORMAT_INVALID) {
+      return false;
+    }
+
+    for (int i = 0; i < WORDS; i++) {
+      words[index * WORDS + i] = word(fingerprint, format, i);
+    }
+
+    return true;
+  }
+
+  //---------------------------------------------------------------------------
+  // Lookup.
+  //---------------------------------------------------------------------------
+
+  private boolean isEmpty(int bucket) {
+    var offset = bucket * WORDS;
+    return (this.table[offset] | this.table[offset + 1] |
+      this.table[offset + 2] | this.table[offset + 3]) == 0;
+  }
+
+  /**
+   * Find the bucket that contains a fingerprint, or the empty bucket
+   * where it should be inserted.
+   */
+  private int find(long w0, long w1, long w2, long w3) {
+    //
+    // Fingerprints are uniformly distributed, so any of their bits
+    // are suitable as hash.
+    //
+    var bucket = (int)w0 & this.bucketMask;
+    while (true) {
+      var offset = bucket * WORDS;
+      if ((this.table[offset] == w0 &&
+        this.table[offset + 1] == w1 &&
+        this.table[offset + 2] == w2 &&
+        this.table[offset + 3] == w3) || isEmpty(bucket)) {
+        return bucket;
+      }
+
+      bucket = (bucket + 1) & this.bucketMask;
+    }
+  }
+
+  /**
+   * Check if the list contains a fingerprint.
+   *
+   * @return false if the list doesn't contain the fingerprint, or if the
+   * fingerprint is malformed.
+   */
+  public boolean contains(CharSequence fingerprint) {
+    if (fingerprint == null) {
+      return false;
+    }
+
+    var format = format(fingerprint);
+    if (format == FORMAT_INVALID) {
+      return false;
+    }
+
+    var w0 = word(fingerprint, format, 0);
+    var w1 = word(fingerprint, format, 1);
+    var w2 = word(fingerprint, format, 2);
+    var w3 = word(fingerprint, format, 3);
+
+    if ((w0 | w1 | w2 | w3) == 0) {
+      return this.containsZero;
+    }
+
+    return !isEmpty(find(w0, w1, w2, w3));
+  }
+
+  /**
+   * @return number of distinct fingerprints.
+   */
+  public int size() {
+    return this.size;
+  }
+}
@@ -0,0 +1,98 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Client directory that's kept in memory, and loaded from a JSON file
+ * that maps keys to claims, for example:
+ *
+ * <pre>
+ * {
+ *   "client-1": { "device_id": "1234", "location": "warehouse-1" },
+ *   "client-2": { "device_id": "5678" }
+ * }
+ * </pre>
+ *
+ * This class serves as reference implementation. A real implementation
+ * might use an inventory database instead.
+ */
+public class LocalClientDirectory implements ClientDirectory {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final Supplier<Map<String, Client>> clients;
+
+  /**
+   * @param clients supplier for the current set of clients, by key.
+   */
+  public LocalClientDirectory(Supplier<Map<String, Client>> clients) {
+    Preconditions.checkNotNull(clients, "clients");
+    this.clients = clients;
+  }
+
+  /**
+   * Parse a JSON document that maps keys to claims.
+   */
+  public static Map<String, Client> parse(InputStream stream) throws IOException {
+    var document = MAPPER.readValue(
+      stream,
+      new TypeReference<Map<String, Map<String, String>>>() {});
+
+    var clients = new HashMap<String, Client>();
+    for (var entry : document.entrySet()) {
+      if (entry.getValue() == null) {
+        throw new IOException(
+          String.format("The entry for '%s' does not contain any claims", entry.getKey()));
+      }
+
+      clients.put(entry.getKey(), new Client(Map.copyOf(entry.getValue())));
+    }
+
+    return Map.copyOf(clients);
+  }
+
+  /**
+   * Parse a JSON file that maps keys to claims.
+   */
+  public static Map<String, Client> parse(Path path) throws IOException {
+    try (var stream = Files.newInputStream(path)) {
+      return parse(stream);
+    }
+  }
+
+  @Override
+  public Client lookup(String key) {
+    Preconditions.checkNotNull(key, "key");
+    return this.clients.get().get(key);
+  }
+}
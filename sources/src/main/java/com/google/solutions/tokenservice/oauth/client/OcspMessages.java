@@ -0,0 +1,687 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoder and decoder for OCSP messages (RFC6960).
+ *
+ * Only supports the subset of OCSP that's needed to query the status
+ * of a single certificate: requests don't use nonces or extensions,
+ * and responses must be basic responses.
+ */
+final class OcspMessages {
+  private static final String SHA1_ALGORITHM = "1.3.14.3.2.26";
+  private static final String AUTHORITY_INFO_ACCESS_EXTENSION = "1.3.6.1.5.5.7.1.1";
+  private static final String OCSP_ACCESS_METHOD = "1.3.6.1.5.5.7.48.1";
+  private static final String BASIC_RESPONSE_TYPE = "1.3.6.1.5.5.7.48.1.1";
+  private static final String OCSP_SIGNING_PURPOSE = "1.3.6.1.5.5.7.3.9";
+
+  /**
+   * Tolerated clock skew between the responder and us.
+   */
+  private static final long MAX_CLOCK_SKEW_SECONDS = 300;
+
+  private static final Map<String, String> SIGNATURE_ALGORITHMS = Map.of(
+    "1.2.840.113549.1.1.5", "SHA1withRSA",
+    "1.2.840.113549.1.1.11", "SHA256withRSA",
+    "1.2.840.113549.1.1.12", "SHA384withRSA",
+    "1.2.840.113549.1.1.13", "SHA512withRSA",
+    "1.2.840.10045.4.1", "SHA1withECDSA",
+    "1.2.840.10045.4.3.2", "SHA256withECDSA",
+    "1.2.840.10045.4.3.3", "SHA384withECDSA",
+    "1.2.840.10045.4.3.4", "SHA512withECDSA",
+    "1.3.101.112", "Ed25519");
+
+  private static final DateTimeFormatter GENERALIZED_TIME =
+    DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+  private static final int TAG_INTEGER = 0x02;
+  private static final int TAG_BIT_STRING = 0x03;
+  private static final int TAG_OCTET_STRING = 0x04;
+  private static final int TAG_NULL = 0x05;
+  private static final int TAG_OID = 0x06;
+  private static final int TAG_ENUMERATED = 0x0A;
+  private static final int TAG_GENERALIZED_TIME = 0x18;
+  private static final int TAG_SEQUENCE = 0x30;
+  private static final int TAG_CONTEXT_0 = 0xA0;
+  private static final int TAG_CONTEXT_1 = 0xA1;
+  private static final int TAG_CONTEXT_2 = 0xA2;
+  private static final int TAG_CERT_STATUS_GOOD = 0x80;
+  private static final int TAG_CERT_STATUS_REVOKED = 0xA1;
+  private static final int TAG_CERT_STATUS_UNKNOWN = 0x82;
+  private static final int TAG_URI = 0x86;
+
+  private OcspMessages() {}
+
+  private static HashCode sha1(byte[] data) {
+    try {
+      return HashCode.fromBytes(MessageDigest.getInstance("SHA-1").digest(data));
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return SHA-1 hash of a certificate's public key, excluding the
+   * algorithm identifier.
+   */
+  private static HashCode publicKeyHash(X509Certificate certificate) throws IOException {
+    //
+    // SubjectPublicKeyInfo ::= SEQUENCE { algorithm AlgorithmIdentifier, subjectPublicKey BIT STRING }
+    //
+    var publicKeyInfo = new DerReader(certificate.getPublicKey().getEncoded())
+      .next(TAG_SEQUENCE)
+      .reader();
+    publicKeyInfo.next(TAG_SEQUENCE);
+
+    return sha1(publicKeyInfo.next(TAG_BIT_STRING).bitString());
+  }
+
+  /**
+   * Identify a certificate in the way that OCSP requires.
+   */
+  static CertificateId certificateId(
+    X509Certificate certificate,
+    X509Certificate issuer
+  ) throws IOException {
+    Preconditions.checkNotNull(certificate, "certificate");
+    Preconditions.checkNotNull(issuer, "issuer");
+
+    return new CertificateId(
+      sha1(issuer.getSubjectX500Principal().getEncoded()),
+      publicKeyHash(issuer),
+      certificate.getSerialNumber());
+  }
+
+  /**
+   * Get the URL of the OCSP responder from the certificate's authority
+   * information access extension.
+   *
+   * @return URL, or null if the certificate doesn't specify a responder.
+   */
+  static String responderUrl(X509Certificate certificate) throws IOException {
+    Preconditions.checkNotNull(certificate, "certificate");
+
+    var extension = certificate.getExtensionValue(AUTHORITY_INFO_ACCESS_EXTENSION);
+    if (extension == null) {
+      return null;
+    }
+
+    //
+    // AuthorityInfoAccessSyntax ::= SEQUENCE OF AccessDescription
+    // AccessDescription ::= SEQUENCE { accessMethod OID, accessLocation GeneralName }
+    //
+    var descriptions = new DerReader(new DerReader(extension).next(TAG_OCTET_STRING).content())
+      .next(TAG_SEQUENCE)
+      .reader();
+    while (descriptions.hasMore()) {
+      var description = descriptions.next(TAG_SEQUENCE).reader();
+      var method = description.next(TAG_OID).oid();
+      var location = description.next();
+
+      if (OCSP_ACCESS_METHOD.equals(method) && location.tag() == TAG_URI) {
+        var url = new String(location.content(), StandardCharsets.US_ASCII);
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+          return url;
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Encode a request for a single certificate.
+   */
+  static byte[] encodeRequest(CertificateId id) {
+    Preconditions.checkNotNull(id, "id");
+
+    //
+    // OCSPRequest ::= SEQUENCE { tbsRequest TBSRequest }
+    // TBSRequest ::= SEQUENCE { requestList SEQUENCE OF Request }
+    // Request ::= SEQUENCE { reqCert CertID }
+    //
+    return DerWriter.encode(TAG_SEQUENCE,
+      DerWriter.encode(TAG_SEQUENCE,
+        DerWriter.encode(TAG_SEQUENCE,
+          DerWriter.encode(TAG_SEQUENCE,
+            id.encode()))));
+  }
+
+  private static Instant parseTime(DerElement element) throws IOException {
+    var value = new String(element.content(), StandardCharsets.US_ASCII);
+    if (value.length() < 15 || !value.endsWith("Z")) {
+      throw new IOException(String.format("The time '%s' is malformed", value));
+    }
+
+    try {
+      //
+      // Ignore fractional seconds, if any.
+      //
+      return LocalDateTime
+        .parse(value.substring(0, 14), GENERALIZED_TIME)
+        .toInstant(ZoneOffset.UTC);
+    }
+    catch (DateTimeParseException e) {
+      throw new IOException(String.format("The time '%s' is malformed", value), e);
+    }
+  }
+
+  private static boolean isResponderFor(
+    DerElement responderId,
+    X509Certificate certificate
+  ) throws IOException {
+    //
+    // ResponderID ::= CHOICE { byName [1] Name, byKey [2] KeyHash }
+    //
+    if (responderId.tag() == TAG_CONTEXT_1) {
+      return Arrays.equals(
+        responderId.content(),
+        certificate.getSubjectX500Principal().getEncoded());
+    }
+    else if (responderId.tag() == TAG_CONTEXT_2) {
+      return Arrays.equals(
+        new DerReader(responderId.content()).next(TAG_OCTET_STRING).content(),
+        publicKeyHash(certificate).asBytes());
+    }
+    else {
+      throw new IOException("The responder ID is malformed");
+    }
+  }
+
+  /**
+   * Find the certificate that signed the response. That's either the
+   * issuer itself, or a responder that the issuer delegated to.
+   */
+  private static X509Certificate findSigner(
+    DerElement responderId,
+    List<X509Certificate> certificates,
+    X509Certificate issuer,
+    Instant now
+  ) throws IOException {
+    if (isResponderFor(responderId, issuer)) {
+      return issuer;
+    }
+
+    for (var certificate : certificates) {
+      if (!isResponderFor(responderId, certificate)) {
+        continue;
+      }
+
+      try {
+        certificate.verify(issuer.getPublicKey());
+        certificate.checkValidity(Date.from(now));
+
+        var purposes = certificate.getExtendedKeyUsage();
+        if (purposes == null || !purposes.contains(OCSP_SIGNING_PURPOSE)) {
+          throw new IOException(
+            "The responder certificate is not authorized to sign OCSP responses");
+        }
+
+        return certificate;
+      }
+      catch (CertificateParsingException e) {
+        throw new IOException("The responder certificate is malformed", e);
+      }
+      catch (GeneralSecurityException e) {
+        throw new IOException("The responder certificate was not issued by the issuer", e);
+      }
+    }
+
+    throw new IOException("The response was not signed by the issuer or an authorized responder");
+  }
+
+  /**
+   * Decode and verify a response.
+   *
+   * @param response DER-encoded response.
+   * @param id certificate that the response is expected to cover.
+   * @param issuer issuer of the certificate.
+   * @param now current time.
+   * @throws IOException if the response is malformed, unsuccessful,
+   * doesn't cover the certificate, isn't current, or isn't properly signed.
+   */
+  static Response decodeResponse(
+    byte[] response,
+    CertificateId id,
+    X509Certificate issuer,
+    Instant now
+  ) throws IOException {
+    Preconditions.checkNotNull(response, "response");
+    Preconditions.checkNotNull(id, "id");
+    Preconditions.checkNotNull(issuer, "issuer");
+
+    //
+    // OCSPResponse ::= SEQUENCE {
+    //   responseStatus ENUMERATED,
+    //   responseBytes [0] EXPLICIT ResponseBytes OPTIONAL }
+    //
+    var ocspResponse = new DerReader(response).next(TAG_SEQUENCE).reader();
+    var status = ocspResponse.next(TAG_ENUMERATED).integer().intValue();
+    if (status != 0) {
+      throw new IOException(String.format("The responder returned status %d", status));
+    }
+
+    //
+    // ResponseBytes ::= SEQUENCE { responseType OID, response OCTET STRING }
+    //
+    var responseBytes = ocspResponse.next(TAG_CONTEXT_0).reader().next(TAG_SEQUENCE).reader();
+    if (!BASIC_RESPONSE_TYPE.equals(responseBytes.next(TAG_OID).oid())) {
+      throw new IOException("The response is not a basic OCSP response");
+    }
+
+    //
+    // BasicOCSPResponse ::= SEQUENCE {
+    //   tbsResponseData ResponseData,
+    //   signatureAlgorithm AlgorithmIdentifier,
+    //   signature BIT STRING,
+    //   certs [0] EXPLICIT SEQUENCE OF Certificate OPTIONAL }
+    //
+    var basicResponse = new DerReader(responseBytes.next(TAG_OCTET_STRING).content())
+      .next(TAG_SEQUENCE)
+      .reader();
+    var tbsResponseData = basicResponse.next(TAG_SEQUENCE);
+    var signatureAlgorithm = basicResponse.next(TAG_SEQUENCE).reader().next(TAG_OID).oid();
+    var signature = basicResponse.next(TAG_BIT_STRING).bitString();
+
+    var certificates = new ArrayList<X509Certificate>();
+    if (basicResponse.hasMore() && basicResponse.peekTag() == TAG_CONTEXT_0) {
+      var encodedCertificates = basicResponse.next(TAG_CONTEXT_0).reader().next(TAG_SEQUENCE).reader();
+      while (encodedCertificates.hasMore()) {
+        try {
+          certificates.add((X509Certificate)CertificateFactory
+            .getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(
+              encodedCertificates.next(TAG_SEQUENCE).encoded())));
+        }
+        catch (GeneralSecurityException e) {
+          throw new IOException("The response contains a malformed certificate", e);
+        }
+      }
+    }
+
+    //
+    // ResponseData ::= SEQUENCE {
+    //   version [0] EXPLICIT Version DEFAULT v1,
+    //   responderID ResponderID,
+    //   producedAt GeneralizedTime,
+    //   responses SEQUENCE OF SingleResponse,
+    //   responseExtensions [1] EXPLICIT Extensions OPTIONAL }
+    //
+    var responseData = tbsResponseData.reader();
+    if (responseData.peekTag() == TAG_CONTEXT_0) {
+      responseData.next();
+    }
+
+    var responderId = responseData.next();
+    responseData.next(TAG_GENERALIZED_TIME);
+    var singleResponses = responseData.next(TAG_SEQUENCE).reader();
+
+    //
+    // Verify the signature before looking at the contents.
+    //
+    var signer = findSigner(responderId, certificates, issuer, now);
+    var algorithm = SIGNATURE_ALGORITHMS.get(signatureAlgorithm);
+    if (algorithm == null) {
+      throw new IOException(
+        String.format("The signature algorithm %s is not supported", signatureAlgorithm));
+    }
+
+    try {
+      var verifier = Signature.getInstance(algorithm);
+      verifier.initVerify(signer.getPublicKey());
+      verifier.update(tbsResponseData.encoded());
+      if (!verifier.verify(signature)) {
+        throw new IOException("The signature of the response is invalid");
+      }
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("Verifying the signature of the response failed", e);
+    }
+
+    //
+    // SingleResponse ::= SEQUENCE {
+    //   certID CertID,
+    //   certStatus CertStatus,
+    //   thisUpdate GeneralizedTime,
+    //   nextUpdate [0] EXPLICIT GeneralizedTime OPTIONAL,
+    //   singleExtensions [1] EXPLICIT Extensions OPTIONAL }
+    //
+    while (singleResponses.hasMore()) {
+      var singleResponse = singleResponses.next(TAG_SEQUENCE).reader();
+      if (!id.equals(CertificateId.decode(singleResponse.next(TAG_SEQUENCE)))) {
+        continue;
+      }
+
+      var certStatus = switch (singleResponse.next().tag()) {
+        case TAG_CERT_STATUS_GOOD -> Status.GOOD;
+        case TAG_CERT_STATUS_REVOKED -> Status.REVOKED;
+        case TAG_CERT_STATUS_UNKNOWN -> Status.UNKNOWN;
+        default -> throw new IOException("The certificate status is malformed");
+      };
+
+      var thisUpdate = parseTime(singleResponse.next(TAG_GENERALIZED_TIME));
+      Instant nextUpdate = null;
+      if (singleResponse.hasMore() && singleResponse.peekTag() == TAG_CONTEXT_0) {
+        nextUpdate = parseTime(singleResponse.next(TAG_CONTEXT_0).reader().next(TAG_GENERALIZED_TIME));
+      }
+
+      if (thisUpdate.isAfter(now.plusSeconds(MAX_CLOCK_SKEW_SECONDS))) {
+        throw new IOException("The response is not valid yet");
+      }
+      else if (nextUpdate != null && nextUpdate.isBefore(now.minusSeconds(MAX_CLOCK_SKEW_SECONDS))) {
+        throw new IOException("The response has expired");
+      }
+
+      return new Response(certStatus, thisUpdate, nextUpdate);
+    }
+
+    throw new IOException("The response does not cover the certificate");
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  enum Status {
+    GOOD,
+    REVOKED,
+    UNKNOWN
+  }
+
+  /**
+   * Status of a certificate, as reported by a responder.
+   *
+   * @param status certificate status.
+   * @param thisUpdate time at which the status was known to be correct.
+   * @param nextUpdate time at which newer information will be available,
+   *                   null if newer information is always available.
+   */
+  record Response(
+    Status status,
+    Instant thisUpdate,
+    Instant nextUpdate
+  ) {}
+
+  /**
+   * Identifies a certificate by its issuer and serial number.
+   *
+   * @param issuerNameHash SHA-1 hash of the issuer's name.
+   * @param issuerKeyHash SHA-1 hash of the issuer's public key.
+   * @param serialNumber serial number of the certificate.
+   */
+  record CertificateId(
+    HashCode issuerNameHash,
+    HashCode issuerKeyHash,
+    BigInteger serialNumber
+  ) {
+    /**
+     * CertID ::= SEQUENCE {
+     *   hashAlgorithm AlgorithmIdentifier,
+     *   issuerNameHash OCTET STRING,
+     *   issuerKeyHash OCTET STRING,
+     *   serialNumber CertificateSerialNumber }
+     */
+    byte[] encode() {
+      return DerWriter.encode(TAG_SEQUENCE,
+        DerWriter.encode(TAG_SEQUENCE,
+          DerWriter.encodeOid(SHA1_ALGORITHM),
+          DerWriter.encode(TAG_NULL)),
+        DerWriter.encode(TAG_OCTET_STRING, this.issuerNameHash.asBytes()),
+        DerWriter.encode(TAG_OCTET_STRING, this.issuerKeyHash.asBytes()),
+        DerWriter.encode(TAG_INTEGER, this.serialNumber.toByteArray()));
+    }
+
+    static CertificateId decode(DerElement element) throws IOException {
+      var reader = element.reader();
+      if (!SHA1_ALGORITHM.equals(reader.next(TAG_SEQUENCE).reader().next(TAG_OID).oid())) {
+        //
+        // We always use SHA-1, so this can't be a response to our request.
+        //
+        return null;
+      }
+
+      return new CertificateId(
+        HashCode.fromBytes(reader.next(TAG_OCTET_STRING).content()),
+        HashCode.fromBytes(reader.next(TAG_OCTET_STRING).content()),
+        reader.next(TAG_INTEGER).integer());
+    }
+  }
+
+  /**
+   * DER-encoded element.
+   */
+  private record DerElement(
+    int tag,
+    byte[] buffer,
+    int start,
+    int contentStart,
+    int end
+  ) {
+    byte[] encoded() {
+      return Arrays.copyOfRange(this.buffer, this.start, this.end);
+    }
+
+    byte[] content() {
+      return Arrays.copyOfRange(this.buffer, this.contentStart, this.end);
+    }
+
+    DerReader reader() {
+      return new DerReader(this.buffer, this.contentStart, this.end);
+    }
+
+    BigInteger integer() throws IOException {
+      if (this.contentStart == this.end) {
+        throw new IOException("The integer is empty");
+      }
+
+      return new BigInteger(content());
+    }
+
+    byte[] bitString() throws IOException {
+      if (this.contentStart == this.end || this.buffer[this.contentStart] != 0) {
+        throw new IOException("The bit string is malformed");
+      }
+
+      return Arrays.copyOfRange(this.buffer, this.contentStart + 1, this.end);
+    }
+
+    String oid() throws IOException {
+      if (this.contentStart == this.end) {
+        throw new IOException("The OID is empty");
+      }
+
+      var first = this.buffer[this.contentStart] & 0xFF;
+      var oid = new StringBuilder()
+        .append(Math.min(first / 40, 2))
+        .append('.')
+        .append(first - Math.min(first / 40, 2) * 40);
+
+      long value = 0;
+      for (int i = this.contentStart + 1; i < this.end; i++) {
+        var b = this.buffer[i] & 0xFF;
+        value = (value << 7) | (b & 0x7F);
+        if ((b & 0x80) == 0) {
+          oid.append('.').append(value);
+          value = 0;
+        }
+      }
+
+      return oid.toString();
+    }
+  }
+
+  /**
+   * Reader for a sequence of DER-encoded elements.
+   */
+  private static class DerReader {
+    private final byte[] buffer;
+    private final int end;
+    private int offset;
+
+    DerReader(byte[] buffer, int offset, int end) {
+      this.buffer = buffer;
+      this.offset = offset;
+      this.end = end;
+    }
+
+    DerReader(byte[] buffer) {
+      this(buffer, 0, buffer.length);
+    }
+
+    boolean hasMore() {
+      return this.offset < this.end;
+    }
+
+    int peekTag() {
+      return this.buffer[this.offset] & 0xFF;
+    }
+
+    DerElement next() throws IOException {
+      if (this.offset + 2 > this.end) {
+        throw new IOException("The message is truncated");
+      }
+
+      var start = this.offset;
+      var tag = this.buffer[this.offset++] & 0xFF;
+      if ((tag & 0x1F) == 0x1F) {
+        throw new IOException("The message uses an unsupported tag");
+      }
+
+      long length = this.buffer[this.offset++] & 0xFF;
+      if (length > 0x80 && length <= 0x84) {
+        var lengthBytes = (int)(length & 0x7F);
+        if (this.offset + lengthBytes > this.end) {
+          throw new IOException("The message is truncated");
+        }
+
+        length = 0;
+        for (int i = 0; i < lengthBytes; i++) {
+          length = (length << 8) | (this.buffer[this.offset++] & 0xFF);
+        }
+      }
+      else if (length >= 0x80) {
+        throw new IOException("The message uses an unsupported length encoding");
+      }
+
+      if (length > this.end - this.offset) {
+        throw new IOException("The message is truncated");
+      }
+
+      var contentStart = this.offset;
+      this.offset += (int)length;
+
+      return new DerElement(tag, this.buffer, start, contentStart, this.offset);
+    }
+
+    DerElement next(int expectedTag) throws IOException {
+      var element = next();
+      if (element.tag() != expectedTag) {
+        throw new IOException(String.format(
+          "The message is malformed, expected tag 0x%02X but found 0x%02X",
+          expectedTag,
+          element.tag()));
+      }
+
+      return element;
+    }
+  }
+
+  /**
+   * Writer for DER-encoded elements.
+   */
+  private static class DerWriter {
+    static byte[] encode(int tag, byte[]... contents) {
+      var content = new ByteArrayOutputStream();
+      for (var c : contents) {
+        content.writeBytes(c);
+      }
+
+      var buffer = new ByteArrayOutputStream();
+      buffer.write(tag);
+
+      var length = content.size();
+      if (length < 0x80) {
+        buffer.write(length);
+      }
+      else {
+        var lengthBytes = BigInteger.valueOf(length).toByteArray();
+        var offset = lengthBytes[0] == 0 ? 1 : 0;
+        buffer.write(0x80 | (lengthBytes.length - offset));
+        buffer.write(lengthBytes, offset, lengthBytes.length - offset);
+      }
+
+      buffer.writeBytes(content.toByteArray());
+      return buffer.toByteArray();
+    }
+
+    static byte[] encodeOid(String oid) {
+      var components = Arrays.stream(oid.split("\\."))
+        .mapToLong(Long::parseLong)
+        .toArray();
+
+      var content = new ByteArrayOutputStream();
+      content.write((int)(components[0] * 40 + components[1]));
+      for (int i = 2; i < components.length; i++) {
+        var value = components[i];
+        var groups = new ArrayList<Integer>();
+        do {
+          groups.add(0, (int)(value & 0x7F));
+          value >>>= 7;
+        } while (value != 0);
+
+        for (int j = 0; j < groups.size(); j++) {
+          content.write(groups.get(j) | (j < groups.size() - 1 ? 0x80 : 0));
+        }
+      }
+
+      return encode(TAG_OID, content.toByteArray());
+    }
+  }
+}
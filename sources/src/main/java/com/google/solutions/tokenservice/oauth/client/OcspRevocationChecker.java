@@ -0,0 +1,371 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks the revocation status of client certificates using OCSP.
+ *
+ * Responses are cached until their nextUpdate time, and refreshed in
+ * the background before they expire, so that only the first request
+ * of a client has to wait for the responder. Concurrent queries for
+ * the same certificate are coalesced.
+ *
+ * Certificates that don't specify a responder (and certificates for
+ * which no certificate chain is available) aren't checked.
+ */
+public class OcspRevocationChecker {
+  /**
+   * Time to cache responses that don't specify a nextUpdate time.
+   */
+  static final Duration DEFAULT_RESPONSE_LIFETIME = Duration.ofMinutes(5);
+
+  /**
+   * Time to wait before querying the responder again after a failure.
+   */
+  static final Duration RETRY_INTERVAL = Duration.ofSeconds(30);
+
+  private final Options options;
+  private final HttpClient httpClient;
+  private final Clock clock;
+  private final LogAdapter logAdapter;
+
+  /**
+   * Cached statuses, by certificate.
+   */
+  private final Cache<OcspMessages.CertificateId, CachedStatus> cache;
+
+  /**
+   * Pending queries, by certificate.
+   */
+  private final ConcurrentHashMap<OcspMessages.CertificateId, CompletableFuture<CachedStatus>> pendingQueries =
+    new ConcurrentHashMap<>();
+
+  OcspRevocationChecker(
+    Options options,
+    HttpClient httpClient,
+    Clock clock,
+    LogAdapter logAdapter
+  ) {
+    Preconditions.checkNotNull(options, "options");
+    Preconditions.checkNotNull(httpClient, "httpClient");
+    Preconditions.checkNotNull(clock, "clock");
+    Preconditions.checkNotNull(logAdapter, "logAdapter");
+
+    this.options = options;
+    this.httpClient = httpClient;
+    this.clock = clock;
+    this.logAdapter = logAdapter;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(options.maxEntries())
+      .build();
+  }
+
+  public OcspRevocationChecker(
+    Options options,
+    LogAdapter logAdapter
+  ) {
+    this(
+      options,
+      HttpClient.newBuilder()
+        .connectTimeout(options.timeout())
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build(),
+      Clock.systemUTC(),
+      logAdapter);
+  }
+
+  private CachedStatus toCachedStatus(OcspMessages.Response response, Instant now) {
+    var expiry = response.nextUpdate() != null
+      ? response.nextUpdate()
+      : now.plus(DEFAULT_RESPONSE_LIFETIME);
+
+    //
+    // Refresh the response once three quarters of its lifetime
+    // have passed.
+    //
+    var refreshAfter = now.plus(Duration.between(now, expiry).multipliedBy(3).dividedBy(4));
+
+    return new CachedStatus(response.status(), null, refreshAfter, expiry);
+  }
+
+  /**
+   * Query the responder, unless there's already a query for the same
+   * certificate in flight.
+   */
+  private CompletableFuture<CachedStatus> query(
+    OcspMessages.CertificateId id,
+    URI responderUrl,
+    X509Certificate issuer
+  ) {
+    var future = new CompletableFuture<CachedStatus>();
+    var pendingQuery = this.pendingQueries.putIfAbsent(id, future);
+    if (pendingQuery != null) {
+      return pendingQuery;
+    }
+
+    var request = HttpRequest.newBuilder(responderUrl)
+      .timeout(this.options.timeout())
+      .header("Content-Type", "application/ocsp-request")
+      .header("Accept", "application/ocsp-response")
+      .POST(HttpRequest.BodyPublishers.ofByteArray(OcspMessages.encodeRequest(id)))
+      .build();
+
+    this.httpClient
+      .sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+      .thenApply(response -> {
+        if (response.statusCode() != 200) {
+          throw new CompletionException(new IOException(
+            String.format("The responder returned HTTP status %d", response.statusCode())));
+        }
+
+        var now = this.clock.instant();
+        try {
+          return toCachedStatus(
+            OcspMessages.decodeResponse(response.body(), id, issuer, now),
+            now);
+        }
+        catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      })
+      .exceptionally(e -> {
+        var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        var now = this.clock.instant();
+
+        this.logAdapter
+          .newWarningEntry(
+            LogEvents.RUNTIME_OCSP,
+            String.format(
+              "Querying the OCSP responder %s for certificate %s failed: %s",
+              responderUrl,
+              id.serialNumber().toString(16),
+              Exceptions.getFullMessage(cause)))
+          .write();
+
+        //
+        // Keep using a previous response until it expires, but don't
+        // retry immediately.
+        //
+        var previous = this.cache.getIfPresent(id);
+        if (previous != null && previous.status() != null && now.isBefore(previous.expiry())) {
+          var retryAfter = now.plus(RETRY_INTERVAL);
+          return new CachedStatus(
+            previous.status(),
+            null,
+            retryAfter.isBefore(previous.expiry()) ? retryAfter : previous.expiry(),
+            previous.expiry());
+        }
+        else {
+          return new CachedStatus(
+            null,
+            Exceptions.getFullMessage(cause),
+            now.plus(RETRY_INTERVAL),
+            now.plus(RETRY_INTERVAL));
+        }
+      })
+      .thenAccept(status -> {
+        this.cache.put(id, status);
+        this.pendingQueries.remove(id, future);
+        future.complete(status);
+      });
+
+    return future;
+  }
+
+  private boolean onFailure(X509Certificate certificate, String reason) {
+    if (this.options.failurePolicy() == FailurePolicy.HARD_FAIL) {
+      return true;
+    }
+    else {
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_OCSP,
+          String.format(
+            "The revocation status of certificate %s is unavailable, allowing access: %s",
+            certificate.getSerialNumber().toString(16),
+            reason))
+        .write();
+
+      return false;
+    }
+  }
+
+  /**
+   * Check if a certificate has been revoked.
+   *
+   * @param chain certificate chain, starting with the certificate to
+   *              check, followed by its issuer.
+   * @return true if the certificate has been revoked, or if its status
+   * is unavailable and the policy is to fail hard.
+   */
+  public boolean isRevoked(List<X509Certificate> chain) {
+    Preconditions.checkNotNull(chain, "chain");
+
+    if (chain.isEmpty()) {
+      //
+      // The certificate isn't available, for example because mTLS
+      // was terminated by the load balancer.
+      //
+      return false;
+    }
+
+    var certificate = chain.get(0);
+
+    URI responderUrl;
+    OcspMessages.CertificateId id;
+    try {
+      if (this.options.responderUrl() != null) {
+        responderUrl = this.options.responderUrl();
+      }
+      else {
+        var url = OcspMessages.responderUrl(certificate);
+        if (url == null) {
+          //
+          // The CA doesn't publish OCSP.
+          //
+          return false;
+        }
+
+        responderUrl = URI.create(url);
+      }
+
+      if (chain.size() < 2) {
+        return onFailure(certificate, "The issuer certificate is unavailable");
+      }
+
+      id = OcspMessages.certificateId(certificate, chain.get(1));
+    }
+    catch (IOException | IllegalArgumentException e) {
+      return onFailure(certificate, Exceptions.getFullMessage(e));
+    }
+
+    var now = this.clock.instant();
+    var status = this.cache.getIfPresent(id);
+    if (status != null && now.isBefore(status.expiry())) {
+      if (!now.isBefore(status.refreshAfter())) {
+        //
+        // Refresh in the background, and keep using the cached status
+        // in the meantime.
+        //
+        query(id, responderUrl, chain.get(1));
+      }
+    }
+    else {
+      try {
+        status = query(id, responderUrl, chain.get(1))
+          .get(this.options.timeout().toMillis(), TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return onFailure(certificate, "The query was interrupted");
+      }
+      catch (ExecutionException | TimeoutException e) {
+        return onFailure(certificate, "The responder did not respond in time");
+      }
+    }
+
+    if (status.status() == OcspMessages.Status.GOOD) {
+      return false;
+    }
+    else if (status.status() == OcspMessages.Status.REVOKED) {
+      return true;
+    }
+    else if (status.status() == OcspMessages.Status.UNKNOWN) {
+      return onFailure(certificate, "The responder doesn't know the certificate");
+    }
+    else {
+      return onFailure(certificate, status.error());
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * @param status status, null if querying the responder failed.
+   * @param error error message, if querying the responder failed.
+   * @param refreshAfter time after which to query the responder again.
+   * @param expiry time after which the status must not be used anymore.
+   */
+  private record CachedStatus(
+    OcspMessages.Status status,
+    String error,
+    Instant refreshAfter,
+    Instant expiry
+  ) {}
+
+  /**
+   * Determines what happens if the revocation status of a certificate
+   * is unavailable.
+   */
+  public enum FailurePolicy {
+    /**
+     * Allow the certificate.
+     */
+    SOFT_FAIL,
+
+    /**
+     * Reject the certificate.
+     */
+    HARD_FAIL
+  }
+
+  /**
+   * @param responderUrl URL of responder to query, or null to use the
+   *                     responder specified by each certificate.
+   * @param failurePolicy policy to apply when a certificate's status is
+   *                      unavailable.
+   * @param timeout time to wait for the responder.
+   * @param maxEntries maximum number of responses to cache.
+   */
+  public record Options(
+    URI responderUrl,
+    FailurePolicy failurePolicy,
+    Duration timeout,
+    long maxEntries
+  ) {}
+}
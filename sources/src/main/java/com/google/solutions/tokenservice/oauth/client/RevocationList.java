@@ -0,0 +1,405 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Set of serial numbers of revoked certificates.
+ *
+ * Most lookups are for certificates that haven't been revoked, so
+ * lookups first consult a Bloom filter, which rules out most of these
+ * serial numbers using a few hash probes. Positives are confirmed
+ * using an exact, sorted set that is kept in a memory-mapped file
+ * instead of the heap.
+ *
+ * Serial numbers can be up to 256 bits long, which covers the 20 octets
+ * permitted by RFC 5280 with plenty of room for non-conforming CAs.
+ */
+public class RevocationList {
+  private static final int WORDS = 4;
+  private static final int RECORD_LENGTH = WORDS * Long.BYTES;
+
+  /**
+   * Bits per entry and number of hash functions, which yields a false
+   * positive rate of about 1%.
+   */
+  private static final int BLOOM_BITS_PER_ENTRY = 10;
+  private static final int BLOOM_HASHES = 7;
+
+  private final long[] bloomFilter;
+  private final long bloomFilterBits;
+
+  /**
+   * Sorted serial numbers, each stored as 4 big-endian words.
+   */
+  private final ByteBuffer serialNumbers;
+  private final int size;
+
+  private RevocationList(long[] words, int count) throws IOException {
+    this.bloomFilterBits = Math.max(64, (long)count * BLOOM_BITS_PER_ENTRY);
+    this.bloomFilter = new long[(int)((this.bloomFilterBits + 63) / 64)];
+
+    var records = new ArrayList<long[]>(count);
+    for (int i = 0; i < count; i++) {
+      records.add(Arrays.copyOfRange(words, i * WORDS, (i + 1) * WORDS));
+    }
+
+    records.sort(Arrays::compareUnsigned);
+
+    //
+    // Write distinct serial numbers to a temporary file and map it.
+    //
+    var file = Files.createTempFile("revocation", ".bin");
+    try (var channel = FileChannel.open(
+      file,
+      StandardOpenOption.READ,
+      StandardOpenOption.WRITE,
+      StandardOpenOption.DELETE_ON_CLOSE)) {
+      var buffer = ByteBuffer.allocate(64 * 1024);
+      long[] previous = null;
+      var size = 0;
+
+      for (var record : records) {
+        if (previous != null && Arrays.equals(previous, record)) {
+          continue;
+        }
+
+        if (buffer.remaining() < RECORD_LENGTH) {
+          writeFully(channel, buffer.flip());
+          buffer.clear();
+        }
+
+        for (var word : record) {
+          buffer.putLong(word);
+        }
+
+        addToBloomFilter(record[0], record[1], record[2], record[3]);
+        previous = record;
+        size++;
+      }
+
+      writeFully(channel, buffer.flip());
+
+      //
+      // The mapping remains valid after the channel is closed and
+      // the file is deleted.
+      //
+      this.serialNumbers = size > 0
+        ? channel.map(FileChannel.MapMode.READ_ONLY, 0, (long)size * RECORD_LENGTH)
+        : ByteBuffer.allocate(0);
+      this.size = size;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Create a revocation list from a list of hex-encoded serial numbers.
+   *
+   * @throws IllegalArgumentException if a serial number is malformed.
+   */
+  public static RevocationList of(CharSequence... serialNumbers) throws IOException {
+    var words = new long[serialNumbers.length * WORDS];
+    for (int i = 0; i < serialNumbers.length; i++) {
+      if (!decode(serialNumbers[i], words, i)) {
+        throw new IllegalArgumentException(
+          String.format("'%s' is not a valid serial number", serialNumbers[i]));
+      }
+    }
+
+    return new RevocationList(words, serialNumbers.length);
+  }
+
+  /**
+   * Load a revocation list from a file. The file can either be an
+   * X.509 CRL (in DER or PEM format), or a text file that contains one
+   * hex-encoded serial number per line. In text files, empty lines and
+   * lines starting with '#' are ignored.
+   *
+   * The file is trusted, so the signature of a CRL isn't verified.
+   *
+   * @throws IOException if the file can't be read or is malformed.
+   */
+  public static RevocationList parse(Path path) throws IOException {
+    var content = Files.readAllBytes(path);
+    var text = new String(content, StandardCharsets.US_ASCII);
+
+    if ((content.length > 0 && content[0] == 0x30) || text.contains("-----BEGIN X509 CRL-----")) {
+      return parseCrl(new ByteArrayInputStream(content));
+    }
+    else {
+      return parseSerialNumbers(new String(content, StandardCharsets.UTF_8));
+    }
+  }
+
+  private static RevocationList parseCrl(InputStream stream) throws IOException {
+    X509CRL crl;
+    try {
+      crl = (X509CRL)CertificateFactory
+        .getInstance("X.509")
+        .generateCRL(new BufferedInputStream(stream));
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("The file does not contain a valid CRL", e);
+    }
+
+    var entries = crl.getRevokedCertificates();
+    if (entries == null) {
+      return new RevocationList(new long[0], 0);
+    }
+
+    var words = new long[entries.size() * WORDS];
+    var count = 0;
+    for (var entry : entries) {
+      if (!decode(entry.getSerialNumber(), words, count)) {
+        throw new IOException(
+          String.format("The CRL contains an invalid serial number: %s", entry.getSerialNumber()));
+      }
+
+      count++;
+    }
+
+    return new RevocationList(words, count);
+  }
+
+  private static RevocationList parseSerialNumbers(String content) throws IOException {
+    var words = new long[64 * WORDS];
+    var count = 0;
+
+    var reader = new BufferedReader(new StringReader(content));
+    String line;
+    for (int lineNumber = 1; (line = reader.readLine()) != null; lineNumber++) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      if (words.length < (count + 1) * WORDS) {
+        words = Arrays.copyOf(words, words.length * 2);
+      }
+
+      if (!decode(line, words, count)) {
+        throw new IOException(
+          String.format("Line %d does not contain a valid serial number", lineNumber));
+      }
+
+      count++;
+    }
+
+    return new RevocationList(words, count);
+  }
+
+  //---------------------------------------------------------------------------
+  // Decoding.
+  //---------------------------------------------------------------------------
+
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    else if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    else if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    else {
+      return -1;
+    }
+  }
+
+  private static boolean decode(BigInteger serialNumber, long[] words, int index) {
+    if (serialNumber.signum() < 0 || serialNumber.bitLength() > WORDS * Long.SIZE) {
+      return false;
+    }
+
+    for (int i = 0; i < WORDS; i++) {
+      words[index * WORDS + WORDS - 1 - i] = serialNumber.shiftRight(i * Long.SIZE).longValue();
+    }
+
+    return true;
+  }
+
+  private static boolean decode(CharSequence serialNumber, long[] words, int index) {
+    //
+    // Parse the serial number as an unsigned, big-endian 256-bit
+    // number. Colons between octets are permitted.
+    //
+    long w0 = 0, w1 = 0, w2 = 0, w3 = 0;
+    var digits = 0;
+    for (int i = 0; i < serialNumber.length(); i++) {
+      var c = serialNumber.charAt(i);
+      if (c == ':') {
+        continue;
+      }
+
+      var value = hexValue(c);
+      if (value < 0 || (w0 >>> 60) != 0) {
+        return false;
+      }
+
+      w0 = (w0 << 4) | (w1 >>> 60);
+      w1 = (w1 << 4) | (w2 >>> 60);
+      w2 = (w2 << 4) | (w3 >>> 60);
+      w3 = (w3 << 4) | value;
+      digits++;
+    }
+
+    if (digits == 0) {
+      return false;
+    }
+
+    words[index * WORDS] = w0;
+    words[index * WORDS + 1] = w1;
+    words[index * WORDS + 2] = w2;
+    words[index * WORDS + 3] = w3;
+    return true;
+  }
+
+  //---------------------------------------------------------------------------
+  // Lookup.
+  //---------------------------------------------------------------------------
+
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+
+  private static long hash(long w0, long w1, long w2, long w3, long seed) {
+    return mix(w3 ^ mix(w2 ^ mix(w1 ^ mix(w0 ^ seed))));
+  }
+
+  private long bloomFilterBit(long hash1, long hash2, int i) {
+    //
+    // Derive the hash functions from two hashes, cf. Kirsch/Mitzenmacher.
+    //
+    return Long.remainderUnsigned(hash1 + i * hash2, this.bloomFilterBits);
+  }
+
+  private void addToBloomFilter(long w0, long w1, long w2, long w3) {
+    var hash1 = hash(w0, w1, w2, w3, 0);
+    var hash2 = hash(w0, w1, w2, w3, 0x9e3779b97f4a7c15L);
+    for (int i = 0; i < BLOOM_HASHES; i++) {
+      var bit = bloomFilterBit(hash1, hash2, i);
+      this.bloomFilter[(int)(bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  private boolean mightContain(long w0, long w1, long w2, long w3) {
+    var hash1 = hash(w0, w1, w2, w3, 0);
+    var hash2 = hash(w0, w1, w2, w3, 0x9e3779b97f4a7c15L);
+    for (int i = 0; i < BLOOM_HASHES; i++) {
+      var bit = bloomFilterBit(hash1, hash2, i);
+      if ((this.bloomFilter[(int)(bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private int compareRecord(int index, long w0, long w1, long w2, long w3) {
+    var offset = index * RECORD_LENGTH;
+    var result = Long.compareUnsigned(this.serialNumbers.getLong(offset), w0);
+    if (result == 0) {
+      result = Long.compareUnsigned(this.serialNumbers.getLong(offset + 8), w1);
+    }
+    if (result == 0) {
+      result = Long.compareUnsigned(this.serialNumbers.getLong(offset + 16), w2);
+    }
+    if (result == 0) {
+      result = Long.compareUnsigned(this.serialNumbers.getLong(offset + 24), w3);
+    }
+    return result;
+  }
+
+  private boolean containsExactly(long w0, long w1, long w2, long w3) {
+    var low = 0;
+    var high = this.size - 1;
+    while (low <= high) {
+      var middle = (low + high) >>> 1;
+      var result = compareRecord(middle, w0, w1, w2, w3);
+      if (result < 0) {
+        low = middle + 1;
+      }
+      else if (result > 0) {
+        high = middle - 1;
+      }
+      else {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Check if a certificate has been revoked.
+   *
+   * @param serialNumber hex-encoded serial number.
+   * @throws IllegalArgumentException if the serial number is malformed.
+   */
+  public boolean isRevoked(CharSequence serialNumber) {
+    Preconditions.checkNotNull(serialNumber, "serialNumber");
+
+    var words = new long[WORDS];
+    if (!decode(serialNumber, words, 0)) {
+      throw new IllegalArgumentException(
+        String.format("'%s' is not a valid serial number", serialNumber));
+    }
+
+    return mightContain(words[0], words[1], words[2], words[3]) &&
+      containsExactly(words[0], words[1], words[2], words[3]);
+  }
+
+  /**
+   * @return number of distinct serial numbers.
+   */
+  public int size() {
+    return this.size;
+  }
+}
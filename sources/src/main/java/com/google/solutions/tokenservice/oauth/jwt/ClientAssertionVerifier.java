@@ -0,0 +1,230 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+import javax.ws.rs.ForbiddenException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Verifies client assertions, as used for private_key_jwt client
+ * authentication.
+ *
+ * Based on RFC7523 (JSON Web Token (JWT) Profile for OAuth 2.0 Client
+ * Authentication and Authorization Grants).
+ */
+public class ClientAssertionVerifier {
+  /**
+   * Clock skew to tolerate when checking timestamps.
+   */
+  static final Duration ALLOWED_CLOCK_SKEW = Duration.ofMinutes(1);
+
+  /**
+   * Supported signature algorithms.
+   */
+  private static final Set<String> ALGORITHMS = Set.of("RS256", "ES256");
+
+  private final ClientKeyRegistry keyRegistry;
+  private final ReplayCache replayCache;
+  private final Clock clock;
+  private final Options options;
+
+  ClientAssertionVerifier(
+    ClientKeyRegistry keyRegistry,
+    ReplayCache replayCache,
+    Clock clock,
+    Options options
+  ) {
+    Preconditions.checkNotNull(keyRegistry, "keyRegistry");
+    Preconditions.checkNotNull(replayCache, "replayCache");
+    Preconditions.checkNotNull(clock, "clock");
+    Preconditions.checkNotNull(options, "options");
+
+    this.keyRegistry = keyRegistry;
+    this.replayCache = replayCache;
+    this.clock = clock;
+    this.options = options;
+  }
+
+  public ClientAssertionVerifier(
+    ClientKeyRegistry keyRegistry,
+    ReplayCache replayCache,
+    Options options
+  ) {
+    this(keyRegistry, replayCache, Clock.systemUTC(), options);
+  }
+
+  /**
+   * Verify a client assertion.
+   *
+   * @param assertion JWT-encoded assertion.
+   * @param clientId client ID passed in the request, or null.
+   * @param audiences acceptable audiences.
+   * @return verified assertion.
+   * @throws ForbiddenException if the assertion is invalid.
+   */
+  public VerifiedAssertion verify(
+    String assertion,
+    String clientId,
+    Collection<String> audiences
+  ) {
+    Preconditions.checkNotNull(assertion, "assertion");
+    Preconditions.checkNotNull(audiences, "audiences");
+
+    JsonWebSignature jws;
+    try {
+      jws = JsonWebSignature
+        .parser(GsonFactory.getDefaultInstance())
+        .parse(assertion);
+    }
+    catch (IOException | IllegalArgumentException e) {
+      throw new ForbiddenException("The client assertion is malformed");
+    }
+
+    var algorithm = jws.getHeader().getAlgorithm();
+    if (algorithm == null || !ALGORITHMS.contains(algorithm)) {
+      throw new ForbiddenException(
+        String.format("The client assertion uses an unsupported algorithm: %s", algorithm));
+    }
+
+    //
+    // The issuer and subject must both be the client ID.
+    //
+    var payload = jws.getPayload();
+    var issuer = payload.getIssuer();
+    if (Strings.isNullOrEmpty(issuer) || !issuer.equals(payload.getSubject())) {
+      throw new ForbiddenException(
+        "The client assertion must contain matching 'iss' and 'sub' claims");
+    }
+
+    if (clientId != null && !clientId.equals(issuer)) {
+      throw new ForbiddenException(
+        "The client assertion was issued for a different client");
+    }
+
+    var audience = payload.getAudienceAsList();
+    if (audience == null || audience.stream().noneMatch(audiences::contains)) {
+      throw new ForbiddenException(
+        "The client assertion was issued for a different audience");
+    }
+
+    //
+    // Require an expiry, and limit how far in the future it can be
+    // so that the replay cache doesn't need to remember IDs forever.
+    //
+    var now = this.clock.instant();
+    if (payload.getExpirationTimeSeconds() == null) {
+      throw new ForbiddenException("The client assertion must contain an 'exp' claim");
+    }
+
+    var expiry = Instant.ofEpochSecond(payload.getExpirationTimeSeconds());
+    if (now.isAfter(expiry.plus(ALLOWED_CLOCK_SKEW))) {
+      throw new ForbiddenException("The client assertion has expired");
+    }
+    else if (expiry.isAfter(now.plus(this.options.maxLifetime()).plus(ALLOWED_CLOCK_SKEW))) {
+      throw new ForbiddenException(
+        String.format(
+          "The client assertion must not be valid for more than %d seconds",
+          this.options.maxLifetime().toSeconds()));
+    }
+    else if (payload.getNotBeforeTimeSeconds() != null &&
+      now.plus(ALLOWED_CLOCK_SKEW).isBefore(Instant.ofEpochSecond(payload.getNotBeforeTimeSeconds()))) {
+      throw new ForbiddenException("The client assertion is not valid yet");
+    }
+
+    var tokenId = payload.getJwtId();
+    if (Strings.isNullOrEmpty(tokenId)) {
+      throw new ForbiddenException("The client assertion must contain a 'jti' claim");
+    }
+
+    //
+    // Verify the signature. Do this last because it's the most
+    // expensive check.
+    //
+    var keyId = jws.getHeader().getKeyId();
+    try {
+      var key = this.keyRegistry.find(issuer, keyId, algorithm);
+      if (key == null) {
+        throw new ForbiddenException(
+          String.format("The client '%s' has no registered key that matches the assertion", issuer));
+      }
+
+      if (!jws.verifySignature(key)) {
+        throw new ForbiddenException("The signature of the client assertion is invalid");
+      }
+    }
+    catch (GeneralSecurityException e) {
+      throw new ForbiddenException("The signature of the client assertion is invalid");
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(
+        String.format("Looking up the keys of client '%s' failed", issuer),
+        e);
+    }
+
+    //
+    // Only record the ID once we know that the assertion is genuine,
+    // so that nobody can block other clients' IDs. IDs only need to be
+    // unique per client.
+    //
+    if (!this.replayCache.add(issuer, tokenId, expiry.plus(ALLOWED_CLOCK_SKEW))) {
+      throw new ForbiddenException("The client assertion has been used before");
+    }
+
+    return new VerifiedAssertion(issuer, keyId, tokenId, expiry);
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * @param clientId ID of the client that issued the assertion.
+   * @param keyId ID of the key that signed the assertion, if specified.
+   * @param tokenId unique ID of the assertion.
+   * @param expiry expiry of the assertion.
+   */
+  public record VerifiedAssertion(
+    String clientId,
+    String keyId,
+    String tokenId,
+    Instant expiry
+  ) {}
+
+  /**
+   * @param maxLifetime maximum time until an assertion expires.
+   */
+  public record Options(
+    Duration maxLifetime
+  ) {}
+}
@@ -0,0 +1,307 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.http.GenericUrl;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.solutions.tokenservice.platform.HttpTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the public keys that clients use to sign client
+ * assertions. The registry is loaded from a JSON file that lists
+ * either the keys or the JWKS URL of each client, for example:
+ *
+ * <pre>
+ * {
+ *   "client-1": { "jwks_uri": "https://client-1.example.com/jwks" },
+ *   "client-2": { "jwks": { "keys": [ { "kty": "EC", "crv": "P-256", ... } ] } }
+ * }
+ * </pre>
+ *
+ * Key sets that are fetched from a JWKS URL are cached.
+ */
+public class ClientKeyRegistry {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final Supplier<Map<String, Registration>> registrations;
+  private final Fetcher fetcher;
+  private final Clock clock;
+  private final Options options;
+
+  /**
+   * Key sets fetched from JWKS URLs, by URL.
+   */
+  private final Cache<URI, FetchedKeySet> keySets;
+
+  ClientKeyRegistry(
+    Supplier<Map<String, Registration>> registrations,
+    Fetcher fetcher,
+    Clock clock,
+    Options options
+  ) {
+    Preconditions.checkNotNull(registrations, "registrations");
+    Preconditions.checkNotNull(fetcher, "fetcher");
+    Preconditions.checkNotNull(clock, "clock");
+    Preconditions.checkNotNull(options, "options");
+
+    this.registrations = registrations;
+    this.fetcher = fetcher;
+    this.clock = clock;
+    this.options = options;
+    this.keySets = CacheBuilder.newBuilder()
+      .maximumSize(options.maxEntries())
+      .build();
+  }
+
+  /**
+   * @param registrations supplier for the current set of registrations,
+   *                      by client ID.
+   */
+  public ClientKeyRegistry(
+    Supplier<Map<String, Registration>> registrations,
+    Options options
+  ) {
+    this(registrations, ClientKeyRegistry::fetch, Clock.systemUTC(), options);
+  }
+
+  private static byte[] fetch(URI jwksUri) throws IOException {
+    try {
+      var response = HttpTransport
+        .sharedTransport()
+        .createRequestFactory()
+        .buildGetRequest(new GenericUrl(jwksUri))
+        .execute();
+
+      try (var content = response.getContent()) {
+        return content.readAllBytes();
+      }
+      finally {
+        response.disconnect();
+      }
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("Creating a transport failed", e);
+    }
+  }
+
+  /**
+   * Parse a JSON document that maps client IDs to keys.
+   */
+  public static Map<String, Registration> parse(InputStream stream) throws IOException {
+    var document = MAPPER.readTree(stream);
+    if (document == null || !document.isObject()) {
+      throw new IOException("The document does not contain a JSON object");
+    }
+
+    var registrations = new HashMap<String, Registration>();
+    var fields = document.fields();
+    while (fields.hasNext()) {
+      var entry = fields.next();
+      var clientId = entry.getKey();
+      var registration = entry.getValue();
+
+      if (registration.hasNonNull("jwks")) {
+        try {
+          registrations.put(
+            clientId,
+            new Registration(null, JsonWebKeySet.parse(registration.get("jwks"))));
+        }
+        catch (IOException e) {
+          throw new IOException(
+            String.format("The keys of client '%s' are invalid", clientId),
+            e);
+        }
+      }
+      else if (registration.hasNonNull("jwks_uri")) {
+        var jwksUri = URI.create(registration.get("jwks_uri").asText());
+        if (!"https".equals(jwksUri.getScheme())) {
+          throw new IOException(
+            String.format("The JWKS URL of client '%s' must use HTTPS", clientId));
+        }
+
+        registrations.put(clientId, new Registration(jwksUri, null));
+      }
+      else {
+        throw new IOException(
+          String.format("The entry for '%s' does not contain a 'jwks' or 'jwks_uri' field", clientId));
+      }
+    }
+
+    return Map.copyOf(registrations);
+  }
+
+  /**
+   * Parse a JSON file that maps client IDs to keys.
+   */
+  public static Map<String, Registration> parse(Path path) throws IOException {
+    try (var stream = Files.newInputStream(path)) {
+      return parse(stream);
+    }
+  }
+
+  /**
+   * Get the key set for a JWKS URL, using the cache if possible. If
+   * fetching the key set fails, keep using a previously fetched copy
+   * for a little longer.
+   */
+  private FetchedKeySet getKeySet(URI jwksUri) throws IOException {
+    var cached = this.keySets.getIfPresent(jwksUri);
+    if (cached != null &&
+      this.clock.instant().isBefore(cached.fetchTime().plus(this.options.cacheDuration()))) {
+      return cached;
+    }
+    else if (cached != null) {
+      this.keySets.asMap().remove(jwksUri, cached);
+    }
+
+    try {
+      //
+      // Let the cache coalesce concurrent fetches for the same URL.
+      //
+      return this.keySets.get(
+        jwksUri,
+        () -> new FetchedKeySet(
+          JsonWebKeySet.parse(this.fetcher.fetch(jwksUri)),
+          this.clock.instant()));
+    }
+    catch (ExecutionException | UncheckedExecutionException e) {
+      if (cached != null) {
+        //
+        // Retry after the minimum refresh interval.
+        //
+        var retry = new FetchedKeySet(
+          cached.keys(),
+          this.clock.instant()
+            .minus(this.options.cacheDuration())
+            .plus(this.options.minRefreshInterval()));
+        this.keySets.asMap().putIfAbsent(jwksUri, retry);
+        return retry;
+      }
+      else if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      else {
+        throw new IOException(
+          String.format("Fetching the key set from %s failed", jwksUri),
+          e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Find the key that a client uses to sign assertions.
+   *
+   * @param clientId ID of the client.
+   * @param keyId ID of the key, if specified in the assertion.
+   * @param algorithm JWS algorithm used by the assertion.
+   * @return key, or null if the client or key is unknown.
+   * @throws IOException if fetching the client's key set failed.
+   */
+  public PublicKey find(
+    String clientId,
+    String keyId,
+    String algorithm
+  ) throws IOException {
+    Preconditions.checkNotNull(clientId, "clientId");
+    Preconditions.checkNotNull(algorithm, "algorithm");
+
+    var registration = this.registrations.get().get(clientId);
+    if (registration == null) {
+      return null;
+    }
+    else if (registration.keys() != null) {
+      return registration.keys().find(keyId, algorithm);
+    }
+
+    var keySet = getKeySet(registration.jwksUri());
+    var key = keySet.keys().find(keyId, algorithm);
+    if (key == null &&
+      !this.clock.instant().isBefore(keySet.fetchTime().plus(this.options.minRefreshInterval()))) {
+      //
+      // The client might have rotated its keys, so fetch the key set
+      // again. To prevent clients from triggering excessive fetches,
+      // only do so if the cached copy isn't too recent.
+      //
+      this.keySets.asMap().remove(registration.jwksUri(), keySet);
+      key = getKeySet(registration.jwksUri()).keys().find(keyId, algorithm);
+    }
+
+    return key;
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Keys registered for a client.
+   *
+   * @param jwksUri URL to fetch the client's key set from, or null.
+   * @param keys the client's key set, or null if the key set has to be
+   *             fetched from the JWKS URL.
+   */
+  public record Registration(
+    URI jwksUri,
+    JsonWebKeySet keys
+  ) {}
+
+  private record FetchedKeySet(
+    JsonWebKeySet keys,
+    Instant fetchTime
+  ) {}
+
+  @FunctionalInterface
+  interface Fetcher {
+    byte[] fetch(URI jwksUri) throws IOException;
+  }
+
+  /**
+   * @param cacheDuration time to cache key sets fetched from JWKS URLs.
+   * @param minRefreshInterval minimum time between fetches when a client
+   *                           uses an unknown key.
+   * @param maxEntries maximum number of key sets to cache.
+   */
+  public record Options(
+    Duration cacheDuration,
+    Duration minRefreshInterval,
+    long maxEntries
+  ) {}
+}
@@ -0,0 +1,229 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Set of parsed public keys (JWKS) that can be used to verify
+ * signatures.
+ *
+ * Parsing keys is comparatively expensive, so instances should
+ * be cached and reused.
+ */
+public class JsonWebKeySet {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final List<Key> keys;
+
+  /**
+   * Keys that have a key ID, by key ID.
+   */
+  private final Map<String, List<Key>> keysById;
+
+  private JsonWebKeySet(List<Key> keys) {
+    this.keys = keys;
+    this.keysById = keys
+      .stream()
+      .filter(k -> k.keyId() != null)
+      .collect(Collectors.groupingBy(Key::keyId));
+  }
+
+  private static BigInteger decodeInteger(JsonNode key, String name) throws IOException {
+    if (!key.hasNonNull(name)) {
+      throw new IOException(String.format("The key does not contain a '%s' field", name));
+    }
+
+    try {
+      return new BigInteger(1, Base64.getUrlDecoder().decode(key.get(name).asText()));
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException(String.format("The '%s' field of the key is malformed", name), e);
+    }
+  }
+
+  private static PublicKey parseKey(JsonNode key) throws IOException, GeneralSecurityException {
+    var keyType = key.path("kty").asText();
+    if ("RSA".equals(keyType)) {
+      return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+        decodeInteger(key, "n"),
+        decodeInteger(key, "e")));
+    }
+    else if ("EC".equals(keyType) && "P-256".equals(key.path("crv").asText())) {
+      var parameters = AlgorithmParameters.getInstance("EC");
+      parameters.init(new ECGenParameterSpec("secp256r1"));
+
+      return KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(
+        new ECPoint(decodeInteger(key, "x"), decodeInteger(key, "y")),
+        parameters.getParameterSpec(ECParameterSpec.class)));
+    }
+    else {
+      return null;
+    }
+  }
+
+  /**
+   * Parse a JWKS document. Keys meant for a different use, and keys
+   * of unsupported types are ignored.
+   *
+   * @param use intended use of keys, such as "sig".
+   * @throws IOException if the document or one of its keys is malformed.
+   */
+  public static JsonWebKeySet parse(JsonNode document, String use) throws IOException {
+    Preconditions.checkNotNull(document, "document");
+    Preconditions.checkNotNull(use, "use");
+
+    var keys = document.get("keys");
+    if (keys == null || !keys.isArray()) {
+      throw new IOException("The key set does not contain a 'keys' array");
+    }
+
+    var parsedKeys = new ArrayList<Key>();
+    for (var key : keys) {
+      if (key.hasNonNull("use") && !use.equals(key.get("use").asText())) {
+        continue;
+      }
+
+      try {
+        var publicKey = parseKey(key);
+        if (publicKey != null) {
+          parsedKeys.add(new Key(
+            key.hasNonNull("kid") ? key.get("kid").asText() : null,
+            key.hasNonNull("alg") ? key.get("alg").asText() : null,
+            publicKey));
+        }
+      }
+      catch (GeneralSecurityException e) {
+        throw new IOException("The key set contains an invalid key", e);
+      }
+    }
+
+    return new JsonWebKeySet(List.copyOf(parsedKeys));
+  }
+
+  /**
+   * Parse a JWKS document. Keys that aren't meant for signing, and keys
+   * of unsupported types are ignored.
+   *
+   * @throws IOException if the document or one of its keys is malformed.
+   */
+  public static JsonWebKeySet parse(JsonNode document) throws IOException {
+    return parse(document, "sig");
+  }
+
+  /**
+   * Parse a JWKS document.
+   *
+   * @throws IOException if the document or one of its keys is malformed.
+   */
+  public static JsonWebKeySet parse(byte[] document) throws IOException {
+    Preconditions.checkNotNull(document, "document");
+    return parse(MAPPER.readTree(document));
+  }
+
+  /**
+   * Find a key that can be used to verify a signature.
+   *
+   * @param keyId ID of the key, or null if the signature doesn't
+   *              specify a key ID.
+   * @param algorithm JWS algorithm, such as RS256 or ES256.
+   * @return key, or null if there's no (unambiguous) matching key.
+   */
+  public PublicKey find(String keyId, String algorithm) {
+    Preconditions.checkNotNull(algorithm, "algorithm");
+
+    if (keyId != null) {
+      for (var key : this.keysById.getOrDefault(keyId, List.of())) {
+        if (key.isCompatibleWith(algorithm)) {
+          return key.publicKey();
+        }
+      }
+
+      return null;
+    }
+
+    PublicKey match = null;
+    for (var key : this.keys) {
+      if (!key.isCompatibleWith(algorithm)) {
+        continue;
+      }
+      else if (match != null) {
+        //
+        // Ambiguous, the signature must specify a key ID.
+        //
+        return null;
+      }
+
+      match = key.publicKey();
+    }
+
+    return match;
+  }
+
+  /**
+   * @return number of keys in the set.
+   */
+  public int size() {
+    return this.keys.size();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  private record Key(
+    String keyId,
+    String algorithm,
+    PublicKey publicKey
+  ) {
+    boolean isCompatibleWith(String algorithm) {
+      if (this.algorithm != null && !this.algorithm.equals(algorithm)) {
+        return false;
+      }
+
+      return switch (algorithm) {
+        case "RS256" -> "RSA".equals(this.publicKey.getAlgorithm());
+        case "ES256" -> "EC".equals(this.publicKey.getAlgorithm());
+        default -> false;
+      };
+    }
+  }
+}
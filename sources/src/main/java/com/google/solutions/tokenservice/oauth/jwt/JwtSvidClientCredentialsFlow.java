@@ -0,0 +1,124 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.ClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.TokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import javax.enterprise.context.Dependent;
+import javax.ws.rs.ForbiddenException;
+import java.time.Instant;
+import java.util.HashMap;
+
+/**
+ * Flow that authenticates SPIFFE workloads using a JWT-SVID that they
+ * pass as client assertion.
+ *
+ * Based on the draft "OAuth SPIFFE Client Authentication"
+ * (draft-schwenkschuster-oauth-spiffe-client-auth).
+ */
+@Dependent
+public class JwtSvidClientCredentialsFlow extends ClientCredentialsFlow {
+  public static final String NAME = "jwt-svid-client-credentials";
+
+  static final String ASSERTION_TYPE = "urn:ietf:params:oauth:client-assertion-type:jwt-spiffe";
+
+  private final JwtSvidVerifier verifier;
+
+  public JwtSvidClientCredentialsFlow(
+    JwtSvidVerifier verifier,
+    IdTokenIssuer issuer,
+    WorkloadIdentityPool workloadIdentityPool,
+    TokenCache tokenCache,
+    LogAdapter logAdapter
+  ) {
+    super(issuer, workloadIdentityPool, tokenCache, logAdapter);
+
+    Preconditions.checkNotNull(verifier, "verifier");
+
+    this.verifier = verifier;
+  }
+
+  //---------------------------------------------------------------------------
+  // Overrides.
+  //---------------------------------------------------------------------------
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public String authenticationMethod() {
+    return "spiffe_jwt";
+  }
+
+  @Override
+  public boolean canAuthenticate(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    return ASSERTION_TYPE.equals(request.parameters().getFirst("client_assertion_type")) &&
+      !Strings.isNullOrEmpty(request.parameters().getFirst("client_assertion")) &&
+      super.canAuthenticate(request);
+  }
+
+  @Override
+  protected AuthenticatedClient authenticateClient(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    var svid = this.verifier.verify(
+      request.parameters().getFirst("client_assertion"),
+      assertionAudiences());
+
+    //
+    // The SPIFFE ID is the client ID.
+    //
+    var clientId = request.parameters().getFirst("client_id");
+    if (!Strings.isNullOrEmpty(clientId) && !clientId.equals(svid.spiffeId())) {
+      throw new ForbiddenException("The JWT-SVID was issued for a different client");
+    }
+
+    this.logAdapter
+      .newInfoEntry(
+        LogEvents.API_TOKEN,
+        String.format("Authenticated client '%s' using a JWT-SVID", svid.spiffeId()))
+      .addLabel("assertion/kid", svid.keyId())
+      .write();
+
+    var claims = new HashMap<String, String>();
+    claims.put("jwt_spiffe", svid.spiffeId());
+    claims.put("jwt_kid", svid.keyId());
+
+    return new AuthenticatedClient(
+      svid.spiffeId(),
+      Instant.now(),
+      claims);
+  }
+}
@@ -0,0 +1,258 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import javax.ws.rs.ForbiddenException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Verifies JWT-SVIDs against a SPIFFE trust bundle.
+ *
+ * Workloads typically reuse a JWT-SVID until it's about to expire, so
+ * verification results are cached for a short time, keyed by the hash
+ * of the token. Checks that depend on the current time or the request
+ * are repeated for cached results.
+ */
+public class JwtSvidVerifier {
+  /**
+   * Clock skew to tolerate when checking timestamps.
+   */
+  static final Duration ALLOWED_CLOCK_SKEW = Duration.ofMinutes(1);
+
+  /**
+   * Supported signature algorithms.
+   */
+  private static final Set<String> ALGORITHMS = Set.of("RS256", "ES256");
+
+  private final Supplier<SpiffeBundle> bundle;
+  private final Options options;
+  private final Clock clock;
+
+  /**
+   * Verified tokens, by token hash.
+   */
+  private final Cache<HashCode, CachedSvid> cache;
+
+  JwtSvidVerifier(
+    Supplier<SpiffeBundle> bundle,
+    Options options,
+    Clock clock
+  ) {
+    Preconditions.checkNotNull(bundle, "bundle");
+    Preconditions.checkNotNull(options, "options");
+    Preconditions.checkNotNull(clock, "clock");
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(options.trustDomain()), "trustDomain");
+
+    this.bundle = bundle;
+    this.options = options;
+    this.clock = clock;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(options.maxEntries())
+      .expireAfterWrite(options.cacheDuration())
+      .build();
+  }
+
+  /**
+   * @param bundle supplier for the current trust bundle.
+   */
+  public JwtSvidVerifier(
+    Supplier<SpiffeBundle> bundle,
+    Options options
+  ) {
+    this(bundle, options, Clock.systemUTC());
+  }
+
+  private void checkExpiry(Instant expiry) {
+    if (this.clock.instant().isAfter(expiry.plus(ALLOWED_CLOCK_SKEW))) {
+      throw new ForbiddenException("The JWT-SVID has expired");
+    }
+  }
+
+  /**
+   * Verify the signature and claims of a token.
+   */
+  private VerifiedSvid verifyUncached(String token, SpiffeBundle bundle) {
+    JsonWebSignature jws;
+    try {
+      jws = JsonWebSignature
+        .parser(GsonFactory.getDefaultInstance())
+        .parse(token);
+    }
+    catch (IOException | IllegalArgumentException e) {
+      throw new ForbiddenException("The JWT-SVID is malformed");
+    }
+
+    var header = jws.getHeader();
+    if (header.getAlgorithm() == null || !ALGORITHMS.contains(header.getAlgorithm())) {
+      throw new ForbiddenException(
+        String.format("The JWT-SVID uses an unsupported algorithm: %s", header.getAlgorithm()));
+    }
+    else if (Strings.isNullOrEmpty(header.getKeyId())) {
+      throw new ForbiddenException("The JWT-SVID does not specify a key ID");
+    }
+    else if (header.getType() != null && !Set.of("JWT", "JOSE").contains(header.getType())) {
+      throw new ForbiddenException(
+        String.format("The JWT-SVID has an unsupported type: %s", header.getType()));
+    }
+
+    //
+    // The subject must be a SPIFFE ID that belongs to the trust domain.
+    //
+    var payload = jws.getPayload();
+    var spiffeId = payload.getSubject();
+    var prefix = "spiffe://" + this.options.trustDomain() + "/";
+    if (spiffeId == null || !spiffeId.startsWith(prefix) || spiffeId.length() == prefix.length()) {
+      throw new ForbiddenException(
+        String.format(
+          "The subject of the JWT-SVID is not a SPIFFE ID in trust domain '%s'",
+          this.options.trustDomain()));
+    }
+
+    var audience = payload.getAudienceAsList();
+    if (audience == null || audience.isEmpty()) {
+      throw new ForbiddenException("The JWT-SVID must contain an 'aud' claim");
+    }
+
+    if (payload.getExpirationTimeSeconds() == null) {
+      throw new ForbiddenException("The JWT-SVID must contain an 'exp' claim");
+    }
+
+    var expiry = Instant.ofEpochSecond(payload.getExpirationTimeSeconds());
+    checkExpiry(expiry);
+
+    //
+    // Verify the signature. Do this last because it's the most
+    // expensive check.
+    //
+    var key = bundle.keys().find(header.getKeyId(), header.getAlgorithm());
+    if (key == null) {
+      throw new ForbiddenException(
+        String.format("The trust bundle does not contain the key '%s'", header.getKeyId()));
+    }
+
+    try {
+      if (!jws.verifySignature(key)) {
+        throw new ForbiddenException("The signature of the JWT-SVID is invalid");
+      }
+    }
+    catch (GeneralSecurityException e) {
+      throw new ForbiddenException("The signature of the JWT-SVID is invalid");
+    }
+
+    return new VerifiedSvid(spiffeId, header.getKeyId(), List.copyOf(audience), expiry);
+  }
+
+  /**
+   * Verify a JWT-SVID.
+   *
+   * @param token JWT-SVID.
+   * @param audiences acceptable audiences.
+   * @return verified JWT-SVID.
+   * @throws ForbiddenException if the token is invalid.
+   */
+  public VerifiedSvid verify(String token, Collection<String> audiences) {
+    Preconditions.checkNotNull(token, "token");
+    Preconditions.checkNotNull(audiences, "audiences");
+
+    var tokenHash = Hashing.sha256().hashString(token, StandardCharsets.US_ASCII);
+    var bundle = this.bundle.get();
+
+    //
+    // Only use a cached result if it was verified against the current
+    // bundle, so that removing a key takes effect immediately.
+    //
+    VerifiedSvid svid;
+    var cached = this.cache.getIfPresent(tokenHash);
+    if (cached != null && cached.bundle() == bundle) {
+      svid = cached.svid();
+      checkExpiry(svid.expiry());
+    }
+    else {
+      svid = verifyUncached(token, bundle);
+      this.cache.put(tokenHash, new CachedSvid(bundle, svid));
+    }
+
+    if (svid.audience().stream().noneMatch(audiences::contains)) {
+      throw new ForbiddenException("The JWT-SVID was issued for a different audience");
+    }
+
+    return svid;
+  }
+
+  /**
+   * @return number of cached results.
+   */
+  long size() {
+    return this.cache.size();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  private record CachedSvid(
+    SpiffeBundle bundle,
+    VerifiedSvid svid
+  ) {}
+
+  /**
+   * @param spiffeId SPIFFE ID of the workload.
+   * @param keyId ID of the key that signed the token.
+   * @param audience audience of the token.
+   * @param expiry expiry of the token.
+   */
+  public record VerifiedSvid(
+    String spiffeId,
+    String keyId,
+    List<String> audience,
+    Instant expiry
+  ) {}
+
+  /**
+   * @param trustDomain trust domain that workloads must belong to.
+   * @param cacheDuration time to cache verification results.
+   * @param maxEntries maximum number of verification results to cache.
+   */
+  public record Options(
+    String trustDomain,
+    Duration cacheDuration,
+    long maxEntries
+  ) {}
+}
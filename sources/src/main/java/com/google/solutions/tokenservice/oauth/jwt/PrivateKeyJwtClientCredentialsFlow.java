@@ -0,0 +1,116 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.ClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.TokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import javax.enterprise.context.Dependent;
+import java.time.Instant;
+import java.util.HashMap;
+
+/**
+ * Flow that authenticates clients using a JWT assertion that's signed
+ * with the client's private key (private_key_jwt).
+ *
+ * Based on RFC7523 (JSON Web Token (JWT) Profile for OAuth 2.0 Client
+ * Authentication and Authorization Grants).
+ */
+@Dependent
+public class PrivateKeyJwtClientCredentialsFlow extends ClientCredentialsFlow {
+  public static final String NAME = "private-key-jwt-client-credentials";
+
+  static final String ASSERTION_TYPE = "urn:ietf:params:oauth:client-assertion-type:jwt-bearer";
+
+  private final ClientAssertionVerifier verifier;
+
+  public PrivateKeyJwtClientCredentialsFlow(
+    ClientAssertionVerifier verifier,
+    IdTokenIssuer issuer,
+    WorkloadIdentityPool workloadIdentityPool,
+    TokenCache tokenCache,
+    LogAdapter logAdapter
+  ) {
+    super(issuer, workloadIdentityPool, tokenCache, logAdapter);
+
+    Preconditions.checkNotNull(verifier, "verifier");
+
+    this.verifier = verifier;
+  }
+
+  //---------------------------------------------------------------------------
+  // Overrides.
+  //---------------------------------------------------------------------------
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public String authenticationMethod() {
+    return "private_key_jwt";
+  }
+
+  @Override
+  public boolean canAuthenticate(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    return ASSERTION_TYPE.equals(request.parameters().getFirst("client_assertion_type")) &&
+      !Strings.isNullOrEmpty(request.parameters().getFirst("client_assertion")) &&
+      super.canAuthenticate(request);
+  }
+
+  @Override
+  protected AuthenticatedClient authenticateClient(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    var assertion = this.verifier.verify(
+      request.parameters().getFirst("client_assertion"),
+      Strings.emptyToNull(request.parameters().getFirst("client_id")),
+      assertionAudiences());
+
+    this.logAdapter
+      .newInfoEntry(
+        LogEvents.API_TOKEN,
+        String.format("Authenticated client '%s' using a client assertion", assertion.clientId()))
+      .addLabel("assertion/kid", assertion.keyId())
+      .addLabel("assertion/jti", assertion.tokenId())
+      .write();
+
+    var claims = new HashMap<String, String>();
+    claims.put("jwt_kid", assertion.keyId());
+
+    return new AuthenticatedClient(
+      assertion.clientId(),
+      Instant.now(),
+      claims);
+  }
+}
@@ -0,0 +1,159 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Set of recently seen token IDs (jti), used to detect replayed
+ * assertions.
+ *
+ * IDs are partitioned by client, and each client can only occupy a
+ * limited number of entries. A client that uses up its quota therefore
+ * can't prevent other clients from authenticating.
+ *
+ * Entries are only kept until the corresponding assertion expires,
+ * and expired entries are purged periodically. Lookups and inserts
+ * don't take a lock.
+ */
+public class ReplayCache {
+  /**
+   * Minimum time between two purges.
+   */
+  static final Duration PURGE_INTERVAL = Duration.ofSeconds(30);
+
+  /**
+   * Entries by client ID. Partitions are never removed, so that an insert
+   * can't race with the removal of its partition. The number of partitions
+   * is bounded by the number of registered clients because IDs are only
+   * added for verified assertions.
+   */
+  private final ConcurrentHashMap<String, ConcurrentHashMap<String, Instant>> partitions
+    = new ConcurrentHashMap<>();
+  private final AtomicLong size = new AtomicLong();
+  private final long maxEntries;
+  private final long maxEntriesPerClient;
+  private final Clock clock;
+
+  private volatile Instant nextPurge;
+
+  ReplayCache(long maxEntries, long maxEntriesPerClient, Clock clock) {
+    Preconditions.checkArgument(maxEntries > 0, "maxEntries");
+    Preconditions.checkArgument(maxEntriesPerClient > 0, "maxEntriesPerClient");
+    Preconditions.checkNotNull(clock, "clock");
+
+    this.maxEntries = maxEntries;
+    this.maxEntriesPerClient = maxEntriesPerClient;
+    this.clock = clock;
+    this.nextPurge = clock.instant().plus(PURGE_INTERVAL);
+  }
+
+  public ReplayCache(long maxEntries, long maxEntriesPerClient) {
+    this(maxEntries, maxEntriesPerClient, Clock.systemUTC());
+  }
+
+  private void purge(Instant now) {
+    this.nextPurge = now.plus(PURGE_INTERVAL);
+
+    for (var partition : this.partitions.values()) {
+      for (var entry : partition.entrySet()) {
+        if (!now.isBefore(entry.getValue()) &&
+          partition.remove(entry.getKey(), entry.getValue())) {
+          this.size.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * Record that a client has used an ID.
+   *
+   * @param clientId ID of the client that issued the assertion.
+   * @param id ID, which must be unique for this client.
+   * @param expiry time after which the ID can't be replayed anymore
+   *               because the assertion has expired.
+   * @return false if the ID has been used before, or if the client's
+   * partition or the cache is full.
+   */
+  public boolean add(String clientId, String id, Instant expiry) {
+    Preconditions.checkNotNull(clientId, "clientId");
+    Preconditions.checkNotNull(id, "id");
+    Preconditions.checkNotNull(expiry, "expiry");
+
+    //
+    // Purge at most once per interval, even if the cache is full, so
+    // that a full cache doesn't cause a full scan for every insert.
+    //
+    var now = this.clock.instant();
+    if (!now.isBefore(this.nextPurge)) {
+      purge(now);
+    }
+
+    var partition = this.partitions.computeIfAbsent(
+      clientId,
+      k -> new ConcurrentHashMap<>());
+
+    var previousExpiry = partition.get(id);
+    if (previousExpiry != null) {
+      //
+      // Accept the ID again only if it has expired, but hasn't
+      // been purged yet.
+      //
+      return !now.isBefore(previousExpiry) &&
+        partition.replace(id, previousExpiry, expiry);
+    }
+
+    if (partition.size() >= this.maxEntriesPerClient ||
+      this.size.get() >= this.maxEntries) {
+      //
+      // Rather than evicting entries that haven't expired yet, which
+      // would allow them to be replayed, refuse new entries.
+      //
+      return false;
+    }
+
+    if (partition.putIfAbsent(id, expiry) == null) {
+      this.size.incrementAndGet();
+      return true;
+    }
+    else {
+      //
+      // Added concurrently.
+      //
+      return false;
+    }
+  }
+
+  /**
+   * @return number of entries, including expired entries that
+   * haven't been purged yet.
+   */
+  int size() {
+    return (int)this.size.get();
+  }
+}
@@ -0,0 +1,85 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * SPIFFE trust bundle, containing the keys that can be used to verify
+ * JWT-SVIDs of a trust domain.
+ *
+ * @param keys JWT authorities of the trust domain.
+ * @param refreshHint how often the bundle should be refreshed, or
+ *                    null if the bundle doesn't specify.
+ */
+public record SpiffeBundle(
+  JsonWebKeySet keys,
+  Duration refreshHint
+) {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  public SpiffeBundle {
+    Preconditions.checkNotNull(keys, "keys");
+  }
+
+  /**
+   * Parse a bundle in SPIFFE bundle format, which is a JWKS document with
+   * additional fields. Keys that aren't JWT authorities are ignored.
+   *
+   * @throws IOException if the bundle is malformed.
+   */
+  public static SpiffeBundle parse(byte[] document) throws IOException {
+    Preconditions.checkNotNull(document, "document");
+
+    var bundle = MAPPER.readTree(document);
+    if (bundle == null || !bundle.isObject()) {
+      throw new IOException("The bundle does not contain a JSON object");
+    }
+
+    var keys = JsonWebKeySet.parse(bundle, "jwt-svid");
+    if (keys.size() == 0) {
+      throw new IOException("The bundle does not contain any JWT authorities");
+    }
+
+    var refreshHint = bundle.path("spiffe_refresh_hint");
+    return new SpiffeBundle(
+      keys,
+      refreshHint.canConvertToLong() && refreshHint.asLong() > 0
+        ? Duration.ofSeconds(refreshHint.asLong())
+        : null);
+  }
+
+  /**
+   * Parse a bundle file.
+   *
+   * @throws IOException if the bundle is malformed.
+   */
+  public static SpiffeBundle parse(Path path) throws IOException {
+    return parse(Files.readAllBytes(path));
+  }
+}
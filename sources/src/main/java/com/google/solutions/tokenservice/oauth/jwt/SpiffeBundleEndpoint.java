@@ -0,0 +1,206 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.platform.HttpTransport;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import java.io.IOException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * SPIFFE trust bundle that's loaded from a bundle endpoint and
+ * refreshed in the background.
+ *
+ * The bundle is refreshed as often as its refresh hint suggests, but
+ * at least once per refresh interval. If a refresh fails, the endpoint
+ * keeps serving the last-known-good copy and retries.
+ */
+public class SpiffeBundleEndpoint implements Supplier<SpiffeBundle>, AutoCloseable {
+  /**
+   * Minimum delay between refreshes.
+   */
+  static final Duration MIN_REFRESH_INTERVAL = Duration.ofSeconds(5);
+
+  /**
+   * Delay before retrying a failed refresh.
+   */
+  static final Duration RETRY_INTERVAL = Duration.ofSeconds(30);
+
+  private final Callable<byte[]> source;
+  private final Duration refreshInterval;
+  private final ScheduledExecutorService executor;
+  private final LogAdapter logAdapter;
+
+  private volatile SpiffeBundle bundle;
+
+  /**
+   * Create an endpoint and load the bundle.
+   *
+   * @throws IOException if the bundle can't be loaded.
+   */
+  SpiffeBundleEndpoint(
+    Callable<byte[]> source,
+    Duration refreshInterval,
+    ScheduledExecutorService executor,
+    LogAdapter logAdapter
+  ) throws IOException {
+    Preconditions.checkNotNull(source, "source");
+    Preconditions.checkNotNull(refreshInterval, "refreshInterval");
+    Preconditions.checkNotNull(executor, "executor");
+    Preconditions.checkNotNull(logAdapter, "logAdapter");
+    Preconditions.checkArgument(!refreshInterval.isNegative() && !refreshInterval.isZero());
+
+    this.source = source;
+    this.refreshInterval = refreshInterval;
+    this.executor = executor;
+    this.logAdapter = logAdapter;
+    this.bundle = load();
+  }
+
+  /**
+   * Create an endpoint and load the bundle.
+   *
+   * @throws IOException if the bundle can't be loaded.
+   */
+  public SpiffeBundleEndpoint(
+    URL url,
+    Duration refreshInterval,
+    LogAdapter logAdapter
+  ) throws IOException {
+    this(
+      () -> fetch(url),
+      refreshInterval,
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("spiffe-bundle-endpoint")
+        .build()),
+      logAdapter);
+  }
+
+  private static byte[] fetch(URL url) throws IOException {
+    try {
+      var response = HttpTransport
+        .sharedTransport()
+        .createRequestFactory()
+        .buildGetRequest(new GenericUrl(url))
+        .execute();
+
+      try (var content = response.getContent()) {
+        return content.readAllBytes();
+      }
+      finally {
+        response.disconnect();
+      }
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("Creating a transport failed", e);
+    }
+  }
+
+  private SpiffeBundle load() throws IOException {
+    try {
+      return SpiffeBundle.parse(this.source.call());
+    }
+    catch (IOException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new IOException("Loading the bundle failed", e);
+    }
+  }
+
+  /**
+   * @return delay until the next refresh.
+   */
+  Duration refreshDelay() {
+    var hint = this.bundle.refreshHint();
+    var delay = hint != null && hint.compareTo(this.refreshInterval) < 0
+      ? hint
+      : this.refreshInterval;
+
+    return delay.compareTo(MIN_REFRESH_INTERVAL) < 0 ? MIN_REFRESH_INTERVAL : delay;
+  }
+
+  private void scheduleRefresh(Duration delay) {
+    try {
+      this.executor.schedule(this::refresh, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException ignored) {
+      //
+      // Endpoint has been closed.
+      //
+    }
+  }
+
+  /**
+   * Refresh the bundle. On failure, keep the existing copy and
+   * schedule a retry.
+   */
+  void refresh() {
+    try {
+      this.bundle = load();
+      scheduleRefresh(refreshDelay());
+    }
+    catch (Exception e) {
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_SPIFFE_BUNDLE,
+          String.format(
+            "Refreshing the SPIFFE bundle failed, keeping last-known-good copy: %s",
+            Exceptions.getFullMessage(e)))
+        .write();
+
+      scheduleRefresh(RETRY_INTERVAL.compareTo(refreshDelay()) < 0 ? RETRY_INTERVAL : refreshDelay());
+    }
+  }
+
+  /**
+   * Start refreshing the bundle periodically.
+   */
+  public void start() {
+    scheduleRefresh(refreshDelay());
+  }
+
+  @Override
+  public SpiffeBundle get() {
+    return this.bundle;
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+}
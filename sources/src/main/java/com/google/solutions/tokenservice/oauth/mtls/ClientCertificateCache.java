@@ -0,0 +1,258 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import io.vertx.core.http.HttpConnection;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Cache for the attributes of client certificates.
+ *
+ * Attributes are cached per connection, so that clients that use
+ * keep-alive connections don't cause the certificate to be parsed
+ * again for every request, and per certificate, so that clients
+ * that open new connections don't either.
+ */
+public class ClientCertificateCache {
+  private static final int SAN_DNS_NAME = 2;
+  private static final int SAN_URI = 6;
+  private static final String SPIFFE_SCHEME = "spiffe://";
+
+  /**
+   * Attributes by connection. Connections are compared by identity,
+   * and removed once they've been garbage-collected.
+   */
+  private final Cache<HttpConnection, ConnectionEntry> connections;
+
+  /**
+   * Attributes by SHA-256 fingerprint of the client certificate. The
+   * chain of a cached entry is the chain of the connection that added
+   * the entry, and might differ from the chain of other connections.
+   */
+  private final Cache<String, Attributes> certificates;
+
+  public ClientCertificateCache(long maxEntries) {
+    Preconditions.checkArgument(maxEntries > 0, "maxEntries");
+
+    this.connections = CacheBuilder.newBuilder()
+      .weakKeys()
+      .maximumSize(maxEntries)
+      .build();
+    this.certificates = CacheBuilder.newBuilder()
+      .maximumSize(maxEntries)
+      .build();
+  }
+
+  private static String joinSubjectAlternativeNames(
+    X509Certificate certificate,
+    int type
+  ) throws CertificateParsingException {
+    var names = certificate.getSubjectAlternativeNames();
+    if (names == null) {
+      return null;
+    }
+
+    var values = new ArrayList<String>();
+    for (List<?> name : names) {
+      if (name.size() >= 2 && Integer.valueOf(type).equals(name.get(0))) {
+        values.add((String)name.get(1));
+      }
+    }
+
+    return values.isEmpty() ? null : String.join(",", values);
+  }
+
+  /**
+   * Extract attributes from a certificate.
+   *
+   * @param chain certificate chain, starting with the client certificate.
+   */
+  static Attributes parse(
+    List<X509Certificate> chain
+  ) throws CertificateEncodingException, CertificateParsingException {
+    Preconditions.checkNotNull(chain, "chain");
+    Preconditions.checkArgument(!chain.isEmpty(), "chain");
+
+    var certificate = chain.get(0);
+
+    var sanUri = joinSubjectAlternativeNames(certificate, SAN_URI);
+
+    //
+    // An X.509-SVID contains exactly one URI SAN, which is the
+    // SPIFFE ID.
+    //
+    String spiffeId = null;
+    if (sanUri != null) {
+      for (var uri : sanUri.split(",")) {
+        if (uri.startsWith(SPIFFE_SCHEME)) {
+          spiffeId = uri;
+          break;
+        }
+      }
+    }
+
+    return new Attributes(
+      spiffeId,
+      joinSubjectAlternativeNames(certificate, SAN_DNS_NAME),
+      sanUri,
+      fingerprint(certificate),
+      certificate.getSerialNumber().toString(16).toUpperCase(),
+      OffsetDateTime.ofInstant(certificate.getNotBefore().toInstant(), ZoneOffset.UTC),
+      OffsetDateTime.ofInstant(certificate.getNotAfter().toInstant(), ZoneOffset.UTC),
+      List.copyOf(chain));
+  }
+
+  /**
+   * @return Base64-encoded SHA-256 fingerprint, in the same format
+   * that the load balancer uses.
+   */
+  static String fingerprint(X509Certificate certificate) throws CertificateEncodingException {
+    return Base64.getEncoder().encodeToString(Hashing
+      .sha256()
+      .hashBytes(certificate.getEncoded())
+      .asBytes());
+  }
+
+  /**
+   * Get the attributes of the certificate that the client presented
+   * when it established a connection.
+   *
+   * @throws SSLPeerUnverifiedException if the client didn't present a certificate.
+   */
+  public Attributes get(
+    HttpConnection connection,
+    SSLSession session
+  ) throws SSLPeerUnverifiedException, CertificateEncodingException, CertificateParsingException {
+    Preconditions.checkNotNull(connection, "connection");
+    Preconditions.checkNotNull(session, "session");
+
+    var entry = this.connections.getIfPresent(connection);
+    if (entry != null && entry.session() == session) {
+      return entry.attributes();
+    }
+
+    //
+    // New connection, or the session has been renegotiated.
+    //
+    var chain = new ArrayList<X509Certificate>();
+    for (var peerCertificate : session.getPeerCertificates()) {
+      if (!(peerCertificate instanceof X509Certificate certificate)) {
+        throw new SSLPeerUnverifiedException("The client did not present an X.509 certificate");
+      }
+
+      chain.add(certificate);
+    }
+
+    if (chain.isEmpty()) {
+      throw new SSLPeerUnverifiedException("The client did not present a certificate");
+    }
+
+    var fingerprint = fingerprint(chain.get(0));
+    var attributes = this.certificates.getIfPresent(fingerprint);
+    if (attributes == null) {
+      attributes = parse(chain);
+      this.certificates.put(fingerprint, attributes);
+    }
+    else if (!attributes.certificateChain().equals(chain)) {
+      //
+      // Same client certificate, but a different chain, for example
+      // because an intermediate was reissued. The chain is used for
+      // revocation checks, so it must be the connection's own.
+      //
+      attributes = attributes.withCertificateChain(chain);
+    }
+
+    this.connections.put(connection, new ConnectionEntry(session, attributes));
+    return attributes;
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  private record ConnectionEntry(
+    SSLSession session,
+    Attributes attributes
+  ) {}
+
+  /**
+   * Attributes of a client certificate.
+   *
+   * @param spiffeId SPIFFE ID of the certificate.
+   * @param sanDns dNSName SAN entries, comma-separated.
+   * @param sanUri uniformResourceIdentifier SAN entries, comma-separated.
+   * @param sha256fingerprint Base64-encoded SHA-256 fingerprint.
+   * @param serialNumber hex-encoded serial number.
+   * @param notBefore timestamp before which the certificate is not valid.
+   * @param notAfter timestamp after which the certificate is not valid.
+   * @param certificateChain certificate chain, starting with the certificate.
+   */
+  public record Attributes(
+    String spiffeId,
+    String sanDns,
+    String sanUri,
+    String sha256fingerprint,
+    String serialNumber,
+    OffsetDateTime notBefore,
+    OffsetDateTime notAfter,
+    List<X509Certificate> certificateChain
+  ) {
+    Attributes withCertificateChain(List<X509Certificate> chain) {
+      return new Attributes(
+        this.spiffeId,
+        this.sanDns,
+        this.sanUri,
+        this.sha256fingerprint,
+        this.serialNumber,
+        this.notBefore,
+        this.notAfter,
+        List.copyOf(chain));
+    }
+
+    public MtlsClientAttributes toClientAttributes(String clientId) {
+      return new MtlsClientAttributes(
+        clientId,
+        this.spiffeId,
+        this.sanDns,
+        this.sanUri,
+        this.sha256fingerprint,
+        this.serialNumber,
+        this.notBefore,
+        this.notAfter,
+        this.certificateChain);
+    }
+  }
+}
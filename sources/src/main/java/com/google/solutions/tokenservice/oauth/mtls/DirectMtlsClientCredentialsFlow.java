@@ -0,0 +1,176 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.TokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.web.LogEvents;
+import io.vertx.core.http.HttpServerRequest;
+
+import javax.enterprise.context.Dependent;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.ws.rs.ForbiddenException;
+import java.security.cert.CertificateException;
+
+/**
+ * Flow that authenticates clients using mTLS, terminated by
+ * the application itself.
+ *
+ * The TLS stack verifies the certificate chain against the
+ * configured trust store, which corresponds to the "PKI Mutual-TLS
+ * Method" described in RFC8705.
+ */
+@Dependent
+public class DirectMtlsClientCredentialsFlow extends MtlsClientCredentialsFlow {
+  public static final String NAME = "mtls-client-credentials";
+
+  private final Options options;
+  private final ClientCertificateCache certificateCache;
+  private final HttpServerRequest request;
+
+  public DirectMtlsClientCredentialsFlow(
+    Options options,
+    ClientCertificateCache certificateCache,
+    ClientPolicy clientPolicy,
+    IdTokenIssuer issuer,
+    WorkloadIdentityPool workloadIdentityPool,
+    TokenCache tokenCache,
+    HttpServerRequest request,
+    LogAdapter logAdapter
+  ) {
+    super(clientPolicy, issuer, workloadIdentityPool, tokenCache, logAdapter);
+
+    Preconditions.checkNotNull(options, "options");
+    Preconditions.checkNotNull(certificateCache, "certificateCache");
+    Preconditions.checkNotNull(request, "request");
+
+    this.options = options;
+    this.certificateCache = certificateCache;
+    this.request = request;
+  }
+
+  //---------------------------------------------------------------------------
+  // Overrides.
+  //---------------------------------------------------------------------------
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public boolean canAuthenticate(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    var session = this.request.sslSession();
+    if (session == null) {
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.API_TOKEN,
+          "The request was not made over TLS, verify that TLS is enabled for the application")
+        .write();
+
+      return false;
+    }
+
+    try {
+      session.getPeerCertificates();
+    }
+    catch (SSLPeerUnverifiedException e) {
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.API_TOKEN,
+          "The request did not include a client certificate")
+        .write();
+
+      return false;
+    }
+
+    return super.canAuthenticate(request);
+  }
+
+  @Override
+  public MtlsClientAttributes getVerifiedClientAttributes(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    if (!canAuthenticate(request)) {
+      throw new ForbiddenException(
+        "The request did not include a client certificate");
+    }
+
+    //
+    // The TLS stack only completes the handshake if the certificate chain
+    // is trusted, so we can use the certificate's attributes as-is.
+    //
+    ClientCertificateCache.Attributes attributes;
+    try {
+      attributes = this.certificateCache.get(
+        this.request.connection(),
+        this.request.sslSession());
+    }
+    catch (SSLPeerUnverifiedException | CertificateException e) {
+      this.logAdapter
+        .newErrorEntry(
+          LogEvents.API_TOKEN,
+          String.format("The client certificate could not be read: %s", e.getMessage()))
+        .write();
+
+      throw new ForbiddenException("The client certificate could not be read");
+    }
+
+    var clientId = this.options.clientIdAttribute().select(attributes);
+
+    if (Strings.isNullOrEmpty(clientId)) {
+      throw new ForbiddenException(
+        String.format(
+          "The client presented a valid certificate, but the certificate does not contain a %s",
+          this.options.clientIdAttribute().name().toLowerCase()));
+    }
+
+    this.logAdapter
+      .newInfoEntry(
+        LogEvents.API_TOKEN,
+        String.format("Authenticated client '%s' using mTLS", clientId))
+      .addLabel("certificate/sha256", attributes.sha256fingerprint())
+      .addLabel("certificate/serial", attributes.serialNumber())
+      .write();
+
+    return attributes.toClientAttributes(clientId);
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner classes.
+  // -------------------------------------------------------------------------
+
+  /**
+   * @param clientIdAttribute certificate attribute to use as client ID.
+   */
+  public record Options(
+    ClientIdAttribute clientIdAttribute
+  ) {}
+}
@@ -0,0 +1,166 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayInputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Validates forwarded client certificates against a trust bundle, and
+ * caches the results.
+ *
+ * Parsing and validating a certificate chain is expensive, so validated
+ * certificates are cached by the hash of their encoding. A cached
+ * result is discarded when the trust bundle changes, or when the
+ * certificate expires.
+ */
+public class ForwardedCertificateValidator {
+  private final Supplier<TrustBundle> trustBundle;
+  private final Cache<HashCode, ValidatedCertificate> cache;
+  private final Clock clock;
+
+  ForwardedCertificateValidator(
+    Supplier<TrustBundle> trustBundle,
+    long maxEntries,
+    Clock clock
+  ) {
+    Preconditions.checkNotNull(trustBundle, "trustBundle");
+    Preconditions.checkArgument(maxEntries > 0, "maxEntries");
+    Preconditions.checkNotNull(clock, "clock");
+
+    this.trustBundle = trustBundle;
+    this.clock = clock;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maxEntries)
+      .build();
+  }
+
+  public ForwardedCertificateValidator(
+    Supplier<TrustBundle> trustBundle,
+    long maxEntries
+  ) {
+    this(trustBundle, maxEntries, Clock.systemUTC());
+  }
+
+  private static List<X509Certificate> decodeCertificates(String urlEncodedPem) throws CertificateException {
+    var pem = URLDecoder.decode(urlEncodedPem, StandardCharsets.UTF_8);
+    return TrustBundle.parseCertificates(
+      new ByteArrayInputStream(pem.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  /**
+   * Validate a forwarded certificate.
+   *
+   * @param certificate URL-encoded, PEM-encoded leaf certificate, optional
+   *                    if a chain is provided.
+   * @param chain URL-encoded, PEM-encoded certificate chain, starting with
+   *              the leaf certificate. Optional.
+   * @return attributes of the leaf certificate.
+   * @throws CertificateException if the certificate is malformed or invalid.
+   */
+  public ClientCertificateCache.Attributes validate(
+    String certificate,
+    String chain
+  ) throws CertificateException {
+    if (Strings.isNullOrEmpty(certificate) && Strings.isNullOrEmpty(chain)) {
+      throw new CertificateException("The request does not contain a client certificate");
+    }
+
+    var key = Hashing.sha256()
+      .newHasher()
+      .putString(Strings.nullToEmpty(certificate), StandardCharsets.UTF_8)
+      .putByte((byte)0)
+      .putString(Strings.nullToEmpty(chain), StandardCharsets.UTF_8)
+      .hash();
+
+    var trustBundle = this.trustBundle.get();
+    var now = this.clock.instant();
+
+    var cached = this.cache.getIfPresent(key);
+    if (cached != null &&
+      cached.trustBundle() == trustBundle &&
+      !now.isBefore(cached.attributes().notBefore().toInstant()) &&
+      !now.isAfter(cached.attributes().notAfter().toInstant())) {
+      return cached.attributes();
+    }
+
+    //
+    // Not cached, or the trust bundle or the certificate's validity
+    // changed since the certificate was last validated.
+    //
+    List<X509Certificate> certificates;
+    if (!Strings.isNullOrEmpty(chain)) {
+      certificates = decodeCertificates(chain);
+      if (!Strings.isNullOrEmpty(certificate) &&
+        !decodeCertificates(certificate).equals(certificates.subList(0, Math.min(1, certificates.size())))) {
+        throw new CertificateException(
+          "The certificate chain does not start with the client certificate");
+      }
+    }
+    else {
+      certificates = decodeCertificates(certificate);
+      if (certificates.size() != 1) {
+        throw new CertificateException("The client certificate is malformed");
+      }
+    }
+
+    if (certificates.isEmpty()) {
+      throw new CertificateException("The certificate chain is empty");
+    }
+
+    var attributes = ClientCertificateCache.parse(
+      trustBundle.validate(certificates, Date.from(now)));
+    this.cache.put(key, new ValidatedCertificate(trustBundle, attributes));
+
+    return attributes;
+  }
+
+  /**
+   * @return number of cached certificates.
+   */
+  long size() {
+    return this.cache.size();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  private record ValidatedCertificate(
+    TrustBundle trustBundle,
+    ClientCertificateCache.Attributes attributes
+  ) {}
+}
@@ -21,7 +21,9 @@
 
 package com.google.solutions.tokenservice.oauth.mtls;
 
+import java.security.cert.X509Certificate;
 import java.time.OffsetDateTime;
+import java.util.List;
 
 /**
  * Client attributes as conveyed in a client certificate.
@@ -35,6 +37,9 @@ import java.time.OffsetDateTime;
  * @param serialNumber  serial number of the client certificate.
  * @param notBefore timestamp before which the client certificate is not valid.
  * @param notAfter timestamp after which the client certificate is not valid.
+ * @param certificateChain verified certificate chain, starting with the client
+ *                         certificate. Empty if the certificate isn't available,
+ *                         for example because mTLS was terminated by a load balancer.
  */
 public record MtlsClientAttributes(
   String clientId,
@@ -44,6 +49,28 @@ public record MtlsClientAttributes(
   String sha256fingerprint,
   String serialNumber,
   OffsetDateTime notBefore,
-  OffsetDateTime notAfter
+  OffsetDateTime notAfter,
+  List<X509Certificate> certificateChain
 ){
+  public MtlsClientAttributes(
+    String clientId,
+    String spiffeId,
+    String sanDns,
+    String sanUri,
+    String sha256fingerprint,
+    String serialNumber,
+    OffsetDateTime notBefore,
+    OffsetDateTime notAfter
+  ) {
+    this(
+      clientId,
+      spiffeId,
+      sanDns,
+      sanUri,
+      sha256fingerprint,
+      serialNumber,
+      notBefore,
+      notAfter,
+      List.of());
+  }
 }
@@ -25,6 +25,7 @@ import com.google.common.base.Preconditions;
 import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
 import com.google.solutions.tokenservice.oauth.ClientCredentialsFlow;
 import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.TokenCache;
 import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
 import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
 import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
@@ -44,9 +45,10 @@ public abstract class MtlsClientCredentialsFlow extends ClientCredentialsFlow {
     ClientPolicy clientPolicy,
     IdTokenIssuer issuer,
     WorkloadIdentityPool workloadIdentityPool,
+    TokenCache tokenCache,
     LogAdapter logAdapter
   ) {
-    super(issuer, workloadIdentityPool, logAdapter);
+    super(issuer, workloadIdentityPool, tokenCache, logAdapter);
 
     Preconditions.checkNotNull(clientPolicy, "clientPolicy");
 
@@ -76,4 +78,32 @@ public abstract class MtlsClientCredentialsFlow extends ClientCredentialsFlow {
     var clientAttributes = getVerifiedClientAttributes(request);
     return this.clientPolicy.authenticateClient(clientAttributes);
   }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Certificate attribute that is used as client ID.
+   */
+  public enum ClientIdAttribute {
+    SPIFFE_ID,
+    SAN_DNS,
+    SAN_URI,
+    SHA256_FINGERPRINT;
+
+    /**
+     * Select the client ID from a set of certificate attributes.
+     *
+     * @return client ID, or null if the certificate lacks the attribute.
+     */
+    public String select(ClientCertificateCache.Attributes attributes) {
+      return switch (this) {
+        case SPIFFE_ID -> attributes.spiffeId();
+        case SAN_DNS -> attributes.sanDns();
+        case SAN_URI -> attributes.sanUri();
+        case SHA256_FINGERPRINT -> attributes.sha256fingerprint();
+      };
+    }
+  }
 }
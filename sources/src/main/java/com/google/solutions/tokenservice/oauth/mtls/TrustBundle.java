@@ -0,0 +1,165 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import com.google.common.base.Preconditions;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXCertPathValidatorResult;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Set of trusted CA certificates that client certificate chains are
+ * validated against.
+ */
+public class TrustBundle {
+  private final Set<TrustAnchor> trustAnchors;
+  private final Set<X509Certificate> trustedCertificates;
+
+  private TrustBundle(List<X509Certificate> certificates) {
+    this.trustedCertificates = Set.copyOf(certificates);
+    this.trustAnchors = certificates
+      .stream()
+      .map(c -> new TrustAnchor(c, null))
+      .collect(Collectors.toUnmodifiableSet());
+  }
+
+  /**
+   * Parse PEM- or DER-encoded certificates.
+   */
+  static List<X509Certificate> parseCertificates(InputStream stream) throws CertificateException {
+    var certificates = new ArrayList<X509Certificate>();
+    for (var certificate : CertificateFactory.getInstance("X.509").generateCertificates(stream)) {
+      certificates.add((X509Certificate)certificate);
+    }
+
+    return certificates;
+  }
+
+  /**
+   * Create a trust bundle from a list of CA certificates.
+   */
+  public static TrustBundle of(List<X509Certificate> certificates) {
+    Preconditions.checkNotNull(certificates, "certificates");
+    Preconditions.checkArgument(!certificates.isEmpty(), "certificates");
+
+    return new TrustBundle(certificates);
+  }
+
+  /**
+   * Parse a trust bundle from PEM-encoded certificates.
+   */
+  public static TrustBundle parse(byte[] pem) throws IOException {
+    try {
+      var certificates = parseCertificates(new ByteArrayInputStream(pem));
+      if (certificates.isEmpty()) {
+        throw new IOException("The trust bundle does not contain any certificates");
+      }
+
+      return new TrustBundle(certificates);
+    }
+    catch (CertificateException e) {
+      throw new IOException("The trust bundle is malformed", e);
+    }
+  }
+
+  /**
+   * Parse a trust bundle from a file that contains PEM-encoded certificates.
+   */
+  public static TrustBundle parse(Path path) throws IOException {
+    return parse(Files.readAllBytes(path));
+  }
+
+  /**
+   * Validate a certificate chain.
+   *
+   * @param chain chain, starting with the leaf certificate. The chain
+   *              might or might not include the root certificate.
+   * @param date date to validate the chain for.
+   * @return validated chain, ending with the trusted certificate.
+   * @throws CertificateException if the chain isn't valid, or isn't
+   * anchored in this bundle.
+   */
+  public List<X509Certificate> validate(
+    List<X509Certificate> chain,
+    Date date
+  ) throws CertificateException {
+    Preconditions.checkNotNull(chain, "chain");
+    Preconditions.checkArgument(!chain.isEmpty(), "chain");
+
+    //
+    // The certificate path must not contain the trust anchor.
+    //
+    var path = chain
+      .stream()
+      .filter(c -> c == chain.get(0) || !this.trustedCertificates.contains(c))
+      .toList();
+
+    try {
+      var parameters = new PKIXParameters(this.trustAnchors);
+      parameters.setDate(date);
+
+      //
+      // Revocation is checked separately, see ClientPolicy.
+      //
+      parameters.setRevocationEnabled(false);
+
+      var result = (PKIXCertPathValidatorResult)CertPathValidator
+        .getInstance("PKIX")
+        .validate(
+          CertificateFactory.getInstance("X.509").generateCertPath(path),
+          parameters);
+
+      var validatedChain = new ArrayList<>(path);
+      validatedChain.add(result.getTrustAnchor().getTrustedCert());
+      return List.copyOf(validatedChain);
+    }
+    catch (CertificateException e) {
+      throw e;
+    }
+    catch (GeneralSecurityException e) {
+      throw new CertificateException("The certificate chain is invalid: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @return number of trusted certificates.
+   */
+  public int size() {
+    return this.trustAnchors.size();
+  }
+}
@@ -0,0 +1,128 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for Envoy's x-forwarded-client-cert (XFCC) header.
+ *
+ * The header contains one element per proxy that the request passed
+ * through. Each element is a semicolon-separated list of key-value pairs,
+ * for example:
+ *
+ * <pre>
+ * By=spiffe://example.org/server;Hash=1234...;Cert="-----BEGIN%20CERTIFICATE-----..."
+ * </pre>
+ *
+ * Values can be quoted, in which case they can contain commas,
+ * semicolons, and escaped quotes.
+ */
+class XfccHeader {
+  private XfccHeader() {}
+
+  /**
+   * Parse all elements of a header.
+   *
+   * @return elements, in the order of the header. Keys are lower-cased.
+   * @throws IllegalArgumentException if the header is malformed.
+   */
+  static List<Map<String, String>> parse(String header) {
+    Preconditions.checkNotNull(header, "header");
+
+    var elements = new ArrayList<Map<String, String>>();
+    var element = new HashMap<String, String>();
+    var token = new StringBuilder();
+    String key = null;
+    var quoted = false;
+
+    for (int i = 0; i < header.length(); i++) {
+      var c = header.charAt(i);
+
+      if (quoted) {
+        if (c == '\\' && i + 1 < header.length()) {
+          token.append(header.charAt(++i));
+        }
+        else if (c == '"') {
+          quoted = false;
+        }
+        else {
+          token.append(c);
+        }
+      }
+      else if (c == '"') {
+        quoted = true;
+      }
+      else if (c == '=' && key == null) {
+        key = token.toString().trim().toLowerCase();
+        token.setLength(0);
+      }
+      else if (c == ';' || c == ',') {
+        addPair(element, key, token);
+        key = null;
+
+        if (c == ',') {
+          elements.add(element);
+          element = new HashMap<>();
+        }
+      }
+      else {
+        token.append(c);
+      }
+    }
+
+    if (quoted) {
+      throw new IllegalArgumentException("The header contains an unterminated quoted value");
+    }
+
+    addPair(element, key, token);
+    elements.add(element);
+
+    return elements;
+  }
+
+  private static void addPair(Map<String, String> element, String key, StringBuilder value) {
+    if (key == null) {
+      if (!value.toString().isBlank()) {
+        throw new IllegalArgumentException(
+          String.format("The header contains a value without key: '%s'", value));
+      }
+    }
+    else if (key.isEmpty()) {
+      throw new IllegalArgumentException("The header contains an empty key");
+    }
+    else {
+      //
+      // Keys such as URI and DNS can occur multiple times, use
+      // the first occurrence.
+      //
+      element.putIfAbsent(key, value.toString());
+    }
+
+    value.setLength(0);
+  }
+}
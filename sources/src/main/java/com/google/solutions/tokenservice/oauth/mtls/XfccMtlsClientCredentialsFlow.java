@@ -0,0 +1,171 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.TokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.web.LogEvents;
+import io.vertx.core.http.HttpServerRequest;
+
+import javax.enterprise.context.Dependent;
+import javax.ws.rs.ForbiddenException;
+import java.security.cert.CertificateException;
+
+/**
+ * Flow that authenticates clients using mTLS, terminated by an
+ * Envoy proxy that forwards the client certificate in the
+ * x-forwarded-client-cert (XFCC) header.
+ *
+ * Unlike the load balancer, the proxy doesn't necessarily verify
+ * the certificate chain, so the flow validates it against a trust
+ * bundle.
+ */
+@Dependent
+public class XfccMtlsClientCredentialsFlow extends MtlsClientCredentialsFlow {
+  public static final String NAME = "xfcc-mtls-client-credentials";
+
+  private final Options options;
+  private final ForwardedCertificateValidator validator;
+  private final HttpServerRequest request;
+
+  public XfccMtlsClientCredentialsFlow(
+    Options options,
+    ForwardedCertificateValidator validator,
+    ClientPolicy clientPolicy,
+    IdTokenIssuer issuer,
+    WorkloadIdentityPool workloadIdentityPool,
+    TokenCache tokenCache,
+    HttpServerRequest request,
+    LogAdapter logAdapter
+  ) {
+    super(clientPolicy, issuer, workloadIdentityPool, tokenCache, logAdapter);
+
+    Preconditions.checkNotNull(options, "options");
+    Preconditions.checkNotNull(validator, "validator");
+    Preconditions.checkNotNull(request, "request");
+
+    this.options = options;
+    this.validator = validator;
+    this.request = request;
+  }
+
+  //---------------------------------------------------------------------------
+  // Overrides.
+  //---------------------------------------------------------------------------
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public boolean canAuthenticate(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    if (Strings.isNullOrEmpty(this.request.headers().get(this.options.headerName()))) {
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.API_TOKEN,
+          String.format(
+            "The header %s is missing, verify that the proxy is configured to forward client certificates",
+            this.options.headerName()))
+        .write();
+
+      return false;
+    }
+
+    return super.canAuthenticate(request);
+  }
+
+  @Override
+  public MtlsClientAttributes getVerifiedClientAttributes(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    if (!canAuthenticate(request)) {
+      throw new ForbiddenException(
+        "The request did not include a client certificate");
+    }
+
+    //
+    // Each proxy appends an element to the header, so the last element
+    // is the one added by the proxy in front of the application.
+    //
+    // NB. As with the load balancer, there's no way for us to confirm that
+    // it was really the proxy that added the header. But if the application
+    // has been deployed correctly, then there shouldn't be any way for clients
+    // to sidestep the proxy.
+    //
+    ClientCertificateCache.Attributes attributes;
+    try {
+      var elements = XfccHeader.parse(this.request.headers().get(this.options.headerName()));
+      var element = elements.get(elements.size() - 1);
+
+      attributes = this.validator.validate(element.get("cert"), element.get("chain"));
+    }
+    catch (IllegalArgumentException | CertificateException e) {
+      this.logAdapter
+        .newErrorEntry(
+          LogEvents.API_TOKEN,
+          String.format("The forwarded client certificate did not pass verification: %s", e.getMessage()))
+        .write();
+
+      throw new ForbiddenException("The client certificate did not pass verification");
+    }
+
+    var clientId = this.options.clientIdAttribute().select(attributes);
+    if (Strings.isNullOrEmpty(clientId)) {
+      throw new ForbiddenException(
+        String.format(
+          "The client presented a valid certificate, but the certificate does not contain a %s",
+          this.options.clientIdAttribute().name().toLowerCase()));
+    }
+
+    this.logAdapter
+      .newInfoEntry(
+        LogEvents.API_TOKEN,
+        String.format("Authenticated client '%s' using a forwarded client certificate", clientId))
+      .addLabel("certificate/sha256", attributes.sha256fingerprint())
+      .addLabel("certificate/serial", attributes.serialNumber())
+      .write();
+
+    return attributes.toClientAttributes(clientId);
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner classes.
+  // -------------------------------------------------------------------------
+
+  /**
+   * @param headerName name of the XFCC header.
+   * @param clientIdAttribute certificate attribute to use as client ID.
+   */
+  public record Options(
+    String headerName,
+    ClientIdAttribute clientIdAttribute
+  ) {}
+}
@@ -25,6 +25,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
 import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.TokenCache;
 import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
 import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
 import com.google.solutions.tokenservice.platform.LogAdapter;
@@ -65,10 +66,11 @@ public class XlbMtlsClientCredentialsFlow extends MtlsClientCredentialsFlow {
     ClientPolicy clientRepository,
     IdTokenIssuer issuer,
     WorkloadIdentityPool workloadIdentityPool,
+    TokenCache tokenCache,
     HttpServerRequest request,
     LogAdapter logAdapter
   ) {
-    super(clientRepository, issuer, workloadIdentityPool, logAdapter);
+    super(clientRepository, issuer, workloadIdentityPool, tokenCache, logAdapter);
 
     Preconditions.checkNotNull(request, "request");
     Preconditions.checkNotNull(options, "options");
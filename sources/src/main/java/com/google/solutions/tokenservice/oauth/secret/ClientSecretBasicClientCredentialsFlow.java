@@ -0,0 +1,155 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.secret;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.ClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.TokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.web.LogEvents;
+import io.vertx.core.http.HttpServerRequest;
+
+import javax.enterprise.context.Dependent;
+import javax.ws.rs.ForbiddenException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+
+/**
+ * Flow that authenticates clients using a client ID and secret that
+ * they pass in an HTTP Basic authorization header (client_secret_basic).
+ *
+ * This flow is meant for legacy clients that can't use mTLS or
+ * client assertions.
+ */
+@Dependent
+public class ClientSecretBasicClientCredentialsFlow extends ClientCredentialsFlow {
+  public static final String NAME = "client-secret-basic-client-credentials";
+
+  private static final String SCHEME = "Basic ";
+
+  private final ClientSecretVerifier verifier;
+  private final HttpServerRequest request;
+
+  public ClientSecretBasicClientCredentialsFlow(
+    ClientSecretVerifier verifier,
+    IdTokenIssuer issuer,
+    WorkloadIdentityPool workloadIdentityPool,
+    TokenCache tokenCache,
+    HttpServerRequest request,
+    LogAdapter logAdapter
+  ) {
+    super(issuer, workloadIdentityPool, tokenCache, logAdapter);
+
+    Preconditions.checkNotNull(verifier, "verifier");
+    Preconditions.checkNotNull(request, "request");
+
+    this.verifier = verifier;
+    this.request = request;
+  }
+
+  private String authorizationHeader() {
+    var header = this.request.headers().get("Authorization");
+    return header != null && header.regionMatches(true, 0, SCHEME, 0, SCHEME.length())
+      ? header
+      : null;
+  }
+
+  //---------------------------------------------------------------------------
+  // Overrides.
+  //---------------------------------------------------------------------------
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public String authenticationMethod() {
+    return "client_secret_basic";
+  }
+
+  @Override
+  public boolean canAuthenticate(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    return authorizationHeader() != null && super.canAuthenticate(request);
+  }
+
+  @Override
+  protected AuthenticatedClient authenticateClient(AuthenticationRequest request) {
+    Preconditions.checkNotNull(request, "request");
+
+    var header = authorizationHeader();
+    if (header == null) {
+      throw new ForbiddenException("The request does not contain client credentials");
+    }
+
+    //
+    // The client ID and secret are form-encoded before they're
+    // Base64-encoded, cf. RFC6749 2.3.1.
+    //
+    String clientId;
+    String secret;
+    try {
+      var credentials = new String(
+        Base64.getDecoder().decode(header.substring(SCHEME.length()).trim()),
+        StandardCharsets.UTF_8);
+
+      var separator = credentials.indexOf(':');
+      if (separator <= 0) {
+        throw new ForbiddenException("The client credentials are malformed");
+      }
+
+      clientId = URLDecoder.decode(credentials.substring(0, separator), StandardCharsets.UTF_8);
+      secret = URLDecoder.decode(credentials.substring(separator + 1), StandardCharsets.UTF_8);
+    }
+    catch (IllegalArgumentException e) {
+      throw new ForbiddenException("The client credentials are malformed");
+    }
+
+    var requestedClientId = request.parameters().getFirst("client_id");
+    if (!Strings.isNullOrEmpty(requestedClientId) && !requestedClientId.equals(clientId)) {
+      throw new ForbiddenException("The client ID does not match the client credentials");
+    }
+
+    this.verifier.verify(clientId, secret);
+
+    this.logAdapter
+      .newInfoEntry(
+        LogEvents.API_TOKEN,
+        String.format("Authenticated client '%s' using a client secret", clientId))
+      .write();
+
+    return new AuthenticatedClient(
+      clientId,
+      Instant.now(),
+      new HashMap<>());
+  }
+}
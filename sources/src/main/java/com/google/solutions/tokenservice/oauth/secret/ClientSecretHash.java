@@ -0,0 +1,135 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.secret;
+
+import com.google.common.base.Preconditions;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * PBKDF2 hash of a client secret, in PHC string format, for example
+ * {@code $pbkdf2-sha256$i=600000$<salt>$<hash>}. Salt and hash are
+ * Base64-encoded.
+ *
+ * @param algorithm JCA name of the PBKDF2 algorithm.
+ * @param iterations number of iterations.
+ * @param salt salt.
+ * @param hash expected key.
+ */
+public record ClientSecretHash(
+  String algorithm,
+  int iterations,
+  byte[] salt,
+  byte[] hash
+) {
+  private static final int MIN_SALT_LENGTH = 8;
+  private static final int MIN_HASH_LENGTH = 16;
+
+  public ClientSecretHash {
+    Preconditions.checkNotNull(algorithm, "algorithm");
+    Preconditions.checkNotNull(salt, "salt");
+    Preconditions.checkNotNull(hash, "hash");
+  }
+
+  /**
+   * Parse a hash in PHC string format.
+   *
+   * @throws IOException if the hash is malformed or uses an
+   * unsupported algorithm.
+   */
+  public static ClientSecretHash parse(String value) throws IOException {
+    Preconditions.checkNotNull(value, "value");
+
+    var parts = value.split("\\$", -1);
+    if (parts.length != 5 || !parts[0].isEmpty() || !parts[2].startsWith("i=")) {
+      throw new IOException("The hash is not in PHC string format");
+    }
+
+    var algorithm = switch (parts[1]) {
+      case "pbkdf2-sha256" -> "PBKDF2WithHmacSHA256";
+      case "pbkdf2-sha512" -> "PBKDF2WithHmacSHA512";
+      default -> throw new IOException(
+        String.format("The hash algorithm '%s' is not supported", parts[1]));
+    };
+
+    int iterations;
+    byte[] salt;
+    byte[] hash;
+    try {
+      iterations = Integer.parseInt(parts[2].substring(2));
+      salt = Base64.getDecoder().decode(parts[3]);
+      hash = Base64.getDecoder().decode(parts[4]);
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException("The hash is malformed", e);
+    }
+
+    if (iterations <= 0) {
+      throw new IOException("The number of iterations must be positive");
+    }
+    else if (salt.length < MIN_SALT_LENGTH) {
+      throw new IOException(
+        String.format("The salt must be at least %d bytes long", MIN_SALT_LENGTH));
+    }
+    else if (hash.length < MIN_HASH_LENGTH) {
+      throw new IOException(
+        String.format("The hash must be at least %d bytes long", MIN_HASH_LENGTH));
+    }
+
+    return new ClientSecretHash(algorithm, iterations, salt, hash);
+  }
+
+  /**
+   * Check if a secret matches the hash. This is a slow operation.
+   */
+  public boolean matches(String secret) {
+    Preconditions.checkNotNull(secret, "secret");
+
+    var spec = new PBEKeySpec(
+      secret.toCharArray(),
+      this.salt,
+      this.iterations,
+      this.hash.length * 8);
+    try {
+      var derived = SecretKeyFactory
+        .getInstance(this.algorithm)
+        .generateSecret(spec)
+        .getEncoded();
+
+      //
+      // Compare in constant time.
+      //
+      return MessageDigest.isEqual(derived, this.hash);
+    }
+    catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Deriving a key from the secret failed", e);
+    }
+    finally {
+      spec.clearPassword();
+    }
+  }
+}
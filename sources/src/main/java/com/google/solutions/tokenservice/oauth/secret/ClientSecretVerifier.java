@@ -0,0 +1,226 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.secret;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import javax.ws.rs.ForbiddenException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Verifies client secrets against their PBKDF2 hashes.
+ *
+ * Deriving a key is deliberately slow, so successful verifications are
+ * cached for a short time. The cache is keyed by an HMAC of the client ID
+ * and secret, using a key that's generated at startup, so the cache never
+ * contains secrets or unsalted hashes of them.
+ *
+ * To slow down guessing attacks, clients are locked out for a while
+ * after too many failed attempts.
+ */
+public class ClientSecretVerifier {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final Supplier<Map<String, ClientSecretHash>> clients;
+  private final Options options;
+  private final HashFunction cacheKeyFunction;
+
+  /**
+   * Verified secrets, by HMAC of client ID and secret. The value is the
+   * hash that the secret was verified against.
+   */
+  private final Cache<HashCode, ClientSecretHash> verifiedSecrets;
+
+  /**
+   * Number of recent failed attempts, by client ID.
+   */
+  private final Cache<String, AtomicInteger> failedAttempts;
+
+  ClientSecretVerifier(
+    Supplier<Map<String, ClientSecretHash>> clients,
+    Options options,
+    Ticker ticker
+  ) {
+    Preconditions.checkNotNull(clients, "clients");
+    Preconditions.checkNotNull(options, "options");
+    Preconditions.checkNotNull(ticker, "ticker");
+    Preconditions.checkArgument(options.maxFailedAttempts() > 0, "maxFailedAttempts");
+
+    var cacheKey = new byte[32];
+    new SecureRandom().nextBytes(cacheKey);
+
+    this.clients = clients;
+    this.options = options;
+    this.cacheKeyFunction = Hashing.hmacSha256(cacheKey);
+    this.verifiedSecrets = CacheBuilder.newBuilder()
+      .ticker(ticker)
+      .maximumSize(options.maxEntries())
+      .expireAfterWrite(options.cacheDuration())
+      .build();
+    this.failedAttempts = CacheBuilder.newBuilder()
+      .ticker(ticker)
+      .maximumSize(options.maxEntries())
+      .expireAfterWrite(options.lockoutDuration())
+      .build();
+  }
+
+  public ClientSecretVerifier(
+    Supplier<Map<String, ClientSecretHash>> clients,
+    Options options
+  ) {
+    this(clients, options, Ticker.systemTicker());
+  }
+
+  /**
+   * Parse a JSON document that maps client IDs to secret hashes.
+   */
+  public static Map<String, ClientSecretHash> parse(InputStream stream) throws IOException {
+    var document = MAPPER.readTree(stream);
+    if (document == null || !document.isObject()) {
+      throw new IOException("The document does not contain a JSON object");
+    }
+
+    var clients = new HashMap<String, ClientSecretHash>();
+    var fields = document.fields();
+    while (fields.hasNext()) {
+      var entry = fields.next();
+      if (!entry.getValue().isTextual()) {
+        throw new IOException(
+          String.format("The entry for '%s' does not contain a hash", entry.getKey()));
+      }
+
+      try {
+        clients.put(entry.getKey(), ClientSecretHash.parse(entry.getValue().asText()));
+      }
+      catch (IOException e) {
+        throw new IOException(
+          String.format("The secret hash of client '%s' is invalid", entry.getKey()),
+          e);
+      }
+    }
+
+    return Map.copyOf(clients);
+  }
+
+  /**
+   * Parse a JSON file that maps client IDs to secret hashes.
+   */
+  public static Map<String, ClientSecretHash> parse(Path path) throws IOException {
+    try (var stream = Files.newInputStream(path)) {
+      return parse(stream);
+    }
+  }
+
+  /**
+   * Verify a client's secret.
+   *
+   * @throws ForbiddenException if the client is unknown, the secret
+   * is wrong, or the client has been locked out.
+   */
+  public void verify(String clientId, String secret) {
+    Preconditions.checkNotNull(clientId, "clientId");
+    Preconditions.checkNotNull(secret, "secret");
+
+    var hash = this.clients.get().get(clientId);
+    if (hash == null) {
+      throw new ForbiddenException(
+        String.format("The client '%s' is unknown", clientId));
+    }
+
+    //
+    // Length-prefix the client ID so that (a, bc) and (ab, c) yield
+    // different keys. HashCode compares in constant time.
+    //
+    var cacheKey = this.cacheKeyFunction.newHasher()
+      .putInt(clientId.length())
+      .putString(clientId, StandardCharsets.UTF_8)
+      .putString(secret, StandardCharsets.UTF_8)
+      .hash();
+
+    if (this.verifiedSecrets.getIfPresent(cacheKey) == hash) {
+      //
+      // Verified before, against the current hash. Let this take precedence
+      // over the lockout so that attackers can't lock out legitimate clients.
+      //
+      return;
+    }
+
+    var attempts = this.failedAttempts.getIfPresent(clientId);
+    if (attempts != null && attempts.get() >= this.options.maxFailedAttempts()) {
+      throw new ForbiddenException(
+        String.format("The client '%s' is temporarily locked out due to failed attempts", clientId));
+    }
+
+    if (!hash.matches(secret)) {
+      this.failedAttempts.asMap()
+        .computeIfAbsent(clientId, id -> new AtomicInteger())
+        .incrementAndGet();
+      throw new ForbiddenException(
+        String.format("The secret for client '%s' is invalid", clientId));
+    }
+
+    this.verifiedSecrets.put(cacheKey, hash);
+    this.failedAttempts.invalidate(clientId);
+  }
+
+  /**
+   * @return number of cached verifications.
+   */
+  long size() {
+    return this.verifiedSecrets.size();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * @param cacheDuration time to cache successful verifications.
+   * @param maxEntries maximum number of verifications and lockouts to track.
+   * @param maxFailedAttempts number of failed attempts after which a client
+   *                          is locked out.
+   * @param lockoutDuration time window for counting failed attempts.
+   */
+  public record Options(
+    Duration cacheDuration,
+    long maxEntries,
+    int maxFailedAttempts,
+    Duration lockoutDuration
+  ) {}
+}
@@ -0,0 +1,128 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.google.common.base.Preconditions;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encrypts data using AES-GCM with a random IV. The IV is
+ * prepended to the ciphertext.
+ */
+public class AesGcmCipher {
+  private static final String ALGORITHM = "AES";
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+  private static final int KEY_LENGTH = 32;
+  private static final int TAG_LENGTH_BITS = 128;
+
+  static final int IV_LENGTH = 12;
+
+  private final SecureRandom random = new SecureRandom();
+  private final SecretKey key;
+
+  public AesGcmCipher(SecretKey key) {
+    Preconditions.checkNotNull(key, "key");
+    this.key = key;
+  }
+
+  /**
+   * Parse a Base64-encoded 256-bit AES key.
+   */
+  public static SecretKey parseKey(String encodedKey) {
+    Preconditions.checkNotNull(encodedKey, "encodedKey");
+
+    var key = Base64.getDecoder().decode(encodedKey);
+    if (key.length != KEY_LENGTH) {
+      throw new IllegalArgumentException(
+        String.format("The key must be %d bytes long", KEY_LENGTH));
+    }
+
+    return new SecretKeySpec(key, ALGORITHM);
+  }
+
+  /**
+   * Encrypt data.
+   *
+   * @param plaintext data to encrypt.
+   * @param associatedData data to authenticate, but not encrypt.
+   * @return IV followed by ciphertext.
+   */
+  public byte[] encrypt(
+    byte[] plaintext,
+    byte[] associatedData
+  ) throws GeneralSecurityException {
+    Preconditions.checkNotNull(plaintext, "plaintext");
+    Preconditions.checkNotNull(associatedData, "associatedData");
+
+    var iv = new byte[IV_LENGTH];
+    this.random.nextBytes(iv);
+
+    var cipher = Cipher.getInstance(TRANSFORMATION);
+    cipher.init(Cipher.ENCRYPT_MODE, this.key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+    cipher.updateAAD(associatedData);
+
+    var ciphertext = cipher.doFinal(plaintext);
+    return ByteBuffer
+      .allocate(IV_LENGTH + ciphertext.length)
+      .put(iv)
+      .put(ciphertext)
+      .array();
+  }
+
+  /**
+   * Decrypt data.
+   *
+   * @param encrypted IV followed by ciphertext.
+   * @param associatedData data that was authenticated during encryption.
+   * @throws GeneralSecurityException if the data was tampered with or
+   * encrypted using a different key.
+   */
+  public byte[] decrypt(
+    byte[] encrypted,
+    byte[] associatedData
+  ) throws GeneralSecurityException {
+    Preconditions.checkNotNull(encrypted, "encrypted");
+    Preconditions.checkNotNull(associatedData, "associatedData");
+
+    if (encrypted.length < IV_LENGTH) {
+      throw new GeneralSecurityException("The encrypted data is truncated");
+    }
+
+    var cipher = Cipher.getInstance(TRANSFORMATION);
+    cipher.init(
+      Cipher.DECRYPT_MODE,
+      this.key,
+      new GCMParameterSpec(TAG_LENGTH_BITS, Arrays.copyOf(encrypted, IV_LENGTH)));
+    cipher.updateAAD(associatedData);
+
+    return cipher.doFinal(encrypted, IV_LENGTH, encrypted.length - IV_LENGTH);
+  }
+}
@@ -21,6 +21,7 @@
 package com.google.solutions.tokenservice.platform;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
 
 public class ApiException extends Exception {
   protected ApiException(String message) {
@@ -30,10 +31,14 @@ public class ApiException extends Exception {
     super(message, inner);
   }
 
-  public static ApiException from(GoogleJsonResponseException e) {
-    return new ApiException(
-      e.getDetails() != null && e.getDetails().getMessage() != null
-        ? e.getDetails().getMessage()
-        : e.getMessage());
+  public static ApiException from(HttpResponseException e) {
+    if (e instanceof GoogleJsonResponseException jsonException &&
+      jsonException.getDetails() != null &&
+      jsonException.getDetails().getMessage() != null) {
+      return new ApiException(jsonException.getDetails().getMessage());
+    }
+    else {
+      return new ApiException(e.getMessage());
+    }
   }
 }
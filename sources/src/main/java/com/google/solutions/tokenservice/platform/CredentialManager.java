@@ -0,0 +1,321 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages the access token of a set of credentials.
+ *
+ * Unlike HttpCredentialsAdapter, which refreshes the token when a
+ * request finds it expired (and makes that request wait), the credential
+ * manager refreshes the token in the background, well before it expires.
+ * Requests read the current token without locking, and only wait for a
+ * refresh if there's no valid token at all.
+ */
+public class CredentialManager implements HttpRequestInitializer, AutoCloseable {
+  /**
+   * Minimum remaining lifetime for a token to be handed out.
+   */
+  static final Duration MIN_REMAINING_LIFETIME = Duration.ofSeconds(30);
+
+  static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+  static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+  private final GoogleCredentials credentials;
+  private final Duration refreshMargin;
+  private final ScheduledExecutorService executor;
+  private final LogAdapter logAdapter;
+
+  /**
+   * Current token, null if none has been obtained yet.
+   */
+  private volatile AccessToken accessToken;
+  private volatile Statistics statistics = new Statistics(0, 0, null, null, null);
+
+  private int consecutiveFailures;
+
+  CredentialManager(
+    GoogleCredentials credentials,
+    Duration refreshMargin,
+    ScheduledExecutorService executor,
+    LogAdapter logAdapter
+  ) {
+    Preconditions.checkNotNull(credentials, "credentials");
+    Preconditions.checkNotNull(refreshMargin, "refreshMargin");
+    Preconditions.checkNotNull(executor, "executor");
+    Preconditions.checkNotNull(logAdapter, "logAdapter");
+    Preconditions.checkArgument(!refreshMargin.isNegative(), "refreshMargin");
+
+    this.credentials = credentials;
+    this.refreshMargin = refreshMargin;
+    this.executor = executor;
+    this.logAdapter = logAdapter;
+  }
+
+  public CredentialManager(
+    GoogleCredentials credentials,
+    Duration refreshMargin,
+    LogAdapter logAdapter
+  ) {
+    this(
+      credentials,
+      refreshMargin,
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("credential-manager")
+        .build()),
+      logAdapter);
+  }
+
+  private static boolean isUsable(AccessToken token) {
+    return token != null && (token.getExpirationTime() == null ||
+      token.getExpirationTime().toInstant().isAfter(Instant.now().plus(MIN_REMAINING_LIFETIME)));
+  }
+
+  /**
+   * Calculate when to refresh a token.
+   *
+   * Normally, that's when the remaining lifetime drops below the refresh
+   * margin. But the metadata server hands out cached tokens that might
+   * already be within the margin, so we never wait less than half of the
+   * remaining lifetime. That way, we keep retrying, but don't end up in
+   * a tight loop.
+   */
+  static Duration refreshDelay(Duration remainingLifetime, Duration refreshMargin) {
+    var delay = remainingLifetime.minus(refreshMargin);
+    var halfLifetime = remainingLifetime.dividedBy(2);
+
+    if (delay.compareTo(halfLifetime) < 0) {
+      delay = halfLifetime;
+    }
+
+    return delay.compareTo(MIN_BACKOFF) < 0 ? MIN_BACKOFF : delay;
+  }
+
+  private void schedule(Duration delay) {
+    try {
+      this.executor.schedule(
+        this::refreshInBackground,
+        delay.toMillis(),
+        TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException ignored) {
+      //
+      // Manager has been closed.
+      //
+    }
+  }
+
+  /**
+   * Refresh the token and update statistics.
+   */
+  private synchronized AccessToken refresh() throws IOException {
+    var startTime = System.nanoTime();
+    var previous = this.statistics;
+
+    try {
+      var token = this.credentials.refreshAccessToken();
+      Preconditions.checkState(token != null, "The credentials returned no token");
+
+      var latency = Duration.ofNanos(System.nanoTime() - startTime);
+      this.accessToken = token;
+      this.consecutiveFailures = 0;
+      this.statistics = new Statistics(
+        previous.refreshes + 1,
+        previous.failures,
+        latency,
+        token.getExpirationTime() != null ? token.getExpirationTime().toInstant() : null,
+        null);
+
+      this.logAdapter
+        .newInfoEntry(
+          LogEvents.RUNTIME_CREDENTIALS,
+          String.format("Refreshed access token in %d ms", latency.toMillis()))
+        .addLabel("latency_ms", String.valueOf(latency.toMillis()))
+        .write();
+
+      return token;
+    }
+    catch (IOException | RuntimeException e) {
+      var latency = Duration.ofNanos(System.nanoTime() - startTime);
+      this.consecutiveFailures++;
+      this.statistics = new Statistics(
+        previous.refreshes,
+        previous.failures + 1,
+        latency,
+        previous.tokenExpiry,
+        Exceptions.getFullMessage(e));
+
+      this.logAdapter
+        .newErrorEntry(
+          LogEvents.RUNTIME_CREDENTIALS,
+          String.format(
+            "Refreshing access token failed after %d ms: %s",
+            latency.toMillis(),
+            Exceptions.getFullMessage(e)))
+        .addLabel("latency_ms", String.valueOf(latency.toMillis()))
+        .write();
+
+      throw e;
+    }
+  }
+
+  private void refreshInBackground() {
+    Duration nextRefresh;
+    try {
+      var token = refresh();
+      nextRefresh = token.getExpirationTime() != null
+        ? refreshDelay(
+            Duration.between(Instant.now(), token.getExpirationTime().toInstant()),
+            this.refreshMargin)
+        : null;
+    }
+    catch (Exception e) {
+      synchronized (this) {
+        var factor = 1L << Math.min(this.consecutiveFailures - 1, 16);
+        nextRefresh = MIN_BACKOFF.multipliedBy(factor);
+        if (nextRefresh.compareTo(MAX_BACKOFF) > 0) {
+          nextRefresh = MAX_BACKOFF;
+        }
+      }
+    }
+
+    if (nextRefresh != null) {
+      schedule(nextRefresh);
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  // Public methods.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Start refreshing the token in the background.
+   */
+  public void start() {
+    schedule(Duration.ZERO);
+  }
+
+  /**
+   * Get a usable access token. If the current token is still usable,
+   * return it immediately. Otherwise, refresh the token synchronously.
+   *
+   * NB. Even if background refreshes are scheduled, they might run late
+   * if the CPU is throttled between requests (as Cloud Run does by default).
+   */
+  public AccessToken getAccessToken() throws IOException {
+    var token = this.accessToken;
+    if (isUsable(token)) {
+      return token;
+    }
+
+    synchronized (this) {
+      //
+      // Another thread might have refreshed the token while we were
+      // waiting for the lock.
+      //
+      token = this.accessToken;
+      return isUsable(token) ? token : refresh();
+    }
+  }
+
+  /**
+   * @return statistics about token refreshes.
+   */
+  public Statistics statistics() {
+    return this.statistics;
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  //---------------------------------------------------------------------------
+  // HttpRequestInitializer.
+  //---------------------------------------------------------------------------
+
+  @Override
+  public void initialize(HttpRequest request) throws IOException {
+    var token = getAccessToken();
+    request.getHeaders().setAuthorization("Bearer " + token.getTokenValue());
+
+    request.setUnsuccessfulResponseHandler((req, response, supportsRetry) -> {
+      if (response.getStatusCode() != 401 || !supportsRetry) {
+        return false;
+      }
+
+      //
+      // The token was rejected, it might have been revoked. Unless
+      // someone else refreshed it already, force a refresh and retry.
+      //
+      AccessToken newToken;
+      synchronized (this) {
+        newToken = this.accessToken != token ? this.accessToken : refresh();
+      }
+
+      if (newToken == null || newToken.getTokenValue().equals(token.getTokenValue())) {
+        return false;
+      }
+
+      req.getHeaders().setAuthorization("Bearer " + newToken.getTokenValue());
+      return true;
+    });
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Refresh statistics.
+   *
+   * @param refreshes number of successful refreshes.
+   * @param failures number of failed refreshes.
+   * @param lastRefreshLatency latency of last refresh, null if none.
+   * @param tokenExpiry expiry of current token, null if unknown.
+   * @param lastError error message if the last refresh failed, null otherwise.
+   */
+  public record Statistics(
+    long refreshes,
+    long failures,
+    Duration lastRefreshLatency,
+    Instant tokenExpiry,
+    String lastError
+  ) {}
+}
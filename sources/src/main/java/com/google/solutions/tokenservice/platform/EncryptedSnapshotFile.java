@@ -0,0 +1,215 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * File that stores a snapshot of expiring records, encrypted
+ * using AES-GCM.
+ *
+ * Each record is encrypted individually, and its expiry time is
+ * stored in plaintext (but authenticated). That lets readers skip
+ * expired records without decrypting them. The file is read and
+ * written using memory-mapped I/O.
+ *
+ * File layout:
+ *
+ *   magic (4 bytes)
+ *   records, each consisting of:
+ *     expiry (8 bytes, epoch seconds)
+ *     length of encrypted data (4 bytes)
+ *     encrypted data (IV, ciphertext, and authentication tag)
+ */
+public class EncryptedSnapshotFile {
+  private static final int MAGIC = 0x58545332; // "XTS2"
+  private static final int RECORD_HEADER_LENGTH = Long.BYTES + Integer.BYTES;
+
+  private final Path path;
+  private final AesGcmCipher cipher;
+
+  public EncryptedSnapshotFile(Path path, AesGcmCipher cipher) {
+    Preconditions.checkNotNull(path, "path");
+    Preconditions.checkNotNull(cipher, "cipher");
+
+    this.path = path;
+    this.cipher = cipher;
+  }
+
+  public Path path() {
+    return this.path;
+  }
+
+  /**
+   * Replace the file with a new snapshot. The file is replaced
+   * atomically, so readers never see a partially written snapshot.
+   */
+  public void write(Collection<Record> records) throws IOException {
+    Preconditions.checkNotNull(records, "records");
+
+    //
+    // Encrypt all records first so that we know the size of the file.
+    //
+    var encryptedRecords = new ArrayList<byte[]>(records.size());
+    var size = (long)Integer.BYTES;
+    try {
+      for (var record : records) {
+        var encryptedData = this.cipher.encrypt(record.data(), expiryBytes(record.expiry()));
+        var encryptedRecord = ByteBuffer
+          .allocate(RECORD_HEADER_LENGTH + encryptedData.length)
+          .putLong(record.expiry().getEpochSecond())
+          .putInt(encryptedData.length)
+          .put(encryptedData)
+          .array();
+
+        encryptedRecords.add(encryptedRecord);
+        size += encryptedRecord.length;
+      }
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("Encrypting the snapshot failed", e);
+    }
+
+    //
+    // Write to a temporary file in the same directory, then move it
+    // into place. Temporary files are only accessible by the owner.
+    //
+    var directory = this.path.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    var tempFile = Files.createTempFile(directory, this.path.getFileName().toString(), ".tmp");
+    try {
+      try (var channel = FileChannel.open(
+        tempFile,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+        var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(MAGIC);
+        for (var encryptedRecord : encryptedRecords) {
+          buffer.put(encryptedRecord);
+        }
+        buffer.force();
+      }
+
+      Files.move(
+        tempFile,
+        this.path,
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * Read all records that are not expired at the given time. Expired
+   * records are skipped without being decrypted.
+   *
+   * @return records, or an empty list if the file doesn't exist.
+   * @throws IOException if the file is corrupt or was encrypted
+   * using a different key.
+   */
+  public List<Record> read(Instant notExpiredAt) throws IOException {
+    Preconditions.checkNotNull(notExpiredAt, "notExpiredAt");
+
+    try (var channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC) {
+        throw new IOException("The file is not a snapshot file");
+      }
+
+      var records = new ArrayList<Record>();
+      while (buffer.hasRemaining()) {
+        var expiry = Instant.ofEpochSecond(buffer.getLong());
+        var length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+          throw new IOException("The snapshot file is truncated");
+        }
+
+        if (!expiry.isAfter(notExpiredAt)) {
+          //
+          // Expired, skip.
+          //
+          buffer.position(buffer.position() + length);
+          continue;
+        }
+
+        var encryptedData = new byte[length];
+        buffer.get(encryptedData);
+
+        records.add(new Record(
+          expiry,
+          this.cipher.decrypt(encryptedData, expiryBytes(expiry))));
+      }
+
+      return records;
+    }
+    catch (NoSuchFileException e) {
+      return List.of();
+    }
+    catch (BufferUnderflowException e) {
+      throw new IOException("The snapshot file is truncated", e);
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException(
+        "The snapshot file is corrupt or was encrypted using a different key", e);
+    }
+  }
+
+  private static byte[] expiryBytes(Instant expiry) {
+    return ByteBuffer
+      .allocate(Long.BYTES)
+      .putLong(expiry.getEpochSecond())
+      .array();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * A record in a snapshot.
+   *
+   * @param expiry time after which the record is no longer needed.
+   * @param data opaque data.
+   */
+  public record Record(
+    Instant expiry,
+    byte[] data
+  ) {}
+}
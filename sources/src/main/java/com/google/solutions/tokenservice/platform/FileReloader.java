@@ -0,0 +1,194 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a parsed copy of a file, and reloads it when the file changes.
+ *
+ * The file is checked for changes periodically, which (unlike a watch
+ * service) also works for network file systems and for volumes that are
+ * updated by replacing symlinks. A reload replaces the parsed copy
+ * atomically. If a reload fails, the last-known-good copy is retained.
+ */
+public class FileReloader<T> implements Supplier<T>, AutoCloseable {
+  private final Path path;
+  private final Parser<T> parser;
+  private final Duration checkInterval;
+  private final ScheduledExecutorService executor;
+  private final LogAdapter logAdapter;
+
+  private volatile Snapshot<T> snapshot;
+
+  /**
+   * Create a reloader and load the file.
+   *
+   * @throws IOException if the file can't be loaded.
+   */
+  FileReloader(
+    Path path,
+    Parser<T> parser,
+    Duration checkInterval,
+    ScheduledExecutorService executor,
+    LogAdapter logAdapter
+  ) throws IOException {
+    Preconditions.checkNotNull(path, "path");
+    Preconditions.checkNotNull(parser, "parser");
+    Preconditions.checkNotNull(checkInterval, "checkInterval");
+    Preconditions.checkNotNull(executor, "executor");
+    Preconditions.checkNotNull(logAdapter, "logAdapter");
+    Preconditions.checkArgument(!checkInterval.isNegative() && !checkInterval.isZero());
+
+    this.path = path;
+    this.parser = parser;
+    this.checkInterval = checkInterval;
+    this.executor = executor;
+    this.logAdapter = logAdapter;
+    this.snapshot = load();
+  }
+
+  /**
+   * Create a reloader and load the file.
+   *
+   * @throws IOException if the file can't be loaded.
+   */
+  public FileReloader(
+    Path path,
+    Parser<T> parser,
+    Duration checkInterval,
+    LogAdapter logAdapter
+  ) throws IOException {
+    this(
+      path,
+      parser,
+      checkInterval,
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("file-reloader")
+        .build()),
+      logAdapter);
+  }
+
+  private Snapshot<T> load() throws IOException {
+    //
+    // Read the attributes first so that a change that happens while
+    // we're parsing the file is picked up by the next check.
+    //
+    var attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+    return new Snapshot<>(
+      this.parser.parse(this.path),
+      attributes.lastModifiedTime(),
+      attributes.size());
+  }
+
+  /**
+   * Reload the file if its modification time or size changed.
+   *
+   * @return true if the file was reloaded.
+   */
+  boolean reloadIfModified() {
+    try {
+      var attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+      var current = this.snapshot;
+      if (attributes.lastModifiedTime().equals(current.lastModifiedTime()) &&
+        attributes.size() == current.size()) {
+        return false;
+      }
+
+      this.snapshot = load();
+
+      this.logAdapter
+        .newInfoEntry(
+          LogEvents.RUNTIME_FILE_RELOAD,
+          String.format("Reloaded %s", this.path))
+        .write();
+
+      return true;
+    }
+    catch (Exception e) {
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_FILE_RELOAD,
+          String.format(
+            "Reloading %s failed, keeping last-known-good copy: %s",
+            this.path,
+            Exceptions.getFullMessage(e)))
+        .write();
+
+      return false;
+    }
+  }
+
+  /**
+   * @return parsed copy of the file.
+   */
+  @Override
+  public T get() {
+    return this.snapshot.value();
+  }
+
+  /**
+   * Start checking the file for changes periodically.
+   */
+  public void start() {
+    this.executor.scheduleWithFixedDelay(
+      this::reloadIfModified,
+      this.checkInterval.toMillis(),
+      this.checkInterval.toMillis(),
+      TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  @FunctionalInterface
+  public interface Parser<T> {
+    T parse(Path path) throws IOException;
+  }
+
+  private record Snapshot<T>(
+    T value,
+    FileTime lastModifiedTime,
+    long size
+  ) {}
+}
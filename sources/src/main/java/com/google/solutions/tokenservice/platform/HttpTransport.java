@@ -34,8 +34,37 @@ import java.security.KeyStore;
  * system property.
  */
 public class HttpTransport {
+  private static com.google.api.client.http.HttpTransport sharedTransport;
+
   private HttpTransport() {}
 
+  /**
+   * Get a transport that's shared across all API clients.
+   *
+   * Creating a transport is expensive because it involves loading a
+   * trust store. Besides, connections can only be reused if they use
+   * the same transport (and thus, the same socket factory).
+   */
+  public static synchronized com.google.api.client.http.HttpTransport sharedTransport()
+    throws GeneralSecurityException, IOException {
+    if (sharedTransport == null) {
+      sharedTransport = newTransport();
+    }
+
+    return sharedTransport;
+  }
+
+  /**
+   * Replace the shared transport, for example by a transport that
+   * doesn't make any network calls. Must be called before any API
+   * client is used.
+   */
+  public static synchronized void overrideSharedTransport(
+    com.google.api.client.http.HttpTransport transport
+  ) {
+    sharedTransport = transport;
+  }
+
   public static NetHttpTransport newTransport() throws GeneralSecurityException, IOException {
     var trustStore = System.getProperty("javax.net.ssl.trustStore");
     var trustStorePassword = System.getProperty("javax.net.ssl.trustStorePassword");
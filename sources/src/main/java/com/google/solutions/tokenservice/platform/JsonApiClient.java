@@ -0,0 +1,265 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.common.base.Preconditions;
+import com.google.solutions.tokenservice.ApplicationVersion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Minimal client for Google JSON APIs.
+ *
+ * Unlike the generated API clients, this client doesn't use reflection
+ * to (de)serialize requests and responses. Instead, callers write request
+ * bodies and read responses using a streaming parser.
+ */
+public class JsonApiClient {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+
+  private final HttpRequestInitializer requestInitializer;
+
+  /**
+   * @param requestInitializer initializer that adds credentials to requests.
+   */
+  public JsonApiClient(HttpRequestInitializer requestInitializer) {
+    Preconditions.checkNotNull(requestInitializer, "requestInitializer");
+    this.requestInitializer = requestInitializer;
+  }
+
+  /**
+   * Advance to the next field of the current object.
+   *
+   * @return field name, or null if the end of the object has been reached.
+   */
+  public static String nextField(JsonParser parser) throws IOException {
+    var token = parser.nextToken();
+    if (token == JsonToken.FIELD_NAME) {
+      var name = parser.getCurrentName();
+      parser.nextToken();
+      return name;
+    }
+    else if (token == JsonToken.END_OBJECT) {
+      return null;
+    }
+    else {
+      throw new IOException(
+        String.format("The response contains an unexpected token: %s", token));
+    }
+  }
+
+  /**
+   * Read the start of an object.
+   */
+  private static void startObject(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new IOException("The response does not contain a JSON object");
+    }
+  }
+
+  /**
+   * Read an error response. Google APIs use the format
+   * {"error": {"code": ..., "message": ..., "status": ...}}, OAuth
+   * endpoints use {"error": ..., "error_description": ...}.
+   */
+  private static ErrorResponseException readError(
+    int statusCode,
+    String statusMessage,
+    HttpHeaders headers,
+    InputStream content
+  ) {
+    String error = null;
+    String description = null;
+
+    if (content != null) {
+      try (var parser = JSON_FACTORY.createParser(content)) {
+        startObject(parser);
+        for (var field = nextField(parser); field != null; field = nextField(parser)) {
+          if ("error".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+            for (var errorField = nextField(parser); errorField != null; errorField = nextField(parser)) {
+              if ("status".equals(errorField)) {
+                error = parser.getValueAsString();
+              }
+              else if ("message".equals(errorField)) {
+                description = parser.getValueAsString();
+              }
+              else {
+                parser.skipChildren();
+              }
+            }
+          }
+          else if ("error".equals(field)) {
+            error = parser.getValueAsString();
+          }
+          else if ("error_description".equals(field)) {
+            description = parser.getValueAsString();
+          }
+          else {
+            parser.skipChildren();
+          }
+        }
+      }
+      catch (IOException ignored) {
+        //
+        // Not a JSON error, use the status message instead.
+        //
+      }
+    }
+
+    return new ErrorResponseException(
+      new HttpResponseException.Builder(statusCode, statusMessage, headers)
+        .setMessage(description != null ? description : String.format("%d %s", statusCode, statusMessage)),
+      error,
+      description);
+  }
+
+  /**
+   * Post a JSON request and parse the response.
+   *
+   * @param url URL to post to.
+   * @param requestWriter writes the request body.
+   * @param responseReader reads the response body, starting with the first
+   *                       field of the top-level object.
+   * @throws ErrorResponseException if the API returns an error.
+   */
+  public <T> T post(
+    String url,
+    RequestWriter requestWriter,
+    ResponseReader<T> responseReader
+  ) throws IOException {
+    Preconditions.checkNotNull(url, "url");
+    Preconditions.checkNotNull(requestWriter, "requestWriter");
+    Preconditions.checkNotNull(responseReader, "responseReader");
+
+    var body = new ByteArrayOutputStream(256);
+    try (var generator = JSON_FACTORY.createGenerator(body)) {
+      generator.writeStartObject();
+      requestWriter.write(generator);
+      generator.writeEndObject();
+    }
+
+    HttpResponse response;
+    try {
+      var request = HttpTransport
+        .sharedTransport()
+        .createRequestFactory(this.requestInitializer)
+        .buildPostRequest(
+          new GenericUrl(url),
+          new ByteArrayContent(CONTENT_TYPE, body.toByteArray()))
+        .setThrowExceptionOnExecuteError(false);
+      request.getHeaders().setUserAgent(ApplicationVersion.USER_AGENT);
+
+      response = request.execute();
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("Creating a transport failed", e);
+    }
+
+    try (var content = response.getContent()) {
+      if (!response.isSuccessStatusCode()) {
+        throw readError(
+          response.getStatusCode(),
+          response.getStatusMessage(),
+          response.getHeaders(),
+          content);
+      }
+
+      else if (content == null) {
+        throw new IOException("The response is empty");
+      }
+
+      try (var parser = JSON_FACTORY.createParser(content)) {
+        startObject(parser);
+        return responseReader.read(parser);
+      }
+    }
+    finally {
+      response.disconnect();
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  @FunctionalInterface
+  public interface RequestWriter {
+    /**
+     * Write the fields of the request object.
+     */
+    void write(JsonGenerator generator) throws IOException;
+  }
+
+  @FunctionalInterface
+  public interface ResponseReader<T> {
+    /**
+     * Read the fields of the response object, see nextField.
+     */
+    T read(JsonParser parser) throws IOException;
+  }
+
+  /**
+   * Error returned by an API.
+   */
+  public static class ErrorResponseException extends HttpResponseException {
+    private final String error;
+    private final String errorDescription;
+
+    ErrorResponseException(
+      Builder builder,
+      String error,
+      String errorDescription
+    ) {
+      super(builder);
+      this.error = error;
+      this.errorDescription = errorDescription;
+    }
+
+    /**
+     * @return error code or status, if provided.
+     */
+    public String getError() {
+      return this.error;
+    }
+
+    /**
+     * @return error description, if provided.
+     */
+    public String getErrorDescription() {
+      return this.errorDescription;
+    }
+  }
+}
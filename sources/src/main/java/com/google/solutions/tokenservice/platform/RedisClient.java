@@ -0,0 +1,329 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Minimal client for servers that speak the Redis protocol (RESP),
+ * such as Redis or Memorystore.
+ *
+ * The client only supports the handful of commands we need, and
+ * keeps a pool of idle connections so that commands don't have to
+ * wait for a connection to be established.
+ */
+public class RedisClient implements AutoCloseable {
+  /**
+   * Maximum number of idle connections to keep.
+   */
+  private static final int MAX_IDLE_CONNECTIONS = 8;
+
+  private final InetSocketAddress address;
+  private final String password;
+  private final Duration timeout;
+  private final ConcurrentLinkedDeque<Connection> idleConnections = new ConcurrentLinkedDeque<>();
+
+  private volatile boolean closed = false;
+
+  /**
+   * @param address address of the server.
+   * @param password password, or null if the server doesn't require
+   *                 authentication.
+   * @param timeout connect and read timeout.
+   */
+  public RedisClient(
+    InetSocketAddress address,
+    String password,
+    Duration timeout
+  ) {
+    Preconditions.checkNotNull(address, "address");
+    Preconditions.checkNotNull(timeout, "timeout");
+
+    this.address = address;
+    this.password = password;
+    this.timeout = timeout;
+  }
+
+  private Connection connect() throws IOException {
+    var socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout((int)this.timeout.toMillis());
+      socket.connect(this.address, (int)this.timeout.toMillis());
+
+      var connection = new Connection(socket);
+      if (!Strings.isNullOrEmpty(this.password)) {
+        connection.execute("AUTH", this.password);
+      }
+
+      return connection;
+    }
+    catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Execute a command, using an idle connection if possible.
+   */
+  private Object execute(Object... arguments) throws IOException {
+    if (this.closed) {
+      throw new IOException("The client has been closed");
+    }
+
+    var connection = this.idleConnections.pollFirst();
+    if (connection == null) {
+      connection = connect();
+    }
+
+    try {
+      var result = connection.execute(arguments);
+
+      if (this.closed || this.idleConnections.size() >= MAX_IDLE_CONNECTIONS) {
+        connection.close();
+      }
+      else {
+        this.idleConnections.addFirst(connection);
+      }
+
+      return result;
+    }
+    catch (ServerException e) {
+      //
+      // The connection is still usable.
+      //
+      this.idleConnections.addFirst(connection);
+      throw e;
+    }
+    catch (IOException | RuntimeException e) {
+      //
+      // The connection might be in an undefined state, discard it.
+      //
+      connection.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Get the value of a key.
+   *
+   * @return value, or null if the key doesn't exist.
+   */
+  public byte[] get(String key) throws IOException {
+    Preconditions.checkNotNull(key, "key");
+
+    var result = execute("GET", key);
+    if (result == null || result instanceof byte[]) {
+      return (byte[])result;
+    }
+    else {
+      throw new IOException("Unexpected response to GET");
+    }
+  }
+
+  /**
+   * Set the value of a key, and let the key expire after
+   * a certain time.
+   */
+  public void set(String key, byte[] value, Duration timeToLive) throws IOException {
+    Preconditions.checkNotNull(key, "key");
+    Preconditions.checkNotNull(value, "value");
+    Preconditions.checkNotNull(timeToLive, "timeToLive");
+    Preconditions.checkArgument(!timeToLive.isNegative() && !timeToLive.isZero());
+
+    execute("SET", key, value, "PX", String.valueOf(timeToLive.toMillis()));
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+
+    Connection connection;
+    while ((connection = this.idleConnections.pollFirst()) != null) {
+      connection.close();
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Error reported by the server.
+   */
+  public static class ServerException extends IOException {
+    public ServerException(String message) {
+      super(message);
+    }
+  }
+
+  private static class Connection {
+    private final Socket socket;
+    private final InputStream input;
+    private final OutputStream output;
+
+    private Connection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.input = new BufferedInputStream(socket.getInputStream());
+      this.output = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    private void writeBulkString(byte[] value) throws IOException {
+      this.output.write('$');
+      this.output.write(String.valueOf(value.length).getBytes(StandardCharsets.US_ASCII));
+      this.output.write('\r');
+      this.output.write('\n');
+      this.output.write(value);
+      this.output.write('\r');
+      this.output.write('\n');
+    }
+
+    private String readLine() throws IOException {
+      var line = new ByteArrayOutputStream();
+      int b;
+      while ((b = this.input.read()) != '\r') {
+        if (b == -1) {
+          throw new EOFException("The server closed the connection");
+        }
+        line.write(b);
+      }
+
+      if (this.input.read() != '\n') {
+        throw new IOException("Malformed response");
+      }
+
+      return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private Object readReply() throws IOException {
+      var type = this.input.read();
+      var line = readLine();
+
+      switch (type) {
+        case '+':
+          return line;
+
+        case '-':
+          throw new ServerException(line);
+
+        case ':':
+          return Long.parseLong(line);
+
+        case '$': {
+          var length = Integer.parseInt(line);
+          if (length < 0) {
+            return null;
+          }
+
+          var value = this.input.readNBytes(length);
+          if (value.length != length || this.input.read() != '\r' || this.input.read() != '\n') {
+            throw new EOFException("The server closed the connection");
+          }
+
+          return value;
+        }
+
+        case '*': {
+          var length = Integer.parseInt(line);
+          if (length < 0) {
+            return null;
+          }
+
+          //
+          // If an element is an error, keep reading the remaining
+          // elements before throwing. Otherwise, they'd be read as
+          // the reply to the next command on this connection.
+          //
+          var elements = new Object[length];
+          ServerException error = null;
+          for (int i = 0; i < length; i++) {
+            try {
+              elements[i] = readReply();
+            }
+            catch (ServerException e) {
+              if (error == null) {
+                error = e;
+              }
+            }
+          }
+
+          if (error != null) {
+            throw error;
+          }
+
+          return elements;
+        }
+
+        case -1:
+          throw new EOFException("The server closed the connection");
+
+        default:
+          throw new IOException("Malformed response");
+      }
+    }
+
+    Object execute(Object... arguments) throws IOException {
+      this.output.write('*');
+      this.output.write(String.valueOf(arguments.length).getBytes(StandardCharsets.US_ASCII));
+      this.output.write('\r');
+      this.output.write('\n');
+
+      for (var argument : arguments) {
+        writeBulkString(argument instanceof byte[] bytes
+          ? bytes
+          : argument.toString().getBytes(StandardCharsets.UTF_8));
+      }
+
+      this.output.flush();
+
+      try {
+        return readReply();
+      }
+      catch (NumberFormatException e) {
+        throw new IOException("Malformed response", e);
+      }
+    }
+
+    void close() {
+      try {
+        this.socket.close();
+      }
+      catch (IOException ignored) {
+      }
+    }
+  }
+}
@@ -0,0 +1,246 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.web.LogEvents;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Runs independent initialization tasks concurrently, and waits for
+ * all of them to complete within a deadline.
+ */
+public class StartupTasks {
+  private final ExecutorService executor;
+  private final LogAdapter logAdapter;
+  private final List<Task<?>> tasks = new ArrayList<>();
+
+  StartupTasks(ExecutorService executor, LogAdapter logAdapter) {
+    Preconditions.checkNotNull(executor, "executor");
+    Preconditions.checkNotNull(logAdapter, "logAdapter");
+
+    this.executor = executor;
+    this.logAdapter = logAdapter;
+  }
+
+  public StartupTasks(LogAdapter logAdapter) {
+    this(
+      Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("startup-%d")
+        .build()),
+      logAdapter);
+  }
+
+  /**
+   * Start a task.
+   *
+   * @param name name of the task, used for diagnostics.
+   * @param callable task to run.
+   * @return handle for obtaining the task's result after awaiting completion.
+   */
+  public <T> Task<T> submit(String name, Callable<T> callable) {
+    Preconditions.checkNotNull(name, "name");
+    Preconditions.checkNotNull(callable, "callable");
+
+    var task = new Task<T>(name);
+    task.future = this.executor.submit(() -> {
+      var startTime = System.nanoTime();
+      try {
+        return callable.call();
+      }
+      finally {
+        task.duration = Duration.ofNanos(System.nanoTime() - startTime);
+      }
+    });
+
+    this.tasks.add(task);
+    return task;
+  }
+
+  /**
+   * Wait for all tasks to complete.
+   *
+   * @throws StartupException if a task failed or didn't complete in time.
+   */
+  public void await(Duration timeout) throws StartupException {
+    Preconditions.checkNotNull(timeout, "timeout");
+
+    var deadline = System.nanoTime() + timeout.toNanos();
+    try {
+      for (var task : this.tasks) {
+        try {
+          task.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        catch (ExecutionException | TimeoutException ignored) {
+          //
+          // Keep waiting for the other tasks so that we can report all
+          // failures at once.
+          //
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+    finally {
+      //
+      // Cancel tasks that didn't finish in time, and let the
+      // threads die.
+      //
+      this.tasks.forEach(t -> t.future.cancel(true));
+      this.executor.shutdown();
+    }
+
+    var summary = this.tasks
+      .stream()
+      .map(Task::toString)
+      .collect(Collectors.joining(", "));
+
+    var failedTasks = this.tasks
+      .stream()
+      .filter(t -> !t.succeeded())
+      .collect(Collectors.toList());
+
+    if (failedTasks.isEmpty()) {
+      this.logAdapter
+        .newInfoEntry(
+          LogEvents.RUNTIME_STARTUP,
+          String.format("Startup tasks completed (%s)", summary))
+        .write();
+    }
+    else {
+      var message = String.format(
+        "%d of %d startup tasks did not complete successfully within %d ms (%s)",
+        failedTasks.size(),
+        this.tasks.size(),
+        timeout.toMillis(),
+        summary);
+
+      this.logAdapter
+        .newErrorEntry(LogEvents.RUNTIME_STARTUP, message)
+        .write();
+
+      var exception = new StartupException(message, failedTasks.get(0).failure());
+      failedTasks
+        .stream()
+        .skip(1)
+        .map(Task::failure)
+        .forEach(exception::addSuppressed);
+
+      throw exception;
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  public static class Task<T> {
+    private final String name;
+    private Future<T> future;
+    private volatile Duration duration;
+
+    private Task(String name) {
+      this.name = name;
+    }
+
+    private boolean succeeded() {
+      return this.future.isDone() && failure() == null;
+    }
+
+    private Throwable failure() {
+      if (!this.future.isDone() || this.future.isCancelled()) {
+        return new TimeoutException(String.format("The task '%s' timed out", this.name));
+      }
+
+      try {
+        this.future.get();
+        return null;
+      }
+      catch (ExecutionException e) {
+        return e.getCause();
+      }
+      catch (InterruptedException | CancellationException e) {
+        return e;
+      }
+    }
+
+    /**
+     * Get the result of the task. Only valid after the task
+     * completed successfully.
+     */
+    public T get() {
+      Preconditions.checkState(succeeded(), "The task did not complete successfully");
+
+      try {
+        return this.future.get();
+      }
+      catch (InterruptedException | ExecutionException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      var duration = this.duration;
+      var failure = failure();
+
+      if (failure == null) {
+        return String.format("%s: %d ms", this.name, duration.toMillis());
+      }
+      else if (!this.future.isDone() || this.future.isCancelled()) {
+        return String.format("%s: timed out", this.name);
+      }
+      else {
+        return String.format(
+          "%s: failed after %d ms: %s",
+          this.name,
+          duration.toMillis(),
+          failure instanceof Exception
+            ? Exceptions.getFullMessage((Exception)failure)
+            : failure.getMessage());
+      }
+    }
+  }
+
+  public static class StartupException extends Exception {
+    public StartupException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+}
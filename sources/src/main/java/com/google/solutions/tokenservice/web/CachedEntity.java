@@ -0,0 +1,115 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.time.Duration;
+
+/**
+ * Pre-serialized, immutable response entity that can be served
+ * repeatedly without serializing it again.
+ *
+ * @param body serialized entity.
+ * @param mediaType media type of body.
+ * @param tag strong entity tag, derived from the body.
+ */
+public record CachedEntity(
+  byte[] body,
+  MediaType mediaType,
+  EntityTag tag
+) {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  public CachedEntity {
+    Preconditions.checkNotNull(body, "body");
+    Preconditions.checkNotNull(mediaType, "mediaType");
+    Preconditions.checkNotNull(tag, "tag");
+  }
+
+  /**
+   * Create an entity from a serialized body.
+   */
+  public static CachedEntity fromBytes(byte[] body, MediaType mediaType) {
+    Preconditions.checkNotNull(body, "body");
+
+    return new CachedEntity(
+      body,
+      mediaType,
+      new EntityTag(Hashing.sha256().hashBytes(body).toString()));
+  }
+
+  /**
+   * Create an entity by serializing an object to JSON.
+   */
+  public static CachedEntity fromJson(Object entity) {
+    Preconditions.checkNotNull(entity, "entity");
+
+    try {
+      return fromBytes(
+        MAPPER.writeValueAsBytes(entity),
+        MediaType.APPLICATION_JSON_TYPE);
+    }
+    catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("The entity cannot be serialized", e);
+    }
+  }
+
+  /**
+   * Create a response for the entity. If the request contains a
+   * matching If-None-Match header, the response is a 304 without body.
+   *
+   * @param request current request, used to evaluate preconditions.
+   * @param maxAge time for which clients may cache the response.
+   */
+  public Response toResponse(Request request, Duration maxAge) {
+    Preconditions.checkNotNull(request, "request");
+    Preconditions.checkNotNull(maxAge, "maxAge");
+
+    var cacheControl = new CacheControl();
+    cacheControl.setNoTransform(false);
+    cacheControl.setMaxAge((int)Math.min(maxAge.toSeconds(), Integer.MAX_VALUE));
+
+    var notModified = request.evaluatePreconditions(this.tag);
+    if (notModified != null) {
+      return notModified
+        .tag(this.tag)
+        .cacheControl(cacheControl)
+        .build();
+    }
+    else {
+      return Response
+        .ok(this.body, this.mediaType)
+        .tag(this.tag)
+        .cacheControl(cacheControl)
+        .build();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Instant;
+
+/**
+ * Reports statistics about refreshes of the service account's credentials.
+ *
+ * The check only fails if refreshing failed and there's no valid token
+ * left, because that's when requests start failing.
+ */
+@Readiness
+@ApplicationScoped
+public class CredentialHealthCheck implements HealthCheck {
+  @Inject
+  RuntimeEnvironment runtimeEnvironment;
+
+  @Override
+  public HealthCheckResponse call() {
+    var statistics = this.runtimeEnvironment.getCredentialStatistics();
+    if (statistics.isEmpty()) {
+      return HealthCheckResponse.up("credentials");
+    }
+
+    var stats = statistics.get();
+    var tokenExpired = stats.refreshes() == 0 ||
+      (stats.tokenExpiry() != null && stats.tokenExpiry().isBefore(Instant.now()));
+
+    var response = HealthCheckResponse
+      .named("credentials")
+      .status(stats.lastError() == null || !tokenExpired)
+      .withData("refreshes", stats.refreshes())
+      .withData("failures", stats.failures());
+
+    if (stats.lastRefreshLatency() != null) {
+      response.withData("last_refresh_latency_ms", stats.lastRefreshLatency().toMillis());
+    }
+
+    if (stats.tokenExpiry() != null) {
+      response.withData("token_expiry", stats.tokenExpiry().toString());
+    }
+
+    if (stats.lastError() != null) {
+      response.withData("last_error", stats.lastError());
+    }
+
+    return response.build();
+  }
+}
@@ -0,0 +1,259 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable buffer for assembling JSON documents without
+ * intermediate strings.
+ *
+ * Buffers are pooled per thread, so a buffer must not be used
+ * after it has been written to a stream.
+ */
+class JsonBuffer {
+  private static final int INITIAL_CAPACITY = 4096;
+
+  /**
+   * Maximum capacity of pooled buffers. Larger buffers are
+   * released after use.
+   */
+  private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+  private static final ThreadLocal<JsonBuffer> POOL =
+    ThreadLocal.withInitial(() -> new JsonBuffer(INITIAL_CAPACITY));
+
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+  private byte[] bytes;
+  private int length;
+
+  JsonBuffer(int capacity) {
+    this.bytes = new byte[capacity];
+  }
+
+  /**
+   * Get the current thread's buffer.
+   */
+  static JsonBuffer acquire() {
+    var buffer = POOL.get();
+    buffer.length = 0;
+    return buffer;
+  }
+
+  /**
+   * Encode a field name, including the trailing colon.
+   */
+  static byte[] name(String name) {
+    return new JsonBuffer(name.length() + 3)
+      .appendString(name)
+      .append((byte)':')
+      .toByteArray();
+  }
+
+  private void ensureCapacity(int additional) {
+    if (this.length + additional > this.bytes.length) {
+      this.bytes = Arrays.copyOf(
+        this.bytes,
+        Math.max(this.bytes.length * 2, this.length + additional));
+    }
+  }
+
+  JsonBuffer append(byte b) {
+    ensureCapacity(1);
+    this.bytes[this.length++] = b;
+    return this;
+  }
+
+  /**
+   * Append pre-encoded JSON.
+   */
+  JsonBuffer append(byte[] encoded) {
+    ensureCapacity(encoded.length);
+    System.arraycopy(encoded, 0, this.bytes, this.length, encoded.length);
+    this.length += encoded.length;
+    return this;
+  }
+
+  JsonBuffer appendNull() {
+    return append(NULL);
+  }
+
+  JsonBuffer appendBoolean(boolean value) {
+    return append(value ? TRUE : FALSE);
+  }
+
+  JsonBuffer appendNumber(Long value) {
+    return value != null ? appendNumber(value.longValue()) : appendNull();
+  }
+
+  JsonBuffer appendNumber(long value) {
+    if (value == Long.MIN_VALUE) {
+      return append(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    ensureCapacity(20);
+    if (value < 0) {
+      this.bytes[this.length++] = '-';
+      value = -value;
+    }
+
+    var digits = 1;
+    for (var v = value; v >= 10; v /= 10) {
+      digits++;
+    }
+
+    for (var i = this.length + digits - 1; i >= this.length; i--) {
+      this.bytes[i] = (byte)('0' + (value % 10));
+      value /= 10;
+    }
+
+    this.length += digits;
+    return this;
+  }
+
+  /**
+   * Append a quoted, escaped string, or null.
+   */
+  JsonBuffer appendString(String value) {
+    if (value == null) {
+      return appendNull();
+    }
+
+    //
+    // Reserve enough space for the common case of a string
+    // that doesn't need escaping.
+    //
+    ensureCapacity(value.length() + 2);
+    this.bytes[this.length++] = '"';
+
+    //
+    // Copy the leading run of characters that don't need escaping
+    // using locals, which the reserved capacity is sufficient for.
+    //
+    var bytes = this.bytes;
+    var position = this.length;
+    int i = 0;
+    for (; i < value.length(); i++) {
+      var c = value.charAt(i);
+      if (c < 0x20 || c >= 0x80 || c == '"' || c == '\\') {
+        break;
+      }
+
+      bytes[position++] = (byte)c;
+    }
+
+    this.length = position;
+
+    for (; i < value.length(); i++) {
+      var c = value.charAt(i);
+      if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+        ensureCapacity(1);
+        this.bytes[this.length++] = (byte)c;
+      }
+      else if (c == '"' || c == '\\') {
+        append((byte)'\\').append((byte)c);
+      }
+      else if (c < 0x20 || Character.isSurrogate(c)) {
+        switch (c) {
+          case '\b' -> append((byte)'\\').append((byte)'b');
+          case '\t' -> append((byte)'\\').append((byte)'t');
+          case '\n' -> append((byte)'\\').append((byte)'n');
+          case '\f' -> append((byte)'\\').append((byte)'f');
+          case '\r' -> append((byte)'\\').append((byte)'r');
+          default -> {
+            //
+            // Escape other control characters and all surrogates,
+            // including valid pairs, so that the output is plain ASCII
+            // and unpaired surrogates don't produce malformed UTF-8.
+            // Jackson's UTF-8 generator (2.14) escapes surrogates the
+            // same way, but its character-based generator doesn't.
+            //
+            ensureCapacity(6);
+            this.bytes[this.length++] = '\\';
+            this.bytes[this.length++] = 'u';
+            this.bytes[this.length++] = HEX[c >> 12];
+            this.bytes[this.length++] = HEX[(c >> 8) & 0xF];
+            this.bytes[this.length++] = HEX[(c >> 4) & 0xF];
+            this.bytes[this.length++] = HEX[c & 0xF];
+          }
+        }
+      }
+      else if (c < 0x800) {
+        ensureCapacity(2);
+        this.bytes[this.length++] = (byte)(0xC0 | (c >> 6));
+        this.bytes[this.length++] = (byte)(0x80 | (c & 0x3F));
+      }
+      else {
+        ensureCapacity(3);
+        this.bytes[this.length++] = (byte)(0xE0 | (c >> 12));
+        this.bytes[this.length++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+        this.bytes[this.length++] = (byte)(0x80 | (c & 0x3F));
+      }
+    }
+
+    return append((byte)'"');
+  }
+
+  int length() {
+    return this.length;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(this.bytes, this.length);
+  }
+
+  private void releaseIfOversized() {
+    if (this.bytes.length > MAX_POOLED_CAPACITY) {
+      this.bytes = new byte[INITIAL_CAPACITY];
+    }
+  }
+
+  /**
+   * Write the buffer's content to a stream in a single write, and
+   * release the buffer if it has grown too large to be pooled.
+   */
+  void writeTo(OutputStream stream) throws IOException {
+    stream.write(this.bytes, 0, this.length);
+    releaseIfOversized();
+  }
+
+  /**
+   * Copy the buffer's content to a Vert.x buffer, and release the
+   * buffer if it has grown too large to be pooled.
+   */
+  Buffer toVertxBuffer() {
+    var buffer = Buffer
+      .buffer(this.length)
+      .appendBytes(this.bytes, 0, this.length);
+    releaseIfOversized();
+    return buffer;
+  }
+}
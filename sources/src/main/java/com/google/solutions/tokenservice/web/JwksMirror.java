@@ -0,0 +1,329 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.http.GenericUrl;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.platform.HttpTransport;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local mirror of the key set (JWKS) of the service account that
+ * signs tokens.
+ *
+ * The mirror is populated on first use and then refreshed in the
+ * background. If a refresh fails, the mirror keeps serving the
+ * last-known-good copy and retries with exponential backoff.
+ */
+public class JwksMirror implements AutoCloseable {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /**
+   * Minimum delay between refreshes after a failure.
+   */
+  static final Duration MIN_BACKOFF = Duration.ofSeconds(5);
+
+  private final Callable<byte[]> source;
+  private final Duration refreshInterval;
+  private final ScheduledExecutorService executor;
+  private final LogAdapter logAdapter;
+
+  /**
+   * Last-known-good copy of the key set, null if it
+   * hasn't been fetched yet.
+   */
+  private volatile KeySet keySet;
+
+  /**
+   * JWT header of the last token that was found to use a known key.
+   */
+  private volatile String lastVerifiedTokenHeader;
+
+  /**
+   * Earliest time (in nanoseconds) at which a token that uses an unknown
+   * key may force a refresh. After a failed refresh, this is the time of
+   * the scheduled retry, so that token traffic doesn't defeat the backoff.
+   */
+  private volatile long earliestForcedRefresh = System.nanoTime();
+
+  private ScheduledFuture<?> nextRefresh;
+  private int consecutiveFailures;
+
+  JwksMirror(
+    Callable<byte[]> source,
+    Duration refreshInterval,
+    ScheduledExecutorService executor,
+    LogAdapter logAdapter
+  ) {
+    Preconditions.checkNotNull(source, "source");
+    Preconditions.checkNotNull(refreshInterval, "refreshInterval");
+    Preconditions.checkNotNull(executor, "executor");
+    Preconditions.checkNotNull(logAdapter, "logAdapter");
+    Preconditions.checkArgument(!refreshInterval.isNegative() && !refreshInterval.isZero());
+
+    this.source = source;
+    this.refreshInterval = refreshInterval;
+    this.executor = executor;
+    this.logAdapter = logAdapter;
+  }
+
+  public JwksMirror(
+    URL jwksUrl,
+    Duration refreshInterval,
+    LogAdapter logAdapter
+  ) {
+    this(
+      () -> fetch(jwksUrl),
+      refreshInterval,
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("jwks-mirror")
+        .build()),
+      logAdapter);
+  }
+
+  private static byte[] fetch(URL jwksUrl) throws IOException {
+    try {
+      var response = HttpTransport
+        .sharedTransport()
+        .createRequestFactory()
+        .buildGetRequest(new GenericUrl(jwksUrl))
+        .execute();
+
+      try (var content = response.getContent()) {
+        return content.readAllBytes();
+      }
+      finally {
+        response.disconnect();
+      }
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("Creating a transport failed", e);
+    }
+  }
+
+  /**
+   * Fetch the key set from the source and verify that it's well-formed.
+   */
+  private KeySet fetchKeySet() throws Exception {
+    var body = this.source.call();
+
+    var keys = MAPPER.readTree(body).get("keys");
+    if (keys == null || !keys.isArray()) {
+      throw new IOException("The key set does not contain a 'keys' array");
+    }
+
+    var keyIds = new HashSet<String>();
+    for (var key : keys) {
+      if (key.hasNonNull("kid")) {
+        keyIds.add(key.get("kid").asText());
+      }
+    }
+
+    return new KeySet(
+      CachedEntity.fromBytes(body, MediaType.APPLICATION_JSON_TYPE),
+      keyIds);
+  }
+
+  private synchronized void scheduleRefresh(Duration delay) {
+    if (this.nextRefresh != null) {
+      this.nextRefresh.cancel(false);
+    }
+
+    try {
+      this.nextRefresh = this.executor.schedule(
+        this::refresh,
+        delay.toMillis(),
+        TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException ignored) {
+      //
+      // Mirror has been closed.
+      //
+      this.nextRefresh = null;
+    }
+  }
+
+  /**
+   * Refresh the key set. On failure, keep the existing copy and
+   * schedule a retry.
+   */
+  void refresh() {
+    var attempt = System.nanoTime();
+    this.earliestForcedRefresh = attempt + MIN_BACKOFF.toNanos();
+
+    try {
+      this.keySet = fetchKeySet();
+      this.lastVerifiedTokenHeader = null;
+
+      synchronized (this) {
+        this.consecutiveFailures = 0;
+      }
+
+      scheduleRefresh(this.refreshInterval);
+    }
+    catch (Exception e) {
+      Duration backoff;
+      synchronized (this) {
+        this.consecutiveFailures++;
+
+        var factor = 1L << Math.min(this.consecutiveFailures - 1, 16);
+        backoff = MIN_BACKOFF.multipliedBy(factor);
+        if (backoff.compareTo(this.refreshInterval) > 0) {
+          backoff = this.refreshInterval;
+        }
+      }
+
+      this.earliestForcedRefresh = attempt + backoff.toNanos();
+
+      this.logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_JWKS,
+          String.format(
+            "Refreshing the key set failed, keeping last-known-good copy and " +
+              "retrying in %d seconds: %s",
+            backoff.toSeconds(),
+            Exceptions.getFullMessage(e)))
+        .write();
+
+      scheduleRefresh(backoff);
+    }
+  }
+
+  /**
+   * Get the current copy of the key set, fetching it if necessary.
+   */
+  public CachedEntity get() throws IOException {
+    var keySet = this.keySet;
+    if (keySet != null) {
+      return keySet.document();
+    }
+
+    synchronized (this) {
+      if (this.keySet == null) {
+        try {
+          this.keySet = fetchKeySet();
+        }
+        catch (IOException e) {
+          throw e;
+        }
+        catch (Exception e) {
+          throw new IOException("Fetching the key set failed", e);
+        }
+
+        scheduleRefresh(this.refreshInterval);
+      }
+
+      return this.keySet.document();
+    }
+  }
+
+  /**
+   * Check that the key used to sign a token is part of the mirrored
+   * key set, and trigger a refresh if it isn't. That prevents the mirror
+   * from serving an outdated key set after a key rotation.
+   */
+  public void onTokenIssued(String jwt) {
+    Preconditions.checkNotNull(jwt, "jwt");
+
+    var keySet = this.keySet;
+    var lastVerifiedHeader = this.lastVerifiedTokenHeader;
+
+    if (keySet == null) {
+      //
+      // Nobody requested the key set yet, so there's nothing to update.
+      //
+      return;
+    }
+    else if (lastVerifiedHeader != null &&
+      jwt.length() > lastVerifiedHeader.length() &&
+      jwt.charAt(lastVerifiedHeader.length()) == '.' &&
+      jwt.startsWith(lastVerifiedHeader)) {
+      //
+      // Same header as last time, so it's a known key.
+      //
+      return;
+    }
+
+    var headerEnd = jwt.indexOf('.');
+    if (headerEnd <= 0) {
+      return;
+    }
+
+    String keyId;
+    try {
+      var header = MAPPER.readTree(Base64
+        .getUrlDecoder()
+        .decode(jwt.substring(0, headerEnd).getBytes(StandardCharsets.US_ASCII)));
+      keyId = header.hasNonNull("kid") ? header.get("kid").asText() : null;
+    }
+    catch (IOException | IllegalArgumentException e) {
+      return;
+    }
+
+    if (keyId == null || keySet.keyIds().contains(keyId)) {
+      this.lastVerifiedTokenHeader = jwt.substring(0, headerEnd);
+    }
+    else if (System.nanoTime() - this.earliestForcedRefresh >= 0) {
+      this.logAdapter
+        .newInfoEntry(
+          LogEvents.RUNTIME_JWKS,
+          String.format("Token was signed using new key '%s', refreshing key set", keyId))
+        .write();
+
+      scheduleRefresh(Duration.ZERO);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  private record KeySet(
+    CachedEntity document,
+    Set<String> keyIds
+  ) {}
+}
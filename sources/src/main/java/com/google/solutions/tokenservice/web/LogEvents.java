@@ -24,6 +24,13 @@ package com.google.solutions.tokenservice.web;
 public class LogEvents {
 
   public static final String RUNTIME_STARTUP = "runtime.startup";
+  public static final String RUNTIME_JWKS = "runtime.jwks";
+  public static final String RUNTIME_CREDENTIALS = "runtime.credentials";
+  public static final String RUNTIME_WARMUP = "runtime.warmup";
+  public static final String RUNTIME_TOKEN_CACHE = "runtime.tokencache";
+  public static final String RUNTIME_FILE_RELOAD = "runtime.filereload";
+  public static final String RUNTIME_OCSP = "runtime.ocsp";
+  public static final String RUNTIME_SPIFFE_BUNDLE = "runtime.spiffebundle";
   public static final String API_TOKEN = "api.token";
   private LogEvents() {
   }
@@ -0,0 +1,97 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cache for per-issuer metadata. The metadata only depends on the issuer
+ * and the set of available flows, so it's computed once per issuer
+ * and then served as-is.
+ */
+@ApplicationScoped
+public class MetadataCache {
+  public static final String METADATA_PATH = "/.well-known/openid-configuration";
+
+  /**
+   * Maximum number of issuers to cache metadata for, should be
+   * in line with the number of cached token issuers.
+   */
+  private static final int MAX_ISSUERS = 32;
+
+  private final Cache<String, IssuerMetadata> cache = CacheBuilder
+    .newBuilder()
+    .maximumSize(MAX_ISSUERS)
+    .build();
+
+  /**
+   * Get metadata for an issuer, computing it if necessary.
+   *
+   * @param issuer token issuer.
+   * @param providerMetadata callback that computes the issuer's metadata document.
+   */
+  public IssuerMetadata get(
+    IdTokenIssuer issuer,
+    Callable<Object> providerMetadata
+  ) {
+    Preconditions.checkNotNull(issuer, "issuer");
+    Preconditions.checkNotNull(providerMetadata, "providerMetadata");
+
+    try {
+      return this.cache.get(
+        issuer.id().toString(),
+        () -> new IssuerMetadata(
+          new URL(issuer.id(), METADATA_PATH).toURI(),
+          CachedEntity.fromJson(providerMetadata.call())));
+    }
+    catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Computing issuer metadata failed", e.getCause());
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  // Inner classes.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Precomputed metadata for an issuer.
+   *
+   * @param location absolute location of the OIDC metadata document.
+   * @param document pre-serialized OIDC metadata document.
+   */
+  public record IssuerMetadata(
+    URI location,
+    CachedEntity document
+  ) {}
+}
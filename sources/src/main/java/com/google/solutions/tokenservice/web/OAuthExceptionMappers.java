@@ -21,11 +21,10 @@
 
 package com.google.solutions.tokenservice.web;
 
-import org.jboss.resteasy.spi.UnhandledException;
-
 import javax.ws.rs.NotAcceptableException;
 import javax.ws.rs.NotAllowedException;
 import javax.ws.rs.NotFoundException;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
@@ -35,7 +34,7 @@ public class OAuthExceptionMappers {
   public static final Class<?>[] ALL = new Class<?>[] {
     NullPointerExceptionMapper.class,
     IOExceptionMapper.class,
-    UnhandledExceptionMapper.class,
+    RuntimeExceptionMapper.class,
     NotAllowedExceptionMapper.class,
     NotAcceptableExceptionMapper.class,
     NotFoundExceptionMapper.class
@@ -95,10 +94,18 @@ public class OAuthExceptionMappers {
     }
   }
 
+  /**
+   * Mapper for all other runtime exceptions. Exceptions that carry
+   * their own response keep it.
+   */
   @Provider
-  public static class UnhandledExceptionMapper implements ExceptionMapper<UnhandledException> {
+  public static class RuntimeExceptionMapper implements ExceptionMapper<RuntimeException> {
     @Override
-    public Response toResponse(UnhandledException exception) {
+    public Response toResponse(RuntimeException exception) {
+      if (exception instanceof WebApplicationException webApplicationException) {
+        return webApplicationException.getResponse();
+      }
+
       return Response
         .status(Response.Status.INTERNAL_SERVER_ERROR)
         .entity(new OAuthResource.TokenErrorResponse(OAuthResource.TokenErrorResponse.SERVER_ERROR, exception))
@@ -24,31 +24,46 @@ package com.google.solutions.tokenservice.web;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Strings;
 import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.UserId;
+import com.google.solutions.tokenservice.oauth.AccessToken;
 import com.google.solutions.tokenservice.oauth.Authentication;
 import com.google.solutions.tokenservice.oauth.AuthenticationFlow;
 import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.BatchAuthentication;
 import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.platform.ApiException;
 import com.google.solutions.tokenservice.platform.LogAdapter;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
 
 import javax.enterprise.context.RequestScoped;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
-import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.IOException;
 import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * REST API controller.
+ *
+ * Endpoints that are served from memory run on the I/O thread, all
+ * others run on a worker thread because they call upstream APIs.
  */
 @RequestScoped
 @Path("/")
 public class OAuthResource {
+  /**
+   * Maximum number of token requests in a batch.
+   */
+  static final int MAX_BATCH_SIZE = 32;
+
   @Inject
   RuntimeEnvironment runtimeEnvironment;
 
@@ -64,31 +79,59 @@ public class OAuthResource {
   @Inject
   IdTokenIssuer tokenIssuer;
 
+  @Inject
+  MetadataCache metadataCache;
 
+  @Inject
+  JwksMirror jwksMirror;
 
   /**
-   * OAuth token endpoint.
+   * Get metadata for the current issuer, using the cache if possible.
    */
-  private Authentication handleTokenRequest(
-    String grantType,
-    MultivaluedMap<String, String> parameters
-  ) throws Exception {
-    if (Strings.isNullOrEmpty(grantType))
+  private MetadataCache.IssuerMetadata getIssuerMetadata() {
+    return this.metadataCache.get(
+      this.tokenIssuer,
+      () -> {
+        var tokenUrl = new URL(this.tokenIssuer.id(), "/token");
+        var jwksUrl = new URL(this.tokenIssuer.id(), "/jwks");
+
+        return new ProviderMetadata(
+          this.tokenIssuer.id(),
+          tokenUrl, // We don't have a real authorization endpoint
+          tokenUrl,
+          jwksUrl,
+          List.of("none"),
+          this.flows.stream()
+            .map(f -> f.grantType())
+            .distinct()
+            .collect(Collectors.toList()),
+          List.of("none"),
+          List.of("RS256"),
+          this.flows.stream()
+            .map(f -> f.authenticationMethod())
+            .distinct()
+            .collect(Collectors.toList()));
+      });
+  }
+
+  /**
+   * Find a flow that:
+   * - is enabled (in the configuration)
+   * - supports the requested grant type
+   * - supports the presented set of request parameters
+   */
+  private AuthenticationFlow findFlow(
+    AuthenticationRequest request
+  ) {
+    if (Strings.isNullOrEmpty(request.grantType()))
     {
       throw new IllegalArgumentException("A grant type is required");
     }
 
-    //
-    // Find a flow that:
-    // - is enabled (in the configuration)
-    // - supports the requested grant type
-    // - supports the presented set of request parameters
-    //
-    var request = new AuthenticationRequest(grantType, parameters);
     var flow = this.flows
       .stream()
       .filter(f -> this.configuration.authenticationFlows().contains(f.name()))
-      .filter(f -> f.grantType().equals(grantType) && f.canAuthenticate(request))
+      .filter(f -> f.grantType().equals(request.grantType()) && f.canAuthenticate(request))
       .findFirst();
 
     if (!flow.isPresent()) {
@@ -97,20 +140,107 @@ public class OAuthResource {
           LogEvents.API_TOKEN,
           String.format(
             "No suitable flow found for grant type '%s' (enabled flows: %s)",
-            grantType,
+            request.grantType(),
             String.join(", ", this.configuration.authenticationFlows())))
         .write();
 
       throw new IllegalArgumentException(
-        String.format("No suitable flow found for grant type '%s'", grantType)
+        String.format("No suitable flow found for grant type '%s'", request.grantType())
       );
     }
 
+    return flow.get();
+  }
+
+  /**
+   * OAuth token endpoint.
+   */
+  private Authentication handleTokenRequest(
+    String grantType,
+    MultivaluedMap<String, String> parameters
+  ) throws Exception {
+    var request = new AuthenticationRequest(grantType, parameters);
+    var flow = findFlow(request);
+
     //
     // Run flow to authenticate the user or client.
     //
     try {
-      return flow.get().authenticate(request);
+      var authentication = flow.authenticate(request);
+
+      this.jwksMirror.onTokenIssued(authentication.idToken().value());
+
+      return authentication;
+    }
+    catch (Exception e)
+    {
+      this.logAdapter
+        .newErrorEntry(
+          LogEvents.API_TOKEN,
+          String.format("Authentication failed: %s", Exceptions.getFullMessage(e)))
+        .write();
+
+      throw (Exception) e.fillInStackTrace();
+    }
+  }
+
+  /**
+   * Parse the token requests of a batch request. Token requests are
+   * specified using pairs of scope and service_account parameters, an
+   * empty service_account requests an STS token.
+   */
+  static List<BatchAuthentication.TokenRequest> parseBatchTokenRequests(
+    MultivaluedMap<String, String> parameters
+  ) {
+    var scopes = parameters.get("scope");
+    var serviceAccounts = parameters.get("service_account");
+
+    if (scopes == null || scopes.isEmpty()) {
+      throw new IllegalArgumentException("At least one scope is required");
+    }
+
+    if (scopes.size() > MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException(
+        String.format("A batch can contain at most %d token requests", MAX_BATCH_SIZE));
+    }
+
+    if (serviceAccounts != null && serviceAccounts.size() != scopes.size()) {
+      throw new IllegalArgumentException(
+        "Each scope must be paired with a service_account parameter, which can be empty");
+    }
+
+    var tokenRequests = new ArrayList<BatchAuthentication.TokenRequest>(scopes.size());
+    for (int i = 0; i < scopes.size(); i++) {
+      if (Strings.isNullOrEmpty(scopes.get(i))) {
+        throw new IllegalArgumentException("The scope must not be empty");
+      }
+
+      var serviceAccount = serviceAccounts != null ? serviceAccounts.get(i) : null;
+      tokenRequests.add(new BatchAuthentication.TokenRequest(
+        scopes.get(i),
+        Strings.isNullOrEmpty(serviceAccount) ? null : new UserId(serviceAccount)));
+    }
+
+    return tokenRequests;
+  }
+
+  /**
+   * OAuth token endpoint, batch variant.
+   */
+  private BatchAuthentication handleBatchTokenRequest(
+    String grantType,
+    MultivaluedMap<String, String> parameters
+  ) throws Exception {
+    var tokenRequests = parseBatchTokenRequests(parameters);
+    var request = new AuthenticationRequest(grantType, parameters);
+    var flow = findFlow(request);
+
+    try {
+      var authentication = flow.authenticate(request, tokenRequests);
+
+      this.jwksMirror.onTokenIssued(authentication.idToken().value());
+
+      return authentication;
     }
     catch (Exception e)
     {
@@ -133,11 +263,10 @@ public class OAuthResource {
    */
   @GET
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getRoot() throws MalformedURLException, URISyntaxException {
-    var metadataUrl = new URL(this.tokenIssuer.id(), "/.well-known/openid-configuration");
-
+  @NonBlocking
+  public Response getRoot() {
     return Response
-      .temporaryRedirect(metadataUrl.toURI())
+      .temporaryRedirect(getIssuerMetadata().location())
       .build();
   }
 
@@ -147,42 +276,47 @@ public class OAuthResource {
   @GET
   @Path(".well-known/openid-configuration")
   @Produces(MediaType.APPLICATION_JSON)
-  public ProviderMetadata getMetadata(
-    @Context UriInfo uriInfo
-  ) throws MalformedURLException {
-    var tokenUrl = new URL(this.tokenIssuer.id(), "/token");
-
-    return new ProviderMetadata(
-      this.tokenIssuer.id(),
-      tokenUrl, // We don't have a real authorization endpoint
-      tokenUrl,
-      this.tokenIssuer.jwksUrl(),
-      List.of("none"),
-      this.flows.stream()
-        .map(f -> f.grantType())
-        .distinct()
-        .collect(Collectors.toList()),
-      List.of("none"),
-      List.of("RS256"),
-      this.flows.stream()
-        .map(f -> f.authenticationMethod())
-        .distinct()
-        .collect(Collectors.toList()));
+  @NonBlocking
+  public Response getMetadata(
+    @Context Request request
+  ) {
+    return getIssuerMetadata()
+      .document()
+      .toResponse(request, this.configuration.metadataMaxAge.getValue());
   }
 
   /**
-   * OAuth token endpoint.
+   * Key set for verifying tokens, mirrored from the signing
+   * service account. The mirror fetches the key set on first use,
+   * so this endpoint can block.
+   */
+  @GET
+  @Path("jwks")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Blocking
+  public Response getJwks(
+    @Context Request request
+  ) throws IOException {
+    return this.jwksMirror
+      .get()
+      .toResponse(request, this.configuration.jwksRefreshInterval.getValue());
+  }
+
+  /**
+   * OAuth token endpoint. Even if the access token is served from
+   * cache, issuing the ID token requires an upstream call, so this
+   * endpoint always blocks.
    */
   @POST
   @Path("token")
   @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
   @Produces(MediaType.APPLICATION_JSON)
+  @Blocking
   public Response post(
-    @FormParam("grant_type") String grantType,
-    @FormParam("format") String format,
     MultivaluedMap<String, String> parameters
   ) {
-    if ("external_credential".equals(format))
+    var grantType = parameters.getFirst("grant_type");
+    if ("external_credential".equals(parameters.getFirst("format")))
     {
       //
       // Return results in a format that's consumable by client libraries,
@@ -193,10 +327,7 @@ public class OAuthResource {
 
         return Response
           .ok()
-          .entity(new ExternalCredentialResponse(
-            authentication.idToken().value(),
-            authentication.idToken().expiryTime().getEpochSecond()
-              - authentication.idToken().issueTime().getEpochSecond()))
+          .entity(ExternalCredentialResponse.fromAuthentication(authentication))
           .build();
       }
       catch (IllegalArgumentException e) {
@@ -226,19 +357,10 @@ public class OAuthResource {
       //
       try {
         var authentication = handleTokenRequest(grantType, parameters);
-        var tokenResponse = authentication.accessToken() != null
-          ? new TokenResponse(
-          authentication.idToken().value(),
-          authentication.accessToken().value(),
-          TokenResponse.BEARER,
-          authentication.accessToken().expiryTime().getEpochSecond()
-            - authentication.accessToken().issueTime().getEpochSecond(),
-          authentication.accessToken().scope())
-          : new TokenResponse(authentication.idToken().value());
 
         return Response
           .ok()
-          .entity(tokenResponse)
+          .entity(TokenResponse.fromAuthentication(authentication))
           .build();
       }
       catch (IllegalArgumentException e) {
@@ -264,6 +386,50 @@ public class OAuthResource {
     }
   }
 
+  /**
+   * Batch variant of the token endpoint. Authenticates the client
+   * once and issues one access token per pair of scope and
+   * service_account parameters.
+   */
+  @POST
+  @Path("token/batch")
+  @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Blocking
+  public Response postBatch(
+    MultivaluedMap<String, String> parameters
+  ) {
+    var grantType = parameters.getFirst("grant_type");
+    try {
+      var authentication = handleBatchTokenRequest(grantType, parameters);
+
+      return Response
+        .ok()
+        .entity(BatchTokenResponse.fromAuthentication(authentication))
+        .build();
+    }
+    catch (IllegalArgumentException e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+        .entity(new TokenErrorResponse(TokenErrorResponse.INVALID_REQUEST, e))
+        .build();
+    }
+    catch (Authentication.InvalidClientException e) {
+      return Response.status(Response.Status.FORBIDDEN)
+        .entity(new TokenErrorResponse(TokenErrorResponse.UNAUTHORIZED_CLIENT, e))
+        .build();
+    }
+    catch (Authentication.TokenIssuanceException e) {
+      return Response.status(Response.Status.FORBIDDEN)
+        .entity(new TokenErrorResponse(TokenErrorResponse.ACCESS_DENIED, e))
+        .build();
+    }
+    catch (Exception e) {
+      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+        .entity(new TokenErrorResponse(TokenErrorResponse.SERVER_ERROR, e))
+        .build();
+    }
+  }
+
   //---------------------------------------------------------------------------
   // Response entities.
   //---------------------------------------------------------------------------
@@ -326,6 +492,116 @@ public class OAuthResource {
 
     public static final String BEARER = "Bearer";
 
+    /**
+     * Remaining lifetime of a token, rounded up. Tokens might have been
+     * served from cache, so this is not necessarily the token's full
+     * lifetime.
+     */
+    static long expiresInSeconds(AccessToken token) {
+      var remaining = Duration.between(Instant.now(), token.expiryTime());
+      return Math.max(0, remaining.getSeconds() + (remaining.getNano() > 0 ? 1 : 0));
+    }
+
+    static TokenResponse fromAuthentication(Authentication authentication) {
+      return authentication.accessToken() != null
+        ? new TokenResponse(
+        authentication.idToken().value(),
+        authentication.accessToken().value(),
+        TokenResponse.BEARER,
+        expiresInSeconds(authentication.accessToken()),
+        authentication.accessToken().scope())
+        : new TokenResponse(authentication.idToken().value());
+    }
+
+  }
+
+  /**
+   * Batch token response.
+   *
+   * @param idToken ID token, shared by all token requests.
+   * @param results Results, in the same order as the token requests.
+   */
+  public record BatchTokenResponse(
+    @JsonProperty("id_token")
+    String idToken,
+
+    @JsonProperty("results")
+    List<BatchTokenResult> results
+  ) {
+    static BatchTokenResponse fromAuthentication(BatchAuthentication authentication) {
+      return new BatchTokenResponse(
+        authentication.idToken().value(),
+        authentication.results()
+          .stream()
+          .map(BatchTokenResult::fromResult)
+          .collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * Result of a single token request in a batch. Contains either
+   * an access token or an error.
+   */
+  public record BatchTokenResult(
+    @JsonProperty("scope")
+    String scope,
+
+    @JsonProperty("service_account")
+    String serviceAccount,
+
+    @JsonProperty("access_token")
+    String accessToken,
+
+    @JsonProperty("token_type")
+    String tokenType,
+
+    @JsonProperty("expires_in")
+    Long expiresInSeconds,
+
+    @JsonProperty("error")
+    String error,
+
+    @JsonProperty("error_description")
+    String description
+  ) {
+    static BatchTokenResult fromResult(BatchAuthentication.Result result) {
+      var scope = result.request().scope();
+      var serviceAccount = result.request().serviceAccount() != null
+        ? result.request().serviceAccount().email()
+        : null;
+
+      if (result.error() == null) {
+        return new BatchTokenResult(
+          scope,
+          serviceAccount,
+          result.accessToken().value(),
+          TokenResponse.BEARER,
+          TokenResponse.expiresInSeconds(result.accessToken()),
+          null,
+          null);
+      }
+      else {
+        String error;
+        if (result.error() instanceof IllegalArgumentException) {
+          error = TokenErrorResponse.INVALID_REQUEST;
+        }
+        else if (result.error() instanceof ApiException) {
+          error = TokenErrorResponse.ACCESS_DENIED;
+        }
+        else {
+          error = TokenErrorResponse.SERVER_ERROR;
+        }
+
+        return new BatchTokenResult(
+          scope,
+          serviceAccount,
+          null,
+          null,
+          null,
+          error,
+          result.error().getMessage());
+      }
+    }
   }
 
   /**
@@ -380,6 +656,13 @@ public class OAuthResource {
         "urn:ietf:params:oauth:token-type:id_token",
         expirationTime);
     }
+
+    static ExternalCredentialResponse fromAuthentication(Authentication authentication) {
+      return new ExternalCredentialResponse(
+        authentication.idToken().value(),
+        authentication.idToken().expiryTime().getEpochSecond()
+          - authentication.idToken().issueTime().getEpochSecond());
+    }
   }
 
   /**
@@ -0,0 +1,58 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import com.google.api.client.json.webtoken.JsonWebToken;
+import com.google.api.client.util.GenericData;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Classes that are serialized or deserialized using reflection and
+ * must therefore be retained in native images.
+ *
+ * Quarkus automatically registers types that are returned by resource
+ * methods, but that doesn't cover types that we serialize ourselves, or
+ * that the Google HTTP client parses using its @Key-based reflection.
+ */
+@RegisterForReflection(targets = {
+  //
+  // Types that we serialize using Jackson. Token and error responses
+  // use pre-built serializers instead, see ResponseWriters.
+  //
+  OAuthResource.ProviderMetadata.class,
+  LogAdapter.LogEntry.class,
+
+  //
+  // Types that the Google HTTP client (de)serializes using @Key.
+  //
+  GenericData.class,
+  GenericJson.class,
+  JsonWebToken.Header.class,
+  JsonWebToken.Payload.class,
+  JsonWebSignature.Header.class
+})
+class ReflectionConfiguration {
+  private ReflectionConfiguration() {}
+}
@@ -0,0 +1,261 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import io.vertx.core.http.HttpServerResponse;
+import org.jboss.resteasy.reactive.server.core.ResteasyReactiveRequestContext;
+import org.jboss.resteasy.reactive.server.spi.ResteasyReactiveResourceInfo;
+import org.jboss.resteasy.reactive.server.spi.ServerMessageBodyWriter;
+import org.jboss.resteasy.reactive.server.spi.ServerRequestContext;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Pre-built JSON serializers for response entities. Unlike the generic
+ * Jackson provider, the serializers don't use reflection, and write
+ * each response in a single write. On RESTEasy Reactive, they end the
+ * Vert.x response directly instead of going through an output stream.
+ */
+public class ResponseWriters {
+  public static final Class<?>[] ALL = new Class<?>[] {
+    TokenResponseWriter.class,
+    BatchTokenResponseWriter.class,
+    TokenErrorResponseWriter.class,
+    ExternalCredentialResponseWriter.class,
+    ExternalCredentialErrorResponseWriter.class
+  };
+
+  private static final byte[] ID_TOKEN = JsonBuffer.name("id_token");
+  private static final byte[] ACCESS_TOKEN = JsonBuffer.name("access_token");
+  private static final byte[] TOKEN_TYPE = JsonBuffer.name("token_type");
+  private static final byte[] EXPIRES_IN = JsonBuffer.name("expires_in");
+  private static final byte[] SCOPE = JsonBuffer.name("scope");
+  private static final byte[] RESULTS = JsonBuffer.name("results");
+  private static final byte[] SERVICE_ACCOUNT = JsonBuffer.name("service_account");
+  private static final byte[] ERROR = JsonBuffer.name("error");
+  private static final byte[] ERROR_DESCRIPTION = JsonBuffer.name("error_description");
+  private static final byte[] SUCCESS = JsonBuffer.name("success");
+  private static final byte[] VERSION = JsonBuffer.name("version");
+  private static final byte[] EXPIRATION_TIME = JsonBuffer.name("expiration_time");
+  private static final byte[] CODE = JsonBuffer.name("code");
+  private static final byte[] MESSAGE = JsonBuffer.name("message");
+
+  //---------------------------------------------------------------------------
+  // Writers.
+  //---------------------------------------------------------------------------
+
+  /**
+   * Base class for writers that serialize a single type of entity.
+   */
+  static abstract class JsonWriter<T> implements ServerMessageBodyWriter<T> {
+    private final Class<T> type;
+
+    protected JsonWriter(Class<T> type) {
+      this.type = type;
+    }
+
+    abstract void write(T entity, JsonBuffer buffer);
+
+    @Override
+    public boolean isWriteable(
+      Class<?> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType
+    ) {
+      return this.type.equals(type) &&
+        (mediaType == null || mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Override
+    public void writeTo(
+      T entity,
+      Class<?> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType,
+      MultivaluedMap<String, Object> httpHeaders,
+      OutputStream entityStream
+    ) throws IOException {
+      var buffer = JsonBuffer.acquire();
+      write(entity, buffer);
+      buffer.writeTo(entityStream);
+    }
+
+    @Override
+    public boolean isWriteable(
+      Class<?> type,
+      Type genericType,
+      ResteasyReactiveResourceInfo target,
+      MediaType mediaType
+    ) {
+      return isWriteable(type, genericType, (Annotation[])null, mediaType);
+    }
+
+    @Override
+    public void writeResponse(
+      T entity,
+      Type genericType,
+      ServerRequestContext context
+    ) throws IOException {
+      var buffer = JsonBuffer.acquire();
+      write(entity, buffer);
+
+      var response = context instanceof ResteasyReactiveRequestContext requestContext
+        ? requestContext.serverRequest().unwrap(HttpServerResponse.class)
+        : null;
+      if (response != null) {
+        //
+        // Copy the (pooled) buffer into a Vert.x buffer once, and hand
+        // that to Vert.x as is. ServerHttpResponse.end(byte[]) would need
+        // a byte array of its own, which Vert.x then copies again.
+        //
+        response.end(buffer.toVertxBuffer());
+      }
+      else {
+        buffer.writeTo(context.getOrCreateOutputStream());
+      }
+    }
+  }
+
+  @Provider
+  @Produces(MediaType.APPLICATION_JSON)
+  public static class TokenResponseWriter extends JsonWriter<OAuthResource.TokenResponse> {
+    public TokenResponseWriter() {
+      super(OAuthResource.TokenResponse.class);
+    }
+
+    @Override
+    void write(OAuthResource.TokenResponse entity, JsonBuffer buffer) {
+      buffer.append((byte)'{').append(ID_TOKEN).appendString(entity.idToken());
+      buffer.append((byte)',').append(ACCESS_TOKEN);
+      buffer.appendString(entity.accessToken());
+      buffer.append((byte)',').append(TOKEN_TYPE).appendString(entity.tokenType());
+      buffer.append((byte)',').append(EXPIRES_IN).appendNumber(entity.expiresInSeconds());
+      buffer.append((byte)',').append(SCOPE).appendString(entity.scope());
+      buffer.append((byte)'}');
+    }
+  }
+
+  @Provider
+  @Produces(MediaType.APPLICATION_JSON)
+  public static class BatchTokenResponseWriter extends JsonWriter<OAuthResource.BatchTokenResponse> {
+    public BatchTokenResponseWriter() {
+      super(OAuthResource.BatchTokenResponse.class);
+    }
+
+    @Override
+    void write(OAuthResource.BatchTokenResponse entity, JsonBuffer buffer) {
+      buffer.append((byte)'{').append(ID_TOKEN).appendString(entity.idToken());
+      buffer.append((byte)',').append(RESULTS);
+
+      if (entity.results() == null) {
+        buffer.appendNull();
+      }
+      else {
+        buffer.append((byte)'[');
+
+        var first = true;
+        for (var result : entity.results()) {
+          if (!first) {
+            buffer.append((byte)',');
+          }
+
+          first = false;
+
+          buffer.append((byte)'{').append(SCOPE).appendString(result.scope());
+          buffer.append((byte)',').append(SERVICE_ACCOUNT).appendString(result.serviceAccount());
+          buffer.append((byte)',').append(ACCESS_TOKEN);
+          buffer.appendString(result.accessToken());
+          buffer.append((byte)',').append(TOKEN_TYPE).appendString(result.tokenType());
+          buffer.append((byte)',').append(EXPIRES_IN).appendNumber(result.expiresInSeconds());
+          buffer.append((byte)',').append(ERROR).appendString(result.error());
+          buffer.append((byte)',').append(ERROR_DESCRIPTION).appendString(result.description());
+          buffer.append((byte)'}');
+        }
+
+        buffer.append((byte)']');
+      }
+
+      buffer.append((byte)'}');
+    }
+  }
+
+  @Provider
+  @Produces(MediaType.APPLICATION_JSON)
+  public static class TokenErrorResponseWriter extends JsonWriter<OAuthResource.TokenErrorResponse> {
+    public TokenErrorResponseWriter() {
+      super(OAuthResource.TokenErrorResponse.class);
+    }
+
+    @Override
+    void write(OAuthResource.TokenErrorResponse entity, JsonBuffer buffer) {
+      buffer.append((byte)'{').append(ERROR).appendString(entity.error());
+      buffer.append((byte)',').append(ERROR_DESCRIPTION).appendString(entity.description());
+      buffer.append((byte)'}');
+    }
+  }
+
+  @Provider
+  @Produces(MediaType.APPLICATION_JSON)
+  public static class ExternalCredentialResponseWriter
+    extends JsonWriter<OAuthResource.ExternalCredentialResponse> {
+    public ExternalCredentialResponseWriter() {
+      super(OAuthResource.ExternalCredentialResponse.class);
+    }
+
+    @Override
+    void write(OAuthResource.ExternalCredentialResponse entity, JsonBuffer buffer) {
+      buffer.append((byte)'{').append(SUCCESS).appendBoolean(entity.success());
+      buffer.append((byte)',').append(VERSION).appendNumber(entity.version());
+      buffer.append((byte)',').append(ID_TOKEN).appendString(entity.idToken());
+      buffer.append((byte)',').append(TOKEN_TYPE).appendString(entity.tokenType());
+      buffer.append((byte)',').append(EXPIRATION_TIME).appendNumber(entity.expirationTime());
+      buffer.append((byte)'}');
+    }
+  }
+
+  @Provider
+  @Produces(MediaType.APPLICATION_JSON)
+  public static class ExternalCredentialErrorResponseWriter
+    extends JsonWriter<OAuthResource.ExternalCredentialErrorResponse> {
+    public ExternalCredentialErrorResponseWriter() {
+      super(OAuthResource.ExternalCredentialErrorResponse.class);
+    }
+
+    @Override
+    void write(OAuthResource.ExternalCredentialErrorResponse entity, JsonBuffer buffer) {
+      buffer.append((byte)'{').append(SUCCESS).appendBoolean(entity.success());
+      buffer.append((byte)',').append(VERSION).appendNumber(entity.version());
+      buffer.append((byte)',').append(CODE).appendString(entity.code());
+      buffer.append((byte)',').append(MESSAGE).appendString(entity.message());
+      buffer.append((byte)'}');
+    }
+  }
+}
@@ -93,6 +93,297 @@ public class RuntimeConfiguration {
     List.of("TOKEN_ISSUER"),
     "");
 
+  /**
+   * Time for which clients and proxies may cache metadata documents.
+   */
+  protected final DurationSetting metadataMaxAge = new DurationSetting(
+    List.of("METADATA_MAX_AGE"),
+    Duration.ofMinutes(60));
+
+  /**
+   * Time before expiry at which to refresh the access token of the
+   * service account that the application runs as.
+   */
+  protected final DurationSetting credentialRefreshMargin = new DurationSetting(
+    List.of("CREDENTIAL_REFRESH_MARGIN"),
+    Duration.ofMinutes(10));
+
+  /**
+   * Interval in which to refresh the locally mirrored key set. This is
+   * also the time for which clients may cache the key set.
+   */
+  protected final DurationSetting jwksRefreshInterval = new DurationSetting(
+    List.of("JWKS_REFRESH_INTERVAL"),
+    Duration.ofMinutes(5));
+
+  /**
+   * Maximum number of tokens to cache outside the Java heap. If 0,
+   * tokens are cached on the heap instead. Use for large numbers of
+   * clients, where caching tokens on the heap would increase GC pauses.
+   */
+  protected final LongSetting tokenCacheOffHeapCapacity = new LongSetting(
+    List.of("TOKEN_CACHE_OFF_HEAP_CAPACITY"),
+    0L);
+
+  /**
+   * Base64-encoded 256-bit AES key for encrypting cached tokens
+   * that leave the instance, either as snapshot or in a shared cache.
+   */
+  protected final StringSetting tokenCacheKey = new StringSetting(
+    List.of("TOKEN_CACHE_KEY"),
+    "");
+
+  /**
+   * Path of the file to snapshot cached tokens to. If empty, cached
+   * tokens aren't snapshotted. To be useful, the path must be on a
+   * volume that outlives the instance.
+   */
+  protected final StringSetting tokenCacheSnapshotPath = new StringSetting(
+    List.of("TOKEN_CACHE_SNAPSHOT_PATH"),
+    "");
+
+  /**
+   * Interval in which to snapshot cached tokens.
+   */
+  protected final DurationSetting tokenCacheSnapshotInterval = new DurationSetting(
+    List.of("TOKEN_CACHE_SNAPSHOT_INTERVAL"),
+    Duration.ofMinutes(5));
+
+  /**
+   * Host of a Redis (or Memorystore) server to use as shared token
+   * cache. If empty, tokens are only cached locally.
+   */
+  protected final StringSetting tokenCacheRedisHost = new StringSetting(
+    List.of("TOKEN_CACHE_REDIS_HOST"),
+    "");
+
+  /**
+   * Port of the Redis server.
+   */
+  protected final LongSetting tokenCacheRedisPort = new LongSetting(
+    List.of("TOKEN_CACHE_REDIS_PORT"),
+    6379L);
+
+  /**
+   * Password (AUTH string) of the Redis server, optional.
+   */
+  protected final StringSetting tokenCacheRedisPassword = new StringSetting(
+    List.of("TOKEN_CACHE_REDIS_PASSWORD"),
+    "");
+
+  /**
+   * Time within which startup tasks (such as resolving credentials)
+   * must complete. If they don't, startup fails.
+   */
+  protected final DurationSetting startupTimeout = new DurationSetting(
+    List.of("STARTUP_TIMEOUT"),
+    Duration.ofMinutes(1));
+
+  /**
+   * Path of a file that contains the SHA-256 fingerprints of client
+   * certificates that are allowed to authenticate, one per line. If
+   * empty, all trusted client certificates are allowed.
+   */
+  protected final StringSetting mtlsClientCertAllowListPath = new StringSetting(
+    List.of("MTLS_CLIENT_CERT_ALLOWLIST_PATH"),
+    "");
+
+  /**
+   * Interval in which to check the allow-list file for changes.
+   */
+  protected final DurationSetting mtlsClientCertAllowListCheckInterval = new DurationSetting(
+    List.of("MTLS_CLIENT_CERT_ALLOWLIST_CHECK_INTERVAL"),
+    Duration.ofMinutes(1));
+
+  /**
+   * Path of a CRL, or of a file that contains the hex-encoded serial
+   * numbers of revoked client certificates, one per line. If empty,
+   * revocation isn't checked.
+   */
+  protected final StringSetting mtlsClientCertRevocationListPath = new StringSetting(
+    List.of("MTLS_CLIENT_CERT_REVOCATION_LIST_PATH"),
+    "");
+
+  /**
+   * Interval in which to check the revocation list file for changes.
+   */
+  protected final DurationSetting mtlsClientCertRevocationListCheckInterval = new DurationSetting(
+    List.of("MTLS_CLIENT_CERT_REVOCATION_LIST_CHECK_INTERVAL"),
+    Duration.ofMinutes(1));
+
+  /**
+   * Whether to check the revocation status of client certificates
+   * using OCSP, either disabled, soft_fail (allow certificates whose
+   * status is unavailable), or hard_fail (reject certificates whose
+   * status is unavailable).
+   */
+  protected final StringSetting mtlsOcspMode = new StringSetting(
+    List.of("MTLS_OCSP_MODE"),
+    "disabled");
+
+  /**
+   * URL of the OCSP responder to query. If empty, the responder
+   * specified in each certificate is used.
+   */
+  protected final StringSetting mtlsOcspResponderUrl = new StringSetting(
+    List.of("MTLS_OCSP_RESPONDER_URL"),
+    "");
+
+  /**
+   * Path of a JSON file that maps clients to additional claims. If
+   * set, only clients that are listed in the file are allowed to
+   * authenticate. If empty, clients aren't looked up.
+   */
+  protected final StringSetting clientDirectoryPath = new StringSetting(
+    List.of("CLIENT_DIRECTORY_PATH"),
+    "");
+
+  /**
+   * Attribute to look up clients by, either client_id or
+   * certificate_fingerprint.
+   */
+  protected final StringSetting clientDirectoryKey = new StringSetting(
+    List.of("CLIENT_DIRECTORY_KEY"),
+    "client_id");
+
+  /**
+   * Path of a JSON file (in the same format as the directory) that
+   * contains clients to add to the cache at startup. Optional.
+   */
+  protected final StringSetting clientDirectoryPreloadPath = new StringSetting(
+    List.of("CLIENT_DIRECTORY_PRELOAD_PATH"),
+    "");
+
+  /**
+   * Time after which to revalidate a cached client in the background.
+   */
+  protected final DurationSetting clientDirectoryRefreshInterval = new DurationSetting(
+    List.of("CLIENT_DIRECTORY_REFRESH_INTERVAL"),
+    Duration.ofMinutes(5));
+
+  /**
+   * Time after which to stop using a cached client if revalidating
+   * it keeps failing.
+   */
+  protected final DurationSetting clientDirectoryMaxStaleness = new DurationSetting(
+    List.of("CLIENT_DIRECTORY_MAX_STALENESS"),
+    Duration.ofMinutes(60));
+
+  /**
+   * Time after which to revalidate an unknown client.
+   */
+  protected final DurationSetting clientDirectoryNegativeCacheDuration = new DurationSetting(
+    List.of("CLIENT_DIRECTORY_NEGATIVE_CACHE_DURATION"),
+    Duration.ofMinutes(1));
+
+  /**
+   * Certificate attribute to use as client ID when the application
+   * terminates mTLS itself, or when a proxy forwards the client
+   * certificate. One of spiffe_id, san_dns, san_uri, or
+   * sha256_fingerprint.
+   */
+  protected final StringSetting mtlsClientIdAttribute = new StringSetting(
+    List.of("MTLS_CLIENT_ID_ATTRIBUTE"),
+    "spiffe_id");
+
+  /**
+   * Name of the header that contains the forwarded client certificate.
+   */
+  protected final StringSetting mtlsXfccHeader = new StringSetting(
+    List.of("MTLS_XFCC_HEADER"),
+    "x-forwarded-client-cert");
+
+  /**
+   * Path of a file that contains the PEM-encoded CA certificates that
+   * forwarded client certificates must chain up to.
+   */
+  protected final StringSetting mtlsXfccTrustBundlePath = new StringSetting(
+    List.of("MTLS_XFCC_TRUST_BUNDLE_PATH"),
+    "");
+
+  /**
+   * Interval in which to check the trust bundle file for changes.
+   */
+  protected final DurationSetting mtlsXfccTrustBundleCheckInterval = new DurationSetting(
+    List.of("MTLS_XFCC_TRUST_BUNDLE_CHECK_INTERVAL"),
+    Duration.ofMinutes(1));
+
+  /**
+   * Path of a JSON file that maps client IDs to the keys (or JWKS URLs)
+   * that clients use to sign client assertions.
+   */
+  protected final StringSetting privateKeyJwtClientsPath = new StringSetting(
+    List.of("PRIVATE_KEY_JWT_CLIENTS_PATH"),
+    "");
+
+  /**
+   * Interval in which to check the client keys file for changes.
+   */
+  protected final DurationSetting privateKeyJwtClientsCheckInterval = new DurationSetting(
+    List.of("PRIVATE_KEY_JWT_CLIENTS_CHECK_INTERVAL"),
+    Duration.ofMinutes(1));
+
+  /**
+   * Time to cache key sets fetched from clients' JWKS URLs.
+   */
+  protected final DurationSetting privateKeyJwtJwksCacheDuration = new DurationSetting(
+    List.of("PRIVATE_KEY_JWT_JWKS_CACHE_DURATION"),
+    Duration.ofMinutes(5));
+
+  /**
+   * Maximum time until a client assertion expires.
+   */
+  protected final DurationSetting privateKeyJwtMaxAssertionLifetime = new DurationSetting(
+    List.of("PRIVATE_KEY_JWT_MAX_ASSERTION_LIFETIME"),
+    Duration.ofMinutes(5));
+
+  /**
+   * Path of a JSON file that maps client IDs to the PBKDF2 hashes of
+   * their client secrets.
+   */
+  protected final StringSetting clientSecretBasicClientsPath = new StringSetting(
+    List.of("CLIENT_SECRET_BASIC_CLIENTS_PATH"),
+    "");
+
+  /**
+   * Interval in which to check the client secrets file for changes.
+   */
+  protected final DurationSetting clientSecretBasicClientsCheckInterval = new DurationSetting(
+    List.of("CLIENT_SECRET_BASIC_CLIENTS_CHECK_INTERVAL"),
+    Duration.ofMinutes(1));
+
+  /**
+   * SPIFFE trust domain that workloads must belong to in order to
+   * authenticate using a JWT-SVID.
+   */
+  protected final StringSetting spiffeTrustDomain = new StringSetting(
+    List.of("SPIFFE_TRUST_DOMAIN"),
+    "");
+
+  /**
+   * Path of a file that contains the SPIFFE trust bundle (in JWKS
+   * format) that JWT-SVIDs must be signed with.
+   */
+  protected final StringSetting spiffeBundlePath = new StringSetting(
+    List.of("SPIFFE_BUNDLE_PATH"),
+    "");
+
+  /**
+   * URL of a SPIFFE bundle endpoint to fetch the trust bundle from,
+   * alternative to SPIFFE_BUNDLE_PATH.
+   */
+  protected final StringSetting spiffeBundleUrl = new StringSetting(
+    List.of("SPIFFE_BUNDLE_URL"),
+    "");
+
+  /**
+   * Interval in which to refresh the SPIFFE trust bundle. The bundle's
+   * refresh hint takes precedence if it's shorter.
+   */
+  protected final DurationSetting spiffeBundleRefreshInterval = new DurationSetting(
+    List.of("SPIFFE_BUNDLE_REFRESH_INTERVAL"),
+    Duration.ofMinutes(5));
+
   //
   // Names of mTLS headers. The header names are configurable, cf.
   // https://cloud.google.com/load-balancing/docs/https/setting-up-mtls-global-ext-https#add-custom-header
@@ -21,28 +21,83 @@
 
 package com.google.solutions.tokenservice.web;
 
+import com.google.auth.oauth2.AccessToken;
 import com.google.auth.oauth2.ComputeEngineCredentials;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auth.oauth2.ImpersonatedCredentials;
 import com.google.auth.oauth2.ServiceAccountCredentials;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.solutions.tokenservice.ApplicationVersion;
 import com.google.solutions.tokenservice.URLHelper;
 import com.google.solutions.tokenservice.UserId;
 import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
+import com.google.solutions.tokenservice.oauth.OffHeapTokenCache;
+import com.google.solutions.tokenservice.oauth.RedisTokenCache;
 import com.google.solutions.tokenservice.oauth.ServiceAccount;
+import com.google.solutions.tokenservice.oauth.TieredTokenCache;
+import com.google.solutions.tokenservice.oauth.TokenCache;
 import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.CachingClientDirectory;
+import com.google.solutions.tokenservice.oauth.client.ClientDirectory;
+import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
+import com.google.solutions.tokenservice.oauth.client.FingerprintAllowList;
+import com.google.solutions.tokenservice.oauth.client.LocalClientDirectory;
+import com.google.solutions.tokenservice.oauth.client.OcspRevocationChecker;
+import com.google.solutions.tokenservice.oauth.client.RevocationList;
+import com.google.solutions.tokenservice.oauth.jwt.ClientAssertionVerifier;
+import com.google.solutions.tokenservice.oauth.jwt.ClientKeyRegistry;
+import com.google.solutions.tokenservice.oauth.jwt.JwtSvidClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.jwt.JwtSvidVerifier;
+import com.google.solutions.tokenservice.oauth.jwt.PrivateKeyJwtClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.jwt.ReplayCache;
+import com.google.solutions.tokenservice.oauth.jwt.SpiffeBundle;
+import com.google.solutions.tokenservice.oauth.jwt.SpiffeBundleEndpoint;
+import com.google.solutions.tokenservice.oauth.mtls.ClientCertificateCache;
+import com.google.solutions.tokenservice.oauth.mtls.DirectMtlsClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.mtls.ForwardedCertificateValidator;
+import com.google.solutions.tokenservice.oauth.mtls.MtlsClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.mtls.TrustBundle;
+import com.google.solutions.tokenservice.oauth.mtls.XfccMtlsClientCredentialsFlow;
 import com.google.solutions.tokenservice.oauth.mtls.XlbMtlsClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.secret.ClientSecretBasicClientCredentialsFlow;
+import com.google.solutions.tokenservice.oauth.secret.ClientSecretVerifier;
+import com.google.solutions.tokenservice.platform.AesGcmCipher;
+import com.google.solutions.tokenservice.platform.CredentialManager;
+import com.google.solutions.tokenservice.platform.EncryptedSnapshotFile;
+import com.google.solutions.tokenservice.platform.FileReloader;
+import com.google.solutions.tokenservice.platform.HttpTransport;
 import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.platform.RedisClient;
+import com.google.solutions.tokenservice.platform.StartupTasks;
+import io.quarkus.runtime.Startup;
 import io.vertx.core.http.HttpServerRequest;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Disposes;
 import javax.enterprise.inject.Produces;
+import javax.inject.Singleton;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -53,8 +108,102 @@ import java.util.stream.Stream;
 public class RuntimeEnvironment {
   private static final String CONFIG_IMPERSONATE_SA = "tokenservice.impersonateServiceAccount";
   private static final String CONFIG_DEBUG_MODE = "tokenservice.debug";
+  private static final String CONFIG_TRAINING_MODE = "tokenservice.training";
 
-  private final ServiceAccount serviceAccount;
+  /**
+   * Maximum number of distinct issuers (that is, hosts) to keep
+   * token issuers for.
+   */
+  private static final int MAX_TOKEN_ISSUERS = 32;
+
+  /**
+   * Connect and read timeout for the shared token cache. The cache
+   * is on the request path, so this should be short.
+   */
+  private static final Duration SHARED_TOKEN_CACHE_TIMEOUT = Duration.ofMillis(500);
+  private static final long MAX_CACHED_CLIENTS = 100_000;
+  private static final long MAX_CACHED_CLIENT_CERTIFICATES = 10_000;
+  private static final long MAX_CACHED_FORWARDED_CERTIFICATES = 10_000;
+  private static final long MAX_CACHED_OCSP_RESPONSES = 10_000;
+  private static final long MAX_CACHED_CLIENT_KEY_SETS = 10_000;
+  private static final long MAX_REPLAY_CACHE_ENTRIES = 100_000;
+  private static final long MAX_REPLAY_CACHE_ENTRIES_PER_CLIENT = 10_000;
+
+  /**
+   * Minimum time between fetches of a client's JWKS when the client
+   * uses an unknown key.
+   */
+  private static final Duration MIN_CLIENT_JWKS_REFRESH_INTERVAL = Duration.ofSeconds(30);
+
+  /**
+   * Time to cache verified JWT-SVIDs. Workloads reuse JWT-SVIDs
+   * until they're about to expire, so this saves most signature
+   * verifications.
+   */
+  private static final Duration JWT_SVID_CACHE_DURATION = Duration.ofMinutes(1);
+  private static final long MAX_CACHED_JWT_SVIDS = 10_000;
+
+  /**
+   * Time to cache verified client secrets. Verifying a client secret
+   * is slow, but a compromised secret should stop working soon after
+   * it's been removed.
+   */
+  private static final Duration CLIENT_SECRET_CACHE_DURATION = Duration.ofMinutes(1);
+  private static final long MAX_CACHED_CLIENT_SECRETS = 10_000;
+
+  /**
+   * Number of failed attempts after which a client is locked out, and
+   * time window in which failed attempts count.
+   */
+  private static final int MAX_FAILED_CLIENT_SECRET_ATTEMPTS = 5;
+  private static final Duration CLIENT_SECRET_LOCKOUT_DURATION = Duration.ofMinutes(5);
+
+  /**
+   * Time to wait for an OCSP responder. Only applies to certificates
+   * whose status isn't cached yet.
+   */
+  private static final Duration OCSP_TIMEOUT = Duration.ofSeconds(5);
+
+  /**
+   * Service account to run as, resolved during initialization.
+   */
+  private ServiceAccount serviceAccount;
+
+  /**
+   * Manages the credentials of the service account, null if the
+   * service account doesn't use any credentials.
+   */
+  private CredentialManager credentialManager;
+
+  /**
+   * Files that are reloaded when they change.
+   */
+  private final List<FileReloader<?>> fileReloaders = new CopyOnWriteArrayList<>();
+
+  /**
+   * Endpoint to fetch the SPIFFE trust bundle from, null if the
+   * bundle is loaded from a file or not used.
+   */
+  private volatile SpiffeBundleEndpoint spiffeBundleEndpoint;
+
+  /**
+   * Cached client directory, null if clients aren't looked up.
+   */
+  private CachingClientDirectory clientDirectory;
+
+  /**
+   * Token issuers, keyed by host. Hosts are client-provided, so the
+   * cache needs to be bounded.
+   */
+  private final Cache<String, IdTokenIssuer> tokenIssuers = CacheBuilder
+    .newBuilder()
+    .maximumSize(MAX_TOKEN_ISSUERS)
+    .build();
+
+  private volatile WorkloadIdentityPool.Options workloadIdentityPoolOptions;
+  private volatile XlbMtlsClientCredentialsFlow.Options xlbMtlsClientCredentialsFlowOptions;
+  private volatile DirectMtlsClientCredentialsFlow.Options directMtlsClientCredentialsFlowOptions;
+  private volatile XfccMtlsClientCredentialsFlow.Options xfccMtlsClientCredentialsFlowOptions;
 
   /**
    * Configuration, based on app.yaml environment variables.
@@ -69,20 +218,64 @@ public class RuntimeEnvironment {
     return System.getenv().containsKey("K_SERVICE");
   }
 
-  // -------------------------------------------------------------------------
-  // Public methods.
-  // -------------------------------------------------------------------------
-
-  public RuntimeEnvironment() {
+  private static URL issuerIdFromRequest(HttpServerRequest request) {
     //
-    // Create a log adapter. We can't rely on injection as the adapter
-    // is request-scoped.
+    // Because the load balancer terminates HTTPS, we have
+    // to force the scheme back to https://.
     //
-    var logAdapter = new LogAdapter();
+    try {
+      return new URL(new URL(
+        request.absoluteURI().replace("http:", "https:")), "/");
+    }
+    catch (MalformedURLException e) {
+      throw new IllegalArgumentException("The request URL is malformed", e);
+    }
+  }
 
-    //
-    // Validate options.
-    //
+  private IdTokenIssuer.Options createTokenIssuerOptions(URL issuerId) {
+    return new IdTokenIssuer.Options(
+      issuerId,
+      getWorkloadIdentityPoolOptions().expectedTokenAudience(),
+      this.configuration.tokenValidity.getValue());
+  }
+
+  private IdTokenIssuer getCachedTokenIssuer(
+    String cacheKey,
+    Supplier<URL> issuerId
+  ) {
+    try {
+      return this.tokenIssuers.get(
+        cacheKey,
+        () -> new IdTokenIssuer(
+          createTokenIssuerOptions(issuerId.get()),
+          this.serviceAccount));
+    }
+    catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Create a service account whose credentials are refreshed
+   * in the background once initialization has completed.
+   */
+  private ServiceAccount createServiceAccount(
+    UserId id,
+    GoogleCredentials credentials
+  ) {
+    this.credentialManager = new CredentialManager(
+      credentials,
+      this.configuration.credentialRefreshMargin.getValue(),
+      new LogAdapter());
+
+    return new ServiceAccount(id, this.credentialManager);
+  }
+
+  /**
+   * Validate the configuration and precompute derived options.
+   */
+  private void validateConfiguration() {
     var validClientIdHeaders = Set.of(
       this.configuration.mtlsClientCertSpiffeIdHeader.getValue(),
       this.configuration.mtlsClientCertDnsSansHeader.getValue(),
@@ -98,6 +291,171 @@ public class RuntimeEnvironment {
           String.join(", ", validClientIdHeaders)));
     }
 
+    if (this.configuration.workloadIdenityProjectNumber.isValid() &&
+      this.configuration.workloadIdenityPoolId.isValid() &&
+      this.configuration.workloadIdenityProviderIdId.isValid()) {
+      //
+      // Precompute the options so that the first request doesn't
+      // have to. Invalid settings are reported when the options are
+      // first used, as before.
+      //
+      getWorkloadIdentityPoolOptions();
+    }
+
+    getXlbMtlsClientCredentialsFlowOptions();
+    getDirectMtlsClientCredentialsFlowOptions();
+    getXfccMtlsClientCredentialsFlowOptions();
+
+    if (this.configuration.authenticationFlows().contains(XfccMtlsClientCredentialsFlow.NAME) &&
+      Strings.isNullOrEmpty(this.configuration.mtlsXfccTrustBundlePath.getValue())) {
+      throw new RuntimeException(
+        String.format(
+          "The flow %s requires a trust bundle, but MTLS_XFCC_TRUST_BUNDLE_PATH is not set",
+          XfccMtlsClientCredentialsFlow.NAME));
+    }
+
+    if (this.configuration.authenticationFlows().contains(PrivateKeyJwtClientCredentialsFlow.NAME) &&
+      Strings.isNullOrEmpty(this.configuration.privateKeyJwtClientsPath.getValue())) {
+      throw new RuntimeException(
+        String.format(
+          "The flow %s requires a list of client keys, but PRIVATE_KEY_JWT_CLIENTS_PATH is not set",
+          PrivateKeyJwtClientCredentialsFlow.NAME));
+    }
+
+    if (this.configuration.authenticationFlows().contains(JwtSvidClientCredentialsFlow.NAME)) {
+      if (Strings.isNullOrEmpty(this.configuration.spiffeTrustDomain.getValue())) {
+        throw new RuntimeException(
+          String.format(
+            "The flow %s requires a trust domain, but SPIFFE_TRUST_DOMAIN is not set",
+            JwtSvidClientCredentialsFlow.NAME));
+      }
+      else if (Strings.isNullOrEmpty(this.configuration.spiffeBundlePath.getValue()) ==
+        Strings.isNullOrEmpty(this.configuration.spiffeBundleUrl.getValue())) {
+        throw new RuntimeException(
+          String.format(
+            "The flow %s requires a trust bundle, set either SPIFFE_BUNDLE_PATH or SPIFFE_BUNDLE_URL",
+            JwtSvidClientCredentialsFlow.NAME));
+      }
+    }
+
+    if (!Strings.isNullOrEmpty(this.configuration.spiffeBundleUrl.getValue())) {
+      try {
+        URI.create(this.configuration.spiffeBundleUrl.getValue()).toURL();
+      }
+      catch (IllegalArgumentException | MalformedURLException e) {
+        throw new RuntimeException(
+          String.format(
+            "The SPIFFE bundle URL '%s' is invalid",
+            this.configuration.spiffeBundleUrl.getValue()));
+      }
+    }
+
+    if (this.configuration.authenticationFlows().contains(ClientSecretBasicClientCredentialsFlow.NAME) &&
+      Strings.isNullOrEmpty(this.configuration.clientSecretBasicClientsPath.getValue())) {
+      throw new RuntimeException(
+        String.format(
+          "The flow %s requires a list of client secrets, but CLIENT_SECRET_BASIC_CLIENTS_PATH is not set",
+          ClientSecretBasicClientCredentialsFlow.NAME));
+    }
+
+    if (this.configuration.privateKeyJwtMaxAssertionLifetime.getValue().isNegative() ||
+      this.configuration.privateKeyJwtMaxAssertionLifetime.getValue().isZero()) {
+      throw new RuntimeException("The maximum client assertion lifetime must be positive");
+    }
+
+    if (isTokenCacheSnapshotEnabled() || isSharedTokenCacheEnabled()) {
+      AesGcmCipher.parseKey(this.configuration.tokenCacheKey.getValue());
+    }
+
+    var offHeapCapacity = this.configuration.tokenCacheOffHeapCapacity.getValue();
+    if (offHeapCapacity < 0 || offHeapCapacity > Integer.MAX_VALUE / 2) {
+      throw new RuntimeException(
+        String.format("The off-heap token cache capacity %d is invalid", offHeapCapacity));
+    }
+    else if (isOffHeapTokenCacheEnabled() && isTokenCacheSnapshotEnabled()) {
+      throw new RuntimeException(
+        "Token cache snapshots can't be used in combination with an off-heap token cache");
+    }
+
+    getOcspFailurePolicy();
+    if (!Strings.isNullOrEmpty(this.configuration.mtlsOcspResponderUrl.getValue())) {
+      try {
+        URI.create(this.configuration.mtlsOcspResponderUrl.getValue()).toURL();
+      }
+      catch (IllegalArgumentException | MalformedURLException e) {
+        throw new RuntimeException(
+          String.format(
+            "The OCSP responder URL '%s' is invalid",
+            this.configuration.mtlsOcspResponderUrl.getValue()));
+      }
+    }
+
+    getClientDirectoryKeyType();
+    if (this.configuration.clientDirectoryRefreshInterval.getValue().compareTo(
+      this.configuration.clientDirectoryMaxStaleness.getValue()) >= 0) {
+      throw new RuntimeException(
+        "The client directory refresh interval must be shorter than the maximum staleness");
+    }
+  }
+
+  private ClientDirectory.KeyType getClientDirectoryKeyType() {
+    var key = this.configuration.clientDirectoryKey.getValue();
+    if ("client_id".equals(key)) {
+      return ClientDirectory.KeyType.CLIENT_ID;
+    }
+    else if ("certificate_fingerprint".equals(key)) {
+      return ClientDirectory.KeyType.CERTIFICATE_FINGERPRINT;
+    }
+    else {
+      throw new RuntimeException(
+        String.format(
+          "The client directory key '%s' is invalid. " +
+            "Use 'client_id' or 'certificate_fingerprint' instead.",
+          key));
+    }
+  }
+
+  /**
+   * @return failure policy for OCSP, or null if OCSP is disabled.
+   */
+  private OcspRevocationChecker.FailurePolicy getOcspFailurePolicy() {
+    var mode = this.configuration.mtlsOcspMode.getValue();
+    if ("disabled".equals(mode)) {
+      return null;
+    }
+    else if ("soft_fail".equals(mode)) {
+      return OcspRevocationChecker.FailurePolicy.SOFT_FAIL;
+    }
+    else if ("hard_fail".equals(mode)) {
+      return OcspRevocationChecker.FailurePolicy.HARD_FAIL;
+    }
+    else {
+      throw new RuntimeException(
+        String.format(
+          "The OCSP mode '%s' is invalid. " +
+            "Use 'disabled', 'soft_fail', or 'hard_fail' instead.",
+          mode));
+    }
+  }
+
+  private boolean isOffHeapTokenCacheEnabled() {
+    return this.configuration.tokenCacheOffHeapCapacity.getValue() > 0;
+  }
+
+  private boolean isTokenCacheSnapshotEnabled() {
+    return !Strings.isNullOrEmpty(this.configuration.tokenCacheSnapshotPath.getValue());
+  }
+
+  private boolean isSharedTokenCacheEnabled() {
+    return !Strings.isNullOrEmpty(this.configuration.tokenCacheRedisHost.getValue());
+  }
+
+  /**
+   * Determine the service account to run as, and its credentials.
+   */
+  private ServiceAccount resolveServiceAccount(LogAdapter logAdapter) {
+    ServiceAccount serviceAccount;
+
     if (isRunningOnCloudRun()) {
       //
       // Initialize using service account attached to AppEngine or Cloud Run.
@@ -105,7 +463,7 @@ public class RuntimeEnvironment {
       try {
         var applicationCredentials = GoogleCredentials.getApplicationDefault();
 
-        this.serviceAccount = new ServiceAccount(
+        serviceAccount = createServiceAccount(
           new UserId(((ComputeEngineCredentials) applicationCredentials).getAccount()),
           applicationCredentials);
 
@@ -113,7 +471,7 @@ public class RuntimeEnvironment {
           .newInfoEntry(
             LogEvents.RUNTIME_STARTUP,
             String.format("Running as %s, version %s",
-              this.serviceAccount,
+              serviceAccount,
               ApplicationVersion.VERSION_STRING))
           .write();
       }
@@ -158,7 +516,7 @@ public class RuntimeEnvironment {
           //
           impersonatedCredentials.refresh();
 
-          this.serviceAccount = new ServiceAccount(
+          serviceAccount = createServiceAccount(
             new UserId(impersonateServiceAccount),
             impersonatedCredentials);
         }
@@ -166,7 +524,7 @@ public class RuntimeEnvironment {
           //
           // Use ADC as-is.
           //
-          this.serviceAccount = new ServiceAccount(
+          serviceAccount = createServiceAccount(
             new UserId(((ServiceAccountCredentials) defaultCredentials).getServiceAccountUser()),
             defaultCredentials);
         }
@@ -185,19 +543,155 @@ public class RuntimeEnvironment {
       logAdapter
         .newWarningEntry(
           LogEvents.RUNTIME_STARTUP,
-          String.format("Running in development mode as %s", this.serviceAccount))
+          String.format("Running in development mode as %s", serviceAccount))
+        .write();
+    }
+    else if (isTrainingModeEnabled()) {
+      //
+      // Initialize using a placeholder service account whose credentials
+      // return a fixed token. Upstream APIs are stubbed (see TrainingTransport),
+      // so requests exercise the same code paths as regular requests,
+      // which is all we need for generating a class data sharing
+      // (CDS) archive at build time.
+      //
+      serviceAccount = createServiceAccount(
+        new UserId("training@training.iam.gserviceaccount.com"),
+        new GoogleCredentials() {
+          @Override
+          public AccessToken refreshAccessToken() {
+            return new AccessToken("training", null);
+          }
+        });
+
+      logAdapter
+        .newWarningEntry(
+          LogEvents.RUNTIME_STARTUP,
+          "Running in training mode, upstream APIs are stubbed")
         .write();
     }
     else {
       throw new RuntimeException(
         "Application is not running on Cloud Run and debug mode is disabled. Aborting startup");
     }
+
+    return serviceAccount;
+  }
+
+  // -------------------------------------------------------------------------
+  // Public methods.
+  // -------------------------------------------------------------------------
+
+  /**
+   * Initialize the environment.
+   *
+   * NB. This must not be done in the constructor: ArC instantiates the
+   * class once more for its client proxy, and the proxy would then run
+   * all startup tasks and start a second credential manager.
+   */
+  @PostConstruct
+  void initialize() {
+    //
+    // Create a log adapter. We can't rely on injection as the adapter
+    // is request-scoped.
+    //
+    var logAdapter = new LogAdapter();
+
+    if (isTrainingModeEnabled()) {
+      if (isRunningOnCloudRun()) {
+        //
+        // Training mode stubs all upstream APIs and issues tokens
+        // for a placeholder service account, so it must never be
+        // enabled in production.
+        //
+        throw new RuntimeException(
+          String.format("Training mode (%s) can't be enabled on Cloud Run", CONFIG_TRAINING_MODE));
+      }
+
+      //
+      // Don't make any network calls, see TrainingTransport.
+      //
+      HttpTransport.overrideSharedTransport(new TrainingTransport());
+    }
+
+    //
+    // Run independent initialization tasks concurrently. Resolving
+    // credentials involves calls to the metadata server or to IAM,
+    // and creating the HTTP transport involves loading the trust
+    // store, so running these in sequence adds up.
+    //
+    var startupTasks = new StartupTasks(logAdapter);
+    startupTasks.submit("configuration", () -> {
+      validateConfiguration();
+      return null;
+    });
+    startupTasks.submit("transport", HttpTransport::sharedTransport);
+    var serviceAccount = startupTasks.submit(
+      "credentials",
+      () -> resolveServiceAccount(logAdapter));
+
+    try {
+      startupTasks.await(this.configuration.startupTimeout.getValue());
+    }
+    catch (StartupTasks.StartupException e) {
+      //
+      // The container doesn't call @PreDestroy methods if
+      // initialization fails, so release what we've created so far.
+      //
+      close();
+      throw new RuntimeException("The runtime environment failed to initialize", e);
+    }
+
+    this.serviceAccount = serviceAccount.get();
+
+    //
+    // Only start refreshing credentials once all tasks have succeeded.
+    // Tasks that fail or time out are cancelled, but that doesn't stop
+    // them from running to completion, so starting the manager from
+    // within the task could leave a refresh loop behind.
+    //
+    if (this.credentialManager != null) {
+      this.credentialManager.start();
+    }
   }
 
   public boolean isDebugModeEnabled() {
     return Boolean.getBoolean(CONFIG_DEBUG_MODE);
   }
 
+  public boolean isTrainingModeEnabled() {
+    return Boolean.getBoolean(CONFIG_TRAINING_MODE);
+  }
+
+  /**
+   * @return statistics about refreshes of the service account's
+   * credentials, or empty if the service account doesn't use
+   * refreshable credentials.
+   */
+  public Optional<CredentialManager.Statistics> getCredentialStatistics() {
+    return Optional
+      .ofNullable(this.credentialManager)
+      .map(CredentialManager::statistics);
+  }
+
+  @PreDestroy
+  void close() {
+    if (this.credentialManager != null) {
+      this.credentialManager.close();
+    }
+
+    if (this.clientDirectory != null) {
+      this.clientDirectory.close();
+    }
+
+    for (var reloader : this.fileReloaders) {
+      reloader.close();
+    }
+
+    if (this.spiffeBundleEndpoint != null) {
+      this.spiffeBundleEndpoint.close();
+    }
+  }
+
   // -------------------------------------------------------------------------
   // CDI Producer methods.
   // -------------------------------------------------------------------------
@@ -208,78 +702,425 @@ public class RuntimeEnvironment {
     return this.serviceAccount;
   }
 
+  /**
+   * Configuration, produced as singleton because consumers read its
+   * settings as fields, which doesn't work through a client proxy.
+   */
   @Produces
-  @ApplicationScoped
+  @Singleton
   public RuntimeConfiguration getConfiguration() {
     return this.configuration;
   }
 
+  @Produces
+  @ApplicationScoped
+  public JwksMirror getJwksMirror() {
+    return new JwksMirror(
+      this.serviceAccount.jwksUrl(),
+      this.configuration.jwksRefreshInterval.getValue(),
+      new LogAdapter());
+  }
+
+  public void closeJwksMirror(@Disposes JwksMirror mirror) {
+    mirror.close();
+  }
+
+  /**
+   * Token cache, created at startup so that it loads its snapshot
+   * before the first request.
+   */
+  @Produces
+  @ApplicationScoped
+  @Startup
+  public TokenCache getTokenCache() {
+    var cipher = isTokenCacheSnapshotEnabled() || isSharedTokenCacheEnabled()
+      ? new AesGcmCipher(AesGcmCipher.parseKey(this.configuration.tokenCacheKey.getValue()))
+      : null;
+
+    TokenCache localCache;
+    if (isOffHeapTokenCacheEnabled()) {
+      localCache = new OffHeapTokenCache(
+        this.configuration.tokenCacheOffHeapCapacity.getValue().intValue());
+    }
+    else if (isTokenCacheSnapshotEnabled()) {
+      var snapshottedCache = new InMemoryTokenCache(
+        new EncryptedSnapshotFile(
+          Path.of(this.configuration.tokenCacheSnapshotPath.getValue()),
+          cipher),
+        this.configuration.tokenCacheSnapshotInterval.getValue(),
+        new LogAdapter());
+      snapshottedCache.loadSnapshot();
+      snapshottedCache.start();
+      localCache = snapshottedCache;
+    }
+    else {
+      localCache = new InMemoryTokenCache();
+    }
+
+    if (isSharedTokenCacheEnabled()) {
+      return new TieredTokenCache(
+        localCache,
+        new RedisTokenCache(
+          new RedisClient(
+            new InetSocketAddress(
+              this.configuration.tokenCacheRedisHost.getValue(),
+              this.configuration.tokenCacheRedisPort.getValue().intValue()),
+            this.configuration.tokenCacheRedisPassword.getValue(),
+            SHARED_TOKEN_CACHE_TIMEOUT),
+          cipher,
+          new LogAdapter()));
+    }
+    else {
+      return localCache;
+    }
+  }
+
+  public void closeTokenCache(@Disposes TokenCache cache) {
+    cache.close();
+  }
+
+  /**
+   * Load a file and start reloading it when it changes.
+   */
+  private <T> FileReloader<T> loadFile(
+    String description,
+    String path,
+    FileReloader.Parser<T> parser,
+    Duration checkInterval
+  ) {
+    try {
+      var reloader = new FileReloader<>(
+        Path.of(path),
+        parser,
+        checkInterval,
+        new LogAdapter());
+      reloader.start();
+      this.fileReloaders.add(reloader);
+
+      new LogAdapter()
+        .newInfoEntry(
+          LogEvents.RUNTIME_STARTUP,
+          String.format("Loaded %s from %s", description, path))
+        .write();
+
+      return reloader;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(String.format("Loading the %s failed", description), e);
+    }
+  }
+
+  /**
+   * Client policy, created at startup so that a missing or malformed
+   * certificate allow-list, revocation list, or client directory causes
+   * startup to fail.
+   */
+  @Produces
+  @ApplicationScoped
+  @Startup
+  public ClientPolicy getClientPolicy() {
+    FileReloader<FingerprintAllowList> allowList = null;
+    if (!Strings.isNullOrEmpty(this.configuration.mtlsClientCertAllowListPath.getValue())) {
+      allowList = loadFile(
+        "certificate allow-list",
+        this.configuration.mtlsClientCertAllowListPath.getValue(),
+        FingerprintAllowList::parse,
+        this.configuration.mtlsClientCertAllowListCheckInterval.getValue());
+    }
+
+    FileReloader<RevocationList> revocationList = null;
+    if (!Strings.isNullOrEmpty(this.configuration.mtlsClientCertRevocationListPath.getValue())) {
+      revocationList = loadFile(
+        "certificate revocation list",
+        this.configuration.mtlsClientCertRevocationListPath.getValue(),
+        RevocationList::parse,
+        this.configuration.mtlsClientCertRevocationListCheckInterval.getValue());
+    }
+
+    if (!Strings.isNullOrEmpty(this.configuration.clientDirectoryPath.getValue())) {
+      var clients = loadFile(
+        "client directory",
+        this.configuration.clientDirectoryPath.getValue(),
+        LocalClientDirectory::parse,
+        this.configuration.clientDirectoryRefreshInterval.getValue());
+
+      this.clientDirectory = new CachingClientDirectory(
+        new LocalClientDirectory(clients),
+        new CachingClientDirectory.Options(
+          this.configuration.clientDirectoryRefreshInterval.getValue(),
+          this.configuration.clientDirectoryMaxStaleness.getValue(),
+          this.configuration.clientDirectoryNegativeCacheDuration.getValue(),
+          MAX_CACHED_CLIENTS));
+
+      var preloadPath = this.configuration.clientDirectoryPreloadPath.getValue();
+      if (!Strings.isNullOrEmpty(preloadPath)) {
+        try {
+          this.clientDirectory.preload(LocalClientDirectory.parse(Path.of(preloadPath)));
+        }
+        catch (IOException e) {
+          throw new RuntimeException("Preloading the client directory failed", e);
+        }
+      }
+    }
+
+    OcspRevocationChecker ocspRevocationChecker = null;
+    var ocspFailurePolicy = getOcspFailurePolicy();
+    if (ocspFailurePolicy != null) {
+      var responderUrl = this.configuration.mtlsOcspResponderUrl.getValue();
+      ocspRevocationChecker = new OcspRevocationChecker(
+        new OcspRevocationChecker.Options(
+          Strings.isNullOrEmpty(responderUrl) ? null : URI.create(responderUrl),
+          ocspFailurePolicy,
+          OCSP_TIMEOUT,
+          MAX_CACHED_OCSP_RESPONSES),
+        new LogAdapter());
+    }
+
+    return new ClientPolicy(
+      allowList,
+      revocationList,
+      this.clientDirectory,
+      getClientDirectoryKeyType(),
+      ocspRevocationChecker);
+  }
+
   @Produces
   @Dependent
   public XlbMtlsClientCredentialsFlow.Options getXlbMtlsClientCredentialsFlowOptions() {
-    return new XlbMtlsClientCredentialsFlow.Options(
-      this.configuration.mtlsClientIdHeader.getValue(),
-      this.configuration.mtlsClientCertPresentHeader.getValue(),
-      this.configuration.mtlsClientCertChainVerifiedHeader.getValue(),
-      this.configuration.mtlsClientCertErrorHeader.getValue(),
-      this.configuration.mtlsClientCertSpiffeIdHeader.getValue(),
-      this.configuration.mtlsClientCertDnsSansHeader.getValue(),
-      this.configuration.mtlsClientCertUriSansHeader.getValue(),
-      this.configuration.mtlsClientCertHashHeader.getValue(),
-      this.configuration.mtlsClientCertSerialNumberHeader.getValue(),
-      this.configuration.mtlsClientCertNotBeforeHeader.getValue(),
-      this.configuration.mtlsClientCertNotAfterHeader.getValue());
+    var options = this.xlbMtlsClientCredentialsFlowOptions;
+    if (options == null) {
+      //
+      // The options only depend on the configuration, so there's
+      // no need to recreate them for every request.
+      //
+      options = new XlbMtlsClientCredentialsFlow.Options(
+        this.configuration.mtlsClientIdHeader.getValue(),
+        this.configuration.mtlsClientCertPresentHeader.getValue(),
+        this.configuration.mtlsClientCertChainVerifiedHeader.getValue(),
+        this.configuration.mtlsClientCertErrorHeader.getValue(),
+        this.configuration.mtlsClientCertSpiffeIdHeader.getValue(),
+        this.configuration.mtlsClientCertDnsSansHeader.getValue(),
+        this.configuration.mtlsClientCertUriSansHeader.getValue(),
+        this.configuration.mtlsClientCertHashHeader.getValue(),
+        this.configuration.mtlsClientCertSerialNumberHeader.getValue(),
+        this.configuration.mtlsClientCertNotBeforeHeader.getValue(),
+        this.configuration.mtlsClientCertNotAfterHeader.getValue());
+
+      this.xlbMtlsClientCredentialsFlowOptions = options;
+    }
+
+    return options;
   }
 
   @Produces
   @Dependent
-  public IdTokenIssuer.Options getTokenIssuerOptions(
-    HttpServerRequest request
-  ) throws MalformedURLException {
-    URL issuerId;
-    if (!Strings.isNullOrEmpty(this.configuration.tokenIssuer.getValue()))
-    {
+  public DirectMtlsClientCredentialsFlow.Options getDirectMtlsClientCredentialsFlowOptions() {
+    var options = this.directMtlsClientCredentialsFlowOptions;
+    if (options == null) {
+      options = new DirectMtlsClientCredentialsFlow.Options(getMtlsClientIdAttribute());
+      this.directMtlsClientCredentialsFlowOptions = options;
+    }
+
+    return options;
+  }
+
+  @Produces
+  @Dependent
+  public XfccMtlsClientCredentialsFlow.Options getXfccMtlsClientCredentialsFlowOptions() {
+    var options = this.xfccMtlsClientCredentialsFlowOptions;
+    if (options == null) {
+      options = new XfccMtlsClientCredentialsFlow.Options(
+        this.configuration.mtlsXfccHeader.getValue(),
+        getMtlsClientIdAttribute());
+      this.xfccMtlsClientCredentialsFlowOptions = options;
+    }
+
+    return options;
+  }
+
+  /**
+   * Validator for forwarded client certificates. The trust bundle
+   * is only loaded if the XFCC flow is used.
+   */
+  @Produces
+  @ApplicationScoped
+  public ForwardedCertificateValidator getForwardedCertificateValidator() {
+    var trustBundle = loadFile(
+      "trust bundle",
+      this.configuration.mtlsXfccTrustBundlePath.getValue(),
+      TrustBundle::parse,
+      this.configuration.mtlsXfccTrustBundleCheckInterval.getValue());
+
+    return new ForwardedCertificateValidator(trustBundle, MAX_CACHED_FORWARDED_CERTIFICATES);
+  }
+
+  /**
+   * Verifier for client assertions. The client keys are only loaded
+   * if the private_key_jwt flow is used.
+   */
+  @Produces
+  @ApplicationScoped
+  public ClientAssertionVerifier getClientAssertionVerifier() {
+    var registrations = loadFile(
+      "client keys",
+      this.configuration.privateKeyJwtClientsPath.getValue(),
+      ClientKeyRegistry::parse,
+      this.configuration.privateKeyJwtClientsCheckInterval.getValue());
+
+    return new ClientAssertionVerifier(
+      new ClientKeyRegistry(
+        registrations,
+        new ClientKeyRegistry.Options(
+          this.configuration.privateKeyJwtJwksCacheDuration.getValue(),
+          MIN_CLIENT_JWKS_REFRESH_INTERVAL,
+          MAX_CACHED_CLIENT_KEY_SETS)),
+      new ReplayCache(MAX_REPLAY_CACHE_ENTRIES, MAX_REPLAY_CACHE_ENTRIES_PER_CLIENT),
+      new ClientAssertionVerifier.Options(
+        this.configuration.privateKeyJwtMaxAssertionLifetime.getValue()));
+  }
+
+  /**
+   * Verifier for client secrets. The client secrets are only loaded
+   * if the client_secret_basic flow is used.
+   */
+  @Produces
+  @ApplicationScoped
+  public ClientSecretVerifier getClientSecretVerifier() {
+    var clients = loadFile(
+      "client secrets",
+      this.configuration.clientSecretBasicClientsPath.getValue(),
+      ClientSecretVerifier::parse,
+      this.configuration.clientSecretBasicClientsCheckInterval.getValue());
+
+    return new ClientSecretVerifier(
+      clients,
+      new ClientSecretVerifier.Options(
+        CLIENT_SECRET_CACHE_DURATION,
+        MAX_CACHED_CLIENT_SECRETS,
+        MAX_FAILED_CLIENT_SECRET_ATTEMPTS,
+        CLIENT_SECRET_LOCKOUT_DURATION));
+  }
+
+  /**
+   * Verifier for JWT-SVIDs. The trust bundle is only loaded if the
+   * JWT-SVID flow is used.
+   */
+  @Produces
+  @ApplicationScoped
+  public JwtSvidVerifier getJwtSvidVerifier() {
+    Supplier<SpiffeBundle> bundle;
+    if (!Strings.isNullOrEmpty(this.configuration.spiffeBundlePath.getValue())) {
+      bundle = loadFile(
+        "SPIFFE trust bundle",
+        this.configuration.spiffeBundlePath.getValue(),
+        SpiffeBundle::parse,
+        this.configuration.spiffeBundleRefreshInterval.getValue());
+    }
+    else {
+      try {
+        var endpoint = new SpiffeBundleEndpoint(
+          URI.create(this.configuration.spiffeBundleUrl.getValue()).toURL(),
+          this.configuration.spiffeBundleRefreshInterval.getValue(),
+          new LogAdapter());
+        endpoint.start();
+        this.spiffeBundleEndpoint = endpoint;
+        bundle = endpoint;
+      }
+      catch (IOException e) {
+        throw new RuntimeException("Loading the SPIFFE trust bundle failed", e);
+      }
+    }
+
+    return new JwtSvidVerifier(
+      bundle,
+      new JwtSvidVerifier.Options(
+        this.configuration.spiffeTrustDomain.getValue(),
+        JWT_SVID_CACHE_DURATION,
+        MAX_CACHED_JWT_SVIDS));
+  }
+
+  private MtlsClientCredentialsFlow.ClientIdAttribute getMtlsClientIdAttribute() {
+    var attribute = this.configuration.mtlsClientIdAttribute.getValue();
+    try {
+      return MtlsClientCredentialsFlow.ClientIdAttribute.valueOf(attribute.toUpperCase());
+    }
+    catch (IllegalArgumentException e) {
+      throw new RuntimeException(
+        String.format(
+          "The attribute '%s' cannot be used as client ID. " +
+            "Use one of the following attributes instead: %s.",
+          attribute,
+          Arrays.stream(MtlsClientCredentialsFlow.ClientIdAttribute.values())
+            .map(a -> a.name().toLowerCase())
+            .collect(Collectors.joining(", "))));
+    }
+  }
+
+  @Produces
+  @ApplicationScoped
+  public ClientCertificateCache getClientCertificateCache() {
+    return new ClientCertificateCache(MAX_CACHED_CLIENT_CERTIFICATES);
+  }
+
+  @Produces
+  @Dependent
+  public IdTokenIssuer getTokenIssuer(HttpServerRequest request) {
+    if (!Strings.isNullOrEmpty(this.configuration.tokenIssuer.getValue())) {
       //
-      // Use configured issuer URL.
+      // Use configured issuer URL, which is the same for all requests.
       //
-      issuerId = URLHelper.fromString(this.configuration.tokenIssuer.getValue());
+      return getCachedTokenIssuer(
+        "",
+        () -> URLHelper.fromString(this.configuration.tokenIssuer.getValue()));
     }
-    else {
+    else if (request.host() != null) {
       //
-      // Determine issuer URL from request URL.
+      // Determine issuer URL from request URL. The URL only depends
+      // on the host, so we only need to resolve it once per host.
+      //
+      return getCachedTokenIssuer(
+        request.host(),
+        () -> issuerIdFromRequest(request));
+    }
+    else {
       //
-      // Because the load balancer terminates HTTPS, we have
-      // to force the scheme back to https://.
+      // Request lacks a Host header, resolve without caching.
       //
-      issuerId = new URL(new URL(
-        request.absoluteURI().replace("http:", "https:")), "/");
+      return new IdTokenIssuer(
+        createTokenIssuerOptions(issuerIdFromRequest(request)),
+        this.serviceAccount);
     }
-
-    return new IdTokenIssuer.Options(
-      issuerId,
-      getWorkloadIdentityPoolOptions().expectedTokenAudience(),
-      this.configuration.tokenValidity.getValue()
-    );
   }
 
   @Produces
   @Dependent
   public WorkloadIdentityPool.Options getWorkloadIdentityPoolOptions() {
-    if (!this.configuration.workloadIdenityProjectNumber.isValid()) {
-      throw new RuntimeException("The workload identity project number is invalid");
-    }
+    var options = this.workloadIdentityPoolOptions;
+    if (options == null) {
+      //
+      // Validate and cache options. Concurrent callers might do this
+      // redundantly, but the result is always the same.
+      //
+      if (!this.configuration.workloadIdenityProjectNumber.isValid()) {
+        throw new RuntimeException("The workload identity project number is invalid");
+      }
 
-    if (!this.configuration.workloadIdenityPoolId.isValid()) {
-      throw new RuntimeException("The workload identity pool ID is invalid");
-    }
+      if (!this.configuration.workloadIdenityPoolId.isValid()) {
+        throw new RuntimeException("The workload identity pool ID is invalid");
+      }
+
+      if (!this.configuration.workloadIdenityProviderIdId.isValid()) {
+        throw new RuntimeException("The workload identity provider number is invalid");
+      }
+
+      options = new WorkloadIdentityPool.Options(
+        this.configuration.workloadIdenityProjectNumber.getValue(),
+        this.configuration.workloadIdenityPoolId.getValue(),
+        this.configuration.workloadIdenityProviderIdId.getValue());
 
-    if (!this.configuration.workloadIdenityProviderIdId.isValid()) {
-      throw new RuntimeException("The workload identity provider number is invalid");
+      this.workloadIdentityPoolOptions = options;
     }
 
-    return new WorkloadIdentityPool.Options(
-      this.configuration.workloadIdenityProjectNumber.getValue(),
-      this.configuration.workloadIdenityPoolId.getValue(),
-      this.configuration.workloadIdenityProviderIdId.getValue());
+    return options;
   }
 }
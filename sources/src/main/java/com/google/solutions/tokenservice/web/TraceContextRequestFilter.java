@@ -23,22 +23,19 @@ package com.google.solutions.tokenservice.web;
 
 import com.google.common.base.Preconditions;
 import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
 
-import javax.annotation.Priority;
-import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.container.ContainerRequestContext;
-import javax.ws.rs.container.ContainerRequestFilter;
-import javax.ws.rs.ext.Provider;
 
 /**
  * Use Cloud Run-specific headers to enrich the log.
+ *
+ * The filter only reads a header, so it runs on the I/O thread,
+ * before requests are dispatched to worker threads.
  */
-@Dependent
-@Provider
-@Priority(Priorities.AUTHENTICATION - 100)
-public class TraceContextRequestFilter implements ContainerRequestFilter {
+public class TraceContextRequestFilter {
   /**
    * Header that contains a unique identifier for the request.
    */
@@ -47,7 +44,7 @@ public class TraceContextRequestFilter implements ContainerRequestFilter {
   @Inject
   LogAdapter log;
 
-  @Override
+  @ServerRequestFilter(priority = Priorities.AUTHENTICATION - 100, nonBlocking = true)
   public void filter(ContainerRequestContext containerRequestContext) {
     Preconditions.checkNotNull(this.log, "log");
 
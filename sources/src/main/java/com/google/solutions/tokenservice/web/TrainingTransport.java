@@ -0,0 +1,108 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.solutions.tokenservice.oauth.ServiceAccount;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Transport that answers calls to upstream APIs with canned responses,
+ * used in training mode.
+ *
+ * Stubbing upstream APIs lets training requests run through the same
+ * code paths as successful requests, regardless of whether the build
+ * environment has network access.
+ */
+class TrainingTransport extends MockHttpTransport {
+  static final String KEY_ID = "training";
+
+  private static final String JSON = "application/json; charset=UTF-8";
+  private static final String JWKS_URL_PREFIX =
+    "https://www.googleapis.com/service_accounts/v1/metadata/jwk/";
+
+  /**
+   * Placeholder for a signed JWT. The signature isn't valid, but
+   * the header references the key that's listed in the key set.
+   */
+  private static final String SIGNED_JWT =
+    Base64.getUrlEncoder().withoutPadding().encodeToString(
+      ("{\"alg\":\"RS256\",\"kid\":\"" + KEY_ID + "\",\"typ\":\"JWT\"}")
+        .getBytes(StandardCharsets.UTF_8)) +
+    ".e30.training";
+
+  private static MockLowLevelHttpResponse jsonResponse(String content) {
+    return new MockLowLevelHttpResponse()
+      .setStatusCode(200)
+      .setContentType(JSON)
+      .setContent(content);
+  }
+
+  /**
+   * Create a canned response for an upstream request.
+   */
+  static MockLowLevelHttpResponse respond(String method, String url) {
+    if ("POST".equals(method) && url.startsWith(WorkloadIdentityPool.STS_ROOT_URL)) {
+      return jsonResponse(
+        "{\"access_token\":\"training\"," +
+          "\"issued_token_type\":\"urn:ietf:params:oauth:token-type:access_token\"," +
+          "\"token_type\":\"Bearer\",\"expires_in\":3600}");
+    }
+    else if ("POST".equals(method) &&
+      url.startsWith(ServiceAccount.IAM_CREDENTIALS_ROOT_URL) &&
+      url.endsWith(":signJwt")) {
+      return jsonResponse(
+        "{\"keyId\":\"" + KEY_ID + "\",\"signedJwt\":\"" + SIGNED_JWT + "\"}");
+    }
+    else if ("POST".equals(method) &&
+      url.startsWith(ServiceAccount.IAM_CREDENTIALS_ROOT_URL) &&
+      url.endsWith(":generateAccessToken")) {
+      return jsonResponse(
+        "{\"accessToken\":\"training\",\"expireTime\":\"" +
+          Instant.now().plus(Duration.ofHours(1)) + "\"}");
+    }
+    else if ("GET".equals(method) && url.startsWith(JWKS_URL_PREFIX)) {
+      return jsonResponse("{\"keys\":[{\"kid\":\"" + KEY_ID + "\"}]}");
+    }
+    else {
+      return new MockLowLevelHttpResponse()
+        .setStatusCode(404)
+        .setContentType(JSON)
+        .setContent("{}");
+    }
+  }
+
+  @Override
+  public LowLevelHttpRequest buildRequest(String method, String url) {
+    var request = new MockLowLevelHttpRequest(url);
+    request.setResponse(respond(method, url));
+    return request;
+  }
+}
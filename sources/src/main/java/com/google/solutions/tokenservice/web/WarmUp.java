@@ -0,0 +1,362 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.solutions.tokenservice.Exceptions;
+import com.google.solutions.tokenservice.URLHelper;
+import com.google.solutions.tokenservice.UserId;
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.ServiceAccount;
+import com.google.solutions.tokenservice.oauth.StsAccessToken;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
+import com.google.solutions.tokenservice.oauth.mtls.MtlsClientAttributes;
+import com.google.solutions.tokenservice.oauth.mtls.MtlsClientCredentialsFlow;
+import com.google.solutions.tokenservice.platform.HttpTransport;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Warms up the application after startup so that the first client
+ * requests don't have to pay for one-time costs such as class loading,
+ * JIT compilation, TLS handshakes, or obtaining credentials.
+ *
+ * Warm-up runs in the background. Until it's complete, the readiness
+ * check reports the application as not ready.
+ */
+@Readiness
+@ApplicationScoped
+public class WarmUp implements HealthCheck {
+  /**
+   * Number of times to run through the request path, enough to
+   * trigger JIT compilation of the most frequently used methods.
+   */
+  private static final int REQUEST_PATH_ITERATIONS = 100;
+
+  /**
+   * Upstream APIs to connect to.
+   */
+  private static final List<String> UPSTREAM_URLS = List.of(
+    ServiceAccount.IAM_CREDENTIALS_ROOT_URL,
+    WorkloadIdentityPool.STS_ROOT_URL);
+
+  private final LogAdapter logAdapter = new LogAdapter();
+
+  List<String> upstreamUrls = UPSTREAM_URLS;
+
+  @Inject
+  ServiceAccount serviceAccount;
+
+  @Inject
+  JwksMirror jwksMirror;
+
+  @Inject
+  ClientPolicy clientPolicy;
+
+  @Inject
+  WorkloadIdentityPool workloadIdentityPool;
+
+  @Inject
+  Provider<WorkloadIdentityPool.Options> workloadIdentityPoolOptions;
+
+  @Inject
+  RuntimeConfiguration configuration;
+
+  private volatile Result result;
+
+  // -------------------------------------------------------------------------
+  // Warm-up steps.
+  // -------------------------------------------------------------------------
+
+  /**
+   * Obtain an access token for the runtime service account so that
+   * the first IAM API call doesn't have to wait for it.
+   */
+  private void primeCredentials() throws Exception {
+    this.serviceAccount.refreshCredentialsIfExpired();
+  }
+
+  /**
+   * Establish connections to upstream APIs, which are then kept alive
+   * and reused by subsequent API calls.
+   */
+  private void establishConnections() throws Exception {
+    var requestFactory = HttpTransport.sharedTransport().createRequestFactory();
+    for (var url : this.upstreamUrls) {
+      //
+      // Consume the response (whatever it is) so that the
+      // connection can be reused.
+      //
+      requestFactory
+        .buildHeadRequest(new GenericUrl(url))
+        .setThrowExceptionOnExecuteError(false)
+        .execute()
+        .ignore();
+    }
+  }
+
+  /**
+   * Populate the JWKS mirror.
+   */
+  private void fetchJwks() throws Exception {
+    this.jwksMirror.get();
+  }
+
+  private static <T> void write(
+    ResponseWriters.JsonWriter<T> writer,
+    T entity
+  ) throws IOException {
+    writer.writeTo(
+      entity,
+      entity.getClass(),
+      entity.getClass(),
+      new Annotation[0],
+      MediaType.APPLICATION_JSON_TYPE,
+      new MultivaluedHashMap<>(),
+      OutputStream.nullOutputStream());
+  }
+
+  /**
+   * Run through the token request path, using a service account
+   * that doesn't actually sign anything.
+   */
+  private void exerciseRequestPath() throws Exception {
+    var issuer = new IdTokenIssuer(
+      new IdTokenIssuer.Options(
+        URLHelper.fromString("https://localhost/"),
+        this.workloadIdentityPoolOptions.get().expectedTokenAudience(),
+        this.configuration.tokenValidity.getValue()),
+      new NoopServiceAccount());
+
+    var flow = new WarmUpFlow(
+      this.clientPolicy,
+      issuer,
+      this.workloadIdentityPool,
+      new LogAdapter(Writer.nullWriter()));
+
+    var request = new AuthenticationRequest(
+      flow.grantType(),
+      new MultivaluedHashMap<>());
+
+    for (int i = 0; i < REQUEST_PATH_ITERATIONS; i++) {
+      var authentication = flow.authenticate(request);
+
+      write(
+        new ResponseWriters.TokenResponseWriter(),
+        OAuthResource.TokenResponse.fromAuthentication(authentication));
+      write(
+        new ResponseWriters.ExternalCredentialResponseWriter(),
+        OAuthResource.ExternalCredentialResponse.fromAuthentication(authentication));
+      write(
+        new ResponseWriters.TokenErrorResponseWriter(),
+        new OAuthResource.TokenErrorResponse(
+          OAuthResource.TokenErrorResponse.INVALID_REQUEST,
+          new IllegalArgumentException("Warm-up")));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Public methods.
+  // -------------------------------------------------------------------------
+
+  void onStartup(@Observes StartupEvent event) {
+    var thread = new Thread(this::run, "warm-up");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Run all warm-up steps. A failing step doesn't prevent subsequent
+   * steps from running, and doesn't prevent the application from
+   * becoming ready: the step's work is simply deferred to the first
+   * request that needs it.
+   */
+  void run() {
+    var startTime = Instant.now();
+    var failedSteps = new ArrayList<String>();
+
+    for (var step : List.of(
+      new Step("credentials", this::primeCredentials),
+      new Step("connections", this::establishConnections),
+      new Step("jwks", this::fetchJwks),
+      new Step("requests", this::exerciseRequestPath))) {
+      try {
+        step.action.run();
+      }
+      catch (Exception e) {
+        failedSteps.add(step.name);
+
+        this.logAdapter
+          .newWarningEntry(
+            LogEvents.RUNTIME_WARMUP,
+            String.format(
+              "Warm-up step '%s' failed: %s",
+              step.name,
+              Exceptions.getFullMessage(e)))
+          .write();
+      }
+    }
+
+    this.result = new Result(
+      Duration.between(startTime, Instant.now()),
+      List.copyOf(failedSteps));
+
+    this.logAdapter
+      .newInfoEntry(
+        LogEvents.RUNTIME_WARMUP,
+        String.format("Warm-up completed in %d ms", this.result.duration.toMillis()))
+      .write();
+  }
+
+  // -------------------------------------------------------------------------
+  // HealthCheck.
+  // -------------------------------------------------------------------------
+
+  @Override
+  public HealthCheckResponse call() {
+    var result = this.result;
+    if (result == null) {
+      return HealthCheckResponse
+        .named("warm-up")
+        .down()
+        .build();
+    }
+    else {
+      return HealthCheckResponse
+        .named("warm-up")
+        .up()
+        .withData("duration_ms", result.duration.toMillis())
+        .withData("failed_steps", String.join(",", result.failedSteps))
+        .build();
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner classes.
+  // -------------------------------------------------------------------------
+
+  private record Step(String name, Action action) {}
+
+  @FunctionalInterface
+  private interface Action {
+    void run() throws Exception;
+  }
+
+  private record Result(Duration duration, List<String> failedSteps) {}
+
+  /**
+   * Service account that serializes JWTs like a real service account,
+   * but doesn't sign them.
+   */
+  private static class NoopServiceAccount extends ServiceAccount {
+    public NoopServiceAccount() {
+      super(
+        new UserId("warmup@warmup.iam.gserviceaccount.com"),
+        new StsAccessToken("warmup", OAUTH_SCOPE, Instant.now(), Instant.MAX));
+    }
+
+    @Override
+    public String signJwt(String payload) {
+      return "e30." + Base64
+        .getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".";
+    }
+  }
+
+  /**
+   * mTLS flow for a fictitious client.
+   */
+  private static class WarmUpFlow extends MtlsClientCredentialsFlow {
+    private static final MtlsClientAttributes ATTRIBUTES = new MtlsClientAttributes(
+      "spiffe://warmup/client",
+      "spiffe://warmup/client",
+      "client.warmup",
+      "spiffe://warmup/client",
+      "47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=",
+      "01",
+      null,
+      null);
+
+    public WarmUpFlow(
+      ClientPolicy clientPolicy,
+      IdTokenIssuer issuer,
+      WorkloadIdentityPool workloadIdentityPool,
+      LogAdapter logAdapter
+    ) {
+      //
+      // Use a separate cache so that we don't pollute the real one.
+      //
+      super(clientPolicy, issuer, workloadIdentityPool, new InMemoryTokenCache(), logAdapter);
+    }
+
+    @Override
+    protected MtlsClientAttributes getVerifiedClientAttributes(AuthenticationRequest request) {
+      return ATTRIBUTES;
+    }
+
+    @Override
+    protected AuthenticatedClient authenticateClient(AuthenticationRequest request) {
+      try {
+        return super.authenticateClient(request);
+      }
+      catch (ForbiddenException e) {
+        //
+        // The fictitious client isn't on the certificate allow-list (if
+        // there is one). Continue without the allow-list so that we still
+        // run through the rest of the request path.
+        //
+        return new ClientPolicy().authenticateClient(ATTRIBUTES);
+      }
+    }
+
+    @Override
+    public String name() {
+      return "warm-up";
+    }
+  }
+}
@@ -21,6 +21,7 @@
 
 package com.google.solutions.tokenservice.oauth;
 
+import com.google.solutions.tokenservice.URLHelper;
 import com.google.solutions.tokenservice.UserId;
 import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
 import com.google.solutions.tokenservice.platform.LogAdapter;
@@ -28,20 +29,31 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.IOException;
+import java.net.URL;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class TestClientCredentialsFlow {
+  private static final URL ISSUER_ID = URLHelper.fromString("https://example.com/");
+
   private static class Flow extends ClientCredentialsFlow
   {
     public Flow(IdTokenIssuer issuer, WorkloadIdentityPool pool) {
       super(
         issuer,
         pool,
+        new InMemoryTokenCache(),
         new LogAdapter());
     }
 
@@ -100,6 +112,7 @@ public class TestClientCredentialsFlow {
 
     var issuer = Mockito.mock(IdTokenIssuer.class);
     when(issuer.issueIdToken(any(), any())).thenReturn(idToken);
+    when(issuer.id()).thenReturn(ISSUER_ID);
 
     var flow = new Flow(
       issuer,
@@ -119,6 +132,7 @@ public class TestClientCredentialsFlow {
 
     var issuer = Mockito.mock(IdTokenIssuer.class);
     when(issuer.issueIdToken(any(), any())).thenReturn(idToken);
+    when(issuer.id()).thenReturn(ISSUER_ID);
 
     var pool = Mockito.mock(WorkloadIdentityPool.class);
     when(pool.issueAccessToken(same(idToken), eq("scope-1"))).thenReturn(accessToken);
@@ -146,6 +160,7 @@ public class TestClientCredentialsFlow {
 
     var issuer = Mockito.mock(IdTokenIssuer.class);
     when(issuer.issueIdToken(any(), any())).thenReturn(idToken);
+    when(issuer.id()).thenReturn(ISSUER_ID);
 
     var impersonatedSaId = new UserId("sa@project.iam.gserviceaccount.com");
     var impersonatedSa = Mockito.mock(ServiceAccount.class);
@@ -170,4 +185,164 @@ public class TestClientCredentialsFlow {
     assertNotNull(authentication.accessToken());
     assertSame(saAccessToken, authentication.accessToken());
   }
+
+  @Test
+  public void whenTokenCached_thenAuthenticateReturnsCachedToken() throws Exception {
+    var idToken = new IdToken("id-token", Instant.now(), Instant.MAX);
+    var accessToken = new StsAccessToken("access-token", "scope-1", Instant.now(), Instant.MAX);
+
+    var issuer = Mockito.mock(IdTokenIssuer.class);
+    when(issuer.issueIdToken(any(), any())).thenReturn(idToken);
+    when(issuer.id()).thenReturn(ISSUER_ID);
+
+    var pool = Mockito.mock(WorkloadIdentityPool.class);
+    when(pool.issueAccessToken(same(idToken), eq("scope-1"))).thenReturn(accessToken);
+
+    var flow = new Flow(issuer, pool);
+
+    var parameters = new MultivaluedHashMap<String, String>();
+    parameters.add("client_id", "client-1");
+    parameters.add("scope", "scope-1");
+
+    var first = flow.authenticate(new AuthenticationRequest("client_credentials", parameters));
+    var second = flow.authenticate(new AuthenticationRequest("client_credentials", parameters));
+
+    assertSame(accessToken, first.accessToken());
+    assertSame(accessToken, second.accessToken());
+    verify(pool, times(1)).issueAccessToken(any(), any());
+  }
+
+  //---------------------------------------------------------------------------
+  // authenticate (batch).
+  //---------------------------------------------------------------------------
+
+  @Test
+  public void whenAuthenticationFails_thenBatchAuthenticateThrowsException() {
+    var flow = new Flow(
+      Mockito.mock(IdTokenIssuer.class),
+      Mockito.mock(WorkloadIdentityPool.class)
+    ) {
+      @Override
+      protected AuthenticatedClient authenticateClient(AuthenticationRequest request) {
+        throw new RuntimeException("fail");
+      }
+    };
+
+    assertThrows(
+      Authentication.InvalidClientException.class,
+      () -> flow.authenticate(
+        createRequest("client-1"),
+        List.of(new BatchAuthentication.TokenRequest("scope-1", null))));
+  }
+
+  @Test
+  public void whenBatchContainsRepeatedScopes_thenBatchAuthenticateExchangesTokenOncePerScope() throws Exception {
+    var idToken = new IdToken("id-token", Instant.now(), Instant.MAX);
+    var stsAccessToken = new StsAccessToken("access-token", "scope-1", Instant.now(), Instant.MAX);
+    var saAccessToken = new ServiceAccountAccessToken("sa-access-token", "scope-1", Instant.now(), Instant.MAX);
+
+    var issuer = Mockito.mock(IdTokenIssuer.class);
+    when(issuer.issueIdToken(any(), any())).thenReturn(idToken);
+    when(issuer.id()).thenReturn(ISSUER_ID);
+
+    var impersonatedSa = Mockito.mock(ServiceAccount.class);
+    when(impersonatedSa.generateAccessToken(any(), any())).thenReturn(saAccessToken);
+
+    var pool = Mockito.mock(WorkloadIdentityPool.class);
+    when(pool.issueAccessToken(same(idToken), eq("scope-1"))).thenReturn(stsAccessToken);
+    when(pool.impersonateServiceAccount(any(), same(stsAccessToken))).thenReturn(impersonatedSa);
+
+    var flow = new Flow(issuer, pool);
+    var authentication = flow.authenticate(
+      createRequest("client-1"),
+      List.of(
+        new BatchAuthentication.TokenRequest("scope-1", null),
+        new BatchAuthentication.TokenRequest("scope-1", new UserId("sa-1@project.iam.gserviceaccount.com")),
+        new BatchAuthentication.TokenRequest("scope-1", new UserId("sa-2@project.iam.gserviceaccount.com"))));
+
+    assertSame(idToken, authentication.idToken());
+    assertEquals(3, authentication.results().size());
+    assertSame(stsAccessToken, authentication.results().get(0).accessToken());
+    assertSame(saAccessToken, authentication.results().get(1).accessToken());
+    assertSame(saAccessToken, authentication.results().get(2).accessToken());
+
+    verify(issuer, times(1)).issueIdToken(any(), any());
+    verify(pool, times(1)).issueAccessToken(same(idToken), eq("scope-1"));
+    verify(impersonatedSa, times(2)).generateAccessToken(eq(List.of("scope-1")), any());
+  }
+
+  @Test
+  public void whenTokenRequestFails_thenBatchAuthenticateReturnsErrorForItem() throws Exception {
+    var idToken = new IdToken("id-token", Instant.now(), Instant.MAX);
+    var stsAccessToken = new StsAccessToken("access-token", "scope-1", Instant.now(), Instant.MAX);
+
+    var issuer = Mockito.mock(IdTokenIssuer.class);
+    when(issuer.issueIdToken(any(), any())).thenReturn(idToken);
+    when(issuer.id()).thenReturn(ISSUER_ID);
+
+    var pool = Mockito.mock(WorkloadIdentityPool.class);
+    when(pool.issueAccessToken(same(idToken), eq("scope-1"))).thenReturn(stsAccessToken);
+    when(pool.issueAccessToken(same(idToken), eq("scope-2"))).thenThrow(new IOException("mock"));
+
+    var flow = new Flow(issuer, pool);
+    var authentication = flow.authenticate(
+      createRequest("client-1"),
+      List.of(
+        new BatchAuthentication.TokenRequest("scope-1", null),
+        new BatchAuthentication.TokenRequest("scope-2", null)));
+
+    assertEquals(2, authentication.results().size());
+
+    assertEquals("scope-1", authentication.results().get(0).request().scope());
+    assertSame(stsAccessToken, authentication.results().get(0).accessToken());
+    assertNull(authentication.results().get(0).error());
+
+    assertEquals("scope-2", authentication.results().get(1).request().scope());
+    assertNull(authentication.results().get(1).accessToken());
+    assertTrue(authentication.results().get(1).error() instanceof IOException);
+  }
+
+  @Test
+  public void whenTokenRequestTimesOut_thenBatchAuthenticateReturnsErrorForItem() throws Exception {
+    var idToken = new IdToken("id-token", Instant.now(), Instant.MAX);
+    var stsAccessToken = new StsAccessToken("access-token", "scope-1", Instant.now(), Instant.MAX);
+    var release = new CountDownLatch(1);
+
+    var issuer = Mockito.mock(IdTokenIssuer.class);
+    when(issuer.issueIdToken(any(), any())).thenReturn(idToken);
+    when(issuer.id()).thenReturn(ISSUER_ID);
+
+    var pool = Mockito.mock(WorkloadIdentityPool.class);
+    when(pool.issueAccessToken(same(idToken), eq("scope-1"))).thenReturn(stsAccessToken);
+    when(pool.issueAccessToken(same(idToken), eq("scope-2"))).thenAnswer(invocation -> {
+      release.await();
+      return stsAccessToken;
+    });
+
+    var flow = new Flow(issuer, pool) {
+      @Override
+      protected Duration batchTimeout() {
+        return Duration.ofMillis(200);
+      }
+    };
+
+    try {
+      var authentication = flow.authenticate(
+        createRequest("client-1"),
+        List.of(
+          new BatchAuthentication.TokenRequest("scope-1", null),
+          new BatchAuthentication.TokenRequest("scope-2", null)));
+
+      assertEquals(2, authentication.results().size());
+
+      assertSame(stsAccessToken, authentication.results().get(0).accessToken());
+      assertNull(authentication.results().get(0).error());
+
+      assertNull(authentication.results().get(1).accessToken());
+      assertTrue(authentication.results().get(1).error() instanceof TimeoutException);
+    }
+    finally {
+      release.countDown();
+    }
+  }
 }
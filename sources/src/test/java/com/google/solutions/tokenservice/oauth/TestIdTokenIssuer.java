@@ -21,12 +21,12 @@
 
 package com.google.solutions.tokenservice.oauth;
 
-import com.google.api.client.json.webtoken.JsonWebToken;
 import com.google.auth.oauth2.TokenVerifier;
 import com.google.solutions.tokenservice.URLHelper;
 import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
 import com.google.solutions.tokenservice.platform.IntegrationTestEnvironment;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
 import java.net.URL;
 import java.time.Duration;
@@ -35,6 +35,7 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.wildfly.common.Assert.assertTrue;
 
 public class TestIdTokenIssuer {
@@ -55,13 +56,10 @@ public class TestIdTokenIssuer {
         Duration.ofMinutes(1)),
       serviceAccount);
 
-    var payload = new JsonWebToken.Payload()
-      .set("test", "value");
-
-    var client = new AuthenticatedClient("client-1", Instant.now(), Map.of());
+    var client = new AuthenticatedClient("client-1", Instant.now(), Map.of("test", "value"));
     var token = issuer.issueIdToken(
       client,
-      payload);
+      "test-flow");
 
     var verifiedPayload = TokenVerifier
       .newBuilder()
@@ -77,6 +75,21 @@ public class TestIdTokenIssuer {
     assertNotNull(verifiedPayload.getIssuedAtTimeSeconds());
     assertNotNull(verifiedPayload.getExpirationTimeSeconds());
     assertTrue(token.expiryTime().isAfter(Instant.now()));
-    assertEquals("value", verifiedPayload.get("test"));
+    assertEquals("client-1", verifiedPayload.get("client_id"));
+    assertEquals("value", ((Map<?, ?>)verifiedPayload.get("client")).get("test"));
+  }
+
+  @Test
+  public void whenAudienceMissing_thenIssueTokenThrowsException() {
+    var issuer = new IdTokenIssuer(
+      new IdTokenIssuer.Options(ISSUER_ID, null, Duration.ofMinutes(1)),
+      Mockito.mock(ServiceAccount.class));
+
+    assertEquals(ISSUER_ID, issuer.id());
+    assertThrows(
+      IllegalStateException.class,
+      () -> issuer.issueIdToken(
+        new AuthenticatedClient("client-1", Instant.now(), Map.of()),
+        "test-flow"));
   }
 }
@@ -0,0 +1,182 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestIdTokenPayloadEncoder {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final Instant ISSUE_TIME = Instant.ofEpochSecond(1700000000);
+  private static final Instant EXPIRY_TIME = ISSUE_TIME.plusSeconds(300);
+
+  private static IdTokenPayloadEncoder createEncoder() {
+    return new IdTokenPayloadEncoder(
+      "https://issuer.example.com",
+      "//iam.googleapis.com/projects/1/locations/global/workloadIdentityPools/p/providers/p",
+      10);
+  }
+
+  // -------------------------------------------------------------------------
+  // appendString.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenStringContainsSpecialCharacters_thenAppendStringEscapesThem() throws Exception {
+    var value = "a\"b\\c\nd\te\u0001f\u00e4";
+    var buffer = new StringBuilder();
+    IdTokenPayloadEncoder.appendString(buffer, value);
+
+    assertEquals("\"a\\\"b\\\\c\\nd\\te\\u0001f\u00e4\"", buffer.toString());
+    assertEquals(value, MAPPER.readValue(buffer.toString(), String.class));
+  }
+
+  @Test
+  public void whenStringIsNull_thenAppendStringAppendsNull() {
+    var buffer = new StringBuilder();
+    IdTokenPayloadEncoder.appendString(buffer, null);
+
+    assertEquals("null", buffer.toString());
+  }
+
+  // -------------------------------------------------------------------------
+  // appendRandomUuid.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void appendRandomUuidAppendsVersion4Uuid() {
+    for (int i = 0; i < 100; i++) {
+      var buffer = new StringBuilder();
+      IdTokenPayloadEncoder.appendRandomUuid(buffer);
+
+      var value = buffer.substring(1, buffer.length() - 1);
+      var uuid = UUID.fromString(value);
+
+      assertEquals(value, uuid.toString());
+      assertEquals(4, uuid.version());
+      assertEquals(2, uuid.variant());
+    }
+  }
+
+  @Test
+  public void appendRandomUuidAppendsUniqueValues() {
+    var values = new HashSet<String>();
+    for (int i = 0; i < 1000; i++) {
+      var buffer = new StringBuilder();
+      IdTokenPayloadEncoder.appendRandomUuid(buffer);
+      values.add(buffer.toString());
+    }
+
+    assertEquals(1000, values.size());
+  }
+
+  // -------------------------------------------------------------------------
+  // encode.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void encodeReturnsAllClaims() throws Exception {
+    var claims = new LinkedHashMap<String, String>();
+    claims.put("x5_spiffe", "spiffe://example.org/\"workload\"");
+    claims.put("device_id", "1234");
+
+    var payload = MAPPER.readTree(createEncoder().encode(
+      "mtls-client-credentials",
+      new AuthenticatedClient("client-1", ISSUE_TIME, claims),
+      ISSUE_TIME,
+      EXPIRY_TIME));
+
+    assertEquals("https://issuer.example.com", payload.get("iss").asText());
+    assertEquals(
+      "//iam.googleapis.com/projects/1/locations/global/workloadIdentityPools/p/providers/p",
+      payload.get("aud").asText());
+    assertEquals(1, payload.get("amr").size());
+    assertEquals("mtls-client-credentials", payload.get("amr").get(0).asText());
+    assertEquals("client-1", payload.get("client_id").asText());
+    assertEquals("spiffe://example.org/\"workload\"", payload.get("client").get("x5_spiffe").asText());
+    assertEquals("1234", payload.get("client").get("device_id").asText());
+    assertEquals(ISSUE_TIME.getEpochSecond(), payload.get("iat").asLong());
+    assertEquals(EXPIRY_TIME.getEpochSecond(), payload.get("exp").asLong());
+    assertNotNull(UUID.fromString(payload.get("jti").asText()));
+    assertFalse(payload.has("sub"));
+  }
+
+  @Test
+  public void whenClientHasNoClaims_thenEncodeReturnsEmptyClientObject() throws Exception {
+    var payload = MAPPER.readTree(createEncoder().encode(
+      "flow",
+      new AuthenticatedClient("client-1", ISSUE_TIME, Map.of()),
+      ISSUE_TIME,
+      EXPIRY_TIME));
+
+    assertTrue(payload.get("client").isObject());
+    assertEquals(0, payload.get("client").size());
+  }
+
+  @Test
+  public void whenClientSeenBefore_thenEncodeReusesPrefix() throws Exception {
+    var encoder = createEncoder();
+
+    var first = MAPPER.readTree(encoder.encode(
+      "flow",
+      new AuthenticatedClient("client-1", ISSUE_TIME, Map.of("a", "1")),
+      ISSUE_TIME,
+      EXPIRY_TIME));
+    var second = MAPPER.readTree(encoder.encode(
+      "flow",
+      new AuthenticatedClient("client-1", ISSUE_TIME.plusSeconds(1), Map.of("a", "1")),
+      ISSUE_TIME.plusSeconds(1),
+      EXPIRY_TIME.plusSeconds(1)));
+
+    assertEquals(1, encoder.size());
+    assertEquals(ISSUE_TIME.getEpochSecond() + 1, second.get("iat").asLong());
+    assertNotEquals(first.get("jti"), second.get("jti"));
+  }
+
+  @Test
+  public void whenClaimsDiffer_thenEncodeUsesSeparatePrefixes() throws Exception {
+    var encoder = createEncoder();
+
+    encoder.encode(
+      "flow",
+      new AuthenticatedClient("client-1", ISSUE_TIME, Map.of("a", "1")),
+      ISSUE_TIME,
+      EXPIRY_TIME);
+    var payload = MAPPER.readTree(encoder.encode(
+      "flow",
+      new AuthenticatedClient("client-1", ISSUE_TIME, Map.of("a", "2")),
+      ISSUE_TIME,
+      EXPIRY_TIME));
+
+    assertEquals(2, encoder.size());
+    assertEquals("2", payload.get("client").get("a").asText());
+  }
+}
@@ -0,0 +1,163 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.solutions.tokenservice.platform.AesGcmCipher;
+import com.google.solutions.tokenservice.platform.EncryptedSnapshotFile;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestInMemoryTokenCache {
+  private static EncryptedSnapshotFile createSnapshotFile(byte keyByte) throws IOException {
+    var directory = Files.createTempDirectory("snapshot");
+    directory.toFile().deleteOnExit();
+
+    var key = new byte[32];
+    key[0] = keyByte;
+
+    return new EncryptedSnapshotFile(
+      directory.resolve("snapshot.bin"),
+      new AesGcmCipher(AesGcmCipher.parseKey(Base64.getEncoder().encodeToString(key))));
+  }
+
+  private static InMemoryTokenCache createCache(EncryptedSnapshotFile snapshotFile) {
+    return new InMemoryTokenCache(
+      snapshotFile,
+      Duration.ofMinutes(5),
+      Executors.newSingleThreadScheduledExecutor(),
+      new LogAdapter());
+  }
+
+  // -------------------------------------------------------------------------
+  // get/put.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTokenAboutToExpire_thenPutIgnoresToken() {
+    var cache = new InMemoryTokenCache();
+    cache.put("key", new StsAccessToken(
+      "token",
+      "scope",
+      Instant.now(),
+      Instant.now().plus(TokenCache.MIN_REMAINING_LIFETIME).minusSeconds(1)));
+
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void whenTokenValid_thenGetReturnsToken() {
+    var token = new ServiceAccountAccessToken(
+      "token",
+      "scope",
+      Instant.now(),
+      Instant.now().plus(Duration.ofHours(1)));
+
+    var cache = new InMemoryTokenCache();
+    cache.put("key", token);
+
+    assertSame(token, cache.get("key"));
+    assertNull(cache.get("other-key"));
+  }
+
+  // -------------------------------------------------------------------------
+  // Snapshots.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenSnapshotDoesNotExist_thenLoadSnapshotLeavesCacheEmpty() throws Exception {
+    var cache = createCache(createSnapshotFile((byte)1));
+    cache.loadSnapshot();
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void whenSnapshotWritten_thenLoadSnapshotRestoresValidTokens() throws Exception {
+    var snapshotFile = createSnapshotFile((byte)1);
+    var stsToken = new StsAccessToken(
+      "sts-token",
+      "scope",
+      Instant.ofEpochSecond(Instant.now().getEpochSecond()),
+      Instant.ofEpochSecond(Instant.now().plus(Duration.ofHours(1)).getEpochSecond()));
+    var saToken = new ServiceAccountAccessToken(
+      "sa-token",
+      "scope",
+      Instant.ofEpochSecond(Instant.now().getEpochSecond()),
+      Instant.ofEpochSecond(Instant.now().plus(Duration.ofHours(1)).getEpochSecond()));
+
+    var cache = createCache(snapshotFile);
+    cache.put("sts", stsToken);
+    cache.put("sa", saToken);
+    cache.close();
+
+    var restoredCache = createCache(snapshotFile);
+    restoredCache.loadSnapshot();
+
+    assertEquals(2, restoredCache.size());
+    assertEquals(stsToken, restoredCache.get("sts"));
+    assertEquals(saToken, restoredCache.get("sa"));
+  }
+
+  @Test
+  public void whenSnapshotEncryptedUsingDifferentKey_thenLoadSnapshotLeavesCacheEmpty() throws Exception {
+    var snapshotFile = createSnapshotFile((byte)1);
+
+    var cache = createCache(snapshotFile);
+    cache.put("sts", new StsAccessToken(
+      "sts-token",
+      "scope",
+      Instant.now(),
+      Instant.now().plus(Duration.ofHours(1))));
+    cache.close();
+
+    var otherKey = new byte[32];
+    otherKey[0] = 2;
+
+    var restoredCache = createCache(new EncryptedSnapshotFile(
+      snapshotFile.path(),
+      new AesGcmCipher(AesGcmCipher.parseKey(Base64.getEncoder().encodeToString(otherKey)))));
+    restoredCache.loadSnapshot();
+
+    assertEquals(0, restoredCache.size());
+  }
+
+  @Test
+  public void whenSnapshotsDisabled_thenCloseDoesNothing() {
+    var cache = new InMemoryTokenCache();
+    cache.loadSnapshot();
+    cache.close();
+
+    assertThrows(
+      IllegalStateException.class,
+      cache::writeSnapshot);
+  }
+}
@@ -0,0 +1,245 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOffHeapTokenCache {
+  private static StsAccessToken createToken(String value, Duration lifetime) {
+    return new StsAccessToken(
+      value,
+      "scope",
+      Instant.ofEpochSecond(Instant.now().getEpochSecond()),
+      Instant.ofEpochSecond(Instant.now().plus(lifetime).getEpochSecond()));
+  }
+
+  private static class FakeClock extends Clock {
+    private Instant now = Instant.now();
+
+    void advance(Duration duration) {
+      this.now = this.now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return this.now;
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // get/put.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTokenAboutToExpire_thenPutIgnoresToken() {
+    var cache = new OffHeapTokenCache(10);
+    cache.put("key", new StsAccessToken(
+      "token",
+      "scope",
+      Instant.now(),
+      Instant.now().plus(TokenCache.MIN_REMAINING_LIFETIME).minusSeconds(1)));
+
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void whenTokenValid_thenGetReturnsToken() {
+    var stsToken = createToken("sts-token", Duration.ofHours(1));
+    var saToken = new ServiceAccountAccessToken(
+      "sa-token",
+      "scope",
+      stsToken.issueTime(),
+      stsToken.expiryTime());
+
+    var cache = new OffHeapTokenCache(10);
+    cache.put("sts", stsToken);
+    cache.put("sa", saToken);
+
+    assertEquals(stsToken, cache.get("sts"));
+    assertEquals(saToken, cache.get("sa"));
+    assertNull(cache.get("other-key"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void whenTokenReplacedByLargerToken_thenGetReturnsNewToken() {
+    var cache = new OffHeapTokenCache(10);
+    cache.put("key", createToken("token", Duration.ofHours(1)));
+
+    var largerToken = createToken("t".repeat(2000), Duration.ofHours(1));
+    cache.put("key", largerToken);
+
+    assertEquals(largerToken, cache.get("key"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void whenTokenTooLarge_thenPutIgnoresToken() {
+    var cache = new OffHeapTokenCache(10);
+    cache.put("key", createToken("token", Duration.ofHours(1)));
+    cache.put("key", createToken("t".repeat(10_000), Duration.ofHours(1)));
+
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.size());
+  }
+
+  // -------------------------------------------------------------------------
+  // Reclaiming space.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTokenBecomesUnusable_thenGetRemovesToken() {
+    var clock = new FakeClock();
+    var cache = new OffHeapTokenCache(10, clock);
+    cache.put("key", createToken("token", Duration.ofHours(1)));
+
+    //
+    // Token times are truncated to seconds, so allow for the
+    // clock having ticked over between creating it and now.
+    //
+    clock.advance(Duration.ofHours(1).minus(TokenCache.MIN_REMAINING_LIFETIME).plusSeconds(1));
+
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void whenCacheFull_thenPutReclaimsUnusableTokens() {
+    var clock = new FakeClock();
+    var cache = new OffHeapTokenCache(16, clock);
+
+    for (int i = 0; i < 1000; i++) {
+      cache.put("short-" + i, createToken("token", Duration.ofMinutes(10)));
+    }
+
+    clock.advance(Duration.ofMinutes(6));
+    var token = createToken("token", Duration.ofHours(1));
+    for (int i = 0; i < 1000; i++) {
+      cache.put("long-" + i, token);
+    }
+
+    assertTrue(cache.size() > 0);
+    assertTrue(cache.size() <= 16 * 2);
+    for (int i = 0; i < 1000; i++) {
+      assertNull(cache.get("short-" + i));
+    }
+  }
+
+  @Test
+  public void whenCacheFullOfUsableTokens_thenPutIgnoresToken() {
+    var cache = new OffHeapTokenCache(16);
+    for (int i = 0; i < 1000; i++) {
+      cache.put("key-" + i, createToken("token", Duration.ofHours(1)));
+    }
+
+    var size = cache.size();
+    assertTrue(size <= 16 * 2);
+
+    var found = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (cache.get("key-" + i) != null) {
+        found++;
+      }
+    }
+
+    assertEquals(size, found);
+  }
+
+  @Test
+  public void whenTokensPurged_thenSlotsAreReused() {
+    var clock = new FakeClock();
+    var cache = new OffHeapTokenCache(10_000, clock);
+
+    for (int i = 0; i < 5_000; i++) {
+      cache.put("first-" + i, createToken("token-" + i, Duration.ofMinutes(10)));
+    }
+
+    var allocatedBytes = cache.allocatedBytes();
+
+    clock.advance(Duration.ofMinutes(6));
+    cache.purge();
+    assertEquals(0, cache.size());
+
+    for (int i = 0; i < 5_000; i++) {
+      cache.put("second-" + i, createToken("token-" + i, Duration.ofHours(1)));
+    }
+
+    assertEquals(5_000, cache.size());
+    assertEquals(allocatedBytes, cache.allocatedBytes());
+  }
+
+  @Test
+  public void whenSomeTokensPurged_thenGetReturnsRemainingTokens() {
+    var clock = new FakeClock();
+    var cache = new OffHeapTokenCache(20_000, clock);
+
+    for (int i = 0; i < 10_000; i++) {
+      cache.put(
+        "key-" + i,
+        createToken("token-" + i, i % 2 == 0 ? Duration.ofMinutes(10) : Duration.ofHours(1)));
+    }
+
+    clock.advance(Duration.ofMinutes(6));
+    cache.purge();
+
+    assertEquals(5_000, cache.size());
+    for (int i = 0; i < 10_000; i++) {
+      var token = cache.get("key-" + i);
+      if (i % 2 == 0) {
+        assertNull(token);
+      }
+      else {
+        assertNotNull(token);
+        assertEquals("token-" + i, token.value());
+      }
+    }
+  }
+
+  @Test
+  public void whenClosed_thenCacheIsEmpty() {
+    var cache = new OffHeapTokenCache(10);
+    cache.put("key", createToken("token", Duration.ofHours(1)));
+    cache.close();
+
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.allocatedBytes());
+  }
+}
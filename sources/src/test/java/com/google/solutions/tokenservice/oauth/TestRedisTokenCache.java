@@ -0,0 +1,176 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.solutions.tokenservice.platform.AesGcmCipher;
+import com.google.solutions.tokenservice.platform.FakeRedisServer;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import com.google.solutions.tokenservice.platform.RedisClient;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRedisTokenCache {
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  private static final ServiceAccountAccessToken TOKEN = new ServiceAccountAccessToken(
+    "sa-token",
+    "scope",
+    Instant.ofEpochSecond(Instant.now().getEpochSecond()),
+    Instant.ofEpochSecond(Instant.now().plus(Duration.ofHours(1)).getEpochSecond()));
+
+  private static AesGcmCipher createCipher(byte keyByte) {
+    var key = new byte[32];
+    key[0] = keyByte;
+    return new AesGcmCipher(AesGcmCipher.parseKey(Base64.getEncoder().encodeToString(key)));
+  }
+
+  private static RedisTokenCache createCache(InetSocketAddress address, byte keyByte) {
+    return new RedisTokenCache(
+      new RedisClient(address, null, TIMEOUT),
+      createCipher(keyByte),
+      new LogAdapter());
+  }
+
+  // -------------------------------------------------------------------------
+  // get/put.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenKeyDoesNotExist_thenGetReturnsNull() throws Exception {
+    try (var server = new FakeRedisServer(null);
+         var cache = createCache(server.address(), (byte)1)) {
+      assertNull(cache.get("key"));
+    }
+  }
+
+  @Test
+  public void whenTokenPut_thenGetReturnsToken() throws Exception {
+    try (var server = new FakeRedisServer(null);
+         var cache = createCache(server.address(), (byte)1)) {
+      cache.put("key", TOKEN);
+
+      assertEquals(TOKEN, cache.get("key"));
+      assertNull(cache.get("other-key"));
+    }
+  }
+
+  @Test
+  public void whenTokenPut_thenValueIsEncryptedAndExpires() throws Exception {
+    try (var server = new FakeRedisServer(null);
+         var cache = createCache(server.address(), (byte)1)) {
+      cache.put("key", TOKEN);
+
+      var value = server.values.get("xts:token:key");
+      assertNotNull(value);
+      assertFalse(new String(value, StandardCharsets.ISO_8859_1).contains(TOKEN.value()));
+
+      var timeToLive = server.timesToLive.get("xts:token:key");
+      assertTrue(timeToLive > 0);
+      assertTrue(timeToLive <= Duration.ofHours(1).minus(TokenCache.MIN_REMAINING_LIFETIME).toMillis());
+    }
+  }
+
+  @Test
+  public void whenTokenAboutToExpire_thenPutIgnoresToken() throws Exception {
+    try (var server = new FakeRedisServer(null);
+         var cache = createCache(server.address(), (byte)1)) {
+      cache.put("key", new StsAccessToken(
+        "token",
+        "scope",
+        Instant.now(),
+        Instant.now().plus(TokenCache.MIN_REMAINING_LIFETIME).minusSeconds(1)));
+
+      assertTrue(server.values.isEmpty());
+    }
+  }
+
+  @Test
+  public void whenValueMovedToOtherKey_thenGetReturnsNull() throws Exception {
+    try (var server = new FakeRedisServer(null);
+         var cache = createCache(server.address(), (byte)1)) {
+      cache.put("key", TOKEN);
+      server.values.put("xts:token:other-key", server.values.get("xts:token:key"));
+
+      assertNull(cache.get("other-key"));
+    }
+  }
+
+  @Test
+  public void whenValueEncryptedUsingDifferentKey_thenGetReturnsNull() throws Exception {
+    try (var server = new FakeRedisServer(null)) {
+      try (var cache = createCache(server.address(), (byte)1)) {
+        cache.put("key", TOKEN);
+      }
+
+      try (var cache = createCache(server.address(), (byte)2)) {
+        assertNull(cache.get("key"));
+      }
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Failures.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenServerUnavailable_thenGetAndPutDoNotThrow() throws Exception {
+    int port;
+    try (var socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+
+    try (var cache = createCache(
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+      (byte)1)) {
+      cache.put("key", TOKEN);
+      assertNull(cache.get("key"));
+    }
+  }
+
+  @Test
+  public void whenServerFailed_thenCacheStopsUsingServer() throws Exception {
+    var server = new FakeRedisServer(null);
+    var address = server.address();
+    server.close();
+
+    try (var cache = createCache(address, (byte)1)) {
+      assertNull(cache.get("key"));
+
+      //
+      // Server is back, but the cache doesn't retry yet.
+      //
+      try (var restartedServer = new FakeRedisServer(null)) {
+        cache.put("key", TOKEN);
+        assertTrue(restartedServer.values.isEmpty());
+      }
+    }
+  }
+}
@@ -0,0 +1,69 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTieredTokenCache {
+  private static final StsAccessToken TOKEN = new StsAccessToken(
+    "token",
+    "scope",
+    Instant.now(),
+    Instant.now().plus(Duration.ofHours(1)));
+
+  @Test
+  public void whenTokenPut_thenBothCachesContainToken() {
+    var localCache = new InMemoryTokenCache();
+    var sharedCache = new InMemoryTokenCache();
+    var cache = new TieredTokenCache(localCache, sharedCache);
+
+    cache.put("key", TOKEN);
+
+    assertSame(TOKEN, localCache.get("key"));
+    assertSame(TOKEN, sharedCache.get("key"));
+    assertSame(TOKEN, cache.get("key"));
+  }
+
+  @Test
+  public void whenTokenOnlyInSharedCache_thenGetReturnsTokenAndPopulatesLocalCache() {
+    var localCache = new InMemoryTokenCache();
+    var sharedCache = new InMemoryTokenCache();
+    var cache = new TieredTokenCache(localCache, sharedCache);
+
+    sharedCache.put("key", TOKEN);
+
+    assertSame(TOKEN, cache.get("key"));
+    assertSame(TOKEN, localCache.get("key"));
+  }
+
+  @Test
+  public void whenTokenInNeitherCache_thenGetReturnsNull() {
+    var cache = new TieredTokenCache(new InMemoryTokenCache(), new InMemoryTokenCache());
+
+    assertNull(cache.get("key"));
+  }
+}
@@ -0,0 +1,115 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.solutions.tokenservice.URLHelper;
+import com.google.solutions.tokenservice.UserId;
+import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTokenCache {
+  private static final AuthenticatedClient CLIENT = new AuthenticatedClient(
+    "client-1",
+    Instant.now(),
+    Map.of("claim-1", "value-1"));
+  private static final UserId SERVICE_ACCOUNT = new UserId("sa@project.iam.gserviceaccount.com");
+  private static final URL ISSUER_ID = URLHelper.fromString("https://example.com/");
+  private static final String FLOW = "flow-1";
+
+  // -------------------------------------------------------------------------
+  // key.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenClaimsDiffer_thenKeyDiffers() {
+    var otherClient = new AuthenticatedClient(
+      CLIENT.clientId(),
+      CLIENT.authenticationTime(),
+      Map.of("claim-1", "value-2"));
+
+    assertNotEquals(
+      TokenCache.key(ISSUER_ID, FLOW, CLIENT, "scope", null),
+      TokenCache.key(ISSUER_ID, FLOW, otherClient, "scope", null));
+  }
+
+  @Test
+  public void whenIssuerDiffers_thenKeyDiffers() {
+    assertNotEquals(
+      TokenCache.key(ISSUER_ID, FLOW, CLIENT, "scope", SERVICE_ACCOUNT),
+      TokenCache.key(URLHelper.fromString("https://other.example.com/"), FLOW, CLIENT, "scope", SERVICE_ACCOUNT));
+  }
+
+  @Test
+  public void whenFlowDiffers_thenKeyDiffers() {
+    assertNotEquals(
+      TokenCache.key(ISSUER_ID, FLOW, CLIENT, "scope", SERVICE_ACCOUNT),
+      TokenCache.key(ISSUER_ID, "flow-2", CLIENT, "scope", SERVICE_ACCOUNT));
+  }
+
+  @Test
+  public void whenServiceAccountDiffers_thenKeyDiffers() {
+    assertNotEquals(
+      TokenCache.key(ISSUER_ID, FLOW, CLIENT, "scope", null),
+      TokenCache.key(ISSUER_ID, FLOW, CLIENT, "scope", SERVICE_ACCOUNT));
+  }
+
+  @Test
+  public void whenClientAndClaimsSame_thenKeyIsSame() {
+    var sameClient = new AuthenticatedClient(
+      CLIENT.clientId(),
+      Instant.now().plusSeconds(1),
+      Map.of("claim-1", "value-1"));
+
+    assertEquals(
+      TokenCache.key(ISSUER_ID, FLOW, CLIENT, "scope", SERVICE_ACCOUNT),
+      TokenCache.key(ISSUER_ID, FLOW, sameClient, "scope", SERVICE_ACCOUNT));
+  }
+
+  // -------------------------------------------------------------------------
+  // isUsable.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTokenAboutToExpire_thenIsUsableReturnsFalse() {
+    assertFalse(TokenCache.isUsable(new StsAccessToken(
+      "token",
+      "scope",
+      Instant.now(),
+      Instant.now().plus(TokenCache.MIN_REMAINING_LIFETIME).minusSeconds(1))));
+  }
+
+  @Test
+  public void whenTokenValid_thenIsUsableReturnsTrue() {
+    assertTrue(TokenCache.isUsable(new StsAccessToken(
+      "token",
+      "scope",
+      Instant.now(),
+      Instant.now().plus(Duration.ofHours(1)))));
+  }
+}
@@ -0,0 +1,154 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth;
+
+import com.google.common.hash.Hashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the on-heap and off-heap token caches when populated
+ * with a large number of tokens.
+ *
+ * Run using benchmark/tokencache.sh. Use the JMH option -prof gc
+ * to compare allocation rates and GC times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class TokenCacheBenchmark {
+  @Param({ "on-heap", "off-heap" })
+  public String cacheType;
+
+  @Param({ "1000000" })
+  public int entries;
+
+  /**
+   * Length of token values. STS and service account tokens are
+   * typically a few hundred characters long.
+   */
+  @Param({ "256" })
+  public int tokenLength;
+
+  private TokenCache cache;
+  private String[] keys;
+  private String tokenValueTemplate;
+  private Instant issueTime;
+  private Instant expiryTime;
+
+  private AccessToken createToken(int index) {
+    //
+    // Use a distinct value for each token, as in reality.
+    //
+    var prefix = Integer.toHexString(index);
+    return new StsAccessToken(
+      prefix + this.tokenValueTemplate.substring(prefix.length()),
+      "https://www.googleapis.com/auth/cloud-platform",
+      this.issueTime,
+      this.expiryTime);
+  }
+
+  private static long usedHeap() {
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  @Setup
+  public void setup() {
+    this.tokenValueTemplate = "ya29." + "x".repeat(this.tokenLength - 5);
+    this.issueTime = Instant.now();
+    this.expiryTime = this.issueTime.plus(Duration.ofHours(1));
+
+    this.keys = new String[this.entries];
+    for (int i = 0; i < this.entries; i++) {
+      this.keys[i] = Hashing.sha256().hashInt(i).toString();
+    }
+
+    var heapBefore = usedHeap();
+
+    switch (this.cacheType) {
+      case "on-heap":
+        this.cache = new InMemoryTokenCache(this.entries);
+        break;
+
+      case "off-heap":
+        this.cache = new OffHeapTokenCache(this.entries);
+        break;
+
+      default:
+        throw new IllegalArgumentException("Unknown cache type: " + this.cacheType);
+    }
+
+    for (int i = 0; i < this.entries; i++) {
+      this.cache.put(this.keys[i], createToken(i));
+    }
+
+    System.out.printf(
+      "%n%s: %d MB heap used for %d tokens%s%n",
+      this.cacheType,
+      (usedHeap() - heapBefore) >> 20,
+      this.entries,
+      this.cache instanceof OffHeapTokenCache offHeapCache
+        ? String.format(", %d MB allocated off-heap", offHeapCache.allocatedBytes() >> 20)
+        : "");
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.cache.close();
+  }
+
+  @Benchmark
+  public AccessToken get() {
+    return this.cache.get(this.keys[ThreadLocalRandom.current().nextInt(this.entries)]);
+  }
+
+  @Benchmark
+  public AccessToken getMiss() {
+    return this.cache.get(Integer.toString(ThreadLocalRandom.current().nextInt()));
+  }
+
+  @Benchmark
+  public void put() {
+    var index = ThreadLocalRandom.current().nextInt(this.entries);
+    this.cache.put(this.keys[index], createToken(index));
+  }
+}
@@ -0,0 +1,113 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded stand-in for an OCSP responder that returns a
+ * preconfigured response.
+ */
+public class FakeOcspResponder implements AutoCloseable {
+  private final HttpServer server;
+
+  /**
+   * DER-encoded response to return, or null to return HTTP 500.
+   */
+  public volatile byte[] response;
+
+  /**
+   * Latch that requests wait for before they're answered, or null
+   * to answer requests immediately.
+   */
+  public volatile CountDownLatch gate;
+
+  /**
+   * Number of requests received.
+   */
+  public final AtomicInteger requestCount = new AtomicInteger();
+
+  /**
+   * Last request received.
+   */
+  public volatile byte[] lastRequest;
+
+  public FakeOcspResponder() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50);
+    this.server.setExecutor(Executors.newCachedThreadPool(r -> {
+      var thread = new Thread(r, "fake-ocsp-responder");
+      thread.setDaemon(true);
+      return thread;
+    }));
+    this.server.createContext("/", this::serve);
+    this.server.start();
+  }
+
+  public URI uri() {
+    return URI.create(String.format(
+      "http://%s:%d/",
+      this.server.getAddress().getHostString(),
+      this.server.getAddress().getPort()));
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      this.lastRequest = exchange.getRequestBody().readAllBytes();
+      this.requestCount.incrementAndGet();
+
+      var gate = this.gate;
+      if (gate != null) {
+        gate.await(10, TimeUnit.SECONDS);
+      }
+
+      var response = this.response;
+      if (response == null ||
+        !"POST".equals(exchange.getRequestMethod()) ||
+        !"application/ocsp-request".equals(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+        exchange.sendResponseHeaders(500, -1);
+      }
+      else {
+        exchange.getResponseHeaders().set("Content-Type", "application/ocsp-response");
+        exchange.sendResponseHeaders(200, response.length);
+        exchange.getResponseBody().write(response);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() {
+    this.server.stop(0);
+  }
+}
@@ -0,0 +1,236 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCachingClientDirectory {
+  private static final CachingClientDirectory.Options OPTIONS = new CachingClientDirectory.Options(
+    Duration.ofMinutes(5),
+    Duration.ofMinutes(60),
+    Duration.ofMinutes(1),
+    100);
+
+  private static final ClientDirectory.Client CLIENT_1 =
+    new ClientDirectory.Client(Map.of("device_id", "1"));
+  private static final ClientDirectory.Client CLIENT_2 =
+    new ClientDirectory.Client(Map.of("device_id", "2"));
+
+  private static class FakeTicker extends Ticker {
+    private long nanos = 0;
+
+    void advance(Duration duration) {
+      this.nanos += duration.toNanos();
+    }
+
+    @Override
+    public long read() {
+      return this.nanos;
+    }
+  }
+
+  /**
+   * Directory backed by a mutable map that counts lookups and can be
+   * made unavailable.
+   */
+  private static class FakeDirectory implements ClientDirectory {
+    final Map<String, Client> clients = new HashMap<>();
+    final AtomicInteger lookups = new AtomicInteger();
+    boolean unavailable = false;
+
+    @Override
+    public Client lookup(String key) throws IOException {
+      this.lookups.incrementAndGet();
+      if (this.unavailable) {
+        throw new IOException("unavailable");
+      }
+
+      return this.clients.get(key);
+    }
+  }
+
+  private static CachingClientDirectory createDirectory(
+    ClientDirectory directory,
+    Ticker ticker
+  ) {
+    //
+    // Use a direct executor so that refreshes complete synchronously.
+    //
+    return new CachingClientDirectory(
+      directory,
+      OPTIONS,
+      MoreExecutors.newDirectExecutorService(),
+      ticker);
+  }
+
+  // -------------------------------------------------------------------------
+  // Constructor.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRefreshIntervalNotShorterThanMaxStaleness_thenConstructorThrowsException() {
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> new CachingClientDirectory(
+        new FakeDirectory(),
+        new CachingClientDirectory.Options(
+          Duration.ofMinutes(5),
+          Duration.ofMinutes(5),
+          Duration.ofMinutes(1),
+          100)));
+  }
+
+  // -------------------------------------------------------------------------
+  // lookup.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenClientCached_thenLookupDoesNotQueryDirectory() throws Exception {
+    var directory = new FakeDirectory();
+    directory.clients.put("client-1", CLIENT_1);
+
+    var ticker = new FakeTicker();
+    var cache = createDirectory(directory, ticker);
+
+    assertEquals(CLIENT_1, cache.lookup("client-1"));
+    ticker.advance(Duration.ofMinutes(4));
+    assertEquals(CLIENT_1, cache.lookup("client-1"));
+
+    assertEquals(1, directory.lookups.get());
+  }
+
+  @Test
+  public void whenRefreshIntervalElapsed_thenLookupRevalidatesClient() throws Exception {
+    var directory = new FakeDirectory();
+    directory.clients.put("client-1", CLIENT_1);
+
+    var ticker = new FakeTicker();
+    var cache = createDirectory(directory, ticker);
+
+    assertEquals(CLIENT_1, cache.lookup("client-1"));
+
+    directory.clients.put("client-1", CLIENT_2);
+    ticker.advance(Duration.ofMinutes(6));
+
+    assertEquals(CLIENT_2, cache.lookup("client-1"));
+    assertEquals(2, directory.lookups.get());
+  }
+
+  @Test
+  public void whenRevalidationFails_thenLookupReturnsStaleClient() throws Exception {
+    var directory = new FakeDirectory();
+    directory.clients.put("client-1", CLIENT_1);
+
+    var ticker = new FakeTicker();
+    var cache = createDirectory(directory, ticker);
+
+    assertEquals(CLIENT_1, cache.lookup("client-1"));
+
+    directory.unavailable = true;
+    ticker.advance(Duration.ofMinutes(30));
+
+    assertEquals(CLIENT_1, cache.lookup("client-1"));
+  }
+
+  @Test
+  public void whenMaxStalenessExceeded_thenLookupThrowsException() throws Exception {
+    var directory = new FakeDirectory();
+    directory.clients.put("client-1", CLIENT_1);
+
+    var ticker = new FakeTicker();
+    var cache = createDirectory(directory, ticker);
+
+    assertEquals(CLIENT_1, cache.lookup("client-1"));
+
+    directory.unavailable = true;
+    ticker.advance(Duration.ofMinutes(61));
+
+    assertThrows(IOException.class, () -> cache.lookup("client-1"));
+  }
+
+  @Test
+  public void whenClientUnknown_thenLookupCachesResult() throws Exception {
+    var directory = new FakeDirectory();
+
+    var ticker = new FakeTicker();
+    var cache = createDirectory(directory, ticker);
+
+    assertNull(cache.lookup("client-1"));
+    ticker.advance(Duration.ofSeconds(30));
+    assertNull(cache.lookup("client-1"));
+
+    assertEquals(1, directory.lookups.get());
+  }
+
+  @Test
+  public void whenNegativeCacheDurationElapsed_thenLookupRevalidatesUnknownClient() throws Exception {
+    var directory = new FakeDirectory();
+
+    var ticker = new FakeTicker();
+    var cache = createDirectory(directory, ticker);
+
+    assertNull(cache.lookup("client-1"));
+
+    directory.clients.put("client-1", CLIENT_1);
+    ticker.advance(Duration.ofMinutes(2));
+
+    cache.lookup("client-1");
+    assertEquals(CLIENT_1, cache.lookup("client-1"));
+  }
+
+  @Test
+  public void whenDirectoryUnavailable_thenLookupThrowsException() {
+    var directory = new FakeDirectory();
+    directory.unavailable = true;
+
+    var cache = createDirectory(directory, new FakeTicker());
+
+    assertThrows(IOException.class, () -> cache.lookup("client-1"));
+  }
+
+  // -------------------------------------------------------------------------
+  // preload.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenClientsPreloaded_thenLookupDoesNotQueryDirectory() throws Exception {
+    var directory = new FakeDirectory();
+
+    var cache = createDirectory(directory, new FakeTicker());
+    cache.preload(Map.of("client-1", CLIENT_1, "client-2", CLIENT_2));
+
+    assertEquals(2, cache.size());
+    assertEquals(CLIENT_1, cache.lookup("client-1"));
+    assertEquals(CLIENT_2, cache.lookup("client-2"));
+    assertEquals(0, directory.lookups.get());
+  }
+}
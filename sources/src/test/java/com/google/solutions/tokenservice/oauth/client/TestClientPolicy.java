@@ -0,0 +1,236 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.solutions.tokenservice.oauth.mtls.MtlsClientAttributes;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.ForbiddenException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClientPolicy {
+  private static final String FINGERPRINT = "47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=";
+
+  private static MtlsClientAttributes createAttributes(String fingerprint, String serialNumber) {
+    return new MtlsClientAttributes(
+      "client-1",
+      "spiffe://client-1",
+      null,
+      null,
+      fingerprint,
+      serialNumber,
+      null,
+      null);
+  }
+
+  private static MtlsClientAttributes createAttributes(String fingerprint) {
+    return createAttributes(fingerprint, "01");
+  }
+
+  @Test
+  public void whenNoAllowList_thenAuthenticateClientReturnsClient() {
+    var client = new ClientPolicy().authenticateClient(createAttributes(FINGERPRINT));
+
+    assertEquals("client-1", client.clientId());
+    assertEquals(FINGERPRINT, client.additionalClaims().get("x5_sha256"));
+  }
+
+  @Test
+  public void whenFingerprintOnAllowList_thenAuthenticateClientReturnsClient() {
+    var policy = new ClientPolicy(() -> FingerprintAllowList.of(FINGERPRINT));
+    var client = policy.authenticateClient(createAttributes(FINGERPRINT));
+
+    assertEquals("client-1", client.clientId());
+  }
+
+  @Test
+  public void whenFingerprintNotOnAllowList_thenAuthenticateClientThrowsException() {
+    var policy = new ClientPolicy(() -> FingerprintAllowList.of(FINGERPRINT));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> policy.authenticateClient(createAttributes("0".repeat(64))));
+    assertThrows(
+      ForbiddenException.class,
+      () -> policy.authenticateClient(createAttributes(null)));
+  }
+
+  @Test
+  public void whenCertificateNotRevoked_thenAuthenticateClientReturnsClient() throws Exception {
+    var revocationList = RevocationList.of("02");
+    var policy = new ClientPolicy(null, () -> revocationList);
+    var client = policy.authenticateClient(createAttributes(FINGERPRINT, "01"));
+
+    assertEquals("client-1", client.clientId());
+  }
+
+  @Test
+  public void whenCertificateRevoked_thenAuthenticateClientThrowsException() throws Exception {
+    var revocationList = RevocationList.of("02");
+    var policy = new ClientPolicy(null, () -> revocationList);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> policy.authenticateClient(createAttributes(FINGERPRINT, "02")));
+  }
+
+  @Test
+  public void whenSerialNumberMissingOrMalformed_thenAuthenticateClientThrowsException() throws Exception {
+    var revocationList = RevocationList.of("02");
+    var policy = new ClientPolicy(null, () -> revocationList);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> policy.authenticateClient(createAttributes(FINGERPRINT, null)));
+    assertThrows(
+      ForbiddenException.class,
+      () -> policy.authenticateClient(createAttributes(FINGERPRINT, "not-a-serial")));
+  }
+
+  @Test
+  public void whenClientInDirectory_thenAuthenticateClientAddsClaims() {
+    var directory = new LocalClientDirectory(() -> Map.of(
+      "client-1", new ClientDirectory.Client(Map.of(
+        "device_id", "1234",
+        "x5_spiffe", "spiffe://other"))));
+    var policy = new ClientPolicy(null, null, directory, ClientDirectory.KeyType.CLIENT_ID);
+    var client = policy.authenticateClient(createAttributes(FINGERPRINT));
+
+    assertEquals("1234", client.additionalClaims().get("device_id"));
+    assertEquals("spiffe://client-1", client.additionalClaims().get("x5_spiffe"));
+  }
+
+  @Test
+  public void whenDirectoryProvidesCertificateClaims_thenAuthenticateClientIgnoresThem() {
+    var directory = new LocalClientDirectory(() -> Map.of(
+      "client-1", new ClientDirectory.Client(Map.of(
+        "device_id", "1234",
+        "x5_dnssan", "client-1.example.com",
+        "x5_custom", "value"))));
+    var policy = new ClientPolicy(null, null, directory, ClientDirectory.KeyType.CLIENT_ID);
+    var client = policy.authenticateClient(createAttributes(FINGERPRINT));
+
+    assertEquals("1234", client.additionalClaims().get("device_id"));
+    assertNull(client.additionalClaims().get("x5_dnssan"));
+    assertFalse(client.additionalClaims().containsKey("x5_custom"));
+  }
+
+  @Test
+  public void whenDirectoryKeyedByFingerprint_thenAuthenticateClientLooksUpFingerprint() {
+    var directory = new LocalClientDirectory(() -> Map.of(
+      FINGERPRINT, new ClientDirectory.Client(Map.of("device_id", "1234"))));
+    var policy = new ClientPolicy(
+      null,
+      null,
+      directory,
+      ClientDirectory.KeyType.CERTIFICATE_FINGERPRINT);
+    var client = policy.authenticateClient(createAttributes(FINGERPRINT));
+
+    assertEquals("1234", client.additionalClaims().get("device_id"));
+  }
+
+  @Test
+  public void whenClientNotInDirectory_thenAuthenticateClientThrowsException() {
+    var directory = new LocalClientDirectory(Map::of);
+    var policy = new ClientPolicy(null, null, directory, ClientDirectory.KeyType.CLIENT_ID);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> policy.authenticateClient(createAttributes(FINGERPRINT)));
+  }
+
+  @Test
+  public void whenDirectoryUnavailable_thenAuthenticateClientThrowsException() {
+    ClientDirectory directory = key -> {
+      throw new IOException("mock");
+    };
+    var policy = new ClientPolicy(null, null, directory, ClientDirectory.KeyType.CLIENT_ID);
+
+    assertThrows(
+      UncheckedIOException.class,
+      () -> policy.authenticateClient(createAttributes(FINGERPRINT)));
+  }
+
+  private static MtlsClientAttributes createAttributesWithChain(List<X509Certificate> chain) {
+    return new MtlsClientAttributes(
+      "client-1",
+      "spiffe://client-1",
+      null,
+      null,
+      FINGERPRINT,
+      "01",
+      null,
+      null,
+      chain);
+  }
+
+  @Test
+  public void whenOcspReportsCertificateRevoked_thenAuthenticateClientThrowsException() throws Exception {
+    try (var responder = new FakeOcspResponder()) {
+      responder.response = TestOcspMessages.decode(TestOcspMessages.REVOKED_RESPONSE_BY_CA);
+
+      var checker = new OcspRevocationChecker(
+        new OcspRevocationChecker.Options(
+          responder.uri(),
+          OcspRevocationChecker.FailurePolicy.SOFT_FAIL,
+          Duration.ofSeconds(5),
+          100),
+        HttpClient.newHttpClient(),
+        Clock.fixed(TestOcspMessages.PRODUCED_AT, ZoneOffset.UTC),
+        new LogAdapter());
+      var policy = new ClientPolicy(null, null, null, null, checker);
+
+      assertThrows(
+        ForbiddenException.class,
+        () -> policy.authenticateClient(createAttributesWithChain(List.of(
+          TestOcspMessages.parseCertificate(TestOcspMessages.REVOKED_CERTIFICATE),
+          TestOcspMessages.parseCertificate(TestOcspMessages.CA)))));
+    }
+  }
+
+  @Test
+  public void whenCertificateUnavailable_thenAuthenticateClientSkipsOcsp() {
+    var checker = new OcspRevocationChecker(
+      new OcspRevocationChecker.Options(
+        null,
+        OcspRevocationChecker.FailurePolicy.HARD_FAIL,
+        Duration.ofSeconds(5),
+        100),
+      new LogAdapter());
+    var policy = new ClientPolicy(null, null, null, null, checker);
+
+    var client = policy.authenticateClient(createAttributes(FINGERPRINT));
+
+    assertEquals("client-1", client.clientId());
+  }
+}
@@ -0,0 +1,171 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFingerprintAllowList {
+  //
+  // SHA-256 hash of an empty string in different encodings.
+  //
+  private static final String HEX = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+  private static final String HEX_COLONS =
+    "E3:B0:C4:42:98:FC:1C:14:9A:FB:F4:C8:99:6F:B9:24:27:AE:41:E4:64:9B:93:4C:A4:95:99:1B:78:52:B8:55";
+  private static final String BASE64 = "47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=";
+  private static final String BASE64URL = "47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU";
+
+  private static final String OTHER_HEX = "0000000000000000000000000000000000000000000000000000000000000001";
+
+  // -------------------------------------------------------------------------
+  // contains.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenListEmpty_thenContainsReturnsFalse() {
+    var list = FingerprintAllowList.of();
+
+    assertEquals(0, list.size());
+    assertFalse(list.contains(HEX));
+  }
+
+  @Test
+  public void whenFingerprintMalformed_thenContainsReturnsFalse() {
+    var list = FingerprintAllowList.of(HEX);
+
+    assertFalse(list.contains(null));
+    assertFalse(list.contains(""));
+    assertFalse(list.contains(HEX.substring(1)));
+    assertFalse(list.contains(HEX.replace('e', 'x')));
+    assertFalse(list.contains(HEX_COLONS.replace(':', '-')));
+    assertFalse(list.contains(BASE64.replace('=', 'A')));
+  }
+
+  @Test
+  public void whenFingerprintEncodedDifferently_thenContainsReturnsTrue() {
+    for (var entry : new String[] { HEX, HEX_COLONS, BASE64, BASE64URL }) {
+      var list = FingerprintAllowList.of(entry);
+
+      assertTrue(list.contains(HEX));
+      assertTrue(list.contains(HEX.toUpperCase()));
+      assertTrue(list.contains(HEX_COLONS));
+      assertTrue(list.contains(BASE64));
+      assertTrue(list.contains(BASE64URL));
+      assertFalse(list.contains(OTHER_HEX));
+    }
+  }
+
+  @Test
+  public void whenFingerprintIsZero_thenContainsReturnsTrue() {
+    var zero = "0".repeat(64);
+    var list = FingerprintAllowList.of(zero, zero);
+
+    assertEquals(1, list.size());
+    assertTrue(list.contains(zero));
+    assertFalse(list.contains(OTHER_HEX));
+  }
+
+  @Test
+  public void whenListContainsManyFingerprints_thenContainsReturnsTrueForAll() {
+    var random = new Random(1);
+    var fingerprints = new String[100_000];
+    for (int i = 0; i < fingerprints.length; i++) {
+      var hash = new byte[32];
+      random.nextBytes(hash);
+      fingerprints[i] = i % 2 == 0
+        ? HexFormat.of().formatHex(hash)
+        : Base64.getEncoder().encodeToString(hash);
+    }
+
+    var list = FingerprintAllowList.of(fingerprints);
+
+    assertEquals(fingerprints.length, list.size());
+    for (var fingerprint : fingerprints) {
+      assertTrue(list.contains(fingerprint));
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      var hash = new byte[32];
+      random.nextBytes(hash);
+      assertFalse(list.contains(HexFormat.of().formatHex(hash)));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // of.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenFingerprintMalformed_thenOfThrowsException() {
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> FingerprintAllowList.of(HEX, "invalid"));
+  }
+
+  @Test
+  public void whenBase64PaddingBitsSet_thenOfThrowsException() {
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> FingerprintAllowList.of(BASE64.substring(0, 42) + "V"));
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenFileContainsCommentsAndBlankLines_thenParseIgnoresThem() throws Exception {
+    var list = FingerprintAllowList.parse(new StringReader(
+      "# Allowed clients\n" +
+      "\n" +
+      "  " + HEX + "  \n" +
+      OTHER_HEX + "\r\n"));
+
+    assertEquals(2, list.size());
+    assertTrue(list.contains(BASE64));
+    assertTrue(list.contains(OTHER_HEX));
+  }
+
+  @Test
+  public void whenFileContainsMalformedFingerprint_thenParseThrowsException() {
+    var exception = assertThrows(
+      IOException.class,
+      () -> FingerprintAllowList.parse(new StringReader(HEX + "\n\ninvalid\n")));
+
+    assertTrue(exception.getMessage().contains("Line 3"));
+  }
+
+  @Test
+  public void whenFileContainsDuplicates_thenSizeCountsDistinctFingerprints() throws Exception {
+    var list = FingerprintAllowList.parse(new StringReader(
+      HEX + "\n" + BASE64 + "\n" + HEX_COLONS + "\n"));
+
+    assertEquals(1, list.size());
+  }
+}
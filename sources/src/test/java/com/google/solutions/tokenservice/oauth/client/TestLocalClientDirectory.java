@@ -0,0 +1,77 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLocalClientDirectory {
+  private static Map<String, ClientDirectory.Client> parse(String json) throws IOException {
+    return LocalClientDirectory.parse(
+      new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void whenDocumentValid_thenParseReturnsClients() throws Exception {
+    var clients = parse(
+      "{\"client-1\": {\"device_id\": \"1234\"}, \"client-2\": {}}");
+
+    assertEquals(2, clients.size());
+    assertEquals("1234", clients.get("client-1").claims().get("device_id"));
+    assertTrue(clients.get("client-2").claims().isEmpty());
+  }
+
+  @Test
+  public void whenEntryIsNull_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> parse("{\"client-1\": null}"));
+  }
+
+  @Test
+  public void whenDocumentMalformed_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> parse("[\"client-1\"]"));
+  }
+
+  @Test
+  public void whenClientKnown_thenLookupReturnsClient() throws Exception {
+    var directory = new LocalClientDirectory(() -> Map.of(
+      "client-1", new ClientDirectory.Client(Map.of("device_id", "1234"))));
+
+    assertEquals("1234", directory.lookup("client-1").claims().get("device_id"));
+  }
+
+  @Test
+  public void whenClientUnknown_thenLookupReturnsNull() throws Exception {
+    var directory = new LocalClientDirectory(Map::of);
+
+    assertNull(directory.lookup("client-1"));
+  }
+}
@@ -0,0 +1,387 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.common.primitives.Bytes;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOcspMessages {
+  /**
+   * Time at which the responses were produced.
+   */
+  static final Instant PRODUCED_AT = Instant.parse("2026-10-19T09:42:11Z");
+
+  /**
+   * Time at which the responses expire.
+   */
+  static final Instant NEXT_UPDATE = Instant.parse("2026-10-20T09:42:11Z");
+
+  /**
+   * Issuing CA.
+   */
+  static final String CA =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIBlTCCATugAwIBAgIUYxuEtWwEL3RO7ZfQ3sPiTSo4EjUwCgYIKoZIzj0EAwIw\n" +
+    "FzEVMBMGA1UEAwwMVGVzdCBPQ1NQIENBMCAXDTI2MTAxOTA5NDIxMVoYDzIxMjYw\n" +
+    "OTI1MDk0MjExWjAXMRUwEwYDVQQDDAxUZXN0IE9DU1AgQ0EwWTATBgcqhkjOPQIB\n" +
+    "BggqhkjOPQMBBwNCAATauEyxHpfCElN2ur4h+2yOmi30rQJAmaU/Xm9a04rqv8u7\n" +
+    "IkbDgHq14mEifvftPiIGyhrrVSQ/tVunUTr33H+So2MwYTAdBgNVHQ4EFgQU1jXH\n" +
+    "a0HH36LdxvVxskKUM4gIAeswHwYDVR0jBBgwFoAU1jXHa0HH36LdxvVxskKUM4gI\n" +
+    "AeswDwYDVR0TAQH/BAUwAwEB/zAOBgNVHQ8BAf8EBAMCAQYwCgYIKoZIzj0EAwID\n" +
+    "SAAwRQIgDIK++oT49CcaucyBz9jwBF05GS9OOe6fn5FCUnV/q+oCIQC2g27r6Qyk\n" +
+    "a5DBh+5JeP8Xu/YLEK7HAk1YXJ+3jloV7w==\n" +
+    "-----END CERTIFICATE-----\n";
+
+  /**
+   * Certificate (serial 100) that hasn't been revoked, with an OCSP responder URL.
+   */
+  static final String GOOD_CERTIFICATE =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIB2jCCAYGgAwIBAgICAQAwCgYIKoZIzj0EAwIwFzEVMBMGA1UEAwwMVGVzdCBP\n" +
+    "Q1NQIENBMCAXDTI2MTAxOTA5NDIxMVoYDzIxMjUwNTEzMDk0MjExWjAPMQ0wCwYD\n" +
+    "VQQDDARnb29kMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAEEG6ixuvuV1L/Z8rI\n" +
+    "1iznvYNGgMFgmhHcifq7rs2seNohxrd0sI7gTC7Ad6xJS+HvOuu4LwOZYh8j/gUz\n" +
+    "oEqAtKOBwjCBvzAMBgNVHRMBAf8EAjAAMBMGA1UdJQQMMAoGCCsGAQUFBwMCMCQG\n" +
+    "A1UdEQQdMBuGGXNwaWZmZTovL2V4YW1wbGUub3JnL2dvb2QwNAYIKwYBBQUHAQEE\n" +
+    "KDAmMCQGCCsGAQUFBzABhhhodHRwOi8vb2NzcC5leGFtcGxlLm9yZy8wHQYDVR0O\n" +
+    "BBYEFHE2eV4RuWiG621iNrnVg5mzGTsgMB8GA1UdIwQYMBaAFNY1x2tBx9+i3cb1\n" +
+    "cbJClDOICAHrMAoGCCqGSM49BAMCA0cAMEQCIGJ95aNKp++S/BNSPxYbNLgQD1QV\n" +
+    "S/NpwuERkemEfWiRAiA+A1d4WHaR/hxeEEcSMEusnPqmhH2vX1qgshy+O+l6kQ==\n" +
+    "-----END CERTIFICATE-----\n";
+
+  /**
+   * Certificate (serial 200) that has been revoked.
+   */
+  static final String REVOKED_CERTIFICATE =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIB4TCCAYegAwIBAgICAgAwCgYIKoZIzj0EAwIwFzEVMBMGA1UEAwwMVGVzdCBP\n" +
+    "Q1NQIENBMCAXDTI2MTAxOTA5NDIxMVoYDzIxMjUwNTEzMDk0MjExWjASMRAwDgYD\n" +
+    "VQQDDAdyZXZva2VkMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE90q/i16/uctY\n" +
+    "+Xa+MFW5UF5AzSoBKe44q/96vV+g/MFJ0QnDvmU+FqRQRYwJi69ticYxK/MHqK7I\n" +
+    "f858NDYaGaOBxTCBwjAMBgNVHRMBAf8EAjAAMBMGA1UdJQQMMAoGCCsGAQUFBwMC\n" +
+    "MCcGA1UdEQQgMB6GHHNwaWZmZTovL2V4YW1wbGUub3JnL3Jldm9rZWQwNAYIKwYB\n" +
+    "BQUHAQEEKDAmMCQGCCsGAQUFBzABhhhodHRwOi8vb2NzcC5leGFtcGxlLm9yZy8w\n" +
+    "HQYDVR0OBBYEFCC7iN6R6IZB3o04RFyyGreIPcQCMB8GA1UdIwQYMBaAFNY1x2tB\n" +
+    "x9+i3cb1cbJClDOICAHrMAoGCCqGSM49BAMCA0gAMEUCIGX+PERTBSx/k9HQp97k\n" +
+    "W63lqg5b74ht5IaIi47LQDSyAiEAh690OxKOcoqN7fGUMrt+6fQbPqT1CvaF2TC3\n" +
+    "NhET8xA=\n" +
+    "-----END CERTIFICATE-----\n";
+
+  /**
+   * Certificate (serial 300) without an OCSP responder URL.
+   */
+  static final String NO_RESPONDER_CERTIFICATE =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIBfjCCASSgAwIBAgICAwAwCgYIKoZIzj0EAwIwFzEVMBMGA1UEAwwMVGVzdCBP\n" +
+    "Q1NQIENBMCAXDTI2MTAxOTA5NDIxMVoYDzIxMjUwNTEzMDk0MjExWjAQMQ4wDAYD\n" +
+    "VQQDDAVub2FpYTBZMBMGByqGSM49AgEGCCqGSM49AwEHA0IABKLcEz1iy5rHHQCy\n" +
+    "ptajkNW/sFShf2VyN+6685soVlJNAyGBMSg/bAXaueegsFW+2BNDyU4GCgSGSKyX\n" +
+    "p/2jQ3OjZTBjMAwGA1UdEwEB/wQCMAAwEwYDVR0lBAwwCgYIKwYBBQUHAwIwHQYD\n" +
+    "VR0OBBYEFEf1K3VTCEKzVMMG4fr2Ez4HfZjrMB8GA1UdIwQYMBaAFNY1x2tBx9+i\n" +
+    "3cb1cbJClDOICAHrMAoGCCqGSM49BAMCA0gAMEUCIQDM3CVOWHBC5BK3vkgtOJ5B\n" +
+    "WZZ6lv/YvwUeJa3VicqpnAIgTJBazgrtXVwABlCVFoKzvEyiibSOY2+5wHXgEmE7\n" +
+    "orA=\n" +
+    "-----END CERTIFICATE-----\n";
+
+  /**
+   * Request for the status of the good certificate.
+   */
+  static final String GOOD_REQUEST =
+    "MEMwQTA/MD0wOzAJBgUrDgMCGgUABBS/NFV1emn1jys3bK9TlfZwaiEExwQU1jXH" +
+    "a0HH36LdxvVxskKUM4gIAesCAgEA";
+
+  /**
+   * Response for the good certificate, signed by the CA.
+   */
+  static final String GOOD_RESPONSE_BY_CA =
+    "MIICrAoBAKCCAqUwggKhBgkrBgEFBQcwAQEEggKSMIICjjCBk6EZMBcxFTATBgNV" +
+    "BAMMDFRlc3QgT0NTUCBDQRgPMjAyNjEwMTkwOTQyMTFaMGUwYzA7MAkGBSsOAwIa" +
+    "BQAEFL80VXV6afWPKzdsr1OV9nBqIQTHBBTWNcdrQcffot3G9XGyQpQziAgB6wIC" +
+    "AQCAABgPMjAyNjEwMTkwOTQyMTFaoBEYDzIwMjYxMDIwMDk0MjExWjAKBggqhkjO" +
+    "PQQDAgNJADBGAiEA5eFavCZPROmyq3XpQV40rBHjqYxG4WJSX6ugDzA7OckCIQDb" +
+    "in0JN+EFNLckdCsgaknbO8VGQS+ZZo1zfttNzYPL66CCAZ0wggGZMIIBlTCCATug" +
+    "AwIBAgIUYxuEtWwEL3RO7ZfQ3sPiTSo4EjUwCgYIKoZIzj0EAwIwFzEVMBMGA1UE" +
+    "AwwMVGVzdCBPQ1NQIENBMCAXDTI2MTAxOTA5NDIxMVoYDzIxMjYwOTI1MDk0MjEx" +
+    "WjAXMRUwEwYDVQQDDAxUZXN0IE9DU1AgQ0EwWTATBgcqhkjOPQIBBggqhkjOPQMB" +
+    "BwNCAATauEyxHpfCElN2ur4h+2yOmi30rQJAmaU/Xm9a04rqv8u7IkbDgHq14mEi" +
+    "fvftPiIGyhrrVSQ/tVunUTr33H+So2MwYTAdBgNVHQ4EFgQU1jXHa0HH36LdxvVx" +
+    "skKUM4gIAeswHwYDVR0jBBgwFoAU1jXHa0HH36LdxvVxskKUM4gIAeswDwYDVR0T" +
+    "AQH/BAUwAwEB/zAOBgNVHQ8BAf8EBAMCAQYwCgYIKoZIzj0EAwIDSAAwRQIgDIK+" +
+    "+oT49CcaucyBz9jwBF05GS9OOe6fn5FCUnV/q+oCIQC2g27r6Qyka5DBh+5JeP8X" +
+    "u/YLEK7HAk1YXJ+3jloV7w==";
+
+  /**
+   * Response for the good certificate, signed by a delegated responder.
+   */
+  static final String GOOD_RESPONSE_BY_RESPONDER =
+    "MIIClQoBAKCCAo4wggKKBgkrBgEFBQcwAQEEggJ7MIICdzCBkKEWMBQxEjAQBgNV" +
+    "BAMMCXJlc3BvbmRlchgPMjAyNjEwMTkwOTQyMTFaMGUwYzA7MAkGBSsOAwIaBQAE" +
+    "FL80VXV6afWPKzdsr1OV9nBqIQTHBBTWNcdrQcffot3G9XGyQpQziAgB6wICAQCA" +
+    "ABgPMjAyNjEwMTkwOTQyMTFaoBEYDzIwMjYxMDIwMDk0MjExWjAKBggqhkjOPQQD" +
+    "AgNHADBEAiBNaC3A+1vO7xAOpzWG0k8B++NGrGVnvPJvF1myaqegEwIgc9s6hTNE" +
+    "G7jzzpnPfAPAGl1j5jdVzCmxjPMJsS3Nb2agggGLMIIBhzCCAYMwggEooAMCAQIC" +
+    "AgQAMAoGCCqGSM49BAMCMBcxFTATBgNVBAMMDFRlc3QgT0NTUCBDQTAgFw0yNjEw" +
+    "MTkwOTQyMTFaGA8yMTI1MDUxMzA5NDIxMVowFDESMBAGA1UEAwwJcmVzcG9uZGVy" +
+    "MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAEp4g+u/u/JwZqdX2WiOXLpDYy0Q4r" +
+    "XUdeUjgKxT5jic+rLuRaHFqyhLgKDemt3GNxWcRJoYPxNz/afUEbTKZT46NlMGMw" +
+    "DAYDVR0TAQH/BAIwADATBgNVHSUEDDAKBggrBgEFBQcDCTAdBgNVHQ4EFgQU8m+N" +
+    "CeWK0OoO1Jr/xodWHdBdERMwHwYDVR0jBBgwFoAU1jXHa0HH36LdxvVxskKUM4gI" +
+    "AeswCgYIKoZIzj0EAwIDSQAwRgIhAPFs1yr6wZHl5EZcCcPZFlXqpH+YC1Pp5ijy" +
+    "EQuKdpW1AiEA93DTRHrDCi0PNVyU/3X5y6htLtZSCsO5YnEQYadsMvU=";
+
+  /**
+   * Response for the good certificate, signed by an unrelated CA.
+   */
+  static final String GOOD_RESPONSE_BY_ROGUE =
+    "MIIChQoBAKCCAn4wggJ6BgkrBgEFBQcwAQEEggJrMIICZzCBjKESMBAxDjAMBgNV" +
+    "BAMMBVJvZ3VlGA8yMDI2MTAxOTA5NDIxMVowZTBjMDswCQYFKw4DAhoFAAQUvzRV" +
+    "dXpp9Y8rN2yvU5X2cGohBMcEFNY1x2tBx9+i3cb1cbJClDOICAHrAgIBAIAAGA8y" +
+    "MDI2MTAxOTA5NDIxMVqgERgPMjAyNjEwMjAwOTQyMTFaMAoGCCqGSM49BAMCA0cA" +
+    "MEQCIDtYo+SLTUayGnEevyd3zXTMvW/AyKsj4iXooK9CK3p8AiA1oZlYby1GP17D" +
+    "Q4e9mMSW9o85ILCHwhJmboC3lCER9KCCAX8wggF7MIIBdzCCAR2gAwIBAgIUalGv" +
+    "Mzg+ZVPXZy6MDnxrj5W9MnUwCgYIKoZIzj0EAwIwEDEOMAwGA1UEAwwFUm9ndWUw" +
+    "IBcNMjYxMDE5MDk0MjExWhgPMjEyNjA5MjUwOTQyMTFaMBAxDjAMBgNVBAMMBVJv" +
+    "Z3VlMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE6djB1xTgDAgIB6CRA1iN/4gh" +
+    "U7Bd97AeJ5LU0rkx8JnE/ob+i5rOI2VAZ4ffX77ddvZXcYmHbQ2jZbBS6sLtJKNT" +
+    "MFEwHQYDVR0OBBYEFFtebjP1RWBzFnsbYDX9nxsn/qkAMB8GA1UdIwQYMBaAFFte" +
+    "bjP1RWBzFnsbYDX9nxsn/qkAMA8GA1UdEwEB/wQFMAMBAf8wCgYIKoZIzj0EAwID" +
+    "SAAwRQIhAPaKiULUGOS7CObO4BST6ZQRe1THvmuXsFPVPDM1nlmaAiAXpnuFDCgb" +
+    "2TyfuMJLrb+sSF0+jSbZbghYD7lAx1jPow==";
+
+  /**
+   * Response for the revoked certificate, signed by the CA.
+   */
+  static final String REVOKED_RESPONSE_BY_CA =
+    "MIICuwoBAKCCArQwggKwBgkrBgEFBQcwAQEEggKhMIICnTCBpKEZMBcxFTATBgNV" +
+    "BAMMDFRlc3QgT0NTUCBDQRgPMjAyNjEwMTkwOTQyMTFaMHYwdDA7MAkGBSsOAwIa" +
+    "BQAEFL80VXV6afWPKzdsr1OV9nBqIQTHBBTWNcdrQcffot3G9XGyQpQziAgB6wIC" +
+    "AgChERgPMjAyNjEwMDEwMDAwMDBaGA8yMDI2MTAxOTA5NDIxMVqgERgPMjAyNjEw" +
+    "MjAwOTQyMTFaMAoGCCqGSM49BAMCA0cAMEQCIEH/3qvFt0QHQRyFggaGride4dg0" +
+    "i2Ch3Qy+J5BRtaTtAiA0VYqILIlhN0Uid5u3To3wgdSfg8d128xnJbFRO0KWPaCC" +
+    "AZ0wggGZMIIBlTCCATugAwIBAgIUYxuEtWwEL3RO7ZfQ3sPiTSo4EjUwCgYIKoZI" +
+    "zj0EAwIwFzEVMBMGA1UEAwwMVGVzdCBPQ1NQIENBMCAXDTI2MTAxOTA5NDIxMVoY" +
+    "DzIxMjYwOTI1MDk0MjExWjAXMRUwEwYDVQQDDAxUZXN0IE9DU1AgQ0EwWTATBgcq" +
+    "hkjOPQIBBggqhkjOPQMBBwNCAATauEyxHpfCElN2ur4h+2yOmi30rQJAmaU/Xm9a" +
+    "04rqv8u7IkbDgHq14mEifvftPiIGyhrrVSQ/tVunUTr33H+So2MwYTAdBgNVHQ4E" +
+    "FgQU1jXHa0HH36LdxvVxskKUM4gIAeswHwYDVR0jBBgwFoAU1jXHa0HH36LdxvVx" +
+    "skKUM4gIAeswDwYDVR0TAQH/BAUwAwEB/zAOBgNVHQ8BAf8EBAMCAQYwCgYIKoZI" +
+    "zj0EAwIDSAAwRQIgDIK++oT49CcaucyBz9jwBF05GS9OOe6fn5FCUnV/q+oCIQC2" +
+    "g27r6Qyka5DBh+5JeP8Xu/YLEK7HAk1YXJ+3jloV7w==";
+
+  static X509Certificate parseCertificate(String pem) throws CertificateException {
+    return (X509Certificate)CertificateFactory
+      .getInstance("X.509")
+      .generateCertificate(new ByteArrayInputStream(pem.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  static byte[] decode(String base64) {
+    return Base64.getDecoder().decode(base64);
+  }
+
+  //---------------------------------------------------------------------------
+  // responderUrl.
+  //---------------------------------------------------------------------------
+
+  @Test
+  public void whenCertificateHasResponder_thenResponderUrlReturnsUrl() throws Exception {
+    assertEquals(
+      "http://ocsp.example.org/",
+      OcspMessages.responderUrl(parseCertificate(GOOD_CERTIFICATE)));
+  }
+
+  @Test
+  public void whenCertificateHasNoResponder_thenResponderUrlReturnsNull() throws Exception {
+    assertNull(OcspMessages.responderUrl(parseCertificate(NO_RESPONDER_CERTIFICATE)));
+    assertNull(OcspMessages.responderUrl(parseCertificate(CA)));
+  }
+
+  //---------------------------------------------------------------------------
+  // encodeRequest.
+  //---------------------------------------------------------------------------
+
+  @Test
+  public void encodeRequest() throws Exception {
+    var id = OcspMessages.certificateId(
+      parseCertificate(GOOD_CERTIFICATE),
+      parseCertificate(CA));
+
+    assertArrayEquals(decode(GOOD_REQUEST), OcspMessages.encodeRequest(id));
+  }
+
+  //---------------------------------------------------------------------------
+  // decodeResponse.
+  //---------------------------------------------------------------------------
+
+  @Test
+  public void whenSignedByIssuer_thenDecodeResponseReturnsStatus() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(GOOD_CERTIFICATE), issuer);
+
+    var response = OcspMessages.decodeResponse(
+      decode(GOOD_RESPONSE_BY_CA),
+      id,
+      issuer,
+      PRODUCED_AT.plusSeconds(60));
+
+    assertEquals(OcspMessages.Status.GOOD, response.status());
+    assertEquals(PRODUCED_AT, response.thisUpdate());
+    assertEquals(NEXT_UPDATE, response.nextUpdate());
+  }
+
+  @Test
+  public void whenSignedByDelegatedResponder_thenDecodeResponseReturnsStatus() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(GOOD_CERTIFICATE), issuer);
+
+    var response = OcspMessages.decodeResponse(
+      decode(GOOD_RESPONSE_BY_RESPONDER),
+      id,
+      issuer,
+      PRODUCED_AT.plusSeconds(60));
+
+    assertEquals(OcspMessages.Status.GOOD, response.status());
+  }
+
+  @Test
+  public void whenCertificateRevoked_thenDecodeResponseReturnsRevoked() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(REVOKED_CERTIFICATE), issuer);
+
+    var response = OcspMessages.decodeResponse(
+      decode(REVOKED_RESPONSE_BY_CA),
+      id,
+      issuer,
+      PRODUCED_AT.plusSeconds(60));
+
+    assertEquals(OcspMessages.Status.REVOKED, response.status());
+  }
+
+  @Test
+  public void whenSignedByOtherCa_thenDecodeResponseThrowsException() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(GOOD_CERTIFICATE), issuer);
+
+    assertThrows(
+      IOException.class,
+      () -> OcspMessages.decodeResponse(
+        decode(GOOD_RESPONSE_BY_ROGUE),
+        id,
+        issuer,
+        PRODUCED_AT.plusSeconds(60)));
+  }
+
+  @Test
+  public void whenResponseCoversOtherCertificate_thenDecodeResponseThrowsException() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(REVOKED_CERTIFICATE), issuer);
+
+    assertThrows(
+      IOException.class,
+      () -> OcspMessages.decodeResponse(
+        decode(GOOD_RESPONSE_BY_CA),
+        id,
+        issuer,
+        PRODUCED_AT.plusSeconds(60)));
+  }
+
+  @Test
+  public void whenResponseExpired_thenDecodeResponseThrowsException() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(GOOD_CERTIFICATE), issuer);
+
+    assertThrows(
+      IOException.class,
+      () -> OcspMessages.decodeResponse(
+        decode(GOOD_RESPONSE_BY_CA),
+        id,
+        issuer,
+        NEXT_UPDATE.plus(Duration.ofHours(1))));
+  }
+
+  @Test
+  public void whenResponseNotYetValid_thenDecodeResponseThrowsException() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(GOOD_CERTIFICATE), issuer);
+
+    assertThrows(
+      IOException.class,
+      () -> OcspMessages.decodeResponse(
+        decode(GOOD_RESPONSE_BY_CA),
+        id,
+        issuer,
+        PRODUCED_AT.minus(Duration.ofHours(1))));
+  }
+
+  @Test
+  public void whenResponseTampered_thenDecodeResponseThrowsException() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(GOOD_CERTIFICATE), issuer);
+
+    //
+    // Change the producedAt time, which is covered by the signature.
+    //
+    var response = decode(GOOD_RESPONSE_BY_CA);
+    var thisUpdate = "20261019094211Z".getBytes(StandardCharsets.US_ASCII);
+    var offset = Bytes.indexOf(response, thisUpdate);
+    assertTrue(offset > 0);
+    response[offset + 3] = '7';
+
+    assertThrows(
+      IOException.class,
+      () -> OcspMessages.decodeResponse(response, id, issuer, PRODUCED_AT.plusSeconds(60)));
+  }
+
+  @Test
+  public void whenResponseMalformed_thenDecodeResponseThrowsException() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(GOOD_CERTIFICATE), issuer);
+
+    assertThrows(
+      IOException.class,
+      () -> OcspMessages.decodeResponse(new byte[] { 0x30, 0x03, 0x0A, 0x01 }, id, issuer, PRODUCED_AT));
+  }
+
+  @Test
+  public void whenResponseUnsuccessful_thenDecodeResponseThrowsException() throws Exception {
+    var issuer = parseCertificate(CA);
+    var id = OcspMessages.certificateId(parseCertificate(GOOD_CERTIFICATE), issuer);
+
+    //
+    // tryLater (3).
+    //
+    assertThrows(
+      IOException.class,
+      () -> OcspMessages.decodeResponse(new byte[] { 0x30, 0x03, 0x0A, 0x01, 0x03 }, id, issuer, PRODUCED_AT));
+  }
+}
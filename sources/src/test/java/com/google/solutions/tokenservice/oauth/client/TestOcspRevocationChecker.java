@@ -0,0 +1,286 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOcspRevocationChecker {
+  private FakeOcspResponder responder;
+  private FakeClock clock;
+
+  private static class FakeClock extends Clock {
+    private volatile Instant now = TestOcspMessages.PRODUCED_AT.plusSeconds(60);
+
+    void advance(Duration duration) {
+      this.now = this.now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return this.now;
+    }
+  }
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    this.responder = new FakeOcspResponder();
+    this.clock = new FakeClock();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.responder.close();
+  }
+
+  private OcspRevocationChecker createChecker(OcspRevocationChecker.FailurePolicy failurePolicy) {
+    return new OcspRevocationChecker(
+      new OcspRevocationChecker.Options(
+        this.responder.uri(),
+        failurePolicy,
+        Duration.ofSeconds(5),
+        100),
+      HttpClient.newHttpClient(),
+      this.clock,
+      new LogAdapter());
+  }
+
+  private static List<X509Certificate> chain(String certificate) throws Exception {
+    return List.of(
+      TestOcspMessages.parseCertificate(certificate),
+      TestOcspMessages.parseCertificate(TestOcspMessages.CA));
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+      Thread.sleep(50);
+    }
+
+    assertTrue(condition.getAsBoolean());
+  }
+
+  //---------------------------------------------------------------------------
+  // isRevoked.
+  //---------------------------------------------------------------------------
+
+  @Test
+  public void whenChainEmpty_thenIsRevokedReturnsFalse() {
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+
+    assertFalse(checker.isRevoked(List.of()));
+    assertEquals(0, this.responder.requestCount.get());
+  }
+
+  @Test
+  public void whenCertificateHasNoResponder_thenIsRevokedReturnsFalse() throws Exception {
+    var checker = new OcspRevocationChecker(
+      new OcspRevocationChecker.Options(
+        null,
+        OcspRevocationChecker.FailurePolicy.HARD_FAIL,
+        Duration.ofSeconds(5),
+        100),
+      HttpClient.newHttpClient(),
+      this.clock,
+      new LogAdapter());
+
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.NO_RESPONDER_CERTIFICATE)));
+    assertEquals(0, this.responder.requestCount.get());
+  }
+
+  @Test
+  public void whenIssuerMissing_thenIsRevokedAppliesFailurePolicy() throws Exception {
+    var certificate = List.of(TestOcspMessages.parseCertificate(TestOcspMessages.GOOD_CERTIFICATE));
+
+    assertFalse(createChecker(OcspRevocationChecker.FailurePolicy.SOFT_FAIL).isRevoked(certificate));
+    assertTrue(createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL).isRevoked(certificate));
+    assertEquals(0, this.responder.requestCount.get());
+  }
+
+  @Test
+  public void whenCertificateGood_thenIsRevokedReturnsFalse() throws Exception {
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.GOOD_RESPONSE_BY_CA);
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+    assertArrayEquals(
+      TestOcspMessages.decode(TestOcspMessages.GOOD_REQUEST),
+      this.responder.lastRequest);
+  }
+
+  @Test
+  public void whenCertificateRevoked_thenIsRevokedReturnsTrue() throws Exception {
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.REVOKED_RESPONSE_BY_CA);
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.SOFT_FAIL);
+
+    assertTrue(checker.isRevoked(chain(TestOcspMessages.REVOKED_CERTIFICATE)));
+  }
+
+  @Test
+  public void whenResponseCached_thenIsRevokedDoesNotQueryResponder() throws Exception {
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.GOOD_RESPONSE_BY_CA);
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+    this.clock.advance(Duration.ofHours(12));
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+
+    assertEquals(1, this.responder.requestCount.get());
+  }
+
+  @Test
+  public void whenResponseAboutToExpire_thenIsRevokedRefreshesInBackground() throws Exception {
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.GOOD_RESPONSE_BY_CA);
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+
+    //
+    // Block the refresh, the cached response must still be used.
+    //
+    this.responder.gate = new CountDownLatch(1);
+    this.clock.advance(Duration.ofHours(20));
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+
+    waitFor(() -> this.responder.requestCount.get() == 2);
+    this.responder.gate.countDown();
+  }
+
+  @Test
+  public void whenRefreshFails_thenIsRevokedKeepsUsingCachedResponse() throws Exception {
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.GOOD_RESPONSE_BY_CA);
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+
+    this.responder.response = null;
+    this.clock.advance(Duration.ofHours(20));
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+    waitFor(() -> this.responder.requestCount.get() == 2);
+
+    //
+    // Don't retry immediately.
+    //
+    Thread.sleep(200);
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+    assertEquals(2, this.responder.requestCount.get());
+  }
+
+  @Test
+  public void whenResponseExpired_thenIsRevokedQueriesResponder() throws Exception {
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.GOOD_RESPONSE_BY_CA);
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+
+    //
+    // The responder keeps returning the old response, which
+    // is now expired.
+    //
+    this.clock.advance(Duration.ofDays(2));
+    assertTrue(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+    assertEquals(2, this.responder.requestCount.get());
+  }
+
+  @Test
+  public void whenQueriesConcurrent_thenIsRevokedCoalescesQueries() throws Exception {
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.GOOD_RESPONSE_BY_CA);
+    this.responder.gate = new CountDownLatch(1);
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+    var chain = chain(TestOcspMessages.GOOD_CERTIFICATE);
+
+    var first = CompletableFuture.supplyAsync(() -> checker.isRevoked(chain));
+    waitFor(() -> this.responder.requestCount.get() == 1);
+
+    var second = CompletableFuture.supplyAsync(() -> checker.isRevoked(chain));
+    Thread.sleep(200);
+    this.responder.gate.countDown();
+
+    assertFalse(first.get(5, TimeUnit.SECONDS));
+    assertFalse(second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, this.responder.requestCount.get());
+  }
+
+  @Test
+  public void whenResponderUnreachableAndSoftFail_thenIsRevokedReturnsFalse() throws Exception {
+    this.responder.close();
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.SOFT_FAIL);
+
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+  }
+
+  @Test
+  public void whenResponderUnreachableAndHardFail_thenIsRevokedReturnsTrue() throws Exception {
+    this.responder.close();
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+
+    assertTrue(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+  }
+
+  @Test
+  public void whenResponderFails_thenIsRevokedCachesFailure() throws Exception {
+    var checker = createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL);
+
+    assertTrue(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+    assertTrue(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+    assertEquals(1, this.responder.requestCount.get());
+
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.GOOD_RESPONSE_BY_CA);
+    this.clock.advance(OcspRevocationChecker.RETRY_INTERVAL);
+    assertFalse(checker.isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+    assertEquals(2, this.responder.requestCount.get());
+  }
+
+  @Test
+  public void whenResponseSignedByOtherCa_thenIsRevokedAppliesFailurePolicy() throws Exception {
+    this.responder.response = TestOcspMessages.decode(TestOcspMessages.GOOD_RESPONSE_BY_ROGUE);
+
+    assertTrue(createChecker(OcspRevocationChecker.FailurePolicy.HARD_FAIL)
+      .isRevoked(chain(TestOcspMessages.GOOD_CERTIFICATE)));
+  }
+}
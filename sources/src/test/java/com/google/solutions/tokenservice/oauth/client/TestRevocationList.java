@@ -0,0 +1,171 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRevocationList {
+  /**
+   * CRL that revokes serial numbers 1001 and 0A2B3C4D5E6F.
+   */
+  private static final String CRL =
+    "-----BEGIN X509 CRL-----\n" +
+    "MIHcMIGDAgEBMAoGCCqGSM49BAMCMBIxEDAOBgNVBAMMB1Rlc3QgQ0EXDTI2MTAx\n" +
+    "OTA5MzAyMVoYDzIxMjYwOTI1MDkzMDIxWjAuMBMCAhABFw0yMzAxMDEwMDAwMDBa\n" +
+    "MBcCBgorPE1ebxcNMjMwMTAxMDAwMDAwWqAOMAwwCgYDVR0UBAMCAQEwCgYIKoZI\n" +
+    "zj0EAwIDSAAwRQIhAOLbX0fcxYUwYdUTWSSjGpo6DB7B5EcifCr/t2MSEp19AiAy\n" +
+    "CaJuaM8igIMHar2r+Z9nXCWAIvmDeTK3pW1Y+2sr9A==\n" +
+    "-----END X509 CRL-----\n";
+
+  private static Path createFile(byte[] content) throws IOException {
+    var directory = Files.createTempDirectory("revocation");
+    directory.toFile().deleteOnExit();
+
+    var path = directory.resolve("crl");
+    Files.write(path, content);
+    return path;
+  }
+
+  // -------------------------------------------------------------------------
+  // isRevoked.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenListEmpty_thenIsRevokedReturnsFalse() throws Exception {
+    var list = RevocationList.of();
+
+    assertEquals(0, list.size());
+    assertFalse(list.isRevoked("01"));
+  }
+
+  @Test
+  public void whenSerialNumberMalformed_thenIsRevokedThrowsException() throws Exception {
+    var list = RevocationList.of("01");
+
+    assertThrows(IllegalArgumentException.class, () -> list.isRevoked(""));
+    assertThrows(IllegalArgumentException.class, () -> list.isRevoked("xyz"));
+    assertThrows(IllegalArgumentException.class, () -> list.isRevoked("1".repeat(65)));
+  }
+
+  @Test
+  public void whenSerialNumberEncodedDifferently_thenIsRevokedReturnsTrue() throws Exception {
+    var list = RevocationList.of("0a2b3c4d5e6f");
+
+    assertTrue(list.isRevoked("0A2B3C4D5E6F"));
+    assertTrue(list.isRevoked("0a:2b:3c:4d:5e:6f"));
+    assertTrue(list.isRevoked("a2b3c4d5e6f"));
+    assertTrue(list.isRevoked("00000a2b3c4d5e6f"));
+    assertFalse(list.isRevoked("0a2b3c4d5e6f00"));
+  }
+
+  @Test
+  public void whenListContainsManySerialNumbers_thenIsRevokedReturnsTrueForAll() throws Exception {
+    var random = new Random(1);
+    var serialNumbers = new String[100_000];
+    for (int i = 0; i < serialNumbers.length; i++) {
+      var serialNumber = new byte[20];
+      random.nextBytes(serialNumber);
+      serialNumbers[i] = HexFormat.of().formatHex(serialNumber);
+    }
+
+    var list = RevocationList.of(serialNumbers);
+
+    assertEquals(serialNumbers.length, list.size());
+    for (var serialNumber : serialNumbers) {
+      assertTrue(list.isRevoked(serialNumber));
+    }
+
+    for (int i = 0; i < 10_000; i++) {
+      var serialNumber = new byte[20];
+      random.nextBytes(serialNumber);
+      assertFalse(list.isRevoked(HexFormat.of().formatHex(serialNumber)));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenFileContainsPemCrl_thenParseReturnsRevokedSerialNumbers() throws Exception {
+    var list = RevocationList.parse(createFile(CRL.getBytes()));
+
+    assertEquals(2, list.size());
+    assertTrue(list.isRevoked("1001"));
+    assertTrue(list.isRevoked("0A2B3C4D5E6F"));
+    assertFalse(list.isRevoked("1002"));
+  }
+
+  @Test
+  public void whenFileContainsDerCrl_thenParseReturnsRevokedSerialNumbers() throws Exception {
+    var der = Base64.getMimeDecoder().decode(CRL
+      .replace("-----BEGIN X509 CRL-----", "")
+      .replace("-----END X509 CRL-----", ""));
+
+    var list = RevocationList.parse(createFile(der));
+
+    assertEquals(2, list.size());
+    assertTrue(list.isRevoked("1001"));
+  }
+
+  @Test
+  public void whenFileContainsSerialNumbers_thenParseReturnsSerialNumbers() throws Exception {
+    var list = RevocationList.parse(createFile((
+      "# Revoked certificates\n" +
+      "\n" +
+      "1001\n" +
+      "  0a:2b:3c:4d:5e:6f  \n" +
+      "1001\n").getBytes()));
+
+    assertEquals(2, list.size());
+    assertTrue(list.isRevoked("1001"));
+    assertTrue(list.isRevoked("0A2B3C4D5E6F"));
+  }
+
+  @Test
+  public void whenFileContainsMalformedSerialNumber_thenParseThrowsException() throws Exception {
+    var path = createFile("1001\ninvalid\n".getBytes());
+
+    var exception = assertThrows(
+      IOException.class,
+      () -> RevocationList.parse(path));
+    assertTrue(exception.getMessage().contains("Line 2"));
+  }
+
+  @Test
+  public void whenFileContainsMalformedCrl_thenParseThrowsException() throws Exception {
+    var path = createFile("-----BEGIN X509 CRL-----\nAAAA\n-----END X509 CRL-----\n".getBytes());
+
+    assertThrows(
+      IOException.class,
+      () -> RevocationList.parse(path));
+  }
+}
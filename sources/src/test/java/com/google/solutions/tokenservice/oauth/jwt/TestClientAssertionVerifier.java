@@ -0,0 +1,407 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import com.google.api.client.json.webtoken.JsonWebToken;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.ForbiddenException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClientAssertionVerifier {
+  private static final String AUDIENCE = "https://token.example.com/token";
+  private static final ClientAssertionVerifier.Options OPTIONS =
+    new ClientAssertionVerifier.Options(Duration.ofMinutes(5));
+
+  private static Map<String, ClientKeyRegistry.Registration> registrations() throws IOException {
+    var document = String.format(
+      "{\"client-1\": {\"jwks\": %s}}",
+      TestJsonWebKeySet.toJwks(
+        TestJsonWebKeySet.toJwk(TestJsonWebKeySet.RSA_KEY, "rsa"),
+        TestJsonWebKeySet.toJwk(TestJsonWebKeySet.EC_KEY, "ec")));
+
+    return ClientKeyRegistry.parse(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static ClientAssertionVerifier createVerifier(TestReplayCache.FakeClock clock) throws IOException {
+    var registrations = registrations();
+    return new ClientAssertionVerifier(
+      new ClientKeyRegistry(
+        () -> registrations,
+        uri -> { throw new IOException("mock"); },
+        clock,
+        new ClientKeyRegistry.Options(Duration.ofMinutes(5), Duration.ofSeconds(30), 10)),
+      new ReplayCache(10, 10, clock),
+      clock,
+      OPTIONS);
+  }
+
+  private static JsonWebToken.Payload createPayload(Instant now) {
+    return new JsonWebToken.Payload()
+      .setIssuer("client-1")
+      .setSubject("client-1")
+      .setAudience(AUDIENCE)
+      .setJwtId("jti-1")
+      .setIssuedAtTimeSeconds(now.getEpochSecond())
+      .setExpirationTimeSeconds(now.plusSeconds(60).getEpochSecond());
+  }
+
+  /**
+   * Create an RS256 assertion.
+   */
+  static String createAssertion(
+    KeyPair key,
+    String keyId,
+    JsonWebToken.Payload payload
+  ) throws Exception {
+    var header = new JsonWebSignature.Header()
+      .setAlgorithm("RS256")
+      .setType("JWT")
+      .setKeyId(keyId);
+
+    return JsonWebSignature.signUsingRsaSha256(
+      key.getPrivate(),
+      GsonFactory.getDefaultInstance(),
+      header,
+      payload);
+  }
+
+  /**
+   * Create an ES256 assertion.
+   */
+  static String createEcAssertion(
+    KeyPair key,
+    String keyId,
+    JsonWebToken.Payload payload
+  ) throws Exception {
+    var header = new JsonWebSignature.Header()
+      .setAlgorithm("ES256")
+      .setType("JWT")
+      .setKeyId(keyId);
+
+    var factory = GsonFactory.getDefaultInstance();
+    var encoder = Base64.getUrlEncoder().withoutPadding();
+    var content = encoder.encodeToString(factory.toByteArray(header)) + "." +
+      encoder.encodeToString(factory.toByteArray(payload));
+
+    var signer = Signature.getInstance("SHA256withECDSA");
+    signer.initSign(key.getPrivate());
+    signer.update(content.getBytes(StandardCharsets.US_ASCII));
+    var der = signer.sign();
+
+    //
+    // Convert the DER-encoded signature to R || S.
+    //
+    var rLength = der[3];
+    var r = new BigInteger(1, Arrays.copyOfRange(der, 4, 4 + rLength));
+    var s = new BigInteger(1, Arrays.copyOfRange(der, 6 + rLength, der.length));
+
+    var signature = new byte[64];
+    var rBytes = r.toByteArray();
+    var sBytes = s.toByteArray();
+    var rSignificant = Math.min(rBytes.length, 32);
+    var sSignificant = Math.min(sBytes.length, 32);
+    System.arraycopy(rBytes, rBytes.length - rSignificant, signature, 32 - rSignificant, rSignificant);
+    System.arraycopy(sBytes, sBytes.length - sSignificant, signature, 64 - sSignificant, sSignificant);
+
+    return content + "." + encoder.encodeToString(signature);
+  }
+
+  // -------------------------------------------------------------------------
+  // verify.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenAssertionValid_thenVerifyReturnsAssertion() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var assertion = verifier.verify(
+      createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", createPayload(clock.instant())),
+      "client-1",
+      List.of(AUDIENCE));
+
+    assertEquals("client-1", assertion.clientId());
+    assertEquals("rsa", assertion.keyId());
+    assertEquals("jti-1", assertion.tokenId());
+  }
+
+  @Test
+  public void whenAssertionSignedWithEcKey_thenVerifyReturnsAssertion() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var assertion = verifier.verify(
+      createEcAssertion(TestJsonWebKeySet.EC_KEY, "ec", createPayload(clock.instant())),
+      null,
+      List.of(AUDIENCE));
+
+    assertEquals("client-1", assertion.clientId());
+    assertEquals("ec", assertion.keyId());
+  }
+
+  @Test
+  public void whenAssertionMalformed_thenVerifyThrowsException() throws Exception {
+    var verifier = createVerifier(new TestReplayCache.FakeClock());
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify("not-a-jwt", null, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenAssertionUnsigned_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var factory = GsonFactory.getDefaultInstance();
+    var encoder = Base64.getUrlEncoder().withoutPadding();
+    var assertion =
+      encoder.encodeToString(factory.toByteArray(new JsonWebSignature.Header().setAlgorithm("none"))) + "." +
+      encoder.encodeToString(factory.toByteArray(createPayload(clock.instant()))) + ".";
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(assertion, null, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenSignatureInvalid_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var assertion = createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", createPayload(clock.instant()));
+    var tampered = assertion.substring(0, assertion.length() - 4) +
+      (assertion.endsWith("AAAA") ? "BBBB" : "AAAA");
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(tampered, null, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenSignedWithUnregisteredKey_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var otherKey = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(otherKey, "rsa", createPayload(clock.instant())),
+        null,
+        List.of(AUDIENCE)));
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "unknown", createPayload(clock.instant())),
+        null,
+        List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenClientUnknown_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var payload = createPayload(clock.instant())
+      .setIssuer("client-2")
+      .setSubject("client-2");
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", payload),
+        null,
+        List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenIssuerAndSubjectDiffer_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var payload = createPayload(clock.instant()).setSubject("client-2");
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", payload),
+        null,
+        List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenClientIdDiffers_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", createPayload(clock.instant())),
+        "client-2",
+        List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenAudienceDiffers_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", createPayload(clock.instant())),
+        null,
+        List.of("https://other.example.com/token")));
+  }
+
+  @Test
+  public void whenExpiryMissing_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var payload = createPayload(clock.instant()).setExpirationTimeSeconds(null);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", payload),
+        null,
+        List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenAssertionExpired_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var assertion = createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", createPayload(clock.instant()));
+    clock.advance(Duration.ofSeconds(60).plus(ClientAssertionVerifier.ALLOWED_CLOCK_SKEW).plusSeconds(1));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(assertion, null, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenLifetimeExceedsMaximum_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var payload = createPayload(clock.instant())
+      .setExpirationTimeSeconds(clock.instant().plus(Duration.ofHours(1)).getEpochSecond());
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", payload),
+        null,
+        List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenAssertionNotValidYet_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var payload = createPayload(clock.instant())
+      .setNotBeforeTimeSeconds(clock.instant().plus(Duration.ofMinutes(2)).getEpochSecond());
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", payload),
+        null,
+        List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenTokenIdMissing_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var payload = createPayload(clock.instant()).setJwtId(null);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", payload),
+        null,
+        List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenAssertionReplayed_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var verifier = createVerifier(clock);
+
+    var assertion = createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", createPayload(clock.instant()));
+    verifier.verify(assertion, null, List.of(AUDIENCE));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(assertion, null, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenKeySetUnavailable_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var registrations = ClientKeyRegistry.parse(new ByteArrayInputStream(
+      "{\"client-1\": {\"jwks_uri\": \"https://client-1.example.com/jwks\"}}".getBytes(StandardCharsets.UTF_8)));
+    var verifier = new ClientAssertionVerifier(
+      new ClientKeyRegistry(
+        () -> registrations,
+        uri -> { throw new IOException("mock"); },
+        clock,
+        new ClientKeyRegistry.Options(Duration.ofMinutes(5), Duration.ofSeconds(30), 10)),
+      new ReplayCache(10, 10, clock),
+      clock,
+      OPTIONS);
+
+    assertThrows(
+      UncheckedIOException.class,
+      () -> verifier.verify(
+        createAssertion(TestJsonWebKeySet.RSA_KEY, "rsa", createPayload(clock.instant())),
+        null,
+        List.of(AUDIENCE)));
+  }
+}
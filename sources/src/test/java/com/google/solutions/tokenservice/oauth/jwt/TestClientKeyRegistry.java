@@ -0,0 +1,218 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClientKeyRegistry {
+  private static final URI JWKS_URI = URI.create("https://client-1.example.com/jwks");
+  private static final ClientKeyRegistry.Options OPTIONS = new ClientKeyRegistry.Options(
+    Duration.ofMinutes(5),
+    Duration.ofSeconds(30),
+    10);
+
+  private static Map<String, ClientKeyRegistry.Registration> parse(String json) throws IOException {
+    return ClientKeyRegistry.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static class FakeFetcher implements ClientKeyRegistry.Fetcher {
+    final AtomicReference<String> document = new AtomicReference<>();
+    final AtomicInteger fetchCount = new AtomicInteger();
+
+    @Override
+    public byte[] fetch(URI jwksUri) throws IOException {
+      assertEquals(JWKS_URI, jwksUri);
+      this.fetchCount.incrementAndGet();
+
+      var document = this.document.get();
+      if (document == null) {
+        throw new IOException("mock");
+      }
+
+      return document.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenDocumentNotAnObject_thenParseThrowsException() {
+    assertThrows(IOException.class, () -> parse("[]"));
+  }
+
+  @Test
+  public void whenEntryLacksKeys_thenParseThrowsException() {
+    assertThrows(IOException.class, () -> parse("{\"client-1\": {}}"));
+  }
+
+  @Test
+  public void whenJwksUriNotHttps_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> parse("{\"client-1\": {\"jwks_uri\": \"http://client-1.example.com/jwks\"}}"));
+  }
+
+  @Test
+  public void whenKeysInvalid_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> parse("{\"client-1\": {\"jwks\": {\"keys\": [{\"kty\":\"RSA\",\"kid\":\"1\"}]}}}"));
+  }
+
+  @Test
+  public void whenDocumentValid_thenParseReturnsRegistrations() throws Exception {
+    var registrations = parse(String.format(
+      "{\"client-1\": {\"jwks_uri\": \"%s\"}, \"client-2\": {\"jwks\": %s}}",
+      JWKS_URI,
+      TestJsonWebKeySet.toJwks(TestJsonWebKeySet.toJwk(TestJsonWebKeySet.RSA_KEY, "1"))));
+
+    assertEquals(2, registrations.size());
+    assertEquals(JWKS_URI, registrations.get("client-1").jwksUri());
+    assertEquals(1, registrations.get("client-2").keys().size());
+  }
+
+  // -------------------------------------------------------------------------
+  // find.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenClientUnknown_thenFindReturnsNull() throws Exception {
+    var registry = new ClientKeyRegistry(
+      Map::of,
+      new FakeFetcher(),
+      new TestReplayCache.FakeClock(),
+      OPTIONS);
+
+    assertNull(registry.find("client-1", "1", "RS256"));
+  }
+
+  @Test
+  public void whenKeysRegistered_thenFindReturnsKey() throws Exception {
+    var registrations = parse(String.format(
+      "{\"client-1\": {\"jwks\": %s}}",
+      TestJsonWebKeySet.toJwks(TestJsonWebKeySet.toJwk(TestJsonWebKeySet.RSA_KEY, "1"))));
+    var fetcher = new FakeFetcher();
+    var registry = new ClientKeyRegistry(
+      () -> registrations,
+      fetcher,
+      new TestReplayCache.FakeClock(),
+      OPTIONS);
+
+    assertEquals(TestJsonWebKeySet.RSA_KEY.getPublic(), registry.find("client-1", "1", "RS256"));
+    assertNull(registry.find("client-1", "2", "RS256"));
+    assertEquals(0, fetcher.fetchCount.get());
+  }
+
+  @Test
+  public void whenJwksUriRegistered_thenFindCachesKeySet() throws Exception {
+    var registrations = parse(String.format("{\"client-1\": {\"jwks_uri\": \"%s\"}}", JWKS_URI));
+    var fetcher = new FakeFetcher();
+    fetcher.document.set(TestJsonWebKeySet.toJwks(
+      TestJsonWebKeySet.toJwk(TestJsonWebKeySet.RSA_KEY, "1")));
+
+    var clock = new TestReplayCache.FakeClock();
+    var registry = new ClientKeyRegistry(() -> registrations, fetcher, clock, OPTIONS);
+
+    assertEquals(TestJsonWebKeySet.RSA_KEY.getPublic(), registry.find("client-1", "1", "RS256"));
+    assertEquals(TestJsonWebKeySet.RSA_KEY.getPublic(), registry.find("client-1", "1", "RS256"));
+    assertEquals(1, fetcher.fetchCount.get());
+
+    clock.advance(OPTIONS.cacheDuration());
+    assertEquals(TestJsonWebKeySet.RSA_KEY.getPublic(), registry.find("client-1", "1", "RS256"));
+    assertEquals(2, fetcher.fetchCount.get());
+  }
+
+  @Test
+  public void whenKeyUnknown_thenFindRefetchesKeySetAfterMinRefreshInterval() throws Exception {
+    var registrations = parse(String.format("{\"client-1\": {\"jwks_uri\": \"%s\"}}", JWKS_URI));
+    var fetcher = new FakeFetcher();
+    fetcher.document.set(TestJsonWebKeySet.toJwks(
+      TestJsonWebKeySet.toJwk(TestJsonWebKeySet.RSA_KEY, "1")));
+
+    var clock = new TestReplayCache.FakeClock();
+    var registry = new ClientKeyRegistry(() -> registrations, fetcher, clock, OPTIONS);
+
+    assertNotNull(registry.find("client-1", "1", "RS256"));
+
+    //
+    // Rotate key.
+    //
+    fetcher.document.set(TestJsonWebKeySet.toJwks(
+      TestJsonWebKeySet.toJwk(TestJsonWebKeySet.EC_KEY, "2")));
+
+    assertNull(registry.find("client-1", "2", "ES256"));
+    assertEquals(1, fetcher.fetchCount.get());
+
+    clock.advance(OPTIONS.minRefreshInterval());
+    assertEquals(TestJsonWebKeySet.EC_KEY.getPublic(), registry.find("client-1", "2", "ES256"));
+    assertEquals(2, fetcher.fetchCount.get());
+  }
+
+  @Test
+  public void whenFetchFails_thenFindThrowsException() throws Exception {
+    var registrations = parse(String.format("{\"client-1\": {\"jwks_uri\": \"%s\"}}", JWKS_URI));
+    var registry = new ClientKeyRegistry(
+      () -> registrations,
+      new FakeFetcher(),
+      new TestReplayCache.FakeClock(),
+      OPTIONS);
+
+    assertThrows(IOException.class, () -> registry.find("client-1", "1", "RS256"));
+  }
+
+  @Test
+  public void whenRefreshFails_thenFindUsesPreviousKeySet() throws Exception {
+    var registrations = parse(String.format("{\"client-1\": {\"jwks_uri\": \"%s\"}}", JWKS_URI));
+    var fetcher = new FakeFetcher();
+    fetcher.document.set(TestJsonWebKeySet.toJwks(
+      TestJsonWebKeySet.toJwk(TestJsonWebKeySet.RSA_KEY, "1")));
+
+    var clock = new TestReplayCache.FakeClock();
+    var registry = new ClientKeyRegistry(() -> registrations, fetcher, clock, OPTIONS);
+
+    assertNotNull(registry.find("client-1", "1", "RS256"));
+
+    fetcher.document.set(null);
+    clock.advance(OPTIONS.cacheDuration());
+
+    assertEquals(TestJsonWebKeySet.RSA_KEY.getPublic(), registry.find("client-1", "1", "RS256"));
+    assertEquals(TestJsonWebKeySet.RSA_KEY.getPublic(), registry.find("client-1", "1", "RS256"));
+    assertEquals(2, fetcher.fetchCount.get());
+
+    clock.advance(OPTIONS.minRefreshInterval());
+    assertEquals(TestJsonWebKeySet.RSA_KEY.getPublic(), registry.find("client-1", "1", "RS256"));
+    assertEquals(3, fetcher.fetchCount.get());
+  }
+}
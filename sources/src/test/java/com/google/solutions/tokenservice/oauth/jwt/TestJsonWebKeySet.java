@@ -0,0 +1,196 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJsonWebKeySet {
+  static final KeyPair RSA_KEY = generateKeyPair("RSA");
+  static final KeyPair EC_KEY = generateKeyPair("EC");
+
+  private static KeyPair generateKeyPair(String algorithm) {
+    try {
+      var generator = KeyPairGenerator.getInstance(algorithm);
+      if ("EC".equals(algorithm)) {
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+      }
+      else {
+        generator.initialize(2048);
+      }
+
+      return generator.generateKeyPair();
+    }
+    catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String encodeInteger(BigInteger value, int length) {
+    var bytes = value.toByteArray();
+    if (length > 0) {
+      //
+      // Strip the sign byte and pad to the field size.
+      //
+      var padded = new byte[length];
+      var significant = Math.min(bytes.length, length);
+      System.arraycopy(bytes, bytes.length - significant, padded, length - significant, significant);
+      bytes = padded;
+    }
+    else if (bytes[0] == 0) {
+      bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+    }
+
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  /**
+   * Create a JWK for a public key.
+   */
+  static String toJwk(KeyPair key, String keyId) {
+    if (key.getPublic() instanceof RSAPublicKey rsaKey) {
+      return String.format(
+        "{\"kty\":\"RSA\",\"kid\":\"%s\",\"n\":\"%s\",\"e\":\"%s\"}",
+        keyId,
+        encodeInteger(rsaKey.getModulus(), 0),
+        encodeInteger(rsaKey.getPublicExponent(), 0));
+    }
+    else {
+      var ecKey = (ECPublicKey)key.getPublic();
+      return String.format(
+        "{\"kty\":\"EC\",\"crv\":\"P-256\",\"kid\":\"%s\",\"x\":\"%s\",\"y\":\"%s\"}",
+        keyId,
+        encodeInteger(ecKey.getW().getAffineX(), 32),
+        encodeInteger(ecKey.getW().getAffineY(), 32));
+    }
+  }
+
+  /**
+   * Create a JWKS document from a set of JWKs.
+   */
+  static String toJwks(String... jwks) {
+    return String.format("{\"keys\":[%s]}", String.join(",", jwks));
+  }
+
+  private static JsonWebKeySet parse(String document) throws IOException {
+    return JsonWebKeySet.parse(document.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenKeysMissing_thenParseThrowsException() {
+    assertThrows(IOException.class, () -> parse("{}"));
+    assertThrows(IOException.class, () -> parse("{\"keys\": {}}"));
+  }
+
+  @Test
+  public void whenKeyMalformed_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> parse(toJwks("{\"kty\":\"RSA\",\"kid\":\"1\",\"e\":\"AQAB\"}")));
+    assertThrows(
+      IOException.class,
+      () -> parse(toJwks("{\"kty\":\"RSA\",\"kid\":\"1\",\"n\":\"!!\",\"e\":\"AQAB\"}")));
+  }
+
+  @Test
+  public void whenKeyTypeUnsupported_thenParseIgnoresKey() throws Exception {
+    var keys = parse(toJwks(
+      "{\"kty\":\"oct\",\"kid\":\"1\",\"k\":\"AQAB\"}",
+      "{\"kty\":\"EC\",\"crv\":\"P-521\",\"kid\":\"2\",\"x\":\"AQAB\",\"y\":\"AQAB\"}",
+      toJwk(RSA_KEY, "3")));
+
+    assertEquals(1, keys.size());
+  }
+
+  @Test
+  public void whenKeyNotForSigning_thenParseIgnoresKey() throws Exception {
+    var keys = parse(toJwks(toJwk(RSA_KEY, "1").replace("{", "{\"use\":\"enc\",")));
+
+    assertEquals(0, keys.size());
+  }
+
+  // -------------------------------------------------------------------------
+  // find.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenKeyIdMatches_thenFindReturnsKey() throws Exception {
+    var keys = parse(toJwks(toJwk(RSA_KEY, "rsa"), toJwk(EC_KEY, "ec")));
+
+    assertEquals(RSA_KEY.getPublic(), keys.find("rsa", "RS256"));
+    assertEquals(EC_KEY.getPublic(), keys.find("ec", "ES256"));
+  }
+
+  @Test
+  public void whenAlgorithmDoesNotMatchKey_thenFindReturnsNull() throws Exception {
+    var keys = parse(toJwks(toJwk(RSA_KEY, "rsa"), toJwk(EC_KEY, "ec")));
+
+    assertNull(keys.find("rsa", "ES256"));
+    assertNull(keys.find("ec", "RS256"));
+    assertNull(keys.find("rsa", "HS256"));
+    assertNull(keys.find("rsa", "none"));
+  }
+
+  @Test
+  public void whenAlgorithmDoesNotMatchKeyAlgorithm_thenFindReturnsNull() throws Exception {
+    var keys = parse(toJwks(toJwk(RSA_KEY, "rsa").replace("{", "{\"alg\":\"PS256\",")));
+
+    assertNull(keys.find("rsa", "RS256"));
+  }
+
+  @Test
+  public void whenKeyIdUnknown_thenFindReturnsNull() throws Exception {
+    var keys = parse(toJwks(toJwk(RSA_KEY, "rsa")));
+
+    assertNull(keys.find("other", "RS256"));
+  }
+
+  @Test
+  public void whenKeyIdMissingAndSingleCandidate_thenFindReturnsKey() throws Exception {
+    var keys = parse(toJwks(toJwk(RSA_KEY, "rsa"), toJwk(EC_KEY, "ec")));
+
+    assertEquals(RSA_KEY.getPublic(), keys.find(null, "RS256"));
+  }
+
+  @Test
+  public void whenKeyIdMissingAndMultipleCandidates_thenFindReturnsNull() throws Exception {
+    var keys = parse(toJwks(toJwk(RSA_KEY, "rsa-1"), toJwk(RSA_KEY, "rsa-2")));
+
+    assertNull(keys.find(null, "RS256"));
+  }
+}
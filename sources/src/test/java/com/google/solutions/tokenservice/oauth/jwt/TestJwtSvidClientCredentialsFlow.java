@@ -0,0 +1,192 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.api.client.json.webtoken.JsonWebToken;
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class TestJwtSvidClientCredentialsFlow {
+  private static final String ISSUER = "https://token.example.com/";
+  private static final String SPIFFE_ID = "spiffe://example.org/workload-1";
+
+  private static AuthenticationRequest createRequest(
+    String clientId,
+    String assertionType,
+    String assertion
+  ) {
+    var parameters = new MultivaluedHashMap<String, String>();
+    if (clientId != null) {
+      parameters.add("client_id", clientId);
+    }
+
+    if (assertionType != null) {
+      parameters.add("client_assertion_type", assertionType);
+    }
+
+    if (assertion != null) {
+      parameters.add("client_assertion", assertion);
+    }
+
+    return new AuthenticationRequest("client_credentials", parameters);
+  }
+
+  private static JwtSvidClientCredentialsFlow createFlow() throws Exception {
+    var bundle = SpiffeBundle.parse(TestSpiffeBundle.toBundle(
+      0,
+      TestSpiffeBundle.toJwtAuthority(TestJsonWebKeySet.RSA_KEY, "rsa")));
+
+    var issuer = Mockito.mock(IdTokenIssuer.class);
+    when(issuer.id()).thenReturn(new URL(ISSUER));
+
+    return new JwtSvidClientCredentialsFlow(
+      new JwtSvidVerifier(
+        () -> bundle,
+        new JwtSvidVerifier.Options("example.org", Duration.ofMinutes(1), 10)),
+      issuer,
+      Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
+      new LogAdapter());
+  }
+
+  private static String createSvid(String audience) throws Exception {
+    var now = Instant.now();
+    return TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      new JsonWebToken.Payload()
+        .setSubject(SPIFFE_ID)
+        .setAudience(audience)
+        .setIssuedAtTimeSeconds(now.getEpochSecond())
+        .setExpirationTimeSeconds(now.plusSeconds(300).getEpochSecond()));
+  }
+
+  // -------------------------------------------------------------------------
+  // authenticationMethod.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void authenticationMethod() throws Exception {
+    assertEquals("spiffe_jwt", createFlow().authenticationMethod());
+  }
+
+  // -------------------------------------------------------------------------
+  // canAuthenticate.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenAssertionMissing_thenCanAuthenticateReturnsFalse() throws Exception {
+    var flow = createFlow();
+
+    assertFalse(flow.canAuthenticate(createRequest(null, null, null)));
+    assertFalse(flow.canAuthenticate(createRequest(null, JwtSvidClientCredentialsFlow.ASSERTION_TYPE, null)));
+    assertFalse(flow.canAuthenticate(createRequest(null, JwtSvidClientCredentialsFlow.ASSERTION_TYPE, "")));
+  }
+
+  @Test
+  public void whenAssertionTypeIsJwtBearer_thenCanAuthenticateReturnsFalse() throws Exception {
+    var flow = createFlow();
+
+    assertFalse(flow.canAuthenticate(createRequest(
+      null,
+      PrivateKeyJwtClientCredentialsFlow.ASSERTION_TYPE,
+      "assertion")));
+  }
+
+  @Test
+  public void whenAssertionPresent_thenCanAuthenticateReturnsTrue() throws Exception {
+    var flow = createFlow();
+
+    assertTrue(flow.canAuthenticate(createRequest(
+      null,
+      JwtSvidClientCredentialsFlow.ASSERTION_TYPE,
+      "assertion")));
+  }
+
+  // -------------------------------------------------------------------------
+  // authenticateClient.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenSvidValid_thenAuthenticateClientReturnsClient() throws Exception {
+    var flow = createFlow();
+
+    var client = flow.authenticateClient(createRequest(
+      null,
+      JwtSvidClientCredentialsFlow.ASSERTION_TYPE,
+      createSvid(ISSUER + "token")));
+
+    assertEquals(SPIFFE_ID, client.clientId());
+    assertEquals(SPIFFE_ID, client.additionalClaims().get("jwt_spiffe"));
+    assertEquals("rsa", client.additionalClaims().get("jwt_kid"));
+  }
+
+  @Test
+  public void whenClientIdMatchesSpiffeId_thenAuthenticateClientReturnsClient() throws Exception {
+    var flow = createFlow();
+
+    var client = flow.authenticateClient(createRequest(
+      SPIFFE_ID,
+      JwtSvidClientCredentialsFlow.ASSERTION_TYPE,
+      createSvid(ISSUER)));
+
+    assertEquals(SPIFFE_ID, client.clientId());
+  }
+
+  @Test
+  public void whenClientIdDoesNotMatchSpiffeId_thenAuthenticateClientThrowsException() throws Exception {
+    var flow = createFlow();
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> flow.authenticateClient(createRequest(
+        "spiffe://example.org/workload-2",
+        JwtSvidClientCredentialsFlow.ASSERTION_TYPE,
+        createSvid(ISSUER))));
+  }
+
+  @Test
+  public void whenAudienceIsOtherServer_thenAuthenticateClientThrowsException() throws Exception {
+    var flow = createFlow();
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> flow.authenticateClient(createRequest(
+        null,
+        JwtSvidClientCredentialsFlow.ASSERTION_TYPE,
+        createSvid("https://other.example.com/token"))));
+  }
+}
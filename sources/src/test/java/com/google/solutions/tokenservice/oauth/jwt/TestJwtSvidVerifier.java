@@ -0,0 +1,289 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.api.client.json.webtoken.JsonWebToken;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.ForbiddenException;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJwtSvidVerifier {
+  private static final String AUDIENCE = "https://token.example.com/token";
+  private static final String SPIFFE_ID = "spiffe://example.org/workload-1";
+  private static final JwtSvidVerifier.Options OPTIONS =
+    new JwtSvidVerifier.Options("example.org", Duration.ofMinutes(1), 10);
+
+  private static SpiffeBundle createBundle() throws IOException {
+    return SpiffeBundle.parse(TestSpiffeBundle.toBundle(
+      0,
+      TestSpiffeBundle.toJwtAuthority(TestJsonWebKeySet.RSA_KEY, "rsa"),
+      TestSpiffeBundle.toJwtAuthority(TestJsonWebKeySet.EC_KEY, "ec")));
+  }
+
+  private static JsonWebToken.Payload createPayload(Instant now) {
+    return new JsonWebToken.Payload()
+      .setSubject(SPIFFE_ID)
+      .setAudience(AUDIENCE)
+      .setIssuedAtTimeSeconds(now.getEpochSecond())
+      .setExpirationTimeSeconds(now.plusSeconds(300).getEpochSecond());
+  }
+
+  // -------------------------------------------------------------------------
+  // verify.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTokenMalformed_thenVerifyThrowsException() throws Exception {
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify("not-a-jwt", List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenKeyUnknown_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "unknown",
+      createPayload(clock.instant()));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenSignatureInvalid_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()));
+    var tampered = token.substring(0, token.length() - 4) + "AAAA";
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(tampered, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenSubjectInDifferentTrustDomain_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()).setSubject("spiffe://example.org.evil/workload-1"));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenSubjectIsTrustDomain_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()).setSubject("spiffe://example.org/"));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenExpiryMissing_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()).setExpirationTimeSeconds(null));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenTokenExpired_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant().minus(Duration.ofMinutes(10))));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenAudienceDoesNotMatch_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of("https://other.example.com/")));
+  }
+
+  @Test
+  public void whenTokenValid_thenVerifyReturnsSvid() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createEcAssertion(
+      TestJsonWebKeySet.EC_KEY,
+      "ec",
+      createPayload(clock.instant()));
+
+    var svid = verifier.verify(token, List.of("https://token.example.com/", AUDIENCE));
+
+    assertEquals(SPIFFE_ID, svid.spiffeId());
+    assertEquals("ec", svid.keyId());
+    assertEquals(List.of(AUDIENCE), svid.audience());
+    assertEquals(clock.instant().plusSeconds(300), svid.expiry());
+  }
+
+  // -------------------------------------------------------------------------
+  // Caching.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTokenVerifiedBefore_thenVerifyReturnsCachedSvid() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()));
+
+    var svid = verifier.verify(token, List.of(AUDIENCE));
+
+    assertSame(svid, verifier.verify(token, List.of(AUDIENCE)));
+    assertEquals(1, verifier.size());
+  }
+
+  @Test
+  public void whenCachedTokenExpired_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(
+      () -> bundle,
+      new JwtSvidVerifier.Options("example.org", Duration.ofDays(1), 10),
+      clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()));
+
+    verifier.verify(token, List.of(AUDIENCE));
+
+    clock.advance(Duration.ofMinutes(10));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of(AUDIENCE)));
+  }
+
+  @Test
+  public void whenCachedTokenUsedForDifferentAudience_thenVerifyThrowsException() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = createBundle();
+    var verifier = new JwtSvidVerifier(() -> bundle, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()));
+
+    verifier.verify(token, List.of(AUDIENCE));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of("https://other.example.com/")));
+  }
+
+  @Test
+  public void whenBundleChanged_thenVerifyChecksTokenAgain() throws Exception {
+    var clock = new TestReplayCache.FakeClock();
+    var bundle = new AtomicReference<>(createBundle());
+    var verifier = new JwtSvidVerifier(bundle::get, OPTIONS, clock);
+
+    var token = TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      createPayload(clock.instant()));
+
+    verifier.verify(token, List.of(AUDIENCE));
+
+    //
+    // Remove the key from the bundle.
+    //
+    bundle.set(SpiffeBundle.parse(TestSpiffeBundle.toBundle(
+      0,
+      TestSpiffeBundle.toJwtAuthority(TestJsonWebKeySet.EC_KEY, "ec"))));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify(token, List.of(AUDIENCE)));
+  }
+}
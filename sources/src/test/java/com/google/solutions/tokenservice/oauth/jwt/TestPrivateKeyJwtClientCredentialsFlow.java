@@ -0,0 +1,160 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.api.client.json.webtoken.JsonWebToken;
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class TestPrivateKeyJwtClientCredentialsFlow {
+  private static final String ISSUER = "https://token.example.com/";
+
+  private static AuthenticationRequest createRequest(String assertionType, String assertion) {
+    var parameters = new MultivaluedHashMap<String, String>();
+    if (assertionType != null) {
+      parameters.add("client_assertion_type", assertionType);
+    }
+
+    if (assertion != null) {
+      parameters.add("client_assertion", assertion);
+    }
+
+    return new AuthenticationRequest("client_credentials", parameters);
+  }
+
+  private static PrivateKeyJwtClientCredentialsFlow createFlow() throws Exception {
+    var registrations = ClientKeyRegistry.parse(new ByteArrayInputStream(String.format(
+      "{\"client-1\": {\"jwks\": %s}}",
+      TestJsonWebKeySet.toJwks(TestJsonWebKeySet.toJwk(TestJsonWebKeySet.RSA_KEY, "rsa")))
+      .getBytes(StandardCharsets.UTF_8)));
+
+    var issuer = Mockito.mock(IdTokenIssuer.class);
+    when(issuer.id()).thenReturn(new URL(ISSUER));
+
+    return new PrivateKeyJwtClientCredentialsFlow(
+      new ClientAssertionVerifier(
+        new ClientKeyRegistry(
+          () -> registrations,
+          new ClientKeyRegistry.Options(Duration.ofMinutes(5), Duration.ofSeconds(30), 10)),
+        new ReplayCache(10, 10),
+        new ClientAssertionVerifier.Options(Duration.ofMinutes(5))),
+      issuer,
+      Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
+      new LogAdapter());
+  }
+
+  private static String createAssertion(String audience) throws Exception {
+    var now = Instant.now();
+    return TestClientAssertionVerifier.createAssertion(
+      TestJsonWebKeySet.RSA_KEY,
+      "rsa",
+      new JsonWebToken.Payload()
+        .setIssuer("client-1")
+        .setSubject("client-1")
+        .setAudience(audience)
+        .setJwtId(audience)
+        .setIssuedAtTimeSeconds(now.getEpochSecond())
+        .setExpirationTimeSeconds(now.plusSeconds(60).getEpochSecond()));
+  }
+
+  // -------------------------------------------------------------------------
+  // authenticationMethod.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void authenticationMethod() throws Exception {
+    assertEquals("private_key_jwt", createFlow().authenticationMethod());
+  }
+
+  // -------------------------------------------------------------------------
+  // canAuthenticate.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenAssertionMissing_thenCanAuthenticateReturnsFalse() throws Exception {
+    var flow = createFlow();
+
+    assertFalse(flow.canAuthenticate(createRequest(null, null)));
+    assertFalse(flow.canAuthenticate(createRequest(PrivateKeyJwtClientCredentialsFlow.ASSERTION_TYPE, null)));
+    assertFalse(flow.canAuthenticate(createRequest(PrivateKeyJwtClientCredentialsFlow.ASSERTION_TYPE, "")));
+  }
+
+  @Test
+  public void whenAssertionTypeUnsupported_thenCanAuthenticateReturnsFalse() throws Exception {
+    var flow = createFlow();
+
+    assertFalse(flow.canAuthenticate(createRequest("urn:example", "assertion")));
+  }
+
+  @Test
+  public void whenAssertionPresent_thenCanAuthenticateReturnsTrue() throws Exception {
+    var flow = createFlow();
+
+    assertTrue(flow.canAuthenticate(createRequest(PrivateKeyJwtClientCredentialsFlow.ASSERTION_TYPE, "assertion")));
+  }
+
+  // -------------------------------------------------------------------------
+  // authenticateClient.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenAudienceIsIssuerOrTokenEndpoint_thenAuthenticateClientReturnsClient() throws Exception {
+    var flow = createFlow();
+
+    for (var audience : new String[] { ISSUER, ISSUER + "token" }) {
+      var client = flow.authenticateClient(createRequest(
+        PrivateKeyJwtClientCredentialsFlow.ASSERTION_TYPE,
+        createAssertion(audience)));
+
+      assertEquals("client-1", client.clientId());
+      assertEquals("rsa", client.additionalClaims().get("jwt_kid"));
+    }
+  }
+
+  @Test
+  public void whenAudienceIsOtherServer_thenAuthenticateClientThrowsException() throws Exception {
+    var flow = createFlow();
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> flow.authenticateClient(createRequest(
+        PrivateKeyJwtClientCredentialsFlow.ASSERTION_TYPE,
+        createAssertion("https://other.example.com/token"))));
+  }
+}
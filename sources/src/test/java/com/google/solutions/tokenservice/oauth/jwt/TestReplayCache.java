@@ -0,0 +1,157 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestReplayCache {
+  static class FakeClock extends Clock {
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      this.now = this.now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return this.now;
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // add.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenIdNew_thenAddReturnsTrue() {
+    var clock = new FakeClock();
+    var cache = new ReplayCache(10, 10, clock);
+
+    assertTrue(cache.add("client-1", "id-1", clock.instant().plusSeconds(60)));
+    assertTrue(cache.add("client-1", "id-2", clock.instant().plusSeconds(60)));
+  }
+
+  @Test
+  public void whenIdUsedBefore_thenAddReturnsFalse() {
+    var clock = new FakeClock();
+    var cache = new ReplayCache(10, 10, clock);
+
+    assertTrue(cache.add("client-1", "id-1", clock.instant().plusSeconds(60)));
+    clock.advance(Duration.ofSeconds(59));
+    assertFalse(cache.add("client-1", "id-1", clock.instant().plusSeconds(60)));
+  }
+
+  @Test
+  public void whenIdUsedByOtherClient_thenAddReturnsTrue() {
+    var clock = new FakeClock();
+    var cache = new ReplayCache(10, 10, clock);
+
+    assertTrue(cache.add("client-1", "id-1", clock.instant().plusSeconds(60)));
+    assertTrue(cache.add("client-2", "id-1", clock.instant().plusSeconds(60)));
+  }
+
+  @Test
+  public void whenIdExpired_thenAddReturnsTrue() {
+    var clock = new FakeClock();
+    var cache = new ReplayCache(10, 10, clock);
+
+    assertTrue(cache.add("client-1", "id-1", clock.instant().plusSeconds(10)));
+    clock.advance(Duration.ofSeconds(10));
+    assertTrue(cache.add("client-1", "id-1", clock.instant().plusSeconds(10)));
+  }
+
+  @Test
+  public void whenPurgeIntervalElapsed_thenAddPurgesExpiredEntries() {
+    var clock = new FakeClock();
+    var cache = new ReplayCache(10, 10, clock);
+
+    cache.add("client-1", "id-1", clock.instant().plusSeconds(1));
+    cache.add("client-2", "id-2", clock.instant().plusSeconds(1));
+    cache.add("client-1", "id-3", clock.instant().plus(ReplayCache.PURGE_INTERVAL).plusSeconds(60));
+    assertEquals(3, cache.size());
+
+    clock.advance(ReplayCache.PURGE_INTERVAL);
+    cache.add("client-1", "id-4", clock.instant().plusSeconds(60));
+
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void whenFull_thenAddDoesNotPurgeBeforePurgeIntervalElapsed() {
+    var clock = new FakeClock();
+    var cache = new ReplayCache(2, 2, clock);
+
+    assertTrue(cache.add("client-1", "id-1", clock.instant().plusSeconds(1)));
+    assertTrue(cache.add("client-1", "id-2", clock.instant().plusSeconds(60)));
+
+    clock.advance(Duration.ofSeconds(1));
+    assertFalse(cache.add("client-1", "id-3", clock.instant().plusSeconds(60)));
+    assertEquals(2, cache.size());
+
+    clock.advance(ReplayCache.PURGE_INTERVAL);
+    assertTrue(cache.add("client-1", "id-3", clock.instant().plusSeconds(60)));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void whenFullOfUnexpiredEntries_thenAddReturnsFalse() {
+    var clock = new FakeClock();
+    var cache = new ReplayCache(2, 2, clock);
+
+    assertTrue(cache.add("client-1", "id-1", clock.instant().plusSeconds(60)));
+    assertTrue(cache.add("client-2", "id-2", clock.instant().plusSeconds(60)));
+    assertFalse(cache.add("client-3", "id-3", clock.instant().plusSeconds(60)));
+
+    assertFalse(cache.add("client-1", "id-1", clock.instant().plusSeconds(60)));
+  }
+
+  @Test
+  public void whenClientQuotaExhausted_thenAddReturnsFalseForClientOnly() {
+    var clock = new FakeClock();
+    var cache = new ReplayCache(10, 2, clock);
+
+    assertTrue(cache.add("client-1", "id-1", clock.instant().plusSeconds(60)));
+    assertTrue(cache.add("client-1", "id-2", clock.instant().plusSeconds(60)));
+    assertFalse(cache.add("client-1", "id-3", clock.instant().plusSeconds(60)));
+
+    assertTrue(cache.add("client-2", "id-1", clock.instant().plusSeconds(60)));
+    assertTrue(cache.add("client-2", "id-2", clock.instant().plusSeconds(60)));
+  }
+}
@@ -0,0 +1,110 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSpiffeBundle {
+  /**
+   * Create a JWK for a JWT authority.
+   */
+  static String toJwtAuthority(KeyPair key, String keyId) {
+    return TestJsonWebKeySet.toJwk(key, keyId).replaceFirst("\\{", "{\"use\":\"jwt-svid\",");
+  }
+
+  /**
+   * Create a bundle document from a set of JWKs.
+   */
+  static byte[] toBundle(int refreshHint, String... jwks) {
+    return String.format(
+      "{\"spiffe_sequence\":1,\"spiffe_refresh_hint\":%d,\"keys\":[%s]}",
+      refreshHint,
+      String.join(",", jwks))
+      .getBytes(StandardCharsets.UTF_8);
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenDocumentMalformed_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> SpiffeBundle.parse("[]".getBytes(StandardCharsets.UTF_8)));
+    assertThrows(
+      IOException.class,
+      () -> SpiffeBundle.parse("{".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void whenBundleContainsNoJwtAuthorities_thenParseThrowsException() {
+    var x509Authority = TestJsonWebKeySet
+      .toJwk(TestJsonWebKeySet.RSA_KEY, "rsa")
+      .replaceFirst("\\{", "{\"use\":\"x509-svid\",");
+
+    assertThrows(
+      IOException.class,
+      () -> SpiffeBundle.parse(toBundle(60, x509Authority)));
+  }
+
+  @Test
+  public void whenBundleContainsMixedAuthorities_thenParseIgnoresX509Authorities() throws Exception {
+    var x509Authority = TestJsonWebKeySet
+      .toJwk(TestJsonWebKeySet.EC_KEY, "x509")
+      .replaceFirst("\\{", "{\"use\":\"x509-svid\",");
+
+    var bundle = SpiffeBundle.parse(toBundle(
+      60,
+      x509Authority,
+      toJwtAuthority(TestJsonWebKeySet.RSA_KEY, "rsa")));
+
+    assertEquals(1, bundle.keys().size());
+    assertNotNull(bundle.keys().find("rsa", "RS256"));
+    assertNull(bundle.keys().find("x509", "ES256"));
+  }
+
+  @Test
+  public void whenBundleContainsRefreshHint_thenParseReturnsHint() throws Exception {
+    var bundle = SpiffeBundle.parse(toBundle(
+      300,
+      toJwtAuthority(TestJsonWebKeySet.RSA_KEY, "rsa")));
+
+    assertEquals(Duration.ofMinutes(5), bundle.refreshHint());
+  }
+
+  @Test
+  public void whenBundleLacksRefreshHint_thenParseReturnsNullHint() throws Exception {
+    var bundle = SpiffeBundle.parse(toBundle(
+      0,
+      toJwtAuthority(TestJsonWebKeySet.RSA_KEY, "rsa")));
+
+    assertNull(bundle.refreshHint());
+  }
+}
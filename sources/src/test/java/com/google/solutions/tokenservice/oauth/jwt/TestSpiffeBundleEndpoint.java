@@ -0,0 +1,154 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.jwt;
+
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSpiffeBundleEndpoint {
+  private static final byte[] BUNDLE_1 = TestSpiffeBundle.toBundle(
+    60,
+    TestSpiffeBundle.toJwtAuthority(TestJsonWebKeySet.RSA_KEY, "key-1"));
+  private static final byte[] BUNDLE_2 = TestSpiffeBundle.toBundle(
+    0,
+    TestSpiffeBundle.toJwtAuthority(TestJsonWebKeySet.RSA_KEY, "key-1"),
+    TestSpiffeBundle.toJwtAuthority(TestJsonWebKeySet.EC_KEY, "key-2"));
+
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void before() {
+    this.executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  public void after() {
+    this.executor.shutdownNow();
+  }
+
+  private SpiffeBundleEndpoint createEndpoint(
+    Callable<byte[]> source,
+    Duration refreshInterval
+  ) throws IOException {
+    return new SpiffeBundleEndpoint(
+      source,
+      refreshInterval,
+      this.executor,
+      new LogAdapter());
+  }
+
+  // -------------------------------------------------------------------------
+  // get.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenSourceFails_thenConstructorThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> createEndpoint(() -> { throw new IOException("mock"); }, Duration.ofMinutes(5)));
+  }
+
+  @Test
+  public void whenSourceReturnsMalformedBundle_thenConstructorThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> createEndpoint(() -> new byte[] { '{' }, Duration.ofMinutes(5)));
+  }
+
+  @Test
+  public void whenSourceSucceeds_thenGetReturnsBundle() throws Exception {
+    var endpoint = createEndpoint(() -> BUNDLE_1, Duration.ofMinutes(5));
+
+    assertEquals(1, endpoint.get().keys().size());
+  }
+
+  // -------------------------------------------------------------------------
+  // refresh.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRefreshSucceeds_thenGetReturnsNewBundle() throws Exception {
+    var source = new AtomicReference<>(BUNDLE_1);
+    var endpoint = createEndpoint(source::get, Duration.ofMinutes(5));
+
+    source.set(BUNDLE_2);
+    endpoint.refresh();
+
+    assertEquals(2, endpoint.get().keys().size());
+  }
+
+  @Test
+  public void whenRefreshFails_thenGetReturnsLastKnownGoodBundle() throws Exception {
+    var fail = new AtomicReference<>(false);
+    var endpoint = createEndpoint(
+      () -> {
+        if (fail.get()) {
+          throw new IOException("mock");
+        }
+        return BUNDLE_1;
+      },
+      Duration.ofMinutes(5));
+
+    var bundle = endpoint.get();
+
+    fail.set(true);
+    endpoint.refresh();
+
+    assertSame(bundle, endpoint.get());
+  }
+
+  // -------------------------------------------------------------------------
+  // refreshDelay.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRefreshHintShorterThanInterval_thenRefreshDelayUsesHint() throws Exception {
+    var endpoint = createEndpoint(() -> BUNDLE_1, Duration.ofMinutes(5));
+
+    assertEquals(Duration.ofSeconds(60), endpoint.refreshDelay());
+  }
+
+  @Test
+  public void whenRefreshHintMissing_thenRefreshDelayUsesInterval() throws Exception {
+    var endpoint = createEndpoint(() -> BUNDLE_2, Duration.ofMinutes(5));
+
+    assertEquals(Duration.ofMinutes(5), endpoint.refreshDelay());
+  }
+
+  @Test
+  public void whenIntervalTooShort_thenRefreshDelayUsesMinimum() throws Exception {
+    var endpoint = createEndpoint(() -> BUNDLE_2, Duration.ofMillis(1));
+
+    assertEquals(SpiffeBundleEndpoint.MIN_REFRESH_INTERVAL, endpoint.refreshDelay());
+  }
+}
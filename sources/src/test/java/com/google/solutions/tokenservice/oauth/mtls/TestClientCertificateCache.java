@@ -0,0 +1,191 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import io.vertx.core.http.HttpConnection;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestClientCertificateCache {
+  /**
+   * Self-signed certificate with serial number 0A2B3C4D5E6F and SANs
+   * URI:spiffe://example.org/client-1, DNS:client-1.example.org,
+   * DNS:client-1.example.com.
+   */
+  static final String CERTIFICATE_1 =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIBxjCCAW2gAwIBAgIGCis8TV5vMAoGCCqGSM49BAMCMBMxETAPBgNVBAMMCGNs\n" +
+    "aWVudC0xMCAXDTI2MTAxOTA5MzU1MFoYDzIxMjYwOTI1MDkzNTUwWjATMREwDwYD\n" +
+    "VQQDDAhjbGllbnQtMTBZMBMGByqGSM49AgEGCCqGSM49AwEHA0IABE/1KIrPHFLz\n" +
+    "SIwnccUKt/SXwANjEqx9SeQqWgR++quf3VAv0degZO12lrbGfYpRssOuogsL8o0o\n" +
+    "2j8lIUXyVTKjgaowgacwHQYDVR0OBBYEFGU26mkng9w3XrXtSG9K9xBBu+bWMB8G\n" +
+    "A1UdIwQYMBaAFGU26mkng9w3XrXtSG9K9xBBu+bWMA8GA1UdEwEB/wQFMAMBAf8w\n" +
+    "VAYDVR0RBE0wS4Ydc3BpZmZlOi8vZXhhbXBsZS5vcmcvY2xpZW50LTGCFGNsaWVu\n" +
+    "dC0xLmV4YW1wbGUub3JnghRjbGllbnQtMS5leGFtcGxlLmNvbTAKBggqhkjOPQQD\n" +
+    "AgNHADBEAiBOdtAqJat6BNBiQZiao61onKYmtQkM7Yx1PxOzDyXS9AIgOD/r5Nnx\n" +
+    "GO5KAdFiyuRB9wm6z7zy33P9iqRbmQzyojs=\n" +
+    "-----END CERTIFICATE-----\n";
+  static final String CERTIFICATE_1_FINGERPRINT = "GWBY1irOIznwvM9BN+0AyueHg+UFtnkuZaxxk813EhA=";
+
+  /**
+   * Self-signed certificate with serial number 2 and no SANs.
+   */
+  static final String CERTIFICATE_2 =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIBajCCARCgAwIBAgIBAjAKBggqhkjOPQQDAjATMREwDwYDVQQDDAhjbGllbnQt\n" +
+    "MjAgFw0yNjEwMTkwOTM1NTBaGA8yMTI2MDkyNTA5MzU1MFowEzERMA8GA1UEAwwI\n" +
+    "Y2xpZW50LTIwWTATBgcqhkjOPQIBBggqhkjOPQMBBwNCAARWau4q/q5xNP8xujGz\n" +
+    "FDb6aKdFPlTJOic7UlbJs1zdBOkPl5lNwaF2f8bSkffkYBHUI3/cB2cSWVGwTF70\n" +
+    "wcqlo1MwUTAdBgNVHQ4EFgQUJ1hyBQdQ2rlCe6k3dh3/mH4Zr2owHwYDVR0jBBgw\n" +
+    "FoAUJ1hyBQdQ2rlCe6k3dh3/mH4Zr2owDwYDVR0TAQH/BAUwAwEB/zAKBggqhkjO\n" +
+    "PQQDAgNIADBFAiEAvjeMuIPOBOMCLHHkufan/xDSrdhrZC5wE6Sw5GoMJZQCIHNI\n" +
+    "Rv3mR3fsf0r/s1OtWiMZbCbY5WzwOw3gYFx67lYN\n" +
+    "-----END CERTIFICATE-----\n";
+
+  static X509Certificate parseCertificate(String pem) throws Exception {
+    return (X509Certificate)CertificateFactory
+      .getInstance("X.509")
+      .generateCertificate(new ByteArrayInputStream(pem.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  static SSLSession createSession(String... pems) throws Exception {
+    var chain = new Certificate[pems.length];
+    for (int i = 0; i < pems.length; i++) {
+      chain[i] = parseCertificate(pems[i]);
+    }
+
+    var session = Mockito.mock(SSLSession.class);
+    when(session.getPeerCertificates()).thenReturn(chain);
+    return session;
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenCertificateHasSans_thenParseReturnsAttributes() throws Exception {
+    var attributes = ClientCertificateCache.parse(List.of(parseCertificate(CERTIFICATE_1)));
+
+    assertEquals("spiffe://example.org/client-1", attributes.spiffeId());
+    assertEquals("spiffe://example.org/client-1", attributes.sanUri());
+    assertEquals("client-1.example.org,client-1.example.com", attributes.sanDns());
+    assertEquals(CERTIFICATE_1_FINGERPRINT, attributes.sha256fingerprint());
+    assertEquals("A2B3C4D5E6F", attributes.serialNumber());
+    assertEquals(
+      OffsetDateTime.of(2026, 10, 19, 9, 35, 50, 0, ZoneOffset.UTC),
+      attributes.notBefore());
+    assertEquals(
+      OffsetDateTime.of(2126, 9, 25, 9, 35, 50, 0, ZoneOffset.UTC),
+      attributes.notAfter());
+  }
+
+  @Test
+  public void whenCertificateHasNoSans_thenParseReturnsAttributes() throws Exception {
+    var attributes = ClientCertificateCache.parse(List.of(parseCertificate(CERTIFICATE_2)));
+
+    assertNull(attributes.spiffeId());
+    assertNull(attributes.sanUri());
+    assertNull(attributes.sanDns());
+    assertEquals("2", attributes.serialNumber());
+  }
+
+  // -------------------------------------------------------------------------
+  // get.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenSessionHasNoPeerCertificate_thenGetThrowsException() throws Exception {
+    var session = Mockito.mock(SSLSession.class);
+    when(session.getPeerCertificates()).thenThrow(new SSLPeerUnverifiedException("mock"));
+
+    var cache = new ClientCertificateCache(10);
+    assertThrows(
+      SSLPeerUnverifiedException.class,
+      () -> cache.get(Mockito.mock(HttpConnection.class), session));
+  }
+
+  @Test
+  public void whenConnectionReused_thenGetReturnsCachedAttributes() throws Exception {
+    var connection = Mockito.mock(HttpConnection.class);
+    var session = createSession(CERTIFICATE_1);
+
+    var cache = new ClientCertificateCache(10);
+    var first = cache.get(connection, session);
+    var second = cache.get(connection, session);
+
+    assertSame(first, second);
+    verify(session, times(1)).getPeerCertificates();
+  }
+
+  @Test
+  public void whenSessionRenegotiated_thenGetReturnsNewAttributes() throws Exception {
+    var connection = Mockito.mock(HttpConnection.class);
+
+    var cache = new ClientCertificateCache(10);
+    var first = cache.get(connection, createSession(CERTIFICATE_1));
+    var second = cache.get(connection, createSession(CERTIFICATE_2));
+
+    assertEquals(CERTIFICATE_1_FINGERPRINT, first.sha256fingerprint());
+    assertNotEquals(first.sha256fingerprint(), second.sha256fingerprint());
+  }
+
+  @Test
+  public void whenCertificateReusedOnNewConnection_thenGetReturnsCachedAttributes() throws Exception {
+    var cache = new ClientCertificateCache(10);
+    var first = cache.get(Mockito.mock(HttpConnection.class), createSession(CERTIFICATE_1));
+    var second = cache.get(Mockito.mock(HttpConnection.class), createSession(CERTIFICATE_1));
+
+    assertSame(first, second);
+  }
+
+  @Test
+  public void whenCertificateReusedWithDifferentChain_thenGetReturnsConnectionChain() throws Exception {
+    var cache = new ClientCertificateCache(10);
+    var first = cache.get(
+      Mockito.mock(HttpConnection.class),
+      createSession(CERTIFICATE_1, CERTIFICATE_2));
+    var second = cache.get(
+      Mockito.mock(HttpConnection.class),
+      createSession(CERTIFICATE_1));
+
+    assertEquals(first.sha256fingerprint(), second.sha256fingerprint());
+    assertEquals(2, first.certificateChain().size());
+    assertEquals(List.of(parseCertificate(CERTIFICATE_1)), second.certificateChain());
+  }
+}
@@ -0,0 +1,170 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.core.http.HttpServerRequest;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class TestDirectMtlsClientCredentialsFlow {
+  private static final DirectMtlsClientCredentialsFlow.Options OPTIONS
+    = new DirectMtlsClientCredentialsFlow.Options(
+      MtlsClientCredentialsFlow.ClientIdAttribute.SPIFFE_ID);
+
+  private static AuthenticationRequest createRequest(String clientId)
+  {
+    var parameters = new MultivaluedHashMap<String, String>();
+    if (clientId != null) {
+      parameters.add("client_id", clientId);
+    }
+
+    return new AuthenticationRequest(
+      "client_credentials",
+      parameters);
+  }
+
+  private static DirectMtlsClientCredentialsFlow createFlow(
+    DirectMtlsClientCredentialsFlow.Options options,
+    HttpServerRequest httpRequest
+  ) {
+    return new DirectMtlsClientCredentialsFlow(
+      options,
+      new ClientCertificateCache(10),
+      Mockito.mock(ClientPolicy.class),
+      Mockito.mock(IdTokenIssuer.class),
+      Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
+      httpRequest,
+      new LogAdapter());
+  }
+
+  private static HttpServerRequest createHttpRequest(SSLSession session) {
+    var httpRequest = Mockito.mock(HttpServerRequest.class);
+    var connection = Mockito.mock(HttpConnection.class);
+    when(httpRequest.sslSession()).thenReturn(session);
+    when(httpRequest.connection()).thenReturn(connection);
+    return httpRequest;
+  }
+
+  // -------------------------------------------------------------------------
+  // canAuthenticate.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRequestNotMadeOverTls_thenCanAuthenticateReturnsFalse()
+  {
+    var flow = createFlow(OPTIONS, createHttpRequest(null));
+
+    assertFalse(flow.canAuthenticate(createRequest("client-1")));
+  }
+
+  @Test
+  public void whenClientCertificateMissing_thenCanAuthenticateReturnsFalse() throws Exception
+  {
+    var session = Mockito.mock(SSLSession.class);
+    when(session.getPeerCertificates()).thenThrow(new SSLPeerUnverifiedException("mock"));
+
+    var flow = createFlow(OPTIONS, createHttpRequest(session));
+
+    assertFalse(flow.canAuthenticate(createRequest("client-1")));
+  }
+
+  @Test
+  public void whenClientCertificatePresent_thenCanAuthenticateReturnsTrue() throws Exception
+  {
+    var session = TestClientCertificateCache.createSession(TestClientCertificateCache.CERTIFICATE_1);
+    var flow = createFlow(OPTIONS, createHttpRequest(session));
+
+    assertTrue(flow.canAuthenticate(createRequest("client-1")));
+  }
+
+  // -------------------------------------------------------------------------
+  // getVerifiedClientAttributes.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenClientCertificateMissing_thenGetVerifiedClientAttributesThrowsException() throws Exception
+  {
+    var session = Mockito.mock(SSLSession.class);
+    when(session.getPeerCertificates()).thenThrow(new SSLPeerUnverifiedException("mock"));
+
+    var flow = createFlow(OPTIONS, createHttpRequest(session));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> flow.getVerifiedClientAttributes(createRequest("client-1")));
+  }
+
+  @Test
+  public void whenClientIdAttributeMissing_thenGetVerifiedClientAttributesThrowsException() throws Exception
+  {
+    var session = TestClientCertificateCache.createSession(TestClientCertificateCache.CERTIFICATE_2);
+    var flow = createFlow(OPTIONS, createHttpRequest(session));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> flow.getVerifiedClientAttributes(createRequest("client-1")));
+  }
+
+  @Test
+  public void whenClientCertificatePresent_thenGetVerifiedClientAttributesReturnsAttributes() throws Exception
+  {
+    var session = TestClientCertificateCache.createSession(TestClientCertificateCache.CERTIFICATE_1);
+    var flow = createFlow(OPTIONS, createHttpRequest(session));
+
+    var attributes = flow.getVerifiedClientAttributes(createRequest("client-1"));
+
+    assertEquals("spiffe://example.org/client-1", attributes.clientId());
+    assertEquals("spiffe://example.org/client-1", attributes.spiffeId());
+    assertEquals(TestClientCertificateCache.CERTIFICATE_1_FINGERPRINT, attributes.sha256fingerprint());
+    assertEquals("A2B3C4D5E6F", attributes.serialNumber());
+  }
+
+  @Test
+  public void whenClientIdAttributeIsFingerprint_thenGetVerifiedClientAttributesReturnsFingerprintAsClientId() throws Exception
+  {
+    var session = TestClientCertificateCache.createSession(TestClientCertificateCache.CERTIFICATE_2);
+    var flow = createFlow(
+      new DirectMtlsClientCredentialsFlow.Options(
+        MtlsClientCredentialsFlow.ClientIdAttribute.SHA256_FINGERPRINT),
+      createHttpRequest(session));
+
+    var attributes = flow.getVerifiedClientAttributes(createRequest("client-1"));
+
+    assertEquals(attributes.sha256fingerprint(), attributes.clientId());
+  }
+}
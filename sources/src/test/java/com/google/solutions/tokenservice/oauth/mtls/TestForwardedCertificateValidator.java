@@ -0,0 +1,168 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestForwardedCertificateValidator {
+  private static final Clock CLOCK = Clock.fixed(
+    Instant.parse("2030-01-01T00:00:00Z"),
+    ZoneOffset.UTC);
+
+  private static String urlEncode(String s) {
+    return URLEncoder.encode(s, StandardCharsets.UTF_8);
+  }
+
+  private static TrustBundle rootBundle() throws Exception {
+    return TrustBundle.of(List.of(TestTrustBundle.parseCertificate(TestTrustBundle.ROOT_CA)));
+  }
+
+  @Test
+  public void whenCertificateAndChainMissing_thenValidateThrowsException() throws Exception {
+    var bundle = rootBundle();
+    var validator = new ForwardedCertificateValidator(() -> bundle, 10, CLOCK);
+
+    assertThrows(
+      CertificateException.class,
+      () -> validator.validate(null, null));
+  }
+
+  @Test
+  public void whenCertificateMalformed_thenValidateThrowsException() throws Exception {
+    var bundle = rootBundle();
+    var validator = new ForwardedCertificateValidator(() -> bundle, 10, CLOCK);
+
+    assertThrows(
+      CertificateException.class,
+      () -> validator.validate(urlEncode("-----BEGIN CERTIFICATE-----\nAAAA\n-----END CERTIFICATE-----\n"), null));
+  }
+
+  @Test
+  public void whenChainValid_thenValidateReturnsAttributes() throws Exception {
+    var bundle = rootBundle();
+    var validator = new ForwardedCertificateValidator(() -> bundle, 10, CLOCK);
+
+    var attributes = validator.validate(
+      urlEncode(TestTrustBundle.CLIENT_CERTIFICATE),
+      urlEncode(TestTrustBundle.CLIENT_CERTIFICATE + TestTrustBundle.INTERMEDIATE_CA));
+
+    assertEquals("spiffe://example.org/client-1", attributes.spiffeId());
+    assertEquals("1001", attributes.serialNumber());
+  }
+
+  @Test
+  public void whenChainDoesNotStartWithCertificate_thenValidateThrowsException() throws Exception {
+    var bundle = rootBundle();
+    var validator = new ForwardedCertificateValidator(() -> bundle, 10, CLOCK);
+
+    assertThrows(
+      CertificateException.class,
+      () -> validator.validate(
+        urlEncode(TestClientCertificateCache.CERTIFICATE_1),
+        urlEncode(TestTrustBundle.CLIENT_CERTIFICATE + TestTrustBundle.INTERMEDIATE_CA)));
+  }
+
+  @Test
+  public void whenChainNotTrusted_thenValidateThrowsException() throws Exception {
+    var bundle = rootBundle();
+    var validator = new ForwardedCertificateValidator(() -> bundle, 10, CLOCK);
+
+    assertThrows(
+      CertificateException.class,
+      () -> validator.validate(urlEncode(TestClientCertificateCache.CERTIFICATE_1), null));
+    assertEquals(0, validator.size());
+  }
+
+  @Test
+  public void whenCertificateValidatedBefore_thenValidateReturnsCachedAttributes() throws Exception {
+    var bundle = rootBundle();
+    var validator = new ForwardedCertificateValidator(() -> bundle, 10, CLOCK);
+
+    var chain = urlEncode(TestTrustBundle.CLIENT_CERTIFICATE + TestTrustBundle.INTERMEDIATE_CA);
+    var first = validator.validate(null, chain);
+    var second = validator.validate(null, chain);
+
+    assertSame(first, second);
+    assertEquals(1, validator.size());
+  }
+
+  @Test
+  public void whenTrustBundleChanged_thenValidateRevalidatesCertificate() throws Exception {
+    var bundle = new AtomicReference<>(rootBundle());
+    var validator = new ForwardedCertificateValidator(bundle::get, 10, CLOCK);
+
+    var chain = urlEncode(TestTrustBundle.CLIENT_CERTIFICATE + TestTrustBundle.INTERMEDIATE_CA);
+    validator.validate(null, chain);
+
+    bundle.set(TrustBundle.of(List.of(
+      TestTrustBundle.parseCertificate(TestClientCertificateCache.CERTIFICATE_1))));
+
+    assertThrows(
+      CertificateException.class,
+      () -> validator.validate(null, chain));
+  }
+
+  @Test
+  public void whenCachedCertificateExpired_thenValidateThrowsException() throws Exception {
+    var bundle = rootBundle();
+    var now = new AtomicReference<>(CLOCK.instant());
+    var clock = new Clock() {
+      @Override
+      public ZoneId getZone() {
+        return ZoneOffset.UTC;
+      }
+
+      @Override
+      public Clock withZone(ZoneId zone) {
+        return this;
+      }
+
+      @Override
+      public Instant instant() {
+        return now.get();
+      }
+    };
+
+    var validator = new ForwardedCertificateValidator(() -> bundle, 10, clock);
+
+    var chain = urlEncode(TestTrustBundle.CLIENT_CERTIFICATE + TestTrustBundle.INTERMEDIATE_CA);
+    validator.validate(null, chain);
+
+    now.set(Instant.parse("2200-01-01T00:00:00Z"));
+
+    assertThrows(
+      CertificateException.class,
+      () -> validator.validate(null, chain));
+  }
+}
@@ -26,6 +26,7 @@ import com.google.solutions.tokenservice.URLHelper;
 import com.google.solutions.tokenservice.oauth.Authentication;
 import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
 import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
 import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
 import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
 import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
@@ -55,6 +56,7 @@ public class TestMtlsClientCredentialsFlow {
         clientPolicy,
         issuer,
         Mockito.mock(WorkloadIdentityPool.class),
+        new InMemoryTokenCache(),
         new LogAdapter());
     }
 
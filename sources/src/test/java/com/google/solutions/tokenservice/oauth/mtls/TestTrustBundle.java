@@ -0,0 +1,206 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTrustBundle {
+  /**
+   * Self-signed root CA.
+   */
+  static final String ROOT_CA =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIBljCCATugAwIBAgIULg5EBlWlMbSdEC4jFAqOFzJRNlUwCgYIKoZIzj0EAwIw\n" +
+    "FzEVMBMGA1UEAwwMVGVzdCBSb290IENBMCAXDTI2MTAxOTA5MzcyNVoYDzIxMjYw\n" +
+    "OTI1MDkzNzI1WjAXMRUwEwYDVQQDDAxUZXN0IFJvb3QgQ0EwWTATBgcqhkjOPQIB\n" +
+    "BggqhkjOPQMBBwNCAAR3zgsvjkGDBs+hw8lcuIZUdxZnc22i8GjzhxkwsgOLG/E0\n" +
+    "Vd3/gVOTUYP6e17g3EV5UbxmXMhO8MYKNXSXTNI/o2MwYTAdBgNVHQ4EFgQUwVjv\n" +
+    "aqh+6QV5NA6hoqnHblN4s74wHwYDVR0jBBgwFoAUwVjvaqh+6QV5NA6hoqnHblN4\n" +
+    "s74wDwYDVR0TAQH/BAUwAwEB/zAOBgNVHQ8BAf8EBAMCAQYwCgYIKoZIzj0EAwID\n" +
+    "SQAwRgIhAL2ymxSNBh1/Uh7avly2fGpfCWJsE58wD+Y2LpGRbSrCAiEAojIjf+5o\n" +
+    "GbdaSm4g05iYKJw+/3S3wSEcT7yu0F5moB4=\n" +
+    "-----END CERTIFICATE-----\n";
+
+  /**
+   * Intermediate CA, issued by the root CA.
+   */
+  static final String INTERMEDIATE_CA =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIBijCCATCgAwIBAgIBCjAKBggqhkjOPQQDAjAXMRUwEwYDVQQDDAxUZXN0IFJv\n" +
+    "b3QgQ0EwIBcNMjYxMDE5MDkzNzI1WhgPMjEyNTA1MTMwOTM3MjVaMB8xHTAbBgNV\n" +
+    "BAMMFFRlc3QgSW50ZXJtZWRpYXRlIENBMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcD\n" +
+    "QgAEy96tkCPqvsWbUgKCt9HlWlavf1pOc2k6JUmT1kctanbe8lXlJqGWLna5IemC\n" +
+    "7pk8ApzWK5mIrdGyco7mvabRn6NjMGEwDwYDVR0TAQH/BAUwAwEB/zAOBgNVHQ8B\n" +
+    "Af8EBAMCAQYwHQYDVR0OBBYEFIyEVQOWC6PbogH4Ai4HVkmmJhMBMB8GA1UdIwQY\n" +
+    "MBaAFMFY72qofukFeTQOoaKpx25TeLO+MAoGCCqGSM49BAMCA0gAMEUCICTAs46p\n" +
+    "Zykr0gIUvly/A+u74GaaNTKeY6TLwJbdwd6tAiEA8ChWb7+yA1nAicKfHIeUdoAn\n" +
+    "6zIJyd0QSIao64wRaXY=\n" +
+    "-----END CERTIFICATE-----\n";
+
+  /**
+   * Client certificate with SAN URI:spiffe://example.org/client-1 and
+   * serial number 1001, issued by the intermediate CA.
+   */
+  static final String CLIENT_CERTIFICATE =
+    "-----BEGIN CERTIFICATE-----\n" +
+    "MIIBxTCCAWugAwIBAgICEAEwCgYIKoZIzj0EAwIwHzEdMBsGA1UEAwwUVGVzdCBJ\n" +
+    "bnRlcm1lZGlhdGUgQ0EwIBcNMjYxMDE5MDkzNzI1WhgPMjEyMjA4MTcwOTM3MjVa\n" +
+    "MBMxETAPBgNVBAMMCGNsaWVudC0xMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE\n" +
+    "sB9dViuhMMnhUzfGMbbKxoJn+MSJoPhrjoHb31QKC1WeVkrOcm4Rarg4EqR7Bizm\n" +
+    "AlAiRrtDvIfJlLinpQprK6OBoDCBnTAMBgNVHRMBAf8EAjAAMA4GA1UdDwEB/wQE\n" +
+    "AwIHgDATBgNVHSUEDDAKBggrBgEFBQcDAjAoBgNVHREEITAfhh1zcGlmZmU6Ly9l\n" +
+    "eGFtcGxlLm9yZy9jbGllbnQtMTAdBgNVHQ4EFgQU26VTRc3b1HgysxCUOJ1A3uzq\n" +
+    "6gIwHwYDVR0jBBgwFoAUjIRVA5YLo9uiAfgCLgdWSaYmEwEwCgYIKoZIzj0EAwID\n" +
+    "SAAwRQIgVxFLEPrW4f6ETmzAhyGis6DfWX6yiHC+0bhVlzgdvAkCIQCweezMI41z\n" +
+    "8NKOjqxLFnIqunsBUEfDGMHx1enuNa9nqg==\n" +
+    "-----END CERTIFICATE-----\n";
+
+  private static final Date NOW = Date.from(
+    OffsetDateTime.of(2030, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toInstant());
+
+  static X509Certificate parseCertificate(String pem) throws Exception {
+    return TestClientCertificateCache.parseCertificate(pem);
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenFileContainsCertificates_thenParseReturnsBundle() throws Exception {
+    var file = Files.createTempFile("bundle", ".pem");
+    try {
+      Files.writeString(file, ROOT_CA + INTERMEDIATE_CA);
+      assertEquals(2, TrustBundle.parse(file).size());
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void whenEmpty_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> TrustBundle.parse(new byte[0]));
+  }
+
+  @Test
+  public void whenMalformed_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> TrustBundle.parse(
+        "-----BEGIN CERTIFICATE-----\nAAAA\n-----END CERTIFICATE-----\n".getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  // -------------------------------------------------------------------------
+  // validate.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenChainAnchoredInRoot_thenValidateSucceeds() throws Exception {
+    var bundle = TrustBundle.parse(ROOT_CA.getBytes(StandardCharsets.US_ASCII));
+
+    bundle.validate(
+      List.of(parseCertificate(CLIENT_CERTIFICATE), parseCertificate(INTERMEDIATE_CA)),
+      NOW);
+  }
+
+  @Test
+  public void whenChainIncludesRoot_thenValidateSucceeds() throws Exception {
+    var bundle = TrustBundle.parse(ROOT_CA.getBytes(StandardCharsets.US_ASCII));
+
+    bundle.validate(
+      List.of(
+        parseCertificate(CLIENT_CERTIFICATE),
+        parseCertificate(INTERMEDIATE_CA),
+        parseCertificate(ROOT_CA)),
+      NOW);
+  }
+
+  @Test
+  public void whenIntermediateTrusted_thenValidateSucceedsWithoutChain() throws Exception {
+    var bundle = TrustBundle.of(List.of(parseCertificate(INTERMEDIATE_CA)));
+
+    bundle.validate(List.of(parseCertificate(CLIENT_CERTIFICATE)), NOW);
+  }
+
+  @Test
+  public void whenChainValid_thenValidateReturnsChainIncludingAnchor() throws Exception {
+    var bundle = TrustBundle.parse(ROOT_CA.getBytes(StandardCharsets.US_ASCII));
+
+    var chain = bundle.validate(
+      List.of(parseCertificate(CLIENT_CERTIFICATE), parseCertificate(INTERMEDIATE_CA)),
+      NOW);
+
+    assertEquals(
+      List.of(
+        parseCertificate(CLIENT_CERTIFICATE),
+        parseCertificate(INTERMEDIATE_CA),
+        parseCertificate(ROOT_CA)),
+      chain);
+  }
+
+  @Test
+  public void whenIntermediateMissing_thenValidateThrowsException() throws Exception {
+    var bundle = TrustBundle.parse(ROOT_CA.getBytes(StandardCharsets.US_ASCII));
+
+    assertThrows(
+      CertificateException.class,
+      () -> bundle.validate(List.of(parseCertificate(CLIENT_CERTIFICATE)), NOW));
+  }
+
+  @Test
+  public void whenChainNotAnchored_thenValidateThrowsException() throws Exception {
+    var bundle = TrustBundle.of(List.of(
+      parseCertificate(TestClientCertificateCache.CERTIFICATE_1)));
+
+    assertThrows(
+      CertificateException.class,
+      () -> bundle.validate(
+        List.of(parseCertificate(CLIENT_CERTIFICATE), parseCertificate(INTERMEDIATE_CA)),
+        NOW));
+  }
+
+  @Test
+  public void whenCertificateExpired_thenValidateThrowsException() throws Exception {
+    var bundle = TrustBundle.parse(ROOT_CA.getBytes(StandardCharsets.US_ASCII));
+
+    assertThrows(
+      CertificateException.class,
+      () -> bundle.validate(
+        List.of(parseCertificate(CLIENT_CERTIFICATE), parseCertificate(INTERMEDIATE_CA)),
+        Date.from(OffsetDateTime.of(2200, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toInstant())));
+  }
+}
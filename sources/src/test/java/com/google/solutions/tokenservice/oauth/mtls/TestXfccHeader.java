@@ -0,0 +1,82 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestXfccHeader {
+  @Test
+  public void whenHeaderContainsSingleElement_thenParseReturnsElement() {
+    var elements = XfccHeader.parse(
+      "By=spiffe://example.org/server;Hash=1234;URI=spiffe://example.org/client-1");
+
+    assertEquals(1, elements.size());
+    assertEquals("spiffe://example.org/server", elements.get(0).get("by"));
+    assertEquals("1234", elements.get(0).get("hash"));
+    assertEquals("spiffe://example.org/client-1", elements.get(0).get("uri"));
+  }
+
+  @Test
+  public void whenHeaderContainsMultipleElements_thenParseReturnsElementsInOrder() {
+    var elements = XfccHeader.parse("Hash=1;By=a,Hash=2;By=b");
+
+    assertEquals(2, elements.size());
+    assertEquals("1", elements.get(0).get("hash"));
+    assertEquals("2", elements.get(1).get("hash"));
+  }
+
+  @Test
+  public void whenValueQuoted_thenParseUnquotesValue() {
+    var elements = XfccHeader.parse(
+      "Subject=\"CN=client-1,OU=\\\"test\\\";O=example\";Hash=1");
+
+    assertEquals(1, elements.size());
+    assertEquals("CN=client-1,OU=\"test\";O=example", elements.get(0).get("subject"));
+    assertEquals("1", elements.get(0).get("hash"));
+  }
+
+  @Test
+  public void whenKeyRepeated_thenParseReturnsFirstValue() {
+    var elements = XfccHeader.parse("DNS=a.example.org;DNS=b.example.org");
+
+    assertEquals("a.example.org", elements.get(0).get("dns"));
+  }
+
+  @Test
+  public void whenQuoteUnterminated_thenParseThrowsException() {
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> XfccHeader.parse("Subject=\"CN=client-1"));
+  }
+
+  @Test
+  public void whenValueLacksKey_thenParseThrowsException() {
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> XfccHeader.parse("Hash=1;junk"));
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> XfccHeader.parse("=1"));
+  }
+}
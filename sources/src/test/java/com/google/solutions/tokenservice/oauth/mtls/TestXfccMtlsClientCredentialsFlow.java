@@ -0,0 +1,159 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.mtls;
+
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.impl.headers.HeadersMultiMap;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class TestXfccMtlsClientCredentialsFlow {
+  private static final XfccMtlsClientCredentialsFlow.Options OPTIONS
+    = new XfccMtlsClientCredentialsFlow.Options(
+      "x-forwarded-client-cert",
+      MtlsClientCredentialsFlow.ClientIdAttribute.SPIFFE_ID);
+
+  private static AuthenticationRequest createRequest(String clientId)
+  {
+    var parameters = new MultivaluedHashMap<String, String>();
+    if (clientId != null) {
+      parameters.add("client_id", clientId);
+    }
+
+    return new AuthenticationRequest(
+      "client_credentials",
+      parameters);
+  }
+
+  private static XfccMtlsClientCredentialsFlow createFlow(String xfccHeader) throws Exception
+  {
+    var headers = new HeadersMultiMap();
+    if (xfccHeader != null) {
+      headers.add(OPTIONS.headerName(), xfccHeader);
+    }
+
+    var httpRequest = Mockito.mock(HttpServerRequest.class);
+    when(httpRequest.headers()).thenReturn(headers);
+
+    var trustBundle = TrustBundle.of(List.of(
+      TestTrustBundle.parseCertificate(TestTrustBundle.ROOT_CA)));
+
+    return new XfccMtlsClientCredentialsFlow(
+      OPTIONS,
+      new ForwardedCertificateValidator(() -> trustBundle, 10),
+      Mockito.mock(ClientPolicy.class),
+      Mockito.mock(IdTokenIssuer.class),
+      Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
+      httpRequest,
+      new LogAdapter());
+  }
+
+  private static String xfccElement(String chain) {
+    return String.format(
+      "By=spiffe://example.org/server;Chain=\"%s\"",
+      URLEncoder.encode(chain, StandardCharsets.UTF_8));
+  }
+
+  // -------------------------------------------------------------------------
+  // canAuthenticate.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenHeaderMissing_thenCanAuthenticateReturnsFalse() throws Exception
+  {
+    var flow = createFlow(null);
+
+    assertFalse(flow.canAuthenticate(createRequest("client-1")));
+  }
+
+  @Test
+  public void whenHeaderPresent_thenCanAuthenticateReturnsTrue() throws Exception
+  {
+    var flow = createFlow(xfccElement(TestTrustBundle.CLIENT_CERTIFICATE));
+
+    assertTrue(flow.canAuthenticate(createRequest("client-1")));
+  }
+
+  // -------------------------------------------------------------------------
+  // getVerifiedClientAttributes.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenHeaderMalformed_thenGetVerifiedClientAttributesThrowsException() throws Exception
+  {
+    var flow = createFlow("Cert=\"unterminated");
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> flow.getVerifiedClientAttributes(createRequest("client-1")));
+  }
+
+  @Test
+  public void whenCertificateNotTrusted_thenGetVerifiedClientAttributesThrowsException() throws Exception
+  {
+    var flow = createFlow(xfccElement(TestClientCertificateCache.CERTIFICATE_1));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> flow.getVerifiedClientAttributes(createRequest("client-1")));
+  }
+
+  @Test
+  public void whenCertificateTrusted_thenGetVerifiedClientAttributesReturnsAttributes() throws Exception
+  {
+    var flow = createFlow(
+      xfccElement(TestTrustBundle.CLIENT_CERTIFICATE + TestTrustBundle.INTERMEDIATE_CA));
+
+    var attributes = flow.getVerifiedClientAttributes(createRequest("client-1"));
+
+    assertEquals("spiffe://example.org/client-1", attributes.clientId());
+    assertEquals("1001", attributes.serialNumber());
+  }
+
+  @Test
+  public void whenHeaderContainsMultipleElements_thenGetVerifiedClientAttributesUsesLastElement() throws Exception
+  {
+    var flow = createFlow(
+      xfccElement(TestClientCertificateCache.CERTIFICATE_1) + "," +
+      xfccElement(TestTrustBundle.CLIENT_CERTIFICATE + TestTrustBundle.INTERMEDIATE_CA));
+
+    var attributes = flow.getVerifiedClientAttributes(createRequest("client-1"));
+
+    assertEquals("spiffe://example.org/client-1", attributes.clientId());
+  }
+}
@@ -23,6 +23,7 @@ package com.google.solutions.tokenservice.oauth.mtls;
 
 import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
 import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
 import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
 import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
 import com.google.solutions.tokenservice.platform.LogAdapter;
@@ -82,6 +83,7 @@ public class TestXlbMtlsClientCredentialsFlow {
       Mockito.mock(ClientPolicy.class),
       Mockito.mock(IdTokenIssuer.class),
       Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
       httpRequest,
       new LogAdapter());
 
@@ -103,6 +105,7 @@ public class TestXlbMtlsClientCredentialsFlow {
       Mockito.mock(ClientPolicy.class),
       Mockito.mock(IdTokenIssuer.class),
       Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
       httpRequest,
       new LogAdapter());
 
@@ -124,6 +127,7 @@ public class TestXlbMtlsClientCredentialsFlow {
       Mockito.mock(ClientPolicy.class),
       Mockito.mock(IdTokenIssuer.class),
       Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
       httpRequest,
       new LogAdapter());
 
@@ -150,6 +154,7 @@ public class TestXlbMtlsClientCredentialsFlow {
       Mockito.mock(ClientPolicy.class),
       Mockito.mock(IdTokenIssuer.class),
       Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
       httpRequest,
       new LogAdapter());
 
@@ -175,6 +180,7 @@ public class TestXlbMtlsClientCredentialsFlow {
       Mockito.mock(ClientPolicy.class),
       Mockito.mock(IdTokenIssuer.class),
       Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
       httpRequest,
       new LogAdapter());
 
@@ -201,6 +207,7 @@ public class TestXlbMtlsClientCredentialsFlow {
       Mockito.mock(ClientPolicy.class),
       Mockito.mock(IdTokenIssuer.class),
       Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
       httpRequest,
       new LogAdapter());
 
@@ -0,0 +1,144 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.secret;
+
+import com.google.solutions.tokenservice.oauth.AuthenticationRequest;
+import com.google.solutions.tokenservice.oauth.IdTokenIssuer;
+import com.google.solutions.tokenservice.oauth.InMemoryTokenCache;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.impl.headers.HeadersMultiMap;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class TestClientSecretBasicClientCredentialsFlow {
+  private static final AuthenticationRequest REQUEST = new AuthenticationRequest(
+    "client_credentials",
+    new MultivaluedHashMap<>());
+
+  private static ClientSecretBasicClientCredentialsFlow createFlow(String authorization) throws Exception {
+    var clients = ClientSecretVerifier.parse(new ByteArrayInputStream(String.format(
+      "{\"client 1\": \"%s\"}",
+      TestClientSecretHash.createHash("s:ecret"))
+      .getBytes(StandardCharsets.UTF_8)));
+
+    var headers = new HeadersMultiMap();
+    if (authorization != null) {
+      headers.add("Authorization", authorization);
+    }
+
+    var httpRequest = Mockito.mock(HttpServerRequest.class);
+    when(httpRequest.headers()).thenReturn(headers);
+
+    return new ClientSecretBasicClientCredentialsFlow(
+      new ClientSecretVerifier(
+        () -> clients,
+        new ClientSecretVerifier.Options(Duration.ofMinutes(1), 10, 3, Duration.ofMinutes(5))),
+      Mockito.mock(IdTokenIssuer.class),
+      Mockito.mock(WorkloadIdentityPool.class),
+      new InMemoryTokenCache(),
+      httpRequest,
+      new LogAdapter());
+  }
+
+  private static String basic(String credentials) {
+    return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // -------------------------------------------------------------------------
+  // authenticationMethod.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void authenticationMethod() throws Exception {
+    assertEquals("client_secret_basic", createFlow(null).authenticationMethod());
+  }
+
+  // -------------------------------------------------------------------------
+  // canAuthenticate.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenAuthorizationHeaderMissing_thenCanAuthenticateReturnsFalse() throws Exception {
+    assertFalse(createFlow(null).canAuthenticate(REQUEST));
+  }
+
+  @Test
+  public void whenAuthorizationHeaderUsesOtherScheme_thenCanAuthenticateReturnsFalse() throws Exception {
+    assertFalse(createFlow("Bearer token").canAuthenticate(REQUEST));
+  }
+
+  @Test
+  public void whenAuthorizationHeaderUsesBasicScheme_thenCanAuthenticateReturnsTrue() throws Exception {
+    assertTrue(createFlow("basic Y2xpZW50OnNlY3JldA==").canAuthenticate(REQUEST));
+  }
+
+  // -------------------------------------------------------------------------
+  // authenticateClient.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenCredentialsMalformed_thenAuthenticateClientThrowsException() throws Exception {
+    assertThrows(
+      ForbiddenException.class,
+      () -> createFlow("Basic !!!").authenticateClient(REQUEST));
+    assertThrows(
+      ForbiddenException.class,
+      () -> createFlow(basic("client-1")).authenticateClient(REQUEST));
+  }
+
+  @Test
+  public void whenSecretInvalid_thenAuthenticateClientThrowsException() throws Exception {
+    assertThrows(
+      ForbiddenException.class,
+      () -> createFlow(basic("client+1:wrong")).authenticateClient(REQUEST));
+  }
+
+  @Test
+  public void whenClientIdParameterDoesNotMatch_thenAuthenticateClientThrowsException() throws Exception {
+    var parameters = new MultivaluedHashMap<String, String>();
+    parameters.add("client_id", "client-2");
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> createFlow(basic("client+1:s%3Aecret")).authenticateClient(
+        new AuthenticationRequest("client_credentials", parameters)));
+  }
+
+  @Test
+  public void whenSecretValid_thenAuthenticateClientReturnsClient() throws Exception {
+    var client = createFlow(basic("client+1:s%3Aecret")).authenticateClient(REQUEST);
+
+    assertEquals("client 1", client.clientId());
+  }
+}
@@ -0,0 +1,116 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.secret;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClientSecretHash {
+  private static final byte[] SALT = "salt-1234567".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * Create a PBKDF2-SHA256 hash in PHC string format.
+   */
+  static String createHash(String secret) throws Exception {
+    var hash = SecretKeyFactory
+      .getInstance("PBKDF2WithHmacSHA256")
+      .generateSecret(new PBEKeySpec(secret.toCharArray(), SALT, 1000, 256))
+      .getEncoded();
+
+    var encoder = Base64.getEncoder().withoutPadding();
+    return String.format(
+      "$pbkdf2-sha256$i=1000$%s$%s",
+      encoder.encodeToString(SALT),
+      encoder.encodeToString(hash));
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenHashNotInPhcFormat_thenParseThrowsException() {
+    assertThrows(IOException.class, () -> ClientSecretHash.parse(""));
+    assertThrows(IOException.class, () -> ClientSecretHash.parse("secret"));
+    assertThrows(IOException.class, () -> ClientSecretHash.parse("$pbkdf2-sha256$1000$c2FsdA$aGFzaA"));
+  }
+
+  @Test
+  public void whenAlgorithmUnsupported_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> ClientSecretHash.parse("$argon2id$i=1000$c2FsdC0xMjM0NTY3$aGFzaC0xMjM0NTY3ODkwMTI"));
+  }
+
+  @Test
+  public void whenIterationsInvalid_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> ClientSecretHash.parse("$pbkdf2-sha256$i=0$c2FsdC0xMjM0NTY3$aGFzaC0xMjM0NTY3ODkwMTI"));
+    assertThrows(
+      IOException.class,
+      () -> ClientSecretHash.parse("$pbkdf2-sha256$i=x$c2FsdC0xMjM0NTY3$aGFzaC0xMjM0NTY3ODkwMTI"));
+  }
+
+  @Test
+  public void whenSaltTooShort_thenParseThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> ClientSecretHash.parse("$pbkdf2-sha256$i=1000$c2FsdA$aGFzaC0xMjM0NTY3ODkwMTI"));
+  }
+
+  @Test
+  public void whenHashValid_thenParseReturnsHash() throws Exception {
+    var hash = ClientSecretHash.parse(createHash("secret"));
+
+    assertEquals("PBKDF2WithHmacSHA256", hash.algorithm());
+    assertEquals(1000, hash.iterations());
+    assertArrayEquals(SALT, hash.salt());
+    assertEquals(32, hash.hash().length);
+  }
+
+  // -------------------------------------------------------------------------
+  // matches.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenSecretMatches_thenMatchesReturnsTrue() throws Exception {
+    var hash = ClientSecretHash.parse(createHash("secret"));
+
+    assertTrue(hash.matches("secret"));
+  }
+
+  @Test
+  public void whenSecretDoesNotMatch_thenMatchesReturnsFalse() throws Exception {
+    var hash = ClientSecretHash.parse(createHash("secret"));
+
+    assertFalse(hash.matches("Secret"));
+    assertFalse(hash.matches(""));
+  }
+}
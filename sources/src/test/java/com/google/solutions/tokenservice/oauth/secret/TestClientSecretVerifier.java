@@ -0,0 +1,239 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.oauth.secret;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.ForbiddenException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClientSecretVerifier {
+  private static final ClientSecretVerifier.Options OPTIONS = new ClientSecretVerifier.Options(
+    Duration.ofMinutes(1),
+    10,
+    3,
+    Duration.ofMinutes(5));
+
+  private static class FakeTicker extends Ticker {
+    private long nanos = 0;
+
+    void advance(Duration duration) {
+      this.nanos += duration.toNanos();
+    }
+
+    @Override
+    public long read() {
+      return this.nanos;
+    }
+  }
+
+  private static Map<String, ClientSecretHash> parse(String document) throws IOException {
+    return ClientSecretVerifier.parse(
+      new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static Map<String, ClientSecretHash> clients(String secret) throws Exception {
+    return parse(String.format("{\"client-1\": \"%s\"}", TestClientSecretHash.createHash(secret)));
+  }
+
+  // -------------------------------------------------------------------------
+  // parse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenDocumentNotAnObject_thenParseThrowsException() {
+    assertThrows(IOException.class, () -> parse("[]"));
+  }
+
+  @Test
+  public void whenEntryNotAString_thenParseThrowsException() {
+    assertThrows(IOException.class, () -> parse("{\"client-1\": {}}"));
+  }
+
+  @Test
+  public void whenEntryMalformed_thenParseThrowsException() {
+    assertThrows(IOException.class, () -> parse("{\"client-1\": \"secret\"}"));
+  }
+
+  @Test
+  public void whenDocumentValid_thenParseReturnsHashes() throws Exception {
+    var clients = clients("secret");
+
+    assertEquals(1, clients.size());
+    assertTrue(clients.get("client-1").matches("secret"));
+  }
+
+  // -------------------------------------------------------------------------
+  // verify.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenClientUnknown_thenVerifyThrowsException() throws Exception {
+    var clients = clients("secret");
+    var verifier = new ClientSecretVerifier(() -> clients, OPTIONS);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify("client-2", "secret"));
+  }
+
+  @Test
+  public void whenSecretInvalid_thenVerifyThrowsException() throws Exception {
+    var clients = clients("secret");
+    var verifier = new ClientSecretVerifier(() -> clients, OPTIONS);
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify("client-1", "wrong"));
+    assertEquals(0, verifier.size());
+  }
+
+  @Test
+  public void whenSecretValid_thenVerifyCachesResult() throws Exception {
+    var clients = clients("secret");
+    var verifier = new ClientSecretVerifier(() -> clients, OPTIONS);
+
+    verifier.verify("client-1", "secret");
+    verifier.verify("client-1", "secret");
+
+    assertEquals(1, verifier.size());
+  }
+
+  @Test
+  public void whenCacheExpired_thenVerifyChecksSecretAgain() throws Exception {
+    var ticker = new FakeTicker();
+    var clients = clients("secret");
+    var verifier = new ClientSecretVerifier(() -> clients, OPTIONS, ticker);
+
+    verifier.verify("client-1", "secret");
+    ticker.advance(OPTIONS.cacheDuration().plusSeconds(1));
+
+    //
+    // Lock out the client. Without a cached result, that
+    // also affects the valid secret.
+    //
+    for (int i = 0; i < OPTIONS.maxFailedAttempts(); i++) {
+      assertThrows(
+        ForbiddenException.class,
+        () -> verifier.verify("client-1", "wrong"));
+    }
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify("client-1", "secret"));
+  }
+
+  @Test
+  public void whenSecretChanged_thenVerifyRejectsCachedSecret() throws Exception {
+    var clients = new AtomicReference<>(clients("secret"));
+    var verifier = new ClientSecretVerifier(clients::get, OPTIONS);
+
+    verifier.verify("client-1", "secret");
+
+    clients.set(clients("new-secret"));
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify("client-1", "secret"));
+    verifier.verify("client-1", "new-secret");
+  }
+
+  // -------------------------------------------------------------------------
+  // Lockout.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTooManyFailedAttempts_thenVerifyRejectsValidSecret() throws Exception {
+    var clients = clients("secret");
+    var verifier = new ClientSecretVerifier(() -> clients, OPTIONS);
+
+    for (int i = 0; i < OPTIONS.maxFailedAttempts(); i++) {
+      assertThrows(
+        ForbiddenException.class,
+        () -> verifier.verify("client-1", "wrong"));
+    }
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify("client-1", "secret"));
+  }
+
+  @Test
+  public void whenLockoutExpired_thenVerifyAcceptsValidSecret() throws Exception {
+    var ticker = new FakeTicker();
+    var clients = clients("secret");
+    var verifier = new ClientSecretVerifier(() -> clients, OPTIONS, ticker);
+
+    for (int i = 0; i < OPTIONS.maxFailedAttempts(); i++) {
+      assertThrows(
+        ForbiddenException.class,
+        () -> verifier.verify("client-1", "wrong"));
+    }
+
+    ticker.advance(OPTIONS.lockoutDuration().plusSeconds(1));
+
+    verifier.verify("client-1", "secret");
+  }
+
+  @Test
+  public void whenSecretVerifiedBeforeLockout_thenVerifyAcceptsCachedSecret() throws Exception {
+    var clients = clients("secret");
+    var verifier = new ClientSecretVerifier(() -> clients, OPTIONS);
+
+    verifier.verify("client-1", "secret");
+
+    for (int i = 0; i < OPTIONS.maxFailedAttempts(); i++) {
+      assertThrows(
+        ForbiddenException.class,
+        () -> verifier.verify("client-1", "wrong"));
+    }
+
+    verifier.verify("client-1", "secret");
+  }
+
+  @Test
+  public void whenSecretValid_thenVerifyResetsFailedAttempts() throws Exception {
+    var clients = clients("secret");
+    var verifier = new ClientSecretVerifier(() -> clients, OPTIONS);
+
+    for (int i = 0; i < OPTIONS.maxFailedAttempts() - 1; i++) {
+      assertThrows(
+        ForbiddenException.class,
+        () -> verifier.verify("client-1", "wrong"));
+    }
+
+    verifier.verify("client-1", "secret");
+
+    assertThrows(
+      ForbiddenException.class,
+      () -> verifier.verify("client-1", "wrong"));
+    verifier.verify("client-1", "secret");
+  }
+}
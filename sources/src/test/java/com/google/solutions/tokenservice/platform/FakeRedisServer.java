@@ -0,0 +1,185 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embedded stand-in for a Redis server that supports the handful of
+ * commands used by RedisClient.
+ */
+public class FakeRedisServer implements AutoCloseable {
+  private final ServerSocket serverSocket;
+  private final String password;
+
+  /**
+   * Stored values, by key.
+   */
+  public final Map<String, byte[]> values = new ConcurrentHashMap<>();
+
+  /**
+   * Time-to-live (in milliseconds) of stored values, by key.
+   */
+  public final Map<String, Long> timesToLive = new ConcurrentHashMap<>();
+
+  /**
+   * Raw replies to GET, by key. Takes precedence over stored values.
+   */
+  public final Map<String, String> rawReplies = new ConcurrentHashMap<>();
+
+  public FakeRedisServer(String password) throws IOException {
+    this.password = password;
+    this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+    var thread = new Thread(this::acceptConnections, "fake-redis");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public InetSocketAddress address() {
+    return new InetSocketAddress(
+      this.serverSocket.getInetAddress(),
+      this.serverSocket.getLocalPort());
+  }
+
+  private void acceptConnections() {
+    while (!this.serverSocket.isClosed()) {
+      try {
+        var socket = this.serverSocket.accept();
+        var thread = new Thread(() -> serve(socket), "fake-redis-connection");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      catch (IOException ignored) {
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (socket) {
+      var input = new BufferedInputStream(socket.getInputStream());
+      var output = new BufferedOutputStream(socket.getOutputStream());
+      var authenticated = this.password == null;
+
+      while (true) {
+        var command = readCommand(input);
+        if (command == null) {
+          return;
+        }
+
+        var name = new String(command[0], StandardCharsets.UTF_8).toUpperCase();
+        if (name.equals("AUTH")) {
+          authenticated = this.password != null &&
+            this.password.equals(new String(command[1], StandardCharsets.UTF_8));
+          writeLine(output, authenticated ? "+OK" : "-WRONGPASS invalid password");
+        }
+        else if (!authenticated) {
+          writeLine(output, "-NOAUTH Authentication required");
+        }
+        else if (name.equals("PING")) {
+          writeLine(output, "+PONG");
+        }
+        else if (name.equals("GET") &&
+          this.rawReplies.containsKey(new String(command[1], StandardCharsets.UTF_8))) {
+          output.write(this.rawReplies
+            .get(new String(command[1], StandardCharsets.UTF_8))
+            .getBytes(StandardCharsets.UTF_8));
+        }
+        else if (name.equals("GET")) {
+          var value = this.values.get(new String(command[1], StandardCharsets.UTF_8));
+          if (value == null) {
+            writeLine(output, "$-1");
+          }
+          else {
+            writeLine(output, "$" + value.length);
+            output.write(value);
+            writeLine(output, "");
+          }
+        }
+        else if (name.equals("SET") && command.length == 5) {
+          var key = new String(command[1], StandardCharsets.UTF_8);
+          this.values.put(key, command[2]);
+          this.timesToLive.put(key, Long.parseLong(new String(command[4], StandardCharsets.UTF_8)));
+          writeLine(output, "+OK");
+        }
+        else {
+          writeLine(output, "-ERR unknown command");
+        }
+
+        output.flush();
+      }
+    }
+    catch (IOException ignored) {
+    }
+  }
+
+  private static String readLine(InputStream input) throws IOException {
+    var line = new ByteArrayOutputStream();
+    int b;
+    while ((b = input.read()) != '\r') {
+      if (b == -1) {
+        return null;
+      }
+      line.write(b);
+    }
+
+    input.read();
+    return line.toString(StandardCharsets.UTF_8);
+  }
+
+  private static byte[][] readCommand(InputStream input) throws IOException {
+    var header = readLine(input);
+    if (header == null) {
+      return null;
+    }
+
+    var arguments = new byte[Integer.parseInt(header.substring(1))][];
+    for (int i = 0; i < arguments.length; i++) {
+      var length = Integer.parseInt(readLine(input).substring(1));
+      arguments[i] = input.readNBytes(length);
+      input.readNBytes(2);
+    }
+
+    return arguments;
+  }
+
+  private static void writeLine(OutputStream output, String line) throws IOException {
+    output.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.serverSocket.close();
+  }
+}
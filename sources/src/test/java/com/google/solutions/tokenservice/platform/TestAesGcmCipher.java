@@ -0,0 +1,103 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAesGcmCipher {
+  private static final byte[] PLAINTEXT = "plaintext".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] AAD = "aad".getBytes(StandardCharsets.UTF_8);
+
+  private static AesGcmCipher createCipher(byte keyByte) {
+    var key = new byte[32];
+    key[0] = keyByte;
+    return new AesGcmCipher(AesGcmCipher.parseKey(Base64.getEncoder().encodeToString(key)));
+  }
+
+  // -------------------------------------------------------------------------
+  // parseKey.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenKeyHasWrongLength_thenParseKeyThrowsException() {
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> AesGcmCipher.parseKey(Base64.getEncoder().encodeToString(new byte[16])));
+  }
+
+  // -------------------------------------------------------------------------
+  // encrypt/decrypt.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenKeyAndAssociatedDataMatch_thenDecryptReturnsPlaintext() throws Exception {
+    var cipher = createCipher((byte)1);
+    var encrypted = cipher.encrypt(PLAINTEXT, AAD);
+
+    assertEquals(
+      AesGcmCipher.IV_LENGTH + PLAINTEXT.length + 16,
+      encrypted.length);
+    assertArrayEquals(PLAINTEXT, cipher.decrypt(encrypted, AAD));
+  }
+
+  @Test
+  public void whenEncryptedTwice_thenCiphertextDiffers() throws Exception {
+    var cipher = createCipher((byte)1);
+
+    assertFalse(Arrays.equals(
+      cipher.encrypt(PLAINTEXT, AAD),
+      cipher.encrypt(PLAINTEXT, AAD)));
+  }
+
+  @Test
+  public void whenAssociatedDataDiffers_thenDecryptThrowsException() throws Exception {
+    var cipher = createCipher((byte)1);
+    var encrypted = cipher.encrypt(PLAINTEXT, AAD);
+
+    assertThrows(
+      GeneralSecurityException.class,
+      () -> cipher.decrypt(encrypted, "other".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void whenKeyDiffers_thenDecryptThrowsException() throws Exception {
+    var encrypted = createCipher((byte)1).encrypt(PLAINTEXT, AAD);
+
+    assertThrows(
+      GeneralSecurityException.class,
+      () -> createCipher((byte)2).decrypt(encrypted, AAD));
+  }
+
+  @Test
+  public void whenDataTruncated_thenDecryptThrowsException() {
+    assertThrows(
+      GeneralSecurityException.class,
+      () -> createCipher((byte)1).decrypt(new byte[4], AAD));
+  }
+}
@@ -38,4 +38,13 @@ public class TestApiException {
 
     assertEquals("message", e.getMessage());
   }
+
+  @Test
+  public void whenResponseIsNotJson_thenFromReturnsException() {
+    var e = ApiException.from(new HttpResponseException.Builder(500, "", new HttpHeaders())
+      .setMessage("message")
+      .build());
+
+    assertEquals("message", e.getMessage());
+  }
 }
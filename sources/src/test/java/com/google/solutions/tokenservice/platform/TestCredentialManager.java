@@ -0,0 +1,246 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCredentialManager {
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void before() {
+    this.executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  public void after() {
+    this.executor.shutdownNow();
+  }
+
+  private static class TestCredentials extends GoogleCredentials {
+    private final Duration tokenLifetime;
+    private final Semaphore refreshes = new Semaphore(0);
+    private int refreshCount = 0;
+    private boolean fail = false;
+
+    public TestCredentials(Duration tokenLifetime) {
+      this.tokenLifetime = tokenLifetime;
+    }
+
+    @Override
+    public synchronized AccessToken refreshAccessToken() throws IOException {
+      this.refreshCount++;
+      this.refreshes.release();
+
+      if (this.fail) {
+        throw new IOException("mock");
+      }
+
+      return new AccessToken(
+        "token-" + this.refreshCount,
+        Date.from(Instant.now().plus(this.tokenLifetime)));
+    }
+  }
+
+  private CredentialManager createManager(GoogleCredentials credentials) {
+    return new CredentialManager(
+      credentials,
+      Duration.ofMinutes(10),
+      this.executor,
+      new LogAdapter(new StringBuilder()));
+  }
+
+  // -------------------------------------------------------------------------
+  // refreshDelay.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRemainingLifetimeExceedsMargin_thenRefreshDelayIsDifference() {
+    assertEquals(
+      Duration.ofMinutes(50),
+      CredentialManager.refreshDelay(Duration.ofMinutes(60), Duration.ofMinutes(10)));
+  }
+
+  @Test
+  public void whenRemainingLifetimeWithinMargin_thenRefreshDelayIsHalfLifetime() {
+    assertEquals(
+      Duration.ofMinutes(7),
+      CredentialManager.refreshDelay(Duration.ofMinutes(14), Duration.ofMinutes(10)));
+  }
+
+  @Test
+  public void whenRemainingLifetimeVeryShort_thenRefreshDelayIsMinBackoff() {
+    assertEquals(
+      CredentialManager.MIN_BACKOFF,
+      CredentialManager.refreshDelay(Duration.ofMillis(10), Duration.ofMinutes(10)));
+  }
+
+  // -------------------------------------------------------------------------
+  // getAccessToken.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenNoToken_thenGetAccessTokenRefreshes() throws Exception {
+    var credentials = new TestCredentials(Duration.ofHours(1));
+    var manager = createManager(credentials);
+
+    assertEquals("token-1", manager.getAccessToken().getTokenValue());
+    assertEquals(1, manager.statistics().refreshes());
+    assertEquals(0, manager.statistics().failures());
+    assertNotNull(manager.statistics().lastRefreshLatency());
+    assertNotNull(manager.statistics().tokenExpiry());
+  }
+
+  @Test
+  public void whenTokenUsable_thenGetAccessTokenReturnsCachedToken() throws Exception {
+    var credentials = new TestCredentials(Duration.ofHours(1));
+    var manager = createManager(credentials);
+
+    manager.getAccessToken();
+    assertEquals("token-1", manager.getAccessToken().getTokenValue());
+    assertEquals(1, credentials.refreshCount);
+  }
+
+  @Test
+  public void whenTokenAboutToExpire_thenGetAccessTokenRefreshes() throws Exception {
+    var credentials = new TestCredentials(CredentialManager.MIN_REMAINING_LIFETIME.dividedBy(2));
+    var manager = createManager(credentials);
+
+    manager.getAccessToken();
+    assertEquals("token-2", manager.getAccessToken().getTokenValue());
+    assertEquals(2, credentials.refreshCount);
+  }
+
+  @Test
+  public void whenRefreshFails_thenGetAccessTokenThrowsException() {
+    var credentials = new TestCredentials(Duration.ofHours(1));
+    credentials.fail = true;
+    var manager = createManager(credentials);
+
+    assertThrows(IOException.class, () -> manager.getAccessToken());
+    assertEquals(0, manager.statistics().refreshes());
+    assertEquals(1, manager.statistics().failures());
+    assertNotNull(manager.statistics().lastError());
+  }
+
+  // -------------------------------------------------------------------------
+  // start.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenStarted_thenTokenIsRefreshedInBackground() throws Exception {
+    var credentials = new TestCredentials(Duration.ofHours(1));
+    var manager = createManager(credentials);
+
+    manager.start();
+    assertTrue(credentials.refreshes.tryAcquire(10, TimeUnit.SECONDS));
+
+    //
+    // Wait for the refresh to complete.
+    //
+    for (int i = 0; i < 100 && manager.statistics().refreshes() == 0; i++) {
+      Thread.sleep(10);
+    }
+
+    assertEquals("token-1", manager.getAccessToken().getTokenValue());
+    assertEquals(1, credentials.refreshCount);
+  }
+
+  @Test
+  public void whenBackgroundRefreshFails_thenRefreshIsRetried() throws Exception {
+    var credentials = new TestCredentials(Duration.ofHours(1));
+    credentials.fail = true;
+    var manager = createManager(credentials);
+
+    manager.start();
+    assertTrue(credentials.refreshes.tryAcquire(10, TimeUnit.SECONDS));
+    assertTrue(credentials.refreshes.tryAcquire(10, TimeUnit.SECONDS));
+  }
+
+  // -------------------------------------------------------------------------
+  // initialize.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void initializeSetsAuthorizationHeader() throws Exception {
+    var credentials = new TestCredentials(Duration.ofHours(1));
+    var manager = createManager(credentials);
+
+    var request = new MockHttpTransport()
+      .createRequestFactory(manager)
+      .buildGetRequest(new GenericUrl("https://example.com/"));
+
+    assertEquals("Bearer token-1", request.getHeaders().getAuthorization());
+  }
+
+  @Test
+  public void whenTokenRejected_thenRequestIsRetriedWithNewToken() throws Exception {
+    var credentials = new TestCredentials(Duration.ofHours(1));
+    var manager = createManager(credentials);
+
+    var authorizationHeaders = new ArrayList<String>();
+    var transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest() {
+          @Override
+          public LowLevelHttpResponse execute() throws IOException {
+            authorizationHeaders.add(getFirstHeaderValue("Authorization"));
+            return new MockLowLevelHttpResponse()
+              .setStatusCode(authorizationHeaders.size() == 1 ? 401 : 200);
+          }
+        };
+      }
+    };
+
+    var response = transport
+      .createRequestFactory(manager)
+      .buildGetRequest(new GenericUrl("https://example.com/"))
+      .execute();
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals(List.of("Bearer token-1", "Bearer token-2"), authorizationHeaders);
+  }
+}
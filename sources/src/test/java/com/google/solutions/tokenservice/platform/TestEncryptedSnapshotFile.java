@@ -0,0 +1,134 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestEncryptedSnapshotFile {
+  private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+  private static final String OTHER_KEY = Base64.getEncoder().encodeToString(new byte[] {
+    1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+    1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 });
+
+  private static Path createTempPath() throws IOException {
+    var directory = Files.createTempDirectory("snapshot");
+    directory.toFile().deleteOnExit();
+    return directory.resolve("snapshot.bin");
+  }
+
+  private static EncryptedSnapshotFile.Record record(Instant expiry, String data) {
+    return new EncryptedSnapshotFile.Record(expiry, data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // -------------------------------------------------------------------------
+  // read.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenFileDoesNotExist_thenReadReturnsEmptyList() throws Exception {
+    var file = new EncryptedSnapshotFile(createTempPath(), new AesGcmCipher(AesGcmCipher.parseKey(KEY)));
+
+    assertEquals(List.of(), file.read(Instant.now()));
+  }
+
+  @Test
+  public void whenFileIsNotSnapshot_thenReadThrowsException() throws Exception {
+    var path = createTempPath();
+    Files.writeString(path, "not a snapshot");
+
+    var file = new EncryptedSnapshotFile(path, new AesGcmCipher(AesGcmCipher.parseKey(KEY)));
+
+    assertThrows(
+      IOException.class,
+      () -> file.read(Instant.now()));
+  }
+
+  @Test
+  public void whenFileTruncated_thenReadThrowsException() throws Exception {
+    var path = createTempPath();
+    var file = new EncryptedSnapshotFile(path, new AesGcmCipher(AesGcmCipher.parseKey(KEY)));
+    file.write(List.of(record(Instant.now().plus(Duration.ofHours(1)), "data")));
+
+    var content = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(content, content.length - 1));
+
+    assertThrows(
+      IOException.class,
+      () -> file.read(Instant.now()));
+  }
+
+  @Test
+  public void whenKeyDiffers_thenReadThrowsException() throws Exception {
+    var path = createTempPath();
+    new EncryptedSnapshotFile(path, new AesGcmCipher(AesGcmCipher.parseKey(KEY)))
+      .write(List.of(record(Instant.now().plus(Duration.ofHours(1)), "data")));
+
+    var file = new EncryptedSnapshotFile(path, new AesGcmCipher(AesGcmCipher.parseKey(OTHER_KEY)));
+
+    assertThrows(
+      IOException.class,
+      () -> file.read(Instant.now()));
+  }
+
+  @Test
+  public void whenRecordsExpired_thenReadSkipsRecords() throws Exception {
+    var now = Instant.now();
+    var file = new EncryptedSnapshotFile(createTempPath(), new AesGcmCipher(AesGcmCipher.parseKey(KEY)));
+    file.write(List.of(
+      record(now.minus(Duration.ofMinutes(1)), "expired"),
+      record(now.plus(Duration.ofMinutes(1)), "valid-1"),
+      record(now, "expired"),
+      record(now.plus(Duration.ofMinutes(2)), "valid-2")));
+
+    var records = file.read(now);
+
+    assertEquals(2, records.size());
+    assertEquals("valid-1", new String(records.get(0).data(), StandardCharsets.UTF_8));
+    assertEquals("valid-2", new String(records.get(1).data(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void whenFileExists_thenWriteReplacesFile() throws Exception {
+    var now = Instant.now();
+    var file = new EncryptedSnapshotFile(createTempPath(), new AesGcmCipher(AesGcmCipher.parseKey(KEY)));
+    file.write(List.of(record(now.plus(Duration.ofMinutes(1)), "first")));
+    file.write(List.of(record(now.plus(Duration.ofMinutes(1)), "second")));
+
+    var records = file.read(now);
+
+    assertEquals(1, records.size());
+    assertEquals("second", new String(records.get(0).data(), StandardCharsets.UTF_8));
+    assertEquals(1, Files.list(file.path().getParent()).count());
+  }
+}
@@ -0,0 +1,128 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFileReloader {
+  private static Path createFile(String content) throws IOException {
+    var directory = Files.createTempDirectory("reloader");
+    directory.toFile().deleteOnExit();
+
+    var path = directory.resolve("file.txt");
+    Files.writeString(path, content);
+    return path;
+  }
+
+  private static void replaceFile(Path path, String content) throws IOException {
+    Files.writeString(path, content);
+
+    //
+    // Make sure the modification time changes, even on file systems
+    // with a coarse timestamp resolution.
+    //
+    Files.setLastModifiedTime(path, FileTime.from(Instant.now().plusSeconds(10)));
+  }
+
+  private static FileReloader<String> createReloader(
+    Path path,
+    FileReloader.Parser<String> parser
+  ) throws IOException {
+    return new FileReloader<>(
+      path,
+      parser,
+      Duration.ofMinutes(1),
+      Executors.newSingleThreadScheduledExecutor(),
+      new LogAdapter());
+  }
+
+  @Test
+  public void whenFileDoesNotExist_thenConstructorThrowsException() {
+    assertThrows(
+      IOException.class,
+      () -> createReloader(Path.of("/does/not/exist"), Files::readString));
+  }
+
+  @Test
+  public void whenFileUnchanged_thenReloadIfModifiedDoesNothing() throws Exception {
+    var loads = new AtomicInteger();
+    var path = createFile("first");
+    var reloader = createReloader(path, p -> {
+      loads.incrementAndGet();
+      return Files.readString(p);
+    });
+
+    assertFalse(reloader.reloadIfModified());
+    assertEquals("first", reloader.get());
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void whenFileChanged_thenReloadIfModifiedReplacesValue() throws Exception {
+    var path = createFile("first");
+    var reloader = createReloader(path, Files::readString);
+
+    replaceFile(path, "second");
+
+    assertTrue(reloader.reloadIfModified());
+    assertEquals("second", reloader.get());
+  }
+
+  @Test
+  public void whenChangedFileInvalid_thenReloadIfModifiedKeepsLastKnownGoodValue() throws Exception {
+    var path = createFile("first");
+    var reloader = createReloader(path, p -> {
+      var content = Files.readString(p);
+      if (content.equals("invalid")) {
+        throw new IOException("Invalid");
+      }
+      return content;
+    });
+
+    replaceFile(path, "invalid");
+
+    assertFalse(reloader.reloadIfModified());
+    assertEquals("first", reloader.get());
+  }
+
+  @Test
+  public void whenFileDeleted_thenReloadIfModifiedKeepsLastKnownGoodValue() throws Exception {
+    var path = createFile("first");
+    var reloader = createReloader(path, Files::readString);
+
+    Files.delete(path);
+
+    assertFalse(reloader.reloadIfModified());
+    assertEquals("first", reloader.get());
+  }
+}
@@ -0,0 +1,164 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJsonApiClient {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private HttpServer server;
+  private volatile int responseStatus;
+  private volatile String responseBody;
+  private volatile String lastRequestBody;
+  private volatile String lastAuthorizationHeader;
+
+  @BeforeEach
+  public void before() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.createContext("/", exchange -> {
+      try (exchange) {
+        this.lastRequestBody = new String(
+          exchange.getRequestBody().readAllBytes(),
+          StandardCharsets.UTF_8);
+        this.lastAuthorizationHeader = exchange.getRequestHeaders().getFirst("Authorization");
+
+        var body = this.responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(this.responseStatus, body.length);
+        exchange.getResponseBody().write(body);
+      }
+    });
+    this.server.start();
+  }
+
+  @AfterEach
+  public void after() {
+    this.server.stop(0);
+  }
+
+  private String url() {
+    return String.format(
+      "http://%s:%d/v1/test",
+      this.server.getAddress().getHostString(),
+      this.server.getAddress().getPort());
+  }
+
+  private String post(JsonApiClient client) throws IOException {
+    return client.post(
+      url(),
+      request -> request.writeStringField("name", "value"),
+      response -> {
+        String value = null;
+        for (var field = JsonApiClient.nextField(response);
+             field != null;
+             field = JsonApiClient.nextField(response)) {
+          if ("value".equals(field)) {
+            value = response.getValueAsString();
+          }
+          else {
+            response.skipChildren();
+          }
+        }
+        return value;
+      });
+  }
+
+  // -------------------------------------------------------------------------
+  // post.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRequestSucceeds_thenPostReturnsResult() throws Exception {
+    this.responseStatus = 200;
+    this.responseBody = "{\"other\": {\"nested\": [1, 2]}, \"value\": \"result\", \"number\": 1}";
+
+    var client = new JsonApiClient(request -> request.getHeaders().setAuthorization("Bearer token"));
+
+    assertEquals("result", post(client));
+    assertEquals("value", MAPPER.readTree(this.lastRequestBody).get("name").asText());
+    assertEquals("Bearer token", this.lastAuthorizationHeader);
+  }
+
+  @Test
+  public void whenResponseIsNotAnObject_thenPostThrowsException() {
+    this.responseStatus = 200;
+    this.responseBody = "[]";
+
+    var client = new JsonApiClient(request -> {});
+
+    assertThrows(IOException.class, () -> post(client));
+  }
+
+  @Test
+  public void whenApiReturnsGoogleError_thenPostThrowsException() {
+    this.responseStatus = 403;
+    this.responseBody = "{\"error\": {\"code\": 403, \"message\": \"Permission denied\", " +
+      "\"status\": \"PERMISSION_DENIED\", \"details\": [{}]}}";
+
+    var client = new JsonApiClient(request -> {});
+
+    var e = assertThrows(JsonApiClient.ErrorResponseException.class, () -> post(client));
+    assertEquals(403, e.getStatusCode());
+    assertEquals("PERMISSION_DENIED", e.getError());
+    assertEquals("Permission denied", e.getErrorDescription());
+    assertEquals("Permission denied", e.getMessage());
+  }
+
+  @Test
+  public void whenApiReturnsOAuthError_thenPostThrowsException() {
+    this.responseStatus = 400;
+    this.responseBody = "{\"error\": \"invalid_grant\", \"error_description\": \"Token expired\"}";
+
+    var client = new JsonApiClient(request -> {});
+
+    var e = assertThrows(JsonApiClient.ErrorResponseException.class, () -> post(client));
+    assertEquals(400, e.getStatusCode());
+    assertEquals("invalid_grant", e.getError());
+    assertEquals("Token expired", e.getErrorDescription());
+  }
+
+  @Test
+  public void whenApiReturnsMalformedError_thenPostThrowsException() {
+    this.responseStatus = 500;
+    this.responseBody = "<html></html>";
+
+    var client = new JsonApiClient(request -> {});
+
+    var e = assertThrows(JsonApiClient.ErrorResponseException.class, () -> post(client));
+    assertEquals(500, e.getStatusCode());
+    assertNull(e.getError());
+    assertNull(e.getErrorDescription());
+    assertNotNull(e.getMessage());
+  }
+}
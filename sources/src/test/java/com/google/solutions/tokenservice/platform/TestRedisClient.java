@@ -0,0 +1,160 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRedisClient {
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+  private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+  // -------------------------------------------------------------------------
+  // get/set.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenKeyDoesNotExist_thenGetReturnsNull() throws Exception {
+    try (var server = new FakeRedisServer(null);
+         var client = new RedisClient(server.address(), null, TIMEOUT)) {
+      assertNull(client.get("key"));
+    }
+  }
+
+  @Test
+  public void whenKeySet_thenGetReturnsValue() throws Exception {
+    try (var server = new FakeRedisServer(null);
+         var client = new RedisClient(server.address(), null, TIMEOUT)) {
+      client.set("key", VALUE, Duration.ofMinutes(1));
+
+      assertArrayEquals(VALUE, client.get("key"));
+      assertEquals(60_000L, server.timesToLive.get("key"));
+    }
+  }
+
+  @Test
+  public void whenValueContainsLineBreaks_thenGetReturnsValue() throws Exception {
+    var value = new byte[] { '\r', '\n', 0, '$', '-', '1', '\r', '\n' };
+
+    try (var server = new FakeRedisServer(null);
+         var client = new RedisClient(server.address(), null, TIMEOUT)) {
+      client.set("key", value, Duration.ofMinutes(1));
+
+      assertArrayEquals(value, client.get("key"));
+    }
+  }
+
+  @Test
+  public void whenTimeToLiveNotPositive_thenSetThrowsException() throws Exception {
+    try (var client = new RedisClient(
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), 1),
+      null,
+      TIMEOUT)) {
+      assertThrows(
+        IllegalArgumentException.class,
+        () -> client.set("key", VALUE, Duration.ZERO));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Authentication.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenPasswordCorrect_thenCommandsSucceed() throws Exception {
+    try (var server = new FakeRedisServer("password");
+         var client = new RedisClient(server.address(), "password", TIMEOUT)) {
+      client.set("key", VALUE, Duration.ofMinutes(1));
+
+      assertArrayEquals(VALUE, client.get("key"));
+    }
+  }
+
+  @Test
+  public void whenPasswordWrong_thenCommandsThrowServerException() throws Exception {
+    try (var server = new FakeRedisServer("password");
+         var client = new RedisClient(server.address(), "wrong", TIMEOUT)) {
+      assertThrows(
+        RedisClient.ServerException.class,
+        () -> client.get("key"));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Connection handling.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenArrayContainsError_thenConnectionRemainsUsable() throws Exception {
+    try (var server = new FakeRedisServer(null);
+         var client = new RedisClient(server.address(), null, TIMEOUT)) {
+      server.rawReplies.put("array", "*3\r\n$1\r\na\r\n-ERR mock\r\n$1\r\nb\r\n");
+      server.values.put("key", VALUE);
+
+      assertThrows(
+        RedisClient.ServerException.class,
+        () -> client.get("array"));
+
+      //
+      // The next command uses the same connection.
+      //
+      assertArrayEquals(VALUE, client.get("key"));
+    }
+  }
+
+  @Test
+  public void whenServerUnreachable_thenGetThrowsException() throws Exception {
+    int port;
+    try (var socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+
+    try (var client = new RedisClient(
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+      null,
+      TIMEOUT)) {
+      assertThrows(
+        IOException.class,
+        () -> client.get("key"));
+    }
+  }
+
+  @Test
+  public void whenClosed_thenGetThrowsException() throws Exception {
+    try (var server = new FakeRedisServer(null)) {
+      var client = new RedisClient(server.address(), null, TIMEOUT);
+      client.close();
+
+      assertThrows(
+        IOException.class,
+        () -> client.get("key"));
+    }
+  }
+}
@@ -0,0 +1,122 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.platform;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStartupTasks {
+  // -------------------------------------------------------------------------
+  // await.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTasksSucceed_thenAwaitReturnsAndResultsAreAvailable() throws Exception {
+    var tasks = new StartupTasks(new LogAdapter());
+    var first = tasks.submit("first", () -> "one");
+    var second = tasks.submit("second", () -> 2);
+
+    tasks.await(Duration.ofSeconds(10));
+
+    assertEquals("one", first.get());
+    assertEquals(2, second.get());
+  }
+
+  @Test
+  public void whenTasksSucceed_thenTasksRunConcurrently() throws Exception {
+    var latch = new CountDownLatch(2);
+
+    var tasks = new StartupTasks(new LogAdapter());
+    tasks.submit("first", () -> {
+      latch.countDown();
+      return latch.await(10, TimeUnit.SECONDS);
+    });
+    var second = tasks.submit("second", () -> {
+      latch.countDown();
+      return latch.await(10, TimeUnit.SECONDS);
+    });
+
+    tasks.await(Duration.ofSeconds(20));
+
+    assertTrue(second.get());
+  }
+
+  @Test
+  public void whenTaskFails_thenAwaitThrowsExceptionThatNamesTask() {
+    var tasks = new StartupTasks(new LogAdapter());
+    tasks.submit("good", () -> null);
+    tasks.submit("bad", () -> {
+      throw new IOException("mock");
+    });
+
+    var exception = assertThrows(
+      StartupTasks.StartupException.class,
+      () -> tasks.await(Duration.ofSeconds(10)));
+
+    assertTrue(exception.getMessage().contains("good: "));
+    assertTrue(exception.getMessage().contains("bad: failed"));
+    assertTrue(exception.getMessage().contains("mock"));
+    assertTrue(exception.getCause() instanceof IOException);
+  }
+
+  @Test
+  public void whenTaskTimesOut_thenAwaitThrowsExceptionThatNamesTask() {
+    var executor = Executors.newCachedThreadPool();
+    var tasks = new StartupTasks(executor, new LogAdapter());
+    tasks.submit("good", () -> null);
+    tasks.submit("slow", () -> {
+      Thread.sleep(60_000);
+      return null;
+    });
+
+    var exception = assertThrows(
+      StartupTasks.StartupException.class,
+      () -> tasks.await(Duration.ofMillis(200)));
+
+    assertTrue(exception.getMessage().contains("slow: timed out"));
+    assertTrue(exception.getCause() instanceof TimeoutException);
+    assertTrue(executor.isShutdown());
+  }
+
+  @Test
+  public void whenTaskFailed_thenGetThrowsException() {
+    var tasks = new StartupTasks(new LogAdapter());
+    var task = tasks.submit("bad", () -> {
+      throw new IOException("mock");
+    });
+
+    assertThrows(
+      StartupTasks.StartupException.class,
+      () -> tasks.await(Duration.ofSeconds(10)));
+    assertThrows(
+      IllegalStateException.class,
+      task::get);
+  }
+}
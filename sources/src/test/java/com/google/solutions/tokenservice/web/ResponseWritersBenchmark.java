@@ -0,0 +1,134 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares serializing token responses using Jackson (as the generic
+ * JAX-RS provider does) and using the pre-built response writers.
+ *
+ * Run using benchmark/responsewriters.sh. Use the JMH option -prof gc
+ * to compare allocations per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1)
+public class ResponseWritersBenchmark {
+  @Param({ "jackson", "writer" })
+  public String serializer;
+
+  /**
+   * Length of token values. ID tokens are typically around a
+   * thousand characters long, access tokens a few hundred.
+   */
+  @Param({ "1024" })
+  public int idTokenLength;
+
+  @Param({ "256" })
+  public int accessTokenLength;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final ResponseWriters.TokenResponseWriter tokenResponseWriter =
+    new ResponseWriters.TokenResponseWriter();
+  private final ResponseWriters.TokenErrorResponseWriter tokenErrorResponseWriter =
+    new ResponseWriters.TokenErrorResponseWriter();
+  private final MultivaluedHashMap<String, Object> headers = new MultivaluedHashMap<>();
+
+  private OAuthResource.TokenResponse tokenResponse;
+  private OAuthResource.TokenErrorResponse tokenErrorResponse;
+
+  /**
+   * Stream that discards all output, in place of the network buffer.
+   */
+  private final OutputStream stream = new OutputStream() {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  };
+
+  @Setup
+  public void setup() {
+    this.tokenResponse = new OAuthResource.TokenResponse(
+      "eyJ" + "x".repeat(this.idTokenLength - 3),
+      "ya29." + "x".repeat(this.accessTokenLength - 5),
+      OAuthResource.TokenResponse.BEARER,
+      3599L,
+      "https://www.googleapis.com/auth/cloud-platform");
+    this.tokenErrorResponse = new OAuthResource.TokenErrorResponse(
+      OAuthResource.TokenErrorResponse.ACCESS_DENIED,
+      "Permission 'iam.serviceAccounts.getAccessToken' denied on resource");
+  }
+
+  private <T> void write(
+    ResponseWriters.JsonWriter<T> writer,
+    T entity
+  ) throws IOException {
+    if ("jackson".equals(this.serializer)) {
+      this.mapper.writeValue(this.stream, entity);
+    }
+    else {
+      writer.writeTo(
+        entity,
+        entity.getClass(),
+        entity.getClass(),
+        null,
+        MediaType.APPLICATION_JSON_TYPE,
+        this.headers,
+        this.stream);
+    }
+  }
+
+  @Benchmark
+  public void tokenResponse() throws IOException {
+    write(this.tokenResponseWriter, this.tokenResponse);
+  }
+
+  @Benchmark
+  public void tokenErrorResponse() throws IOException {
+    write(this.tokenErrorResponseWriter, this.tokenErrorResponse);
+  }
+}
@@ -51,6 +51,13 @@ public class RestDispatcher<TResource> {
       dispatcher.getProviderFactory().registerProvider(mapper);
     }
 
+    //
+    // Register response writers.
+    //
+    for (var writer : ResponseWriters.ALL) {
+      dispatcher.getProviderFactory().registerProvider(writer);
+    }
+
     //
     // Add support for serializing MultivaluedMaps.
     //
@@ -80,6 +87,19 @@ public class RestDispatcher<TResource> {
     return invoke(MockHttpRequest.get(path), responseType);
   }
 
+  public <TResponse> Response<TResponse> get(
+    String path,
+    Map<String, String> headers,
+    Class<TResponse> responseType
+  ) throws URISyntaxException {
+    var mockRequest = MockHttpRequest.get(path);
+    for (var header : headers.entrySet()) {
+      mockRequest.header(header.getKey(), header.getValue());
+    }
+
+    return invoke(mockRequest, responseType);
+  }
+
   public <TResponse> Response<TResponse> post(
     String path,
     Class<TResponse> responseType
@@ -133,6 +153,11 @@ public class RestDispatcher<TResource> {
       return this.mockResponse.getStatus();
     }
 
+    public String getHeader(String name) {
+      var value = this.mockResponse.getOutputHeaders().getFirst(name);
+      return value != null ? value.toString() : null;
+    }
+
     public T getBody() throws IOException {
       //
       // NB. GSON ignores JsonProperty annotations on records. Use
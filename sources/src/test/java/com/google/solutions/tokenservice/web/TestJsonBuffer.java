@@ -0,0 +1,111 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJsonBuffer {
+  private static String toString(JsonBuffer buffer) {
+    return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  // -------------------------------------------------------------------------
+  // appendString.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenStringIsNull_thenAppendStringAppendsNull() {
+    var buffer = new JsonBuffer(1).appendString(null);
+    assertEquals("null", toString(buffer));
+  }
+
+  @Test
+  public void whenStringIsAscii_thenAppendStringAppendsQuotedString() {
+    var buffer = new JsonBuffer(1).appendString("ya29.a-b_c/d");
+    assertEquals("\"ya29.a-b_c/d\"", toString(buffer));
+  }
+
+  @Test
+  public void whenStringContainsSpecialCharacters_thenAppendStringMatchesJackson() throws Exception {
+    var value = "q\"uote\\ \b\t\n\f\r \u0001\u001f \u007f \u00e4 \u20ac \ud83d\ude00";
+    var buffer = new JsonBuffer(1).appendString(value);
+
+    assertArrayEquals(
+      new ObjectMapper().writeValueAsBytes(value),
+      buffer.toByteArray());
+  }
+
+  @Test
+  public void whenStringContainsUnpairedSurrogate_thenAppendStringEscapesSurrogate() {
+    var buffer = new JsonBuffer(1).appendString("a\ud83db");
+    assertEquals("\"a\\uD83Db\"", toString(buffer));
+  }
+
+  // -------------------------------------------------------------------------
+  // appendNumber.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenNumberIsNull_thenAppendNumberAppendsNull() {
+    var buffer = new JsonBuffer(1).appendNumber((Long)null);
+    assertEquals("null", toString(buffer));
+  }
+
+  @Test
+  public void whenNumberIsValid_thenAppendNumberAppendsDigits() {
+    for (var value : new long[] { 0, 9, 10, 3599, -1, -3600, Long.MAX_VALUE, Long.MIN_VALUE }) {
+      var buffer = new JsonBuffer(1).appendNumber(value);
+      assertEquals(Long.toString(value), toString(buffer));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // acquire.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenAcquiredTwice_thenAcquireReturnsEmptyBuffer() {
+    var buffer = JsonBuffer.acquire().appendString("value");
+    assertTrue(buffer.length() > 0);
+
+    assertSame(buffer, JsonBuffer.acquire());
+    assertEquals(0, buffer.length());
+  }
+
+  @Test
+  public void whenBufferGrows_thenWriteToWritesAllBytes() throws Exception {
+    var value = "x".repeat(100_000);
+    var buffer = JsonBuffer.acquire().appendString(value);
+
+    var stream = new ByteArrayOutputStream();
+    buffer.writeTo(stream);
+
+    assertEquals("\"" + value + "\"", stream.toString(StandardCharsets.UTF_8));
+    assertEquals(0, JsonBuffer.acquire().length());
+  }
+}
@@ -0,0 +1,229 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJwksMirror {
+  private static final String KEY_SET_1 = "{\"keys\":[{\"kid\":\"key-1\"}]}";
+  private static final String KEY_SET_2 = "{\"keys\":[{\"kid\":\"key-1\"},{\"kid\":\"key-2\"}]}";
+
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void before() {
+    this.executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  public void after() {
+    this.executor.shutdownNow();
+  }
+
+  private JwksMirror createMirror(Callable<byte[]> source) {
+    return new JwksMirror(
+      source,
+      Duration.ofMinutes(5),
+      this.executor,
+      new LogAdapter());
+  }
+
+  private static String createJwt(String keyId) {
+    var header = String.format("{\"alg\":\"RS256\",\"kid\":\"%s\"}", keyId);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(
+      header.getBytes(StandardCharsets.UTF_8)) + ".e30.c2ln";
+  }
+
+  // -------------------------------------------------------------------------
+  // get.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenSourceFails_thenGetThrowsException() {
+    var mirror = createMirror(() -> {
+      throw new IOException("mock");
+    });
+
+    assertThrows(IOException.class, () -> mirror.get());
+  }
+
+  @Test
+  public void whenKeySetMalformed_thenGetThrowsException() {
+    var mirror = createMirror(() -> "{}".getBytes(StandardCharsets.UTF_8));
+
+    assertThrows(IOException.class, () -> mirror.get());
+  }
+
+  @Test
+  public void whenSourceSucceeds_thenGetReturnsKeySet() throws Exception {
+    var mirror = createMirror(() -> KEY_SET_1.getBytes(StandardCharsets.UTF_8));
+
+    var document = mirror.get();
+    assertEquals(KEY_SET_1, new String(document.body(), StandardCharsets.UTF_8));
+    assertNotNull(document.tag());
+  }
+
+  // -------------------------------------------------------------------------
+  // refresh.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRefreshFails_thenGetReturnsLastKnownGoodCopy() throws Exception {
+    var fail = new boolean[] { false };
+    var mirror = createMirror(() -> {
+      if (fail[0]) {
+        throw new IOException("mock");
+      }
+      return KEY_SET_1.getBytes(StandardCharsets.UTF_8);
+    });
+
+    var document = mirror.get();
+
+    fail[0] = true;
+    mirror.refresh();
+
+    assertSame(document, mirror.get());
+  }
+
+  @Test
+  public void whenRefreshReturnsMalformedKeySet_thenGetReturnsLastKnownGoodCopy() throws Exception {
+    var body = new String[] { KEY_SET_1 };
+    var mirror = createMirror(() -> body[0].getBytes(StandardCharsets.UTF_8));
+
+    var document = mirror.get();
+
+    body[0] = "{\"keys\":{}}";
+    mirror.refresh();
+
+    assertSame(document, mirror.get());
+  }
+
+  @Test
+  public void whenRefreshSucceeds_thenGetReturnsNewCopy() throws Exception {
+    var body = new String[] { KEY_SET_1 };
+    var mirror = createMirror(() -> body[0].getBytes(StandardCharsets.UTF_8));
+
+    var document = mirror.get();
+
+    body[0] = KEY_SET_2;
+    mirror.refresh();
+
+    assertNotEquals(document.tag(), mirror.get().tag());
+  }
+
+  // -------------------------------------------------------------------------
+  // onTokenIssued.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTokenUsesUnknownKey_thenOnTokenIssuedTriggersRefresh() throws Exception {
+    var fetches = new Semaphore(0);
+    var body = new String[] { KEY_SET_1 };
+    var mirror = createMirror(() -> {
+      fetches.release();
+      return body[0].getBytes(StandardCharsets.UTF_8);
+    });
+
+    mirror.get();
+    assertTrue(fetches.tryAcquire());
+
+    body[0] = KEY_SET_2;
+    mirror.onTokenIssued(createJwt("key-2"));
+
+    assertTrue(fetches.tryAcquire(10, TimeUnit.SECONDS));
+    assertEquals(KEY_SET_2, new String(mirror.get().body(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void whenRefreshBackingOff_thenOnTokenIssuedDoesNotTriggerRefresh() throws Exception {
+    var fetches = new Semaphore(0);
+    var fail = new boolean[] { false };
+    var mirror = createMirror(() -> {
+      fetches.release();
+      if (fail[0]) {
+        throw new IOException("mock");
+      }
+      return KEY_SET_1.getBytes(StandardCharsets.UTF_8);
+    });
+
+    mirror.get();
+    assertTrue(fetches.tryAcquire());
+
+    //
+    // Fail twice so that the next retry is 2 * MIN_BACKOFF away.
+    //
+    fail[0] = true;
+    mirror.refresh();
+    mirror.refresh();
+    assertTrue(fetches.tryAcquire(2));
+
+    Thread.sleep(JwksMirror.MIN_BACKOFF.toMillis() + 500);
+    mirror.onTokenIssued(createJwt("key-2"));
+
+    assertFalse(fetches.tryAcquire(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void whenTokenUsesKnownKey_thenOnTokenIssuedDoesNotTriggerRefresh() throws Exception {
+    var fetches = new Semaphore(0);
+    var mirror = createMirror(() -> {
+      fetches.release();
+      return KEY_SET_1.getBytes(StandardCharsets.UTF_8);
+    });
+
+    mirror.get();
+    assertTrue(fetches.tryAcquire());
+
+    mirror.onTokenIssued(createJwt("key-1"));
+    mirror.onTokenIssued(createJwt("key-1"));
+
+    assertFalse(fetches.tryAcquire(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void whenKeySetNotFetchedYet_thenOnTokenIssuedDoesNothing() throws Exception {
+    var fetches = new Semaphore(0);
+    var mirror = createMirror(() -> {
+      fetches.release();
+      return KEY_SET_1.getBytes(StandardCharsets.UTF_8);
+    });
+
+    mirror.onTokenIssued(createJwt("key-2"));
+
+    assertFalse(fetches.tryAcquire(1, TimeUnit.SECONDS));
+  }
+}
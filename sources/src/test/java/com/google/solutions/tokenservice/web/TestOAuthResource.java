@@ -22,6 +22,7 @@
 package com.google.solutions.tokenservice.web;
 
 import com.google.solutions.tokenservice.URLHelper;
+import com.google.solutions.tokenservice.UserId;
 import com.google.solutions.tokenservice.oauth.*;
 import com.google.solutions.tokenservice.oauth.client.AuthenticatedClient;
 import com.google.solutions.tokenservice.platform.IntegrationTestEnvironment;
@@ -31,13 +32,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import javax.enterprise.inject.Instance;
+import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.Response;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -58,7 +62,14 @@ public class TestOAuthResource {
       new IdTokenIssuer.Options(ISSUER_ID, null, Duration.ofMinutes(5)),
       IntegrationTestEnvironment.SERVICE_ACCOUNT);
 
+    this.resource.metadataCache = new MetadataCache();
+    this.resource.configuration = new RuntimeConfiguration(Map.of());
     this.resource.flows = Mockito.mock(Instance.class);
+    this.resource.jwksMirror = new JwksMirror(
+      () -> "{\"keys\":[]}".getBytes(StandardCharsets.UTF_8),
+      Duration.ofMinutes(5),
+      Executors.newSingleThreadScheduledExecutor(),
+      new LogAdapter());
   }
 
   private void setFlow(AuthenticationFlow flow) {
@@ -122,6 +133,74 @@ public class TestOAuthResource {
     assertEquals(ISSUER_ID, response.getBody().issuerEndpoint());
     assertEquals(new URL(ISSUER_ID, "/token"), response.getBody().tokenEndpoint());
     assertEquals(new URL(ISSUER_ID, "/token"), response.getBody().authorizationEndpoint());
+    assertEquals(new URL(ISSUER_ID, "/jwks"), response.getBody().jwksEndpoint());
+  }
+
+  @Test
+  public void getMetadataReturnsEntityTagAndCacheControl() throws Exception {
+    var response = new RestDispatcher<>(this.resource)
+      .get("/.well-known/openid-configuration", OAuthResource.ProviderMetadata.class);
+
+    assertEquals(200, response.getStatus());
+    assertNotNull(response.getHeader("ETag"));
+    assertTrue(response.getHeader("Cache-Control").contains("max-age=3600"));
+  }
+
+  @Test
+  public void whenEntityTagMatches_thenGetMetadataReturnsNotModified() throws Exception {
+    var dispatcher = new RestDispatcher<>(this.resource);
+    var etag = dispatcher
+      .get("/.well-known/openid-configuration", OAuthResource.ProviderMetadata.class)
+      .getHeader("ETag");
+
+    var response = dispatcher.get(
+      "/.well-known/openid-configuration",
+      Map.of("If-None-Match", etag),
+      OAuthResource.ProviderMetadata.class);
+
+    assertEquals(304, response.getStatus());
+    assertEquals(etag, response.getHeader("ETag"));
+  }
+
+  @Test
+  public void whenEntityTagDiffers_thenGetMetadataReturnsDocument() throws Exception {
+    var response = new RestDispatcher<>(this.resource).get(
+      "/.well-known/openid-configuration",
+      Map.of("If-None-Match", "\"other\""),
+      OAuthResource.ProviderMetadata.class);
+
+    assertEquals(200, response.getStatus());
+    assertEquals(ISSUER_ID, response.getBody().issuerEndpoint());
+  }
+
+  // -------------------------------------------------------------------------
+  // Root.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void getRootRedirectsToMetadata() throws Exception {
+    var response = new RestDispatcher<>(this.resource)
+      .get("/", OAuthResource.ProviderMetadata.class);
+
+    assertEquals(307, response.getStatus());
+    assertEquals(
+      "http://example.com/.well-known/openid-configuration",
+      response.getHeader("Location"));
+  }
+
+  // -------------------------------------------------------------------------
+  // JWKS.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void getJwksReturnsMirroredKeySet() throws Exception {
+    var response = new RestDispatcher<>(this.resource)
+      .get("/jwks", Map.class);
+
+    assertEquals(200, response.getStatus());
+    assertEquals(List.of(), response.getBody().get("keys"));
+    assertNotNull(response.getHeader("ETag"));
+    assertTrue(response.getHeader("Cache-Control").contains("max-age=300"));
   }
 
   // -------------------------------------------------------------------------
@@ -455,4 +534,139 @@ public class TestOAuthResource {
     assertEquals("id-token", response.getBody().idToken());
     assertEquals(60, response.getBody().expirationTime());
   }
-}
\ No newline at end of file
+
+  // -------------------------------------------------------------------------
+  // token/batch.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenScopeMissing_thenParseBatchTokenRequestsThrowsException() {
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> OAuthResource.parseBatchTokenRequests(new MultivaluedHashMap<>()));
+  }
+
+  @Test
+  public void whenServiceAccountsDontMatchScopes_thenParseBatchTokenRequestsThrowsException() {
+    var parameters = new MultivaluedHashMap<String, String>();
+    parameters.add("scope", "scope-1");
+    parameters.add("scope", "scope-2");
+    parameters.add("service_account", "sa@project.iam.gserviceaccount.com");
+
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> OAuthResource.parseBatchTokenRequests(parameters));
+  }
+
+  @Test
+  public void whenBatchTooLarge_thenParseBatchTokenRequestsThrowsException() {
+    var parameters = new MultivaluedHashMap<String, String>();
+    for (int i = 0; i <= OAuthResource.MAX_BATCH_SIZE; i++) {
+      parameters.add("scope", "scope-" + i);
+    }
+
+    assertThrows(
+      IllegalArgumentException.class,
+      () -> OAuthResource.parseBatchTokenRequests(parameters));
+  }
+
+  @Test
+  public void whenServiceAccountEmpty_thenParseBatchTokenRequestsReturnsStsRequest() {
+    var parameters = new MultivaluedHashMap<String, String>();
+    parameters.add("scope", "scope-1");
+    parameters.add("service_account", "sa@project.iam.gserviceaccount.com");
+    parameters.add("scope", "scope-2");
+    parameters.add("service_account", "");
+
+    var requests = OAuthResource.parseBatchTokenRequests(parameters);
+
+    assertEquals(2, requests.size());
+    assertEquals("scope-1", requests.get(0).scope());
+    assertEquals(new UserId("sa@project.iam.gserviceaccount.com"), requests.get(0).serviceAccount());
+    assertEquals("scope-2", requests.get(1).scope());
+    assertNull(requests.get(1).serviceAccount());
+  }
+
+  @Test
+  public void whenFlowDoesNotSupportBatch_thenTokenBatchReturnsError() throws Exception {
+    var flow = new TestFlow()
+    {
+      @Override
+      public Authentication authenticate(AuthenticationRequest request) {
+        throw new IllegalStateException();
+      }
+    };
+
+    setFlow(flow);
+
+    var response = new RestDispatcher<>(this.resource)
+      .postForm(
+        "/token/batch",
+        Map.of(
+          "grant_type", flow.grantType(),
+          "scope", "scope-1"),
+        OAuthResource.TokenErrorResponse.class);
+
+    assertEquals(400, response.getStatus());
+    assertEquals(OAuthResource.TokenErrorResponse.INVALID_REQUEST, response.getBody().error());
+  }
+
+  @Test
+  public void whenFlowSucceeds_thenTokenBatchReturnsResultPerItem() throws Exception {
+    var iat = Instant.now();
+    var exp = iat.plus(Duration.ofMinutes(1));
+    var flow = new TestFlow()
+    {
+      @Override
+      public Authentication authenticate(AuthenticationRequest request) {
+        throw new IllegalStateException();
+      }
+
+      @Override
+      public BatchAuthentication authenticate(
+        AuthenticationRequest request,
+        List<BatchAuthentication.TokenRequest> tokenRequests
+      ) {
+        return new BatchAuthentication(
+          new AuthenticatedClient("client", iat, Map.of()),
+          new IdToken("id-token", iat, exp),
+          List.of(
+            new BatchAuthentication.Result(
+              tokenRequests.get(0),
+              new StsAccessToken("access-token", "scope-1", iat, exp),
+              null),
+            new BatchAuthentication.Result(
+              new BatchAuthentication.TokenRequest("scope-2", null),
+              null,
+              new IllegalArgumentException("mock"))));
+      }
+    };
+
+    setFlow(flow);
+
+    var response = new RestDispatcher<>(this.resource)
+      .postForm(
+        "/token/batch",
+        Map.of(
+          "grant_type", flow.grantType(),
+          "scope", "scope-1"),
+        OAuthResource.BatchTokenResponse.class);
+
+    assertEquals(200, response.getStatus());
+    assertEquals("id-token", response.getBody().idToken());
+    assertEquals(2, response.getBody().results().size());
+
+    var success = response.getBody().results().get(0);
+    assertEquals("scope-1", success.scope());
+    assertEquals("access-token", success.accessToken());
+    assertEquals(OAuthResource.TokenResponse.BEARER, success.tokenType());
+    assertEquals(60, success.expiresInSeconds());
+    assertNull(success.error());
+
+    var failure = response.getBody().results().get(1);
+    assertEquals("scope-2", failure.scope());
+    assertNull(failure.accessToken());
+    assertEquals(OAuthResource.TokenErrorResponse.INVALID_REQUEST, failure.error());
+    assertEquals("mock", failure.description());
+  }
+}
@@ -0,0 +1,264 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.solutions.tokenservice.platform.HttpTransport;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.common.annotation.NonBlocking;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs requests through the RESTEasy Reactive server, as opposed
+ * to the mock dispatcher used by TestOAuthResource.
+ */
+@QuarkusTest
+@QuarkusTestResource(TestReactiveServer.TrainingMode.class)
+public class TestReactiveServer {
+  @TestHTTPResource
+  URL url;
+
+  @Inject
+  RuntimeEnvironment environment;
+
+  private final HttpClient client = HttpClient
+    .newBuilder()
+    .followRedirects(HttpClient.Redirect.NEVER)
+    .build();
+
+  /**
+   * Start the application in training mode so that it doesn't
+   * need credentials or network access.
+   */
+  public static class TrainingMode implements QuarkusTestResourceLifecycleManager {
+    private static final String TRAINING_MODE = "tokenservice.training";
+
+    @Override
+    public Map<String, String> start() {
+      System.setProperty(TRAINING_MODE, "true");
+      return Map.of();
+    }
+
+    @Override
+    public void stop() {
+      System.clearProperty(TRAINING_MODE);
+    }
+  }
+
+  /**
+   * Resource that exposes the effects of filters and mappers.
+   */
+  @Path("/test")
+  public static class TestResource {
+    @Inject
+    LogAdapter log;
+
+    @GET
+    @Path("log")
+    @Produces(MediaType.APPLICATION_JSON)
+    @NonBlocking
+    public String getLogEntry() throws IOException {
+      return new ObjectMapper().writeValueAsString(this.log.newInfoEntry("test", "test"));
+    }
+
+    @GET
+    @Path("fail")
+    @Produces(MediaType.APPLICATION_JSON)
+    public String fail() {
+      throw new IllegalStateException("mock");
+    }
+  }
+
+  @AfterAll
+  public static void resetTransport() {
+    HttpTransport.overrideSharedTransport(null);
+  }
+
+  private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+    return this.client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private HttpRequest.Builder get(String path) {
+    return HttpRequest.newBuilder(URI.create(this.url.toString()).resolve(path)).GET();
+  }
+
+  // -------------------------------------------------------------------------
+  // Startup.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenStarted_thenEnvironmentStartsOneCredentialManager() {
+    assertTrue(this.environment.getCredentialStatistics().isPresent());
+    assertEquals(
+      1,
+      Thread.getAllStackTraces()
+        .keySet()
+        .stream()
+        .filter(t -> t.getName().equals("credential-manager"))
+        .count());
+  }
+
+  // -------------------------------------------------------------------------
+  // Root and metadata.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenGetRoot_thenRedirectsToMetadata() throws Exception {
+    var response = send(get("/"));
+
+    assertEquals(307, response.statusCode());
+    assertTrue(response
+      .headers()
+      .firstValue("Location")
+      .orElseThrow()
+      .endsWith("/.well-known/openid-configuration"));
+  }
+
+  @Test
+  public void whenGetMetadata_thenReturnsDocument() throws Exception {
+    var response = send(get("/.well-known/openid-configuration"));
+
+    assertEquals(200, response.statusCode(), response.body());
+    assertTrue(response.headers().firstValue("ETag").isPresent());
+
+    var metadata = new ObjectMapper().readValue(
+      response.body(),
+      OAuthResource.ProviderMetadata.class);
+    assertTrue(metadata.tokenEndpoint().toString().endsWith("/token"));
+  }
+
+  @Test
+  public void whenEntityTagMatches_thenGetMetadataReturnsNotModified() throws Exception {
+    var etag = send(get("/.well-known/openid-configuration"))
+      .headers()
+      .firstValue("ETag")
+      .orElseThrow();
+
+    var response = send(get("/.well-known/openid-configuration")
+      .header("If-None-Match", etag));
+
+    assertEquals(304, response.statusCode());
+  }
+
+  // -------------------------------------------------------------------------
+  // Token.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenClientCertificatePresent_thenPostTokenIssuesTokens() throws Exception {
+    var response = send(HttpRequest
+      .newBuilder(URI.create(this.url.toString()).resolve("/token"))
+      .header("Content-Type", "application/x-www-form-urlencoded")
+      .header("X-Client-Cert-Present", "true")
+      .header("X-Client-Cert-Chain-Verified", "true")
+      .header("X-Client-Cert-Spiffe", "spiffe://test/client-1")
+      .header("X-Client-Cert-Hash", "dGVzdA==")
+      .header("X-Client-Cert-Serial-Number", "01")
+      .POST(HttpRequest.BodyPublishers.ofString(
+        "grant_type=client_credentials&scope=https://www.googleapis.com/auth/cloud-platform")));
+
+    assertEquals(200, response.statusCode(), response.body());
+
+    var tokens = new ObjectMapper().readValue(response.body(), Map.class);
+    assertNotNull(tokens.get("id_token"));
+    assertEquals("training", tokens.get("access_token"));
+  }
+
+  // -------------------------------------------------------------------------
+  // Trace filter.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRequestHasTraceContext_thenLogEntriesContainTraceId() throws Exception {
+    var response = send(get("/test/log")
+      .header("X-Cloud-Trace-Context", "trace-1/1;o=1"));
+
+    assertEquals(200, response.statusCode());
+    assertTrue(
+      response.body().contains("\"logging.googleapis.com/trace\":\"trace-1/1;o=1\""),
+      response.body());
+  }
+
+  @Test
+  public void whenRequestLacksTraceContext_thenLogEntriesLackTraceId() throws Exception {
+    var response = send(get("/test/log"));
+
+    assertEquals(200, response.statusCode());
+    assertTrue(
+      response.body().contains("\"logging.googleapis.com/trace\":null"),
+      response.body());
+  }
+
+  // -------------------------------------------------------------------------
+  // Exception mappers.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenResourceThrowsRuntimeException_thenReturnsServerError() throws Exception {
+    var response = send(get("/test/fail"));
+
+    assertEquals(500, response.statusCode());
+    assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith("application/json"));
+
+    var error = new ObjectMapper().readValue(
+      response.body(),
+      OAuthResource.TokenErrorResponse.class);
+    assertEquals(OAuthResource.TokenErrorResponse.SERVER_ERROR, error.error());
+  }
+
+  @Test
+  public void whenRequestHasUnsupportedMediaType_thenReturnsResponseOfWebApplicationException() throws Exception {
+    var response = send(HttpRequest
+      .newBuilder(URI.create(this.url.toString()).resolve("/token"))
+      .header("Content-Type", "text/plain")
+      .POST(HttpRequest.BodyPublishers.ofString("grant_type=client_credentials")));
+
+    assertEquals(415, response.statusCode());
+  }
+
+  @Test
+  public void whenPathNotMapped_thenReturnsNotFound() throws Exception {
+    var response = send(get("/api/unknown"));
+
+    assertEquals(404, response.statusCode());
+  }
+}
@@ -0,0 +1,250 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import org.jboss.resteasy.reactive.server.core.ResteasyReactiveRequestContext;
+import org.jboss.resteasy.reactive.server.spi.ServerHttpRequest;
+import org.jboss.resteasy.reactive.server.spi.ServerRequestContext;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestResponseWriters {
+  private static <T> byte[] write(
+    ResponseWriters.JsonWriter<T> writer,
+    T entity
+  ) throws Exception {
+    assertTrue(writer.isWriteable(
+      entity.getClass(),
+      entity.getClass(),
+      new Annotation[0],
+      MediaType.APPLICATION_JSON_TYPE));
+
+    var stream = new ByteArrayOutputStream();
+    writer.writeTo(
+      entity,
+      entity.getClass(),
+      entity.getClass(),
+      null,
+      MediaType.APPLICATION_JSON_TYPE,
+      new MultivaluedHashMap<>(),
+      stream);
+    return stream.toByteArray();
+  }
+
+  private static void assertSameAsJackson(Object entity, byte[] actual) throws Exception {
+    assertEquals(
+      new ObjectMapper().writeValueAsString(entity),
+      new String(actual, StandardCharsets.UTF_8));
+  }
+
+  // -------------------------------------------------------------------------
+  // isWriteable.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenTypeDoesNotMatch_thenIsWriteableReturnsFalse() {
+    var writer = new ResponseWriters.TokenResponseWriter();
+
+    assertFalse(writer.isWriteable(
+      OAuthResource.TokenErrorResponse.class,
+      OAuthResource.TokenErrorResponse.class,
+      new Annotation[0],
+      MediaType.APPLICATION_JSON_TYPE));
+  }
+
+  @Test
+  public void whenMediaTypeIsNotJson_thenIsWriteableReturnsFalse() {
+    var writer = new ResponseWriters.TokenResponseWriter();
+
+    assertFalse(writer.isWriteable(
+      OAuthResource.TokenResponse.class,
+      OAuthResource.TokenResponse.class,
+      new Annotation[0],
+      MediaType.TEXT_PLAIN_TYPE));
+  }
+
+  // -------------------------------------------------------------------------
+  // writeResponse.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenRunningOnVertx_thenWriteResponseEndsResponse() throws Exception {
+    var entity = new OAuthResource.TokenErrorResponse("error", "description");
+
+    var response = Mockito.mock(HttpServerResponse.class);
+    var request = Mockito.mock(ServerHttpRequest.class);
+    when(request.unwrap(HttpServerResponse.class)).thenReturn(response);
+    var context = Mockito.mock(ResteasyReactiveRequestContext.class);
+    when(context.serverRequest()).thenReturn(request);
+
+    new ResponseWriters.TokenErrorResponseWriter().writeResponse(entity, entity.getClass(), context);
+
+    var buffer = ArgumentCaptor.forClass(Buffer.class);
+    verify(response).end(buffer.capture());
+    assertSameAsJackson(entity, buffer.getValue().getBytes());
+  }
+
+  @Test
+  public void whenNotRunningOnVertx_thenWriteResponseWritesToStream() throws Exception {
+    var entity = new OAuthResource.TokenErrorResponse("error", "description");
+
+    var stream = new ByteArrayOutputStream();
+    var context = Mockito.mock(ServerRequestContext.class);
+    when(context.getOrCreateOutputStream()).thenReturn(stream);
+
+    new ResponseWriters.TokenErrorResponseWriter().writeResponse(entity, entity.getClass(), context);
+
+    assertSameAsJackson(entity, stream.toByteArray());
+  }
+
+  // -------------------------------------------------------------------------
+  // TokenResponseWriter.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenResponseContainsIdTokenOnly_thenTokenResponseMatchesJackson() throws Exception {
+    var entity = new OAuthResource.TokenResponse("id-token");
+
+    assertSameAsJackson(
+      entity,
+      write(new ResponseWriters.TokenResponseWriter(), entity));
+  }
+
+  @Test
+  public void whenResponseContainsAccessToken_thenTokenResponseMatchesJackson() throws Exception {
+    var entity = new OAuthResource.TokenResponse(
+      "id-token",
+      "access-token-1",
+      OAuthResource.TokenResponse.BEARER,
+      3599L,
+      "https://www.googleapis.com/auth/cloud-platform");
+
+    assertSameAsJackson(
+      entity,
+      write(new ResponseWriters.TokenResponseWriter(), entity));
+  }
+
+  // -------------------------------------------------------------------------
+  // BatchTokenResponseWriter.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenBatchContainsResults_thenBatchTokenResponseMatchesJackson() throws Exception {
+    var entity = new OAuthResource.BatchTokenResponse(
+      "id-token",
+      List.of(
+        new OAuthResource.BatchTokenResult(
+          "scope-1",
+          null,
+          "access-token-1",
+          OAuthResource.TokenResponse.BEARER,
+          3599L,
+          null,
+          null),
+        new OAuthResource.BatchTokenResult(
+          "scope-2",
+          "sa@project.iam.gserviceaccount.com",
+          null,
+          null,
+          null,
+          OAuthResource.TokenErrorResponse.ACCESS_DENIED,
+          "Permission \"iam.serviceAccounts.getAccessToken\" denied")));
+
+    assertSameAsJackson(
+      entity,
+      write(new ResponseWriters.BatchTokenResponseWriter(), entity));
+  }
+
+  @Test
+  public void whenBatchIsEmpty_thenBatchTokenResponseMatchesJackson() throws Exception {
+    var entity = new OAuthResource.BatchTokenResponse("id-token", List.of());
+
+    assertSameAsJackson(
+      entity,
+      write(new ResponseWriters.BatchTokenResponseWriter(), entity));
+  }
+
+  // -------------------------------------------------------------------------
+  // Error writers.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenDescriptionContainsSpecialCharacters_thenTokenErrorResponseMatchesJackson() throws Exception {
+    var entity = new OAuthResource.TokenErrorResponse(
+      OAuthResource.TokenErrorResponse.INVALID_REQUEST,
+      "Line 1\nLine \"2\" \u00e4");
+
+    assertSameAsJackson(
+      entity,
+      write(new ResponseWriters.TokenErrorResponseWriter(), entity));
+  }
+
+  @Test
+  public void whenDescriptionIsNull_thenTokenErrorResponseMatchesJackson() throws Exception {
+    var entity = new OAuthResource.TokenErrorResponse(
+      OAuthResource.TokenErrorResponse.SERVER_ERROR,
+      (String)null);
+
+    assertSameAsJackson(
+      entity,
+      write(new ResponseWriters.TokenErrorResponseWriter(), entity));
+  }
+
+  @Test
+  public void whenErrorOccurs_thenExternalCredentialErrorResponseMatchesJackson() throws Exception {
+    var entity = new OAuthResource.ExternalCredentialErrorResponse(
+      OAuthResource.TokenErrorResponse.ACCESS_DENIED,
+      new IllegalArgumentException("Access denied"));
+
+    assertSameAsJackson(
+      entity,
+      write(new ResponseWriters.ExternalCredentialErrorResponseWriter(), entity));
+  }
+
+  // -------------------------------------------------------------------------
+  // ExternalCredentialResponseWriter.
+  // -------------------------------------------------------------------------
+
+  @Test
+  public void whenResponseContainsIdToken_thenExternalCredentialResponseMatchesJackson() throws Exception {
+    var entity = new OAuthResource.ExternalCredentialResponse("id-token", 3600);
+
+    assertSameAsJackson(
+      entity,
+      write(new ResponseWriters.ExternalCredentialResponseWriter(), entity));
+  }
+}
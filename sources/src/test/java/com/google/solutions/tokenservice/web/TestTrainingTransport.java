@@ -0,0 +1,103 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.google.solutions.tokenservice.UserId;
+import com.google.solutions.tokenservice.oauth.IdToken;
+import com.google.solutions.tokenservice.oauth.ServiceAccount;
+import com.google.solutions.tokenservice.oauth.StsAccessToken;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.platform.HttpTransport;
+import com.google.solutions.tokenservice.platform.LogAdapter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTrainingTransport {
+  private static final ServiceAccount SERVICE_ACCOUNT = new ServiceAccount(
+    new UserId("training@training.iam.gserviceaccount.com"),
+    new StsAccessToken("training", ServiceAccount.OAUTH_SCOPE, Instant.now(), Instant.MAX));
+
+  @BeforeAll
+  public static void beforeAll() {
+    HttpTransport.overrideSharedTransport(new TrainingTransport());
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    HttpTransport.overrideSharedTransport(null);
+  }
+
+  @Test
+  public void whenTrainingTransportUsed_thenSignJwtReturnsPlaceholder() throws Exception {
+    var jwt = SERVICE_ACCOUNT.signJwt("{}");
+
+    assertTrue(jwt.endsWith(".e30.training"));
+  }
+
+  @Test
+  public void whenTrainingTransportUsed_thenGenerateAccessTokenReturnsToken() throws Exception {
+    var token = SERVICE_ACCOUNT.generateAccessToken(
+      List.of(ServiceAccount.OAUTH_SCOPE),
+      Duration.ofMinutes(5));
+
+    assertEquals("training", token.value());
+    assertTrue(token.expiryTime().isAfter(Instant.now()));
+  }
+
+  @Test
+  public void whenTrainingTransportUsed_thenIssueAccessTokenReturnsToken() throws Exception {
+    var pool = new WorkloadIdentityPool(new WorkloadIdentityPool.Options(1, "pool", "provider"));
+
+    var token = pool.issueAccessToken(
+      new IdToken("id-token", Instant.now(), Instant.now().plusSeconds(60)),
+      ServiceAccount.OAUTH_SCOPE);
+
+    assertEquals("training", token.value());
+  }
+
+  @Test
+  public void whenTrainingTransportUsed_thenJwksContainsKey() throws Exception {
+    var mirror = new JwksMirror(
+      SERVICE_ACCOUNT.jwksUrl(),
+      Duration.ofMinutes(5),
+      new LogAdapter());
+    try {
+      var keySet = new String(mirror.get().body());
+      assertTrue(keySet.contains(TrainingTransport.KEY_ID));
+    }
+    finally {
+      mirror.close();
+    }
+  }
+
+  @Test
+  public void whenUrlUnknown_thenRespondReturnsNotFound() {
+    assertEquals(404, TrainingTransport.respond("GET", "https://example.com/").getStatusCode());
+  }
+}
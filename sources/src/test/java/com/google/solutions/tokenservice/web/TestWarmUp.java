@@ -0,0 +1,123 @@
+//
+// Copyright 2023 Google LLC
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+
+package com.google.solutions.tokenservice.web;
+
+import com.google.solutions.tokenservice.oauth.ServiceAccount;
+import com.google.solutions.tokenservice.oauth.WorkloadIdentityPool;
+import com.google.solutions.tokenservice.oauth.client.ClientPolicy;
+import com.google.solutions.tokenservice.oauth.client.FingerprintAllowList;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestWarmUp {
+  private static final WorkloadIdentityPool.Options WORKLOAD_IDENTITY_POOL_OPTIONS
+    = new WorkloadIdentityPool.Options(1, "pool-1", "provider-1");
+
+  private static WarmUp createWarmUp() {
+    var warmUp = new WarmUp();
+    warmUp.upstreamUrls = List.of();
+    warmUp.serviceAccount = mock(ServiceAccount.class);
+    warmUp.jwksMirror = mock(JwksMirror.class);
+    warmUp.clientPolicy = new ClientPolicy();
+    warmUp.workloadIdentityPool = new WorkloadIdentityPool(WORKLOAD_IDENTITY_POOL_OPTIONS);
+    warmUp.workloadIdentityPoolOptions = () -> WORKLOAD_IDENTITY_POOL_OPTIONS;
+    warmUp.configuration = new RuntimeConfiguration(Map.of());
+    return warmUp;
+  }
+
+  private static String failedSteps(WarmUp warmUp) {
+    var response = warmUp.call();
+    assertEquals(HealthCheckResponse.Status.UP, response.getStatus());
+    return (String)response.getData().get().get("failed_steps");
+  }
+
+  @Test
+  public void whenNotRun_thenCallReturnsDown() {
+    var warmUp = createWarmUp();
+
+    assertEquals(HealthCheckResponse.Status.DOWN, warmUp.call().getStatus());
+  }
+
+  @Test
+  public void whenAllStepsSucceed_thenCallReturnsUp() throws Exception {
+    var warmUp = createWarmUp();
+    warmUp.run();
+
+    assertEquals("", failedSteps(warmUp));
+    verify(warmUp.serviceAccount).refreshCredentialsIfExpired();
+    verify(warmUp.jwksMirror).get();
+  }
+
+  @Test
+  public void whenCredentialsFail_thenCallReturnsUp() throws Exception {
+    var warmUp = createWarmUp();
+    doThrow(new IOException("mock"))
+      .when(warmUp.serviceAccount)
+      .refreshCredentialsIfExpired();
+    warmUp.run();
+
+    assertEquals("credentials", failedSteps(warmUp));
+  }
+
+  @Test
+  public void whenJwksFails_thenCallReturnsUp() throws Exception {
+    var warmUp = createWarmUp();
+    when(warmUp.jwksMirror.get()).thenThrow(new IOException("mock"));
+    warmUp.run();
+
+    assertEquals("jwks", failedSteps(warmUp));
+  }
+
+  @Test
+  public void whenStepsFail_thenSubsequentStepsRun() throws Exception {
+    var warmUp = createWarmUp();
+    doThrow(new IOException("mock"))
+      .when(warmUp.serviceAccount)
+      .refreshCredentialsIfExpired();
+    when(warmUp.jwksMirror.get()).thenThrow(new IOException("mock"));
+    warmUp.workloadIdentityPoolOptions = () -> {
+      throw new IllegalStateException("mock");
+    };
+    warmUp.run();
+
+    assertEquals("credentials,jwks,requests", failedSteps(warmUp));
+  }
+
+  @Test
+  public void whenClientNotOnAllowList_thenRequestPathSucceeds() {
+    var warmUp = createWarmUp();
+    warmUp.clientPolicy = new ClientPolicy(FingerprintAllowList::of);
+    warmUp.run();
+
+    assertEquals("", failedSteps(warmUp));
+  }
+}